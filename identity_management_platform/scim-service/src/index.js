@@ -92,11 +92,20 @@ function authorize(requiredScope){
   };
 }
 
-// SCIM list users
+// SCIM list users; ?filter= is planned against user-service indexes by SearchUsers
 app.get('/scim/v2/Users', authorize('scim.read'), (req,res)=>{
-  client.listUsers({page:1,pageSize:100}, (err, resp)=>{
+  if(req.query.filter === undefined){
+    return client.listUsers({page:1,pageSize:100}, (err, resp)=>{
+      if(err) return res.status(500).json({error:err.message});
+      res.json({Resources: resp.users.map(u=> toScim(u)), totalResults: resp.total});
+    });
+  }
+  const startIndex = Math.max(1, parseInt(req.query.startIndex, 10) || 1);
+  const count = Math.max(0, parseInt(req.query.count, 10) || 0);
+  client.searchUsers({filter: String(req.query.filter), startIndex, count}, (err, resp)=>{
+    if(err?.code === grpc.status.INVALID_ARGUMENT) return res.status(400).json({error:'invalid_filter', detail:err.details||err.message});
     if(err) return res.status(500).json({error:err.message});
-    res.json({Resources: resp.users.map(u=> toScim(u)), totalResults: resp.total});
+    res.json({Resources: resp.users.map(u=> toScim(u)), totalResults: resp.total, startIndex, itemsPerPage: resp.users.length});
   });
 });
 
@@ -112,28 +121,93 @@ app.post('/scim/v2/Users', authorize('scim.write'), (req,res)=>{
 app.get('/scim/v2/Users/:id', authorize('scim.read'), (req,res)=>{
   client.getUser({id:req.params.id}, (err, resp)=>{
     if(err) return res.status(404).json({error:'not_found'});
-    res.json(toScim(resp.user));
+    sendScim(res, resp.user);
   });
 });
 
 app.put('/scim/v2/Users/:id', authorize('scim.write'), (req,res)=>{
   const scim = req.body;
-  const user = { id:req.params.id, userName: scim.userName, givenName: scim.name?.givenName, familyName: scim.name?.familyName, emails: (scim.emails||[]).map(e=>e.value), active: scim.active!==false };
+  const user = { id:req.params.id, userName: scim.userName, givenName: scim.name?.givenName, familyName: scim.name?.familyName, emails: (scim.emails||[]).map(e=>e.value), active: scim.active!==false, version: ifMatchVersion(req) };
   client.updateUser({user}, (err, resp)=>{
-    if(err) return res.status(404).json({error:'not_found'});
-    res.json(toScim(resp.user));
+    if(err) return res.status(isPreconditionFailed(err)?412:404).json({error: isPreconditionFailed(err)?'precondition_failed':'not_found'});
+    sendScim(res, resp.user);
+  });
+});
+
+// SCIM PATCH maps onto a single PatchUser call (no read-modify-write round trip)
+app.patch('/scim/v2/Users/:id', authorize('scim.write'), (req,res)=>{
+  let patch;
+  try { patch = toPatchRequest(req.params.id, req.body?.Operations||[]); }
+  catch(e){ return res.status(400).json({error:'invalid_patch', detail:e.message}); }
+  patch.version = ifMatchVersion(req);
+  client.patchUser(patch, (err, resp)=>{
+    if(err?.code === grpc.status.INVALID_ARGUMENT) return res.status(400).json({error:'invalid_patch', detail:err.details||err.message});
+    if(err) return res.status(isPreconditionFailed(err)?412:404).json({error: isPreconditionFailed(err)?'precondition_failed':'not_found'});
+    sendScim(res, resp.user);
   });
 });
 
 app.delete('/scim/v2/Users/:id', authorize('scim.write'), (req,res)=>{
-  client.deleteUser({id:req.params.id}, (err, resp)=>{
-    if(err) return res.status(404).json({error:'not_found'});
+  client.deleteUser({id:req.params.id, version: ifMatchVersion(req)}, (err, resp)=>{
+    if(err) return res.status(isPreconditionFailed(err)?412:404).json({error: isPreconditionFailed(err)?'precondition_failed':'not_found'});
     res.status(resp.deleted?204:404).send();
   });
 });
 
+// ETags are the user-service version: W/"<version>". "0" means no precondition.
+function ifMatchVersion(req){
+  const m = /^(?:W\/)?"(\d+)"$/.exec((req.get('If-Match')||'').trim());
+  return m ? m[1] : '0';
+}
+
+const SCIM_PATHS = { 'userName':'userName', 'name.givenName':'givenName', 'name.familyName':'familyName', 'active':'active', 'emails':'emails' };
+
+// Supported subset: add/replace/remove on the SCIM_PATHS attributes, path-less add/replace with an
+// attribute object, and remove on `emails[value eq "x"]`.
+function toPatchRequest(id, ops){
+  const user = {}; const paths = new Set(); const addEmails = []; const removeEmails = [];
+  const apply = (op, path, value)=>{
+    const field = SCIM_PATHS[path];
+    if(!field) throw new Error('Unsupported path: '+path);
+    if(field === 'emails'){
+      const values = (Array.isArray(value)?value:[value]).filter(v=>v!=null).map(e=>e.value ?? e);
+      if(op === 'add'){ addEmails.push(...values); return; }
+      paths.add('emails'); user.emails = op === 'remove' ? [] : values; return;
+    }
+    paths.add(field);
+    if(op !== 'remove') user[field] = value;
+  };
+  for(const o of ops){
+    const op = String(o.op||'').toLowerCase();
+    if(!['add','replace','remove'].includes(op)) throw new Error('Unsupported op: '+o.op);
+    if(!o.path){
+      if(op === 'remove') throw new Error('remove requires a path');
+      const v = o.value||{};
+      for(const key of ['userName','active','emails']) if(key in v) apply(op, key, v[key]);
+      for(const key of ['givenName','familyName']) if(v.name && key in v.name) apply(op, 'name.'+key, v.name[key]);
+      continue;
+    }
+    const emailFilter = /^emails\[value eq "([^"]*)"\]$/.exec(o.path);
+    if(emailFilter){
+      if(op !== 'remove') throw new Error('Only remove is supported on '+o.path);
+      removeEmails.push(emailFilter[1]);
+      continue;
+    }
+    apply(op, o.path, o.value);
+  }
+  return { id, user, updateMask: { paths: [...paths] }, addEmails, removeEmails };
+}
+
+function isPreconditionFailed(err){ return err.code === grpc.status.FAILED_PRECONDITION; }
+
+function sendScim(res, u){
+  const scim = toScim(u);
+  if(scim.meta) res.set('ETag', scim.meta.version);
+  res.json(scim);
+}
+
 function toScim(u){
-  return {
+  const scim = {
     id: u.id,
     userName: u.userName,
     name: { givenName: u.givenName, familyName: u.familyName },
@@ -141,6 +215,8 @@ function toScim(u){
     active: u.active,
     schemas: ["urn:ietf:params:scim:schemas:core:2.0:User"]
   };
+  if(u.version && u.version !== '0') scim.meta = { resourceType: 'User', version: `W/"${u.version}"` };
+  return scim;
 }
 
 export { app };
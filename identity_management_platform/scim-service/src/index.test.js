@@ -20,9 +20,18 @@ function createMockClient(){
       const users = Array.from(store.values());
       cb(null, { users, total: users.length });
     },
+    searchUsers(req, cb){
+      // Only "userName eq|sw" is needed by the tests; anything else is rejected like the real parser would.
+      const m = /^userName (eq|sw) "(.*)"$/i.exec(req.filter);
+      if(!m) return cb(Object.assign(new Error('bad filter'), { code: 3, details: 'Unsupported filter' }));
+      const v = m[2].toLowerCase();
+      const hits = Array.from(store.values()).filter(u => m[1].toLowerCase() === 'eq' ? u.userName.toLowerCase() === v : u.userName.toLowerCase().startsWith(v));
+      const from = req.startIndex - 1;
+      cb(null, { users: hits.slice(from, req.count ? from + req.count : undefined), total: hits.length });
+    },
     createUser(req, cb){
       const id = 'u-' + (store.size + 1);
-      const u = { ...req.user, id };
+      const u = { ...req.user, id, version: '1' };
       store.set(id, u);
       cb(null, { user: u });
     },
@@ -32,8 +41,21 @@ function createMockClient(){
       cb(null, { user: u });
     },
     updateUser(req, cb){
-      const u = req.user;
-      if(!store.has(u.id)) return cb(new Error('not found'));
+      const current = store.get(req.user.id);
+      if(!current) return cb(new Error('not found'));
+      if(req.user.version && req.user.version !== '0' && req.user.version !== current.version){
+        return cb(Object.assign(new Error('version mismatch'), { code: 9 }));
+      }
+      const u = { ...req.user, version: String(Number(current.version) + 1) };
+      store.set(u.id, u);
+      cb(null, { user: u });
+    },
+    patchUser(req, cb){
+      const current = store.get(req.id);
+      if(!current) return cb(new Error('not found'));
+      const u = { ...current, version: String(Number(current.version) + 1) };
+      for(const path of req.updateMask.paths) u[path] = req.user[path];
+      u.emails = [...new Set([...(u.emails||[]), ...req.addEmails])].filter(e=>!req.removeEmails.includes(e));
       store.set(u.id, u);
       cb(null, { user: u });
     },
@@ -47,7 +69,8 @@ function createMockClient(){
 // Import after env vars
 import { app, setClient } from './index.js';
 
-setClient(createMockClient());
+const mockClient = createMockClient();
+setClient(mockClient);
 const token = makeJwt();
 
 describe('SCIM Service API', () => {
@@ -114,6 +137,99 @@ describe('SCIM Service API', () => {
     expect(res.body.name.givenName).toBe('Updated');
   });
 
+  test('PUT /scim/v2/Users/:id honors If-Match ETag', async () => {
+    const list = await request(app)
+      .get('/scim/v2/Users')
+      .set('Authorization', `Bearer ${token}`)
+      .expect(200);
+    const id = list.body.Resources[0].id;
+
+    const current = await request(app)
+      .get(`/scim/v2/Users/${id}`)
+      .set('Authorization', `Bearer ${token}`)
+      .expect(200);
+    expect(current.headers.etag).toBe(current.body.meta.version);
+
+    const body = { userName: 'demoUser', name: { givenName: 'Etag', familyName: 'User' }, emails: [] };
+    const ok = await request(app)
+      .put(`/scim/v2/Users/${id}`)
+      .set('Authorization', `Bearer ${token}`)
+      .set('If-Match', current.headers.etag)
+      .send(body)
+      .expect(200);
+    expect(ok.headers.etag).not.toBe(current.headers.etag);
+
+    await request(app)
+      .put(`/scim/v2/Users/${id}`)
+      .set('Authorization', `Bearer ${token}`)
+      .set('If-Match', current.headers.etag)
+      .send(body)
+      .expect(412);
+  });
+
+  test('PATCH /scim/v2/Users/:id applies operations', async () => {
+    const list = await request(app)
+      .get('/scim/v2/Users')
+      .set('Authorization', `Bearer ${token}`)
+      .expect(200);
+    const id = list.body.Resources[0].id;
+
+    const res = await request(app)
+      .patch(`/scim/v2/Users/${id}`)
+      .set('Authorization', `Bearer ${token}`)
+      .send({
+        schemas: ['urn:ietf:params:scim:api:messages:2.0:PatchOp'],
+        Operations: [
+          { op: 'replace', path: 'name.familyName', value: 'Patched' },
+          { op: 'add', path: 'emails', value: [{ value: 'patched@example.com' }] },
+          { op: 'replace', value: { active: false } }
+        ]
+      })
+      .expect(200);
+    expect(res.body.name.familyName).toBe('Patched');
+    expect(res.body.active).toBe(false);
+    expect(res.body.emails.map(e=>e.value)).toContain('patched@example.com');
+
+    await request(app)
+      .patch(`/scim/v2/Users/${id}`)
+      .set('Authorization', `Bearer ${token}`)
+      .send({ Operations: [{ op: 'replace', path: 'id', value: 'nope' }] })
+      .expect(400);
+  });
+
+  test('PATCH /scim/v2/Users/:id reports a patch the service rejects as 400', async () => {
+    setClient({ ...mockClient, patchUser(req, cb){
+      cb(Object.assign(new Error('bad mask'), { code: 3, details: 'Unknown update_mask path: nickName' }));
+    } });
+    try {
+      const res = await request(app)
+        .patch('/scim/v2/Users/u-1')
+        .set('Authorization', `Bearer ${token}`)
+        .send({ Operations: [{ op: 'replace', path: 'name.givenName', value: 'X' }] })
+        .expect(400);
+      expect(res.body).toEqual({ error: 'invalid_patch', detail: 'Unknown update_mask path: nickName' });
+    } finally {
+      setClient(mockClient);
+    }
+  });
+
+  test('GET /scim/v2/Users?filter= searches and pages', async () => {
+    const res = await request(app)
+      .get('/scim/v2/Users')
+      .query({ filter: 'userName sw "DEMO"', startIndex: 1, count: 1 })
+      .set('Authorization', `Bearer ${token}`)
+      .expect(200);
+    expect(res.body.totalResults).toBe(1);
+    expect(res.body.itemsPerPage).toBe(1);
+    expect(res.body.Resources[0].userName).toBe('demoUser');
+
+    await request(app)
+      .get('/scim/v2/Users')
+      .query({ filter: 'title gt "x"' })
+      .set('Authorization', `Bearer ${token}`)
+      .expect(400);
+  });
+
   test('DELETE /scim/v2/Users/:id removes user', async () => {
     const list = await request(app)
       .get('/scim/v2/Users')
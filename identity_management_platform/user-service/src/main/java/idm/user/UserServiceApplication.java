@@ -1,21 +1,149 @@
 package idm.user;
 
+import idm.user.config.ConcurrencyLimitProperties;
+import idm.user.config.GrpcServerFactory;
+import idm.user.config.GrpcServerProperties;
+import idm.user.config.LifecycleProperties;
+import idm.user.group.GroupServiceImpl;
+import idm.user.id.IdGenerator;
+import idm.user.lifecycle.ServerLifecycle;
+import idm.user.lifecycle.Warmup;
+import idm.user.limit.AdaptiveLimiter;
+import idm.user.limit.LoadSheddingInterceptor;
+import idm.user.metrics.GrpcMetricsInterceptor;
+import idm.user.metrics.MetricsHttpServer;
+import idm.user.metrics.MetricsSource;
+import idm.user.replication.Follower;
+import idm.user.replication.ReplicationInterceptor;
+import idm.user.store.HeapUserStore;
+import idm.user.store.OffHeapUserStore;
+import idm.user.store.UserStore;
+import idm.user.v1.GroupServiceGrpc;
+import idm.user.v1.UserServiceGrpc;
+import idm.user.watch.ChangeLog;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
 import io.grpc.Server;
-import io.grpc.ServerBuilder;
+import io.grpc.protobuf.services.HealthStatusManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @SpringBootApplication
+@EnableConfigurationProperties({GrpcServerProperties.class, ConcurrencyLimitProperties.class, LifecycleProperties.class})
 public class UserServiceApplication implements CommandLineRunner {
   public static void main(String[] args){ SpringApplication.run(UserServiceApplication.class, args); }
 
+  // heap (default) keeps User objects in a ConcurrentHashMap; offheap keeps serialized bytes in direct slabs
+  @Value("${user.store.mode:heap}")
+  String storeMode;
+
+  // entries in the pre-serialized GetUser response cache; 0 disables it
+  @Value("${user.cache.size:"+UserServiceImpl.DEFAULT_CACHE_SIZE+"}")
+  int cacheSize;
+
+  // events kept for WatchUsers resumption; watchers further behind are told to resync
+  @Value("${user.watch.buffer:"+ChangeLog.DEFAULT_CAPACITY+"}")
+  int watchBuffer;
+
+  // uuidv7 (time-ordered, default) or random (UUIDv4) ids for CreateUser
+  @Value("${user.id.generator:uuidv7}")
+  String idGenerator;
+
+  // 0-1023, distinct per instance that creates users (e.g. per shard)
+  @Value("${user.id.node:0}")
+  int idNode;
+
+  // host:port of the leader to replicate from; empty runs this instance as the leader
+  @Value("${user.replication.leader:}")
+  String replicationLeader;
+
+  // leader heartbeat period on the replication feed, the floor for bounded-staleness reads
+  @Value("${user.replication.heartbeat-millis:100}")
+  long replicationHeartbeatMillis;
+
+  // longest a follower holds a read waiting to reach a client's sequence token before answering UNAVAILABLE
+  @Value("${user.replication.max-wait-millis:500}")
+  long replicationMaxWaitMillis;
+
+  // Prometheus scrape port for GET /metrics; 0 disables the endpoint
+  @Value("${metrics.port:9464}")
+  int metricsPort;
+
+  @Autowired
+  GrpcServerProperties grpc;
+
+  @Autowired
+  ConcurrencyLimitProperties limit;
+
+  @Autowired
+  LifecycleProperties lifecycle;
+
   @Override
   public void run(String... args) throws Exception {
-    Server server = ServerBuilder.forPort(8083).addService(new UserServiceImpl()).build();
-    server.start();
-    System.out.println("gRPC UserService started on 8083");
-    Runtime.getRuntime().addShutdownHook(new Thread(server::shutdown));
-    server.awaitTermination();
+    GrpcMetricsInterceptor metrics = new GrpcMetricsInterceptor();
+    List<MetricsSource> metricsSources = new ArrayList<>(List.of(metrics));
+    GrpcServerFactory factory = new GrpcServerFactory(grpc);
+    IdGenerator ids = IdGenerator.of(idGenerator, idNode);
+    UserServiceImpl service = new UserServiceImpl(userStore(), cacheSize, watchBuffer, ids);
+    ManagedChannel leaderChannel = replicationLeader.isBlank() ? null : ManagedChannelBuilder.forTarget(replicationLeader).usePlaintext().build();
+    Follower follower = leaderChannel == null ? null : new Follower(leaderChannel, service, Duration.ofMillis(replicationHeartbeatMillis));
+    // innermost, so shed calls never wait for replication
+    factory.intercept(follower == null ? ReplicationInterceptor.leader(service.changes())
+        : ReplicationInterceptor.follower(follower, Duration.ofMillis(replicationMaxWaitMillis)));
+    if(limit.enabled()){
+      LoadSheddingInterceptor shedding = new LoadSheddingInterceptor(new AdaptiveLimiter(limit));
+      factory.intercept(shedding);
+      metricsSources.add(shedding);
+    }
+    // added last so it runs first and also counts shed calls
+    factory.intercept(metrics);
+    HealthStatusManager health = new HealthStatusManager();
+    // Groups are not replicated: only the leader serves them
+    Server server = follower == null ? factory.build(service, new GroupServiceImpl(service.groups(), ids), health.getHealthService())
+        : factory.build(service, health.getHealthService());
+    MetricsHttpServer metricsHttp = metricsPort > 0 ? new MetricsHttpServer(metricsPort, metricsSources) : null;
+    String[] served = follower == null ? new String[]{UserServiceGrpc.SERVICE_NAME, GroupServiceGrpc.SERVICE_NAME} : new String[]{UserServiceGrpc.SERVICE_NAME};
+    ServerLifecycle phases = new ServerLifecycle(server, health, lifecycle, served)
+        .onDrain(service.changes())
+        .onTerminated(factory);
+    if(metricsHttp != null) phases.onTerminated(metricsHttp);
+    if(follower != null){
+      phases.onDrain(follower).onTerminated(leaderChannel::shutdownNow);
+      follower.start();
+    }
+    phases.start(() -> {
+      Warmup.run(lifecycle.warmupIterations());
+      // A follower reports SERVING once it holds a snapshot, or after 30s if the leader is unreachable
+      if(follower != null){
+        try {
+          if(!follower.awaitSynced(Duration.ofSeconds(30))) System.out.println("Replica not yet synced with "+replicationLeader+"; serving anyway");
+        } catch (InterruptedException e){ Thread.currentThread().interrupt(); }
+      }
+    });
+    System.out.println("gRPC UserService serving on "+server.getPort()+" (store="+storeMode+", executor="+grpc.executor()
+        +(follower != null ? ", following "+replicationLeader : "")+")");
+    Runtime.getRuntime().addShutdownHook(new Thread(phases::drain, "grpc-drain"));
+    // gRPC threads are daemons: keep the JVM alive from a dedicated thread instead of blocking the Spring runner
+    Thread keepAlive = new Thread(() -> {
+      try { server.awaitTermination(); } catch (InterruptedException e){ Thread.currentThread().interrupt(); }
+    }, "grpc-await-termination");
+    keepAlive.setDaemon(false);
+    keepAlive.start();
+  }
+
+  UserStore userStore(){
+    switch(storeMode){
+      case "heap": return new HeapUserStore();
+      case "offheap": return new OffHeapUserStore();
+      default: throw new IllegalArgumentException("Unknown user.store.mode: "+storeMode);
+    }
   }
 }
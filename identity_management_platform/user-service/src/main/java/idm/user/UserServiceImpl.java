@@ -1,20 +1,99 @@
 package idm.user;
 
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import idm.user.cache.ResponseCache;
+import idm.user.cache.SerializedMarshaller;
+import idm.user.group.GroupDirectory;
+import idm.user.id.IdGenerator;
+import idm.user.id.TimeOrderedIdGenerator;
+import idm.user.search.Filter;
+import idm.user.search.IndexedUserStore;
+import idm.user.store.HeapUserStore;
+import idm.user.store.UserStore;
+import idm.user.watch.ChangeLog;
 import idm.user.v1.*; // using java_multiple_files option generates classes per message
+import io.grpc.BindableService;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCalls;
 import io.grpc.stub.StreamObserver;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
-public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
-  private final Map<String, User> store = new ConcurrentHashMap<>();
+// AsyncService rather than UserServiceImplBase, whose bindService() is final
+public class UserServiceImpl implements UserServiceGrpc.AsyncService, BindableService {
+  public static final int DEFAULT_CACHE_SIZE = 10_000;
+  static final long MIN_HEARTBEAT_MILLIS = 10;
+  static final int MAX_IMPORT_ERRORS = 1000;
+
+  private final IndexedUserStore store;
+  // Serialized GetUser responses for hot ids; invalidated after every write
+  private final ResponseCache<byte[]> cache;
+  private final ChangeLog changes;
+  private final GroupDirectory groups;
+  private final IdGenerator ids;
+
+  public UserServiceImpl(){ this(new HeapUserStore()); }
+  public UserServiceImpl(UserStore store){ this(store, DEFAULT_CACHE_SIZE, ChangeLog.DEFAULT_CAPACITY); }
+  public UserServiceImpl(UserStore store, int cacheSize, int changeLogCapacity){
+    this(store, cacheSize, changeLogCapacity, new TimeOrderedIdGenerator(0));
+  }
+  public UserServiceImpl(UserStore store, int cacheSize, int changeLogCapacity, IdGenerator ids){
+    this.ids = ids;
+    this.changes = new ChangeLog(changeLogCapacity);
+    this.groups = new GroupDirectory(this::withUser);
+    this.store = new IndexedUserStore(store, changes, groups);
+    this.cache = new ResponseCache<>(cacheSize);
+  }
+
+  // Member ordinals are handed out under the user's compute, so a racing delete cannot leave one behind
+  private boolean withUser(String id, Runnable action){
+    return store.computeIfPresent(id, u -> { action.run(); return u; }) != null;
+  }
+
+  ResponseCache<byte[]> cache(){ return cache; }
+  public ChangeLog changes(){ return changes; }
+  public GroupDirectory groups(){ return groups; }
+
+  /**
+   * Same service, but GetUser answers with serialized bytes through {@link SerializedMarshaller}: a cached response,
+   * or else the store's encoding of the user wrapped as a response without decoding it.
+   */
+  @Override
+  public ServerServiceDefinition bindService(){
+    ServerServiceDefinition base = UserServiceGrpc.bindService(this);
+    MethodDescriptor<GetUserRequest, UserResponse> generated = UserServiceGrpc.getGetUserMethod();
+    MethodDescriptor<GetUserRequest, Object> getUser = generated.toBuilder(generated.getRequestMarshaller(),
+        new SerializedMarshaller<>(generated.getResponseMarshaller(), UserResponse.class)).build();
+    ServiceDescriptor.Builder descriptor = ServiceDescriptor.newBuilder(UserServiceGrpc.SERVICE_NAME)
+        .setSchemaDescriptor(base.getServiceDescriptor().getSchemaDescriptor());
+    for(ServerMethodDefinition<?, ?> m : base.getMethods())
+      descriptor.addMethod(m.getMethodDescriptor() == generated ? getUser : m.getMethodDescriptor());
+    ServerServiceDefinition.Builder definition = ServerServiceDefinition.builder(descriptor.build());
+    for(ServerMethodDefinition<?, ?> m : base.getMethods()) if(m.getMethodDescriptor() != generated) definition.addMethod(m);
+    return definition.addMethod(getUser, ServerCalls.asyncUnaryCall(this::getUserSerialized)).build();
+  }
 
   @Override
   public void createUser(CreateUserRequest request, StreamObserver<UserResponse> responseObserver) {
     User incoming = request.getUser();
-    String id = UUID.randomUUID().toString();
-    User created = User.newBuilder(incoming).setId(id).build();
-    store.put(id, created);
+    // Sharded clients mint the id so they can route the create to its owning shard
+    String id = incoming.getId().isEmpty() ? ids.next() : incoming.getId();
+    User created = User.newBuilder(incoming).setId(id).setVersion(1).build();
+    try {
+      store.compute(id, current -> {
+        if(current != null) throw Status.ALREADY_EXISTS.withDescription("User already exists: "+id).asRuntimeException();
+        return created;
+      });
+    } catch (StatusRuntimeException e){ responseObserver.onError(e); return; }
     responseObserver.onNext(UserResponse.newBuilder().setUser(created).build());
     responseObserver.onCompleted();
   }
@@ -27,26 +106,216 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
     responseObserver.onCompleted();
   }
 
+  private void getUserSerialized(GetUserRequest request, StreamObserver<Object> responseObserver) {
+    String id = request.getId();
+    byte[] bytes = cache.get(id);
+    if(bytes==null){
+      long stamp = cache.stamp(id);
+      ByteBuffer user = store.getSerialized(id);
+      if(user==null){ responseObserver.onError(new NoSuchElementException("User not found")); return; }
+      bytes = userResponse(user);
+      cache.fill(id, stamp, bytes);
+    }
+    responseObserver.onNext(bytes);
+    responseObserver.onCompleted();
+  }
+
+  // UserResponse has only the user field, so its encoding is that field's tag and length before the user's bytes
+  private static byte[] userResponse(ByteBuffer user){
+    int len = user.remaining();
+    int header = CodedOutputStream.computeTagSize(UserResponse.USER_FIELD_NUMBER) + CodedOutputStream.computeUInt32SizeNoTag(len);
+    byte[] out = new byte[header + len];
+    try {
+      CodedOutputStream prefix = CodedOutputStream.newInstance(out, 0, header);
+      prefix.writeTag(UserResponse.USER_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+      prefix.writeUInt32NoTag(len);
+    } catch (IOException e){ throw new UncheckedIOException(e); }
+    user.get(out, header, len);
+    return out;
+  }
+
   @Override
   public void listUsers(ListUsersRequest request, StreamObserver<ListUsersResponse> responseObserver) {
-    List<User> users = new ArrayList<>(store.values());
-    responseObserver.onNext(ListUsersResponse.newBuilder().addAllUsers(users).setTotal(users.size()).build());
+    long sequence = changes.head();
+    List<User> users = store.values();
+    responseObserver.onNext(ListUsersResponse.newBuilder().addAllUsers(users).setTotal(users.size())
+        .setSequence(sequence).setEpoch(changes.epoch()).build());
+    responseObserver.onCompleted();
+  }
+
+  @Override
+  public void searchUsers(SearchUsersRequest request, StreamObserver<ListUsersResponse> responseObserver) {
+    long sequence = changes.head();
+    List<User> matches;
+    try {
+      Filter filter = request.getFilter().isBlank() ? null : Filter.parse(request.getFilter());
+      if(!request.getQuery().isBlank()){
+        IndexedUserStore.Matches ranked = store.rank(request.getQuery(), filter, Math.max(0, request.getStartIndex() - 1), request.getCount());
+        ListUsersResponse.Builder response = ListUsersResponse.newBuilder().setTotal(ranked.total())
+            .setSequence(sequence).setEpoch(changes.epoch());
+        for(IndexedUserStore.Match m : ranked.page()) response.addUsers(m.user()).addScores(m.score());
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+        return;
+      }
+      matches = filter == null ? store.values() : store.search(filter);
+    } catch (IllegalArgumentException e){
+      responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+      return;
+    }
+    int from = Math.min(matches.size(), Math.max(0, request.getStartIndex() - 1));
+    int to = request.getCount() > 0 ? Math.min(matches.size(), from + request.getCount()) : matches.size();
+    responseObserver.onNext(ListUsersResponse.newBuilder().addAllUsers(matches.subList(from, to)).setTotal(matches.size())
+        .setSequence(sequence).setEpoch(changes.epoch()).build());
     responseObserver.onCompleted();
   }
 
+  @Override
+  public void watchUsers(WatchUsersRequest request, StreamObserver<UserEvent> responseObserver) {
+    // Floor on the heartbeat period so one watcher cannot keep the ticker spinning
+    long heartbeat = request.getHeartbeatMillis() > 0 ? Math.max(MIN_HEARTBEAT_MILLIS, request.getHeartbeatMillis()) : 0;
+    changes.watch(request.getAfterSequence(), request.getEpoch(), heartbeat, responseObserver);
+  }
+
+  @Override
+  public StreamObserver<ImportUsersRequest> importUsers(StreamObserver<ImportUsersResponse> responseObserver) {
+    // gRPC asks for the next batch only once onNext returns, so a slow apply pushes back on the client
+    return new StreamObserver<>() {
+      private final ImportUsersResponse.Builder result = ImportUsersResponse.newBuilder();
+
+      @Override
+      public void onNext(ImportUsersRequest batch){
+        List<User> users = new ArrayList<>(batch.getUsersCount());
+        long[] rows = new long[batch.getUsersCount()];
+        for(int i = 0; i < batch.getUsersCount(); i++){
+          User incoming = batch.getUsers(i);
+          long row = i < batch.getRowsCount() ? batch.getRows(i) : result.getReceived() + i + 1;
+          if(incoming.getUserName().isBlank()){ fail(row, incoming.getId(), "userName is required"); continue; }
+          String id = incoming.getId().isEmpty() ? ids.next() : incoming.getId();
+          rows[users.size()] = row;
+          users.add(User.newBuilder(incoming).setId(id).setVersion(1).build());
+        }
+        result.setReceived(result.getReceived() + batch.getUsersCount());
+        // New ids have nothing cached, so unlike CreateUser there is no cache entry to invalidate
+        BitSet taken = store.insertAll(users);
+        for(int i = taken.nextSetBit(0); i >= 0; i = taken.nextSetBit(i + 1))
+          fail(rows[i], users.get(i).getId(), "User already exists: "+users.get(i).getId());
+        result.setImported(result.getImported() + users.size() - taken.cardinality());
+      }
+
+      private void fail(long row, String id, String message){
+        result.setFailed(result.getFailed() + 1);
+        if(result.getErrorsCount() < MAX_IMPORT_ERRORS)
+          result.addErrors(ImportError.newBuilder().setRow(row).setId(id).setMessage(message));
+      }
+
+      // The client went away: batches already applied stay, as the contract says
+      @Override public void onError(Throwable t){}
+
+      @Override
+      public void onCompleted(){
+        responseObserver.onNext(result.build());
+        responseObserver.onCompleted();
+      }
+    };
+  }
+
+  /** Applies a change shipped from a leader as-is (the leader's id and version); {@code user == null} deletes. */
+  public void replicate(String id, User user){
+    if(user == null) store.remove(id); else store.put(user);
+    cache.invalidate(id);
+  }
+
+  /** Replaces the whole directory with a leader snapshot, dropping users the snapshot no longer has. */
+  public void resync(List<User> snapshot){
+    Set<String> keep = new HashSet<>();
+    for(User u : snapshot){
+      keep.add(u.getId());
+      replicate(u.getId(), u);
+    }
+    for(User u : store.values()) if(!keep.contains(u.getId())) replicate(u.getId(), null);
+  }
+
   @Override
   public void updateUser(UpdateUserRequest request, StreamObserver<UserResponse> responseObserver) {
     User u = request.getUser();
-    if(!store.containsKey(u.getId())){ responseObserver.onError(new NoSuchElementException("User not found")); return; }
-    store.put(u.getId(), u);
-    responseObserver.onNext(UserResponse.newBuilder().setUser(u).build());
+    User updated;
+    try {
+      updated = store.computeIfPresent(u.getId(), current -> {
+        checkVersion(current, u.getVersion());
+        return User.newBuilder(u).setVersion(current.getVersion() + 1).build();
+      });
+    } catch (StatusRuntimeException e){ responseObserver.onError(e); return; }
+    cache.invalidate(u.getId());
+    if(updated==null){ responseObserver.onError(new NoSuchElementException("User not found")); return; }
+    responseObserver.onNext(UserResponse.newBuilder().setUser(updated).build());
+    responseObserver.onCompleted();
+  }
+
+  @Override
+  public void patchUser(PatchUserRequest request, StreamObserver<UserResponse> responseObserver) {
+    User patched;
+    try {
+      patched = store.computeIfPresent(request.getId(), current -> {
+        checkVersion(current, request.getVersion());
+        User next = applyPatch(current, request);
+        return next.equals(current) ? current : next.toBuilder().setVersion(current.getVersion() + 1).build();
+      });
+    } catch (StatusRuntimeException e){ responseObserver.onError(e); return; }
+    cache.invalidate(request.getId());
+    if(patched==null){ responseObserver.onError(new NoSuchElementException("User not found")); return; }
+    responseObserver.onNext(UserResponse.newBuilder().setUser(patched).build());
     responseObserver.onCompleted();
   }
 
+  static User applyPatch(User current, PatchUserRequest request){
+    User src = request.getUser();
+    User.Builder b = current.toBuilder();
+    for(String path : request.getUpdateMask().getPathsList()){
+      switch(path){
+        case "userName": b.setUserName(src.getUserName()); break;
+        case "givenName": b.setGivenName(src.getGivenName()); break;
+        case "familyName": b.setFamilyName(src.getFamilyName()); break;
+        case "emails": b.clearEmails().addAllEmails(src.getEmailsList()); break;
+        case "active": b.setActive(src.getActive()); break;
+        default: throw Status.INVALID_ARGUMENT.withDescription("Unsupported update mask path: "+path).asRuntimeException();
+      }
+    }
+    if(request.getAddEmailsCount() > 0 || request.getRemoveEmailsCount() > 0){
+      Set<String> emails = new LinkedHashSet<>(b.getEmailsList());
+      emails.addAll(request.getAddEmailsList());
+      request.getRemoveEmailsList().forEach(emails::remove);
+      b.clearEmails().addAllEmails(emails);
+    }
+    return b.build();
+  }
+
   @Override
   public void deleteUser(DeleteUserRequest request, StreamObserver<DeleteUserResponse> responseObserver) {
-    boolean deleted = store.remove(request.getId()) != null;
+    boolean deleted;
+    if(request.getVersion() == 0){
+      deleted = store.remove(request.getId());
+    } else {
+      boolean[] found = new boolean[1];
+      try {
+        store.computeIfPresent(request.getId(), current -> {
+          checkVersion(current, request.getVersion());
+          found[0] = true;
+          return null;
+        });
+      } catch (StatusRuntimeException e){ responseObserver.onError(e); return; }
+      deleted = found[0];
+    }
+    cache.invalidate(request.getId());
     responseObserver.onNext(DeleteUserResponse.newBuilder().setDeleted(deleted).build());
     responseObserver.onCompleted();
   }
+
+  // Compare-and-set precondition: a non-zero expected version must match the stored one.
+  private static void checkVersion(User current, long expected){
+    if(expected != 0 && expected != current.getVersion())
+      throw Status.FAILED_PRECONDITION
+          .withDescription("Version mismatch: expected "+expected+", current "+current.getVersion())
+          .asRuntimeException();
+  }
 }
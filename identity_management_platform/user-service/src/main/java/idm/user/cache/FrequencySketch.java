@@ -0,0 +1,49 @@
+package idm.user.cache;
+
+/**
+ * Count-min sketch of recent access frequency (TinyLFU). Counters saturate at 15 and are halved every
+ * {@code 10 * capacity} increments so popularity ages out. Updates are racy by design: a lost increment
+ * only makes the estimate slightly low.
+ */
+final class FrequencySketch {
+  private static final int DEPTH = 4;
+  private static final int MAX = 15;
+  private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+  private final int[] table;
+  private final int mask;
+  private final int resetAt;
+  private int additions;
+
+  FrequencySketch(int capacity){
+    int width = Integer.highestOneBit(Math.max(16, capacity * 4 - 1)) << 1;
+    table = new int[DEPTH * width];
+    mask = width - 1;
+    resetAt = Math.max(160, capacity * 10);
+  }
+
+  void increment(int hash){
+    boolean added = false;
+    for(int i = 0; i < DEPTH; i++){
+      int slot = index(hash, i);
+      if(table[slot] < MAX){ table[slot]++; added = true; }
+    }
+    if(added && ++additions >= resetAt) reset();
+  }
+
+  int frequency(int hash){
+    int min = MAX;
+    for(int i = 0; i < DEPTH; i++) min = Math.min(min, table[index(hash, i)]);
+    return min;
+  }
+
+  private int index(int hash, int row){
+    int h = (hash ^ SEEDS[row]) * 0x45D9F3B;
+    return row * (mask + 1) + ((h ^ (h >>> 16)) & mask);
+  }
+
+  private void reset(){
+    for(int i = 0; i < table.length; i++) table[i] >>>= 1;
+    additions /= 2;
+  }
+}
@@ -0,0 +1,88 @@
+package idm.user.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded cache of responses keyed by user id: serialized bytes on the server, {@code User}s in the client's
+ * near-cache. Hits are a lock-free map lookup; fills go through
+ * TinyLFU admission, so a one-off lookup cannot evict a hot key. Misses fill with a stamp taken before the
+ * store read, and {@link #invalidate} bumps that stamp, so a fill that raced with a write is dropped.
+ */
+public class ResponseCache<V> {
+  private static final int STRIPES = 1024;
+  private static final int SAMPLE = 8;
+
+  private final int capacity;
+  private final Map<String, V> entries = new ConcurrentHashMap<>();
+  private final AtomicLongArray stamps = new AtomicLongArray(STRIPES);
+  private final FrequencySketch sketch;
+  private Iterator<String> hand;
+
+  public ResponseCache(int capacity){
+    this.capacity = capacity;
+    this.sketch = new FrequencySketch(Math.max(1, capacity));
+  }
+
+  public boolean enabled(){ return capacity > 0; }
+  public int size(){ return entries.size(); }
+
+  /** Cached value for {@code id}, or null; records the access for admission either way. */
+  public V get(String id){
+    if(capacity <= 0) return null;
+    sketch.increment(id.hashCode());
+    return entries.get(id);
+  }
+
+  /** Take before reading the store; pass to {@link #fill}. */
+  public long stamp(String id){ return stamps.get(stripe(id)); }
+
+  public void fill(String id, long stamp, V value){
+    if(capacity <= 0) return;
+    synchronized(this){
+      if(entries.size() >= capacity && !entries.containsKey(id)){
+        String victim = victim();
+        if(victim != null){
+          if(sketch.frequency(id.hashCode()) <= sketch.frequency(victim.hashCode())) return;
+          entries.remove(victim);
+        }
+      }
+      entries.compute(id, (k, current) -> stamps.get(stripe(id)) == stamp ? value : current);
+    }
+  }
+
+  /** Call after a write to {@code id} is visible in the store. */
+  public void invalidate(String id){
+    entries.compute(id, (k, current) -> {
+      stamps.incrementAndGet(stripe(id));
+      return null;
+    });
+  }
+
+  /** Drops every entry, and every fill stamped before the call. */
+  public void invalidateAll(){
+    for(int i = 0; i < STRIPES; i++) stamps.incrementAndGet(i);
+    entries.clear();
+  }
+
+  // Least frequent of a few entries taken from a clock hand that keeps moving across calls.
+  private String victim(){
+    String victim = null;
+    int least = Integer.MAX_VALUE;
+    for(int i = 0; i < SAMPLE; i++){
+      if(hand == null || !hand.hasNext()) hand = entries.keySet().iterator();
+      if(!hand.hasNext()) break;
+      String candidate = hand.next();
+      int f = sketch.frequency(candidate.hashCode());
+      if(f < least){ least = f; victim = candidate; }
+    }
+    return victim;
+  }
+
+  private static int stripe(String id){
+    int h = id.hashCode();
+    return (h ^ (h >>> 16)) & (STRIPES - 1);
+  }
+}
@@ -0,0 +1,46 @@
+package idm.user.cache;
+
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Response marshaller that accepts either a message or its already-serialized {@code byte[]}. Cached bytes
+ * are framed with a known length and drained straight into the transport buffer, skipping the message
+ * encoder entirely.
+ */
+public final class SerializedMarshaller<T> implements MethodDescriptor.Marshaller<Object> {
+  private final MethodDescriptor.Marshaller<T> delegate;
+  private final Class<T> type;
+
+  public SerializedMarshaller(MethodDescriptor.Marshaller<T> delegate, Class<T> type){
+    this.delegate = delegate;
+    this.type = type;
+  }
+
+  @Override
+  public InputStream stream(Object value){
+    if(value instanceof byte[] bytes) return new BytesStream(bytes);
+    return delegate.stream(type.cast(value));
+  }
+
+  @Override
+  public Object parse(InputStream stream){ return delegate.parse(stream); }
+
+  private static final class BytesStream extends ByteArrayInputStream implements KnownLength, Drainable {
+    BytesStream(byte[] bytes){ super(bytes); }
+
+    @Override
+    public int drainTo(OutputStream target) throws IOException {
+      int n = count - pos;
+      target.write(buf, pos, n);
+      pos = count;
+      return n;
+    }
+  }
+}
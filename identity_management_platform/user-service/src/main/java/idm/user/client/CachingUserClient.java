@@ -0,0 +1,297 @@
+package idm.user.client;
+
+import idm.user.cache.ResponseCache;
+import idm.user.v1.*;
+import io.grpc.Channel;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Blocking user-service client for application code: calls go round-robin over a {@link ChannelPool}, GetUser is
+ * hedged and answered from a local near-cache of {@code User}s.
+ *
+ * <ul>
+ *   <li>Hedging: if GetUser has not answered within {@link Options#hedgeDelay}, the same request goes out on
+ *   another channel and the first answer wins; the loser is cancelled. An UNAVAILABLE or RESOURCE_EXHAUSTED answer
+ *   sends the hedge at once instead of failing the call.
+ *   <li>Near-cache: a bounded {@link ResponseCache} (TinyLFU admission). Entries are dropped when the server's
+ *   WatchUsers feed reports a change to the id, when they are older than {@link Options#ttl}, and when this client
+ *   writes the id. A fill that raced with any of these is discarded. While the feed is down the cache is empty and
+ *   not filled, so with the feed on a read is never staler than the feed itself.
+ * </ul>
+ */
+public class CachingUserClient implements AutoCloseable {
+  static final long RECONNECT_DELAY_MILLIS = 1_000;
+
+  /**
+   * Client settings. A zero {@code hedgeDelay} disables hedging, a zero {@code cacheSize} the near-cache, and a
+   * zero {@code ttl} expiry (leaving invalidation to the change feed). Without {@code watch} only the TTL bounds
+   * staleness.
+   */
+  public record Options(int channels, Duration hedgeDelay, int cacheSize, Duration ttl, boolean watch) {
+    public static Options defaults(){ return new Options(2, Duration.ofMillis(20), 10_000, Duration.ofMinutes(5), true); }
+
+    public Options withChannels(int n){ return new Options(n, hedgeDelay, cacheSize, ttl, watch); }
+    public Options withHedgeDelay(Duration d){ return new Options(channels, d, cacheSize, ttl, watch); }
+    public Options withCacheSize(int n){ return new Options(channels, hedgeDelay, n, ttl, watch); }
+    public Options withTtl(Duration d){ return new Options(channels, hedgeDelay, cacheSize, d, watch); }
+    public Options withWatch(boolean w){ return new Options(channels, hedgeDelay, cacheSize, ttl, w); }
+  }
+
+  /** Counters since the client was created. */
+  public record Stats(long hits, long misses, long hedges, long hedgeWins, long invalidations) {
+    public double hitRatio(){ return hits + misses == 0 ? 0 : (double) hits / (hits + misses); }
+  }
+
+  private record Cached(User user, long loadedAt) {}
+
+  private final ChannelPool pool;
+  private final boolean ownsPool;
+  private final long hedgeDelayNanos;
+  private final long ttlNanos;
+  private final boolean watch;
+  private final ResponseCache<Cached> cache;
+  private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread t = new Thread(r, "user-client");
+    t.setDaemon(true);
+    return t;
+  });
+  private final LongAdder hits = new LongAdder(), misses = new LongAdder(), hedges = new LongAdder(),
+      hedgeWins = new LongAdder(), invalidations = new LongAdder();
+
+  // Fills are allowed only while the feed is live (or unused); bumped per subscription so stale callbacks are ignored
+  private volatile boolean feedLive;
+  private volatile int generation;
+  private volatile long epoch;
+  private volatile ClientCallStreamObserver<WatchUsersRequest> feed;
+  private volatile boolean closed;
+
+  /** Calls over {@code pool}, which the caller keeps ownership of. */
+  public CachingUserClient(ChannelPool pool, Options options){ this(pool, options, false); }
+
+  private CachingUserClient(ChannelPool pool, Options options, boolean ownsPool){
+    this.pool = pool;
+    this.ownsPool = ownsPool;
+    this.hedgeDelayNanos = options.hedgeDelay().toNanos();
+    this.ttlNanos = options.ttl().toNanos();
+    this.watch = options.watch() && options.cacheSize() > 0;
+    this.cache = new ResponseCache<>(options.cacheSize());
+    this.feedLive = !watch;
+    if(watch) subscribe();
+  }
+
+  /** Opens {@link Options#channels} plaintext channels to {@code host:port}; {@link #close} shuts them down. */
+  public static CachingUserClient connect(String target, Options options){
+    return new CachingUserClient(ChannelPool.connect(target, options.channels()), options, true);
+  }
+
+  public Stats stats(){
+    return new Stats(hits.sum(), misses.sum(), hedges.sum(), hedgeWins.sum(), invalidations.sum());
+  }
+
+  public UserResponse getUser(GetUserRequest request){
+    String id = request.getId();
+    Cached cached = cache.get(id);
+    if(cached != null && (ttlNanos <= 0 || System.nanoTime() - cached.loadedAt() < ttlNanos)){
+      hits.increment();
+      return UserResponse.newBuilder().setUser(cached.user()).build();
+    }
+    misses.increment();
+    if(cached != null) cache.invalidate(id);
+    long stamp = cache.stamp(id);
+    long loadedAt = System.nanoTime();
+    UserResponse response = join(hedgedGet(request));
+    if(feedLive) cache.fill(id, stamp, new Cached(response.getUser(), loadedAt));
+    return response;
+  }
+
+  public UserResponse createUser(CreateUserRequest request){ return call(stub -> stub.createUser(request)); }
+  public UserResponse updateUser(UpdateUserRequest request){ return write(request.getUser().getId(), stub -> stub.updateUser(request)); }
+  public UserResponse patchUser(PatchUserRequest request){ return write(request.getId(), stub -> stub.patchUser(request)); }
+  public DeleteUserResponse deleteUser(DeleteUserRequest request){ return write(request.getId(), stub -> stub.deleteUser(request)); }
+  public ListUsersResponse listUsers(ListUsersRequest request){ return call(stub -> stub.listUsers(request)); }
+  public ListUsersResponse searchUsers(SearchUsersRequest request){ return call(stub -> stub.searchUsers(request)); }
+
+  private <R> R call(Function<UserServiceGrpc.UserServiceBlockingStub, R> call){
+    return call.apply(UserServiceGrpc.newBlockingStub(pool.next()));
+  }
+
+  // Own writes are visible to this client at once, without waiting for the feed
+  private <R> R write(String id, Function<UserServiceGrpc.UserServiceBlockingStub, R> call){
+    try {
+      return call(call);
+    } finally {
+      cache.invalidate(id);
+    }
+  }
+
+  private CompletableFuture<UserResponse> hedgedGet(GetUserRequest request){
+    CompletableFuture<UserResponse> result = new CompletableFuture<>();
+    AtomicBoolean decided = new AtomicBoolean();
+    Channel first = pool.next();
+    Attempt primary = new Attempt(result, decided, false);
+    if(hedgeDelayNanos <= 0){
+      primary.start(first, request);
+      return result;
+    }
+    Attempt hedge = new Attempt(result, decided, true);
+    primary.other = hedge;
+    hedge.other = primary;
+    hedge.send = () -> hedge.start(pool.nextExcept(first), request);
+    primary.start(first, request);
+    try {
+      ScheduledFuture<?> timer = this.timer.schedule(hedge::fire, hedgeDelayNanos, TimeUnit.NANOSECONDS);
+      result.whenComplete((r, e) -> timer.cancel(false));
+    } catch (RejectedExecutionException e){ /* closed: no hedge */ }
+    result.whenComplete((r, e) -> {
+      primary.cancel();
+      hedge.cancel();
+    });
+    return result;
+  }
+
+  /** One GetUser attempt. The hedge attempt is sent at most once, by the timer or by a retryable primary failure. */
+  private final class Attempt implements ClientResponseObserver<GetUserRequest, UserResponse> {
+    private final CompletableFuture<UserResponse> result;
+    // Whichever attempt sets it completes the result
+    private final AtomicBoolean decided;
+    private final boolean isHedge;
+    private final AtomicInteger state = new AtomicInteger(); // 0 idle, 1 in flight, 2 done
+    private Attempt other;
+    private Runnable send;
+    private volatile ClientCallStreamObserver<GetUserRequest> call;
+
+    Attempt(CompletableFuture<UserResponse> result, AtomicBoolean decided, boolean isHedge){
+      this.result = result;
+      this.decided = decided;
+      this.isHedge = isHedge;
+    }
+
+    void start(Channel channel, GetUserRequest request){
+      state.set(1);
+      UserServiceGrpc.newStub(channel).getUser(request, this);
+    }
+
+    void fire(){
+      if(decided.get() || !state.compareAndSet(0, 1)) return;
+      hedges.increment();
+      send.run();
+    }
+
+    void cancel(){
+      ClientCallStreamObserver<GetUserRequest> c = call;
+      if(c != null && state.get() == 1) c.cancel("hedge lost", null);
+    }
+
+    @Override public void beforeStart(ClientCallStreamObserver<GetUserRequest> call){ this.call = call; }
+
+    @Override
+    public void onNext(UserResponse value){
+      state.set(2);
+      if(!decided.compareAndSet(false, true)) return;
+      if(isHedge) hedgeWins.increment();
+      result.complete(value);
+    }
+
+    @Override
+    public void onError(Throwable t){
+      state.set(2);
+      Status.Code code = Status.fromThrowable(t).getCode();
+      boolean retryable = code == Status.Code.UNAVAILABLE || code == Status.Code.RESOURCE_EXHAUSTED;
+      if(retryable && other != null){
+        if(other.state.get() == 0){
+          other.fire();
+          return;
+        }
+        if(other.state.get() == 1) return;
+      }
+      if(decided.compareAndSet(false, true)) result.completeExceptionally(t);
+    }
+
+    @Override public void onCompleted(){}
+  }
+
+  private void subscribe(){
+    if(closed) return;
+    int gen = ++generation;
+    ClientCallStreamObserver<WatchUsersRequest> previous = feed;
+    if(previous != null) previous.cancel("resubscribe", null);
+    // Asking from past the head gets RESYNC_REQUIRED first, carrying the head, then every change after it
+    WatchUsersRequest request = WatchUsersRequest.newBuilder().setAfterSequence(Long.MAX_VALUE).build();
+    UserServiceGrpc.newStub(pool.next()).watchUsers(request, new Feed(gen));
+  }
+
+  private void feedLost(int gen){
+    if(gen != generation || closed) return;
+    feedLive = false;
+    cache.invalidateAll();
+    try { timer.schedule(this::subscribe, RECONNECT_DELAY_MILLIS, TimeUnit.MILLISECONDS); }
+    catch (RejectedExecutionException e){ /* closed */ }
+  }
+
+  /** The WatchUsers stream; events arrive in order, one at a time. */
+  private final class Feed implements ClientResponseObserver<WatchUsersRequest, UserEvent> {
+    private final int gen;
+
+    Feed(int gen){ this.gen = gen; }
+
+    @Override public void beforeStart(ClientCallStreamObserver<WatchUsersRequest> call){ feed = call; }
+
+    @Override
+    public void onNext(UserEvent event){
+      if(gen != generation) return;
+      switch(event.getType()){
+        case RESYNC_REQUIRED -> {
+          // Changes may have been missed (or this is the start of the feed): nothing cached can be trusted
+          cache.invalidateAll();
+          epoch = event.getEpoch();
+          feedLive = true;
+        }
+        case CREATED, UPDATED, DELETED -> {
+          if(event.getEpoch() != epoch){
+            // The server restarted under us; start over
+            feedLost(gen);
+            return;
+          }
+          cache.invalidate(event.getId());
+          invalidations.increment();
+        }
+        default -> {}
+      }
+    }
+
+    @Override public void onError(Throwable t){ feedLost(gen); }
+    @Override public void onCompleted(){ feedLost(gen); }
+  }
+
+  private static <R> R join(CompletableFuture<R> f){
+    try { return f.join(); }
+    catch (CompletionException e){
+      if(e.getCause() instanceof RuntimeException r) throw r;
+      throw e;
+    }
+  }
+
+  @Override
+  public void close(){
+    closed = true;
+    ClientCallStreamObserver<WatchUsersRequest> f = feed;
+    if(f != null) f.cancel("client closed", null);
+    timer.shutdownNow();
+    if(ownsPool) pool.close();
+  }
+}
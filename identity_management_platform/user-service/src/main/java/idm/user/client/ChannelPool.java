@@ -0,0 +1,60 @@
+package idm.user.client;
+
+import io.grpc.Channel;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Round-robin over several channels to one target. Each {@link ManagedChannel} is its own HTTP/2 connection, so a
+ * pool spreads calls over several connections (and their event loops and flow-control windows) instead of queueing
+ * every stream on one, and a hedged call can go out on a different connection from the one that is slow.
+ */
+public class ChannelPool implements AutoCloseable {
+  private final List<Channel> channels;
+  private final List<ManagedChannel> owned;
+  private final AtomicInteger next = new AtomicInteger();
+
+  /** Pools the given channels; the caller keeps ownership of them. */
+  public ChannelPool(List<? extends Channel> channels){ this(channels, List.of()); }
+
+  private ChannelPool(List<? extends Channel> channels, List<ManagedChannel> owned){
+    if(channels.isEmpty()) throw new IllegalArgumentException("At least one channel is required");
+    this.channels = List.copyOf(channels);
+    this.owned = owned;
+  }
+
+  /** Opens {@code size} plaintext channels to {@code host:port}; {@link #close} shuts them down. */
+  public static ChannelPool connect(String target, int size){
+    List<ManagedChannel> channels = new ArrayList<>(size);
+    for(int i = 0; i < Math.max(1, size); i++) channels.add(ManagedChannelBuilder.forTarget(target).usePlaintext().build());
+    return new ChannelPool(channels, channels);
+  }
+
+  public int size(){ return channels.size(); }
+
+  /** The next channel in turn. */
+  public Channel next(){ return channels.get(Math.floorMod(next.getAndIncrement(), channels.size())); }
+
+  /** The next channel in turn other than {@code avoid}, unless it is the only one. */
+  public Channel nextExcept(Channel avoid){
+    Channel ch = next();
+    return ch == avoid && channels.size() > 1 ? next() : ch;
+  }
+
+  @Override
+  public void close(){
+    for(ManagedChannel ch : owned) ch.shutdown();
+    try {
+      for(ManagedChannel ch : owned) if(!ch.awaitTermination(5, TimeUnit.SECONDS)) ch.shutdownNow();
+    } catch (InterruptedException e){
+      // Stop waiting, but still release every channel
+      for(ManagedChannel ch : owned) ch.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package idm.user.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent-hash ring. Each node is placed at {@code virtualNodes} points derived from its name, so
+ * keys spread evenly and adding or removing one node only moves the keys it gains or loses (about 1/n of them).
+ * Placement depends only on node names, never on their order or on the values they map to.
+ */
+public final class HashRing<T> {
+  public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+  private final long[] points;
+  private final Object[] owners;
+  private final Map<String, T> nodes;
+
+  public HashRing(Map<String, T> nodes){ this(nodes, DEFAULT_VIRTUAL_NODES); }
+
+  public HashRing(Map<String, T> nodes, int virtualNodes){
+    if(nodes.isEmpty()) throw new IllegalArgumentException("Hash ring needs at least one node");
+    // TreeMap so that colliding points resolve the same way in every client
+    TreeMap<Long, T> ring = new TreeMap<>();
+    for(String name : new TreeMap<>(nodes).keySet())
+      for(int v = 0; v < virtualNodes; v++) ring.putIfAbsent(hash(name+"#"+v), nodes.get(name));
+    this.points = new long[ring.size()];
+    this.owners = new Object[ring.size()];
+    int i = 0;
+    for(var e : ring.entrySet()){
+      points[i] = e.getKey();
+      owners[i++] = e.getValue();
+    }
+    this.nodes = Map.copyOf(nodes);
+  }
+
+  /** The node owning {@code key}: the first ring point at or after the key's hash, wrapping around. */
+  @SuppressWarnings("unchecked")
+  public T owner(String key){
+    int i = Arrays.binarySearch(points, hash(key));
+    if(i < 0) i = -i - 1;
+    return (T) owners[i == points.length ? 0 : i];
+  }
+
+  public Map<String, T> nodes(){ return nodes; }
+
+  public List<T> distinctNodes(){ return new ArrayList<>(new TreeMap<>(nodes).values()); }
+
+  /** 64-bit FNV-1a over UTF-16 code units, finished with the MurmurHash3 mixer for avalanche on short keys. */
+  static long hash(String s){
+    long h = 0xcbf29ce484222325L;
+    for(int i = 0; i < s.length(); i++){
+      h ^= s.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    return h ^ (h >>> 33);
+  }
+}
@@ -0,0 +1,99 @@
+package idm.user.client;
+
+import idm.user.replication.ReplicationInterceptor;
+import idm.user.replication.SequenceToken;
+import idm.user.v1.*;
+import io.grpc.Channel;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.MetadataUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Blocking client for a leader and its read replicas. Writes go to the leader, and the position each one returns
+ * is remembered as this client's session token. Reads take a {@link Read} option saying how fresh they must be and
+ * go round-robin to the followers, falling back to the leader whenever the chosen follower answers UNAVAILABLE
+ * (too stale, not caught up in time, or down).
+ */
+public class ReplicatedUserClient {
+
+  /** Freshness a read needs. */
+  public static final class Read {
+    private static final Read LEADER = new Read(null, -1, true);
+    private static final Read ANY = new Read(null, -1, false);
+    private static final Read SESSION = new Read(null, -1, false);
+
+    private final SequenceToken atLeast;
+    private final long maxStalenessMillis;
+    private final boolean leader;
+
+    private Read(SequenceToken atLeast, long maxStalenessMillis, boolean leader){
+      this.atLeast = atLeast;
+      this.maxStalenessMillis = maxStalenessMillis;
+      this.leader = leader;
+    }
+
+    /** Always the leader: linearizable with writes. */
+    public static Read leader(){ return LEADER; }
+    /** Any replica, however far behind. */
+    public static Read eventual(){ return ANY; }
+    /** At least as fresh as this client's last write. */
+    public static Read readYourWrites(){ return SESSION; }
+    /** At least as fresh as {@code token}, e.g. a write made through another client. */
+    public static Read atLeast(SequenceToken token){ return new Read(token, -1, false); }
+    /** A replica known to have held every leader change within {@code bound}. */
+    public static Read boundedStaleness(Duration bound){ return new Read(null, bound.toMillis(), false); }
+  }
+
+  private final UserServiceGrpc.UserServiceBlockingStub leader;
+  private final List<UserServiceGrpc.UserServiceBlockingStub> followers = new ArrayList<>();
+  private final AtomicInteger next = new AtomicInteger();
+  private final AtomicReference<SequenceToken> lastWrite = new AtomicReference<>();
+
+  public ReplicatedUserClient(Channel leader, List<? extends Channel> followers){
+    this.leader = UserServiceGrpc.newBlockingStub(leader);
+    for(Channel f : followers) this.followers.add(UserServiceGrpc.newBlockingStub(f));
+  }
+
+  /** Leader position after this client's latest write, or null before the first. */
+  public SequenceToken lastWrite(){ return lastWrite.get(); }
+
+  public UserResponse createUser(CreateUserRequest request){ return write(stub -> stub.createUser(request)); }
+  public UserResponse updateUser(UpdateUserRequest request){ return write(stub -> stub.updateUser(request)); }
+  public UserResponse patchUser(PatchUserRequest request){ return write(stub -> stub.patchUser(request)); }
+  public DeleteUserResponse deleteUser(DeleteUserRequest request){ return write(stub -> stub.deleteUser(request)); }
+
+  public UserResponse getUser(GetUserRequest request, Read read){ return read(read, stub -> stub.getUser(request)); }
+  public ListUsersResponse listUsers(ListUsersRequest request, Read read){ return read(read, stub -> stub.listUsers(request)); }
+  public ListUsersResponse searchUsers(SearchUsersRequest request, Read read){ return read(read, stub -> stub.searchUsers(request)); }
+
+  private <R> R write(Function<UserServiceGrpc.UserServiceBlockingStub, R> call){
+    AtomicReference<Metadata> headers = new AtomicReference<>();
+    R response = call.apply(leader.withInterceptors(MetadataUtils.newCaptureMetadataInterceptor(headers, new AtomicReference<>())));
+    SequenceToken token = headers.get() == null ? null : SequenceToken.from(headers.get());
+    if(token != null) lastWrite.accumulateAndGet(token, (prev, t) -> t.max(prev));
+    return response;
+  }
+
+  private <R> R read(Read read, Function<UserServiceGrpc.UserServiceBlockingStub, R> call){
+    if(read.leader || followers.isEmpty()) return call.apply(leader);
+    Metadata headers = new Metadata();
+    SequenceToken required = read == Read.SESSION ? lastWrite.get() : read.atLeast;
+    if(required != null) required.writeTo(headers);
+    if(read.maxStalenessMillis >= 0) headers.put(ReplicationInterceptor.MAX_STALENESS, Long.toString(read.maxStalenessMillis));
+    UserServiceGrpc.UserServiceBlockingStub follower = followers.get(Math.floorMod(next.getAndIncrement(), followers.size()));
+    try {
+      return call.apply(follower.withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers)));
+    } catch (StatusRuntimeException e){
+      if(e.getStatus().getCode() != Status.Code.UNAVAILABLE) throw e;
+      return call.apply(leader);
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package idm.user.client;
+
+import idm.user.id.IdGenerator;
+import idm.user.id.TimeOrderedIdGenerator;
+import idm.user.v1.*;
+import io.grpc.Channel;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Blocking user-service client over a set of shards, each a plain user-service instance holding part of the
+ * directory. Single-user RPCs go to the shard owning the id on a {@link HashRing}; CreateUser mints a time-ordered id
+ * client-side (when none is given) so it can be routed too. ListUsers and SearchUsers fan out to every shard in
+ * parallel and merge; any shard error fails the whole call with that shard's status.
+ *
+ * <p>Merged responses carry no {@code sequence}/{@code epoch}: change feeds are per shard.
+ */
+public class ShardedUserClient implements AutoCloseable {
+  private record Shard(String name, UserServiceGrpc.UserServiceBlockingStub blocking, UserServiceGrpc.UserServiceStub async) {}
+
+  private final HashRing<Shard> ring;
+  private final List<Shard> shards;
+  private final List<ManagedChannel> owned;
+  // Time-ordered ids under a random node id, distinct from the servers' configured ones with high probability
+  private final IdGenerator ids = new TimeOrderedIdGenerator(ThreadLocalRandom.current().nextInt(TimeOrderedIdGenerator.MAX_NODE + 1));
+
+  /** Routes over the given channels, keyed by shard name; the caller keeps ownership of the channels. */
+  public ShardedUserClient(Map<String, ? extends Channel> channels){ this(channels, List.of()); }
+
+  private ShardedUserClient(Map<String, ? extends Channel> channels, List<ManagedChannel> owned){
+    Map<String, Shard> byName = new LinkedHashMap<>();
+    channels.forEach((name, ch) -> byName.put(name, new Shard(name, UserServiceGrpc.newBlockingStub(ch), UserServiceGrpc.newStub(ch))));
+    this.ring = new HashRing<>(byName);
+    this.shards = ring.distinctNodes();
+    this.owned = owned;
+  }
+
+  /** Opens plaintext channels to {@code host:port} targets keyed by shard name; {@link #close} shuts them down. */
+  public static ShardedUserClient connect(Map<String, String> targets){
+    Map<String, ManagedChannel> channels = new LinkedHashMap<>();
+    targets.forEach((name, target) -> channels.put(name, ManagedChannelBuilder.forTarget(target).usePlaintext().build()));
+    return new ShardedUserClient(channels, List.copyOf(channels.values()));
+  }
+
+  /** Name of the shard that owns {@code id}. */
+  public String shardFor(String id){ return ring.owner(id).name(); }
+
+  public UserResponse createUser(CreateUserRequest request){
+    if(request.getUser().getId().isEmpty()){
+      User user = request.getUser().toBuilder().setId(ids.next()).build();
+      request = request.toBuilder().setUser(user).build();
+    }
+    return route(request.getUser().getId()).createUser(request);
+  }
+
+  public UserResponse getUser(GetUserRequest request){ return route(request.getId()).getUser(request); }
+  public UserResponse updateUser(UpdateUserRequest request){ return route(request.getUser().getId()).updateUser(request); }
+  public UserResponse patchUser(PatchUserRequest request){ return route(request.getId()).patchUser(request); }
+  public DeleteUserResponse deleteUser(DeleteUserRequest request){ return route(request.getId()).deleteUser(request); }
+
+  /** Every user on every shard, concatenated in shard-name order. */
+  public ListUsersResponse listUsers(ListUsersRequest request){
+    ListUsersResponse.Builder merged = ListUsersResponse.newBuilder();
+    int total = 0;
+    for(ListUsersResponse part : this.<ListUsersResponse>fanOut((stub, obs) -> stub.listUsers(request, obs))){
+      merged.addAllUsers(part.getUsersList());
+      total += part.getTotal();
+    }
+    return merged.setTotal(total).build();
+  }
+
+  /**
+   * Matches from every shard, ordered by id so pages are stable regardless of shard layout, then paged with
+   * the request's 1-based {@code startIndex}/{@code count}. Shards return all their matches, since a page
+   * boundary in the merged order cannot be pushed down to them.
+   */
+  public ListUsersResponse searchUsers(SearchUsersRequest request){
+    if(!request.getQuery().isBlank()) return rankUsers(request);
+    SearchUsersRequest all = request.toBuilder().clearStartIndex().clearCount().build();
+    List<User> matches = new ArrayList<>();
+    for(ListUsersResponse part : this.<ListUsersResponse>fanOut((stub, obs) -> stub.searchUsers(all, obs))) matches.addAll(part.getUsersList());
+    matches.sort(Comparator.comparing(User::getId));
+    int from = Math.min(matches.size(), Math.max(0, request.getStartIndex() - 1));
+    int to = request.getCount() > 0 ? Math.min(matches.size(), from + request.getCount()) : matches.size();
+    return ListUsersResponse.newBuilder().addAllUsers(matches.subList(from, to)).setTotal(matches.size()).build();
+  }
+
+  // Ranked results merge by score; each shard only needs to return its best startIndex + count
+  private ListUsersResponse rankUsers(SearchUsersRequest request){
+    int from = Math.max(0, request.getStartIndex() - 1);
+    SearchUsersRequest top = request.toBuilder().clearStartIndex().setCount(request.getCount() > 0 ? from + request.getCount() : 0).build();
+    record Ranked(User user, float score) {}
+    List<Ranked> matches = new ArrayList<>();
+    long total = 0;
+    for(ListUsersResponse part : this.<ListUsersResponse>fanOut((stub, obs) -> stub.searchUsers(top, obs))){
+      total += part.getTotal();
+      for(int i = 0; i < part.getUsersCount(); i++) matches.add(new Ranked(part.getUsers(i), part.getScores(i)));
+    }
+    matches.sort(Comparator.comparing(Ranked::score).reversed().thenComparing(r -> r.user().getId()));
+    int start = Math.min(matches.size(), from);
+    int to = request.getCount() > 0 ? Math.min(matches.size(), start + request.getCount()) : matches.size();
+    ListUsersResponse.Builder out = ListUsersResponse.newBuilder().setTotal((int) total);
+    for(Ranked r : matches.subList(start, to)) out.addUsers(r.user()).addScores(r.score());
+    return out.build();
+  }
+
+  private UserServiceGrpc.UserServiceBlockingStub route(String id){ return ring.owner(id).blocking(); }
+
+  private <R> List<R> fanOut(BiConsumer<UserServiceGrpc.UserServiceStub, StreamObserver<R>> call){
+    List<CompletableFuture<R>> pending = new ArrayList<>(shards.size());
+    for(Shard shard : shards){
+      CompletableFuture<R> f = new CompletableFuture<>();
+      call.accept(shard.async(), new StreamObserver<>() {
+        @Override public void onNext(R value){ f.complete(value); }
+        @Override public void onError(Throwable t){ f.completeExceptionally(t); }
+        @Override public void onCompleted(){}
+      });
+      pending.add(f);
+    }
+    List<R> out = new ArrayList<>(pending.size());
+    for(CompletableFuture<R> f : pending){
+      try { out.add(f.join()); }
+      catch (CompletionException e){
+        if(e.getCause() instanceof RuntimeException r) throw r;
+        throw e;
+      }
+    }
+    return out;
+  }
+
+  @Override
+  public void close(){
+    for(ManagedChannel ch : owned) ch.shutdown();
+    try {
+      for(ManagedChannel ch : owned) if(!ch.awaitTermination(5, TimeUnit.SECONDS)) ch.shutdownNow();
+    } catch (InterruptedException e){
+      // Stop waiting, but still release every channel
+      for(ManagedChannel ch : owned) ch.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package idm.user.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Adaptive concurrency limit for unary calls ({@code grpc.server.limit.*}).
+ *
+ * @param tolerance  how far the short-term latency may exceed the long-term baseline before the limit shrinks
+ * @param smoothing  weight of each new estimate (0..1]
+ */
+@ConfigurationProperties(prefix = "grpc.server.limit")
+public record ConcurrencyLimitProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("20") int initialLimit,
+    @DefaultValue("4") int minLimit,
+    @DefaultValue("1000") int maxLimit,
+    @DefaultValue("2.0") double tolerance,
+    @DefaultValue("0.2") double smoothing) {
+
+  public static ConcurrencyLimitProperties defaults(){ return new ConcurrencyLimitProperties(true, 20, 4, 1000, 2.0, 0.2); }
+}
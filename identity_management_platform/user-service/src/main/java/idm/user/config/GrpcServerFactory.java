@@ -0,0 +1,97 @@
+package idm.user.config;
+
+import io.grpc.BindableService;
+import io.grpc.Server;
+import io.grpc.ServerInterceptor;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the Netty gRPC server from {@link GrpcServerProperties} and owns the executor and event loops it
+ * creates, so {@link #close()} must be called once the server has terminated.
+ */
+public class GrpcServerFactory implements AutoCloseable {
+  private final GrpcServerProperties props;
+  private final List<EventLoopGroup> eventLoops = new ArrayList<>();
+  private final List<ServerInterceptor> interceptors = new ArrayList<>();
+  private ExecutorService executor;
+
+  public GrpcServerFactory(GrpcServerProperties props){ this.props = props; }
+
+  /** Adds a server-wide interceptor; as with {@code ServerBuilder.intercept}, the last one added runs first. */
+  public GrpcServerFactory intercept(ServerInterceptor interceptor){
+    interceptors.add(interceptor);
+    return this;
+  }
+
+  public Server build(BindableService... services){
+    NettyServerBuilder builder = NettyServerBuilder.forPort(props.port())
+        .keepAliveTime(props.keepAliveTime().toNanos(), TimeUnit.NANOSECONDS)
+        .keepAliveTimeout(props.keepAliveTimeout().toNanos(), TimeUnit.NANOSECONDS)
+        .permitKeepAliveTime(props.permitKeepAliveTime().toNanos(), TimeUnit.NANOSECONDS)
+        .permitKeepAliveWithoutCalls(props.permitKeepAliveWithoutCalls())
+        .maxInboundMessageSize((int) props.maxInboundMessageSize().toBytes())
+        .maxInboundMetadataSize((int) props.maxInboundMetadataSize().toBytes());
+    if(props.maxConcurrentCallsPerConnection() > 0) builder.maxConcurrentCallsPerConnection(props.maxConcurrentCallsPerConnection());
+    // Netty takes boss and worker groups together, so either setting gets the server its own pair of event loops
+    if(props.workerThreads() > 0 || props.bossThreads() != 1){
+      EventLoopGroup boss = new NioEventLoopGroup(props.bossThreads(), threads("grpc-boss"));
+      EventLoopGroup worker = new NioEventLoopGroup(props.workerThreads(), threads("grpc-worker"));
+      eventLoops.add(boss);
+      eventLoops.add(worker);
+      builder.bossEventLoopGroup(boss).workerEventLoopGroup(worker).channelType(NioServerSocketChannel.class);
+    }
+    switch(props.executor()){
+      case "cached": break;
+      case "direct": builder.directExecutor(); break;
+      case "bounded": builder.executor(executor = boundedPool()); break;
+      case "virtual": builder.executor(executor = virtualThreadPool()); break;
+      default: throw new IllegalArgumentException("Unknown grpc.server.executor: "+props.executor());
+    }
+    for(BindableService service : services) builder.addService(service);
+    for(ServerInterceptor interceptor : interceptors) builder.intercept(interceptor);
+    return builder.build();
+  }
+
+  @Override
+  public void close(){
+    if(executor != null) executor.shutdown();
+    for(EventLoopGroup group : eventLoops) group.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+  }
+
+  private ExecutorService boundedPool(){
+    int threads = props.executorThreads() > 0 ? props.executorThreads() : 2 * Runtime.getRuntime().availableProcessors();
+    return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(props.executorQueue()), threads("grpc-handler"), new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  // Looked up reflectively so the service still compiles and runs on the Java 17 baseline.
+  private static ExecutorService virtualThreadPool(){
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e){
+      throw new IllegalStateException("grpc.server.executor=virtual requires Java 21+", e);
+    }
+  }
+
+  private static ThreadFactory threads(String prefix){
+    AtomicInteger n = new AtomicInteger();
+    return r -> {
+      Thread t = new Thread(r, prefix+"-"+n.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    };
+  }
+}
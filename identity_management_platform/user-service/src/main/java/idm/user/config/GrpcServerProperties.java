@@ -0,0 +1,42 @@
+package idm.user.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * gRPC server settings ({@code grpc.server.*}).
+ *
+ * @param executor            {@code cached} (gRPC default), {@code direct} (handlers run on the Netty event loop,
+ *                            only for non-blocking handlers), {@code bounded} or {@code virtual} (Java 21+)
+ * @param executorThreads     pool size for {@code bounded}; 0 means {@code 2 * availableProcessors}
+ * @param executorQueue       queue capacity for {@code bounded}; calls beyond it are rejected
+ * @param bossThreads         Netty boss (accept) event-loop threads; 1 with {@code workerThreads} 0 keeps gRPC's shared
+ *                            event loops, anything else gives the server its own boss and worker groups
+ * @param workerThreads       Netty worker event-loop threads; 0 keeps the Netty default
+ * @param maxConcurrentCallsPerConnection 0 means unlimited
+ */
+@ConfigurationProperties(prefix = "grpc.server")
+public record GrpcServerProperties(
+    @DefaultValue("8083") int port,
+    @DefaultValue("cached") String executor,
+    @DefaultValue("0") int executorThreads,
+    @DefaultValue("1000") int executorQueue,
+    @DefaultValue("1") int bossThreads,
+    @DefaultValue("0") int workerThreads,
+    @DefaultValue("0") int maxConcurrentCallsPerConnection,
+    @DefaultValue("2h") Duration keepAliveTime,
+    @DefaultValue("20s") Duration keepAliveTimeout,
+    @DefaultValue("5m") Duration permitKeepAliveTime,
+    @DefaultValue("false") boolean permitKeepAliveWithoutCalls,
+    @DefaultValue("4MB") DataSize maxInboundMessageSize,
+    @DefaultValue("8KB") DataSize maxInboundMetadataSize) {
+
+  /** Defaults with a different port and executor; handy for tests and benchmarks. */
+  public static GrpcServerProperties of(int port, String executor){
+    return new GrpcServerProperties(port, executor, 0, 1000, 1, 0, 0, Duration.ofHours(2), Duration.ofSeconds(20),
+        Duration.ofMinutes(5), false, DataSize.ofMegabytes(4), DataSize.ofKilobytes(8));
+  }
+}
@@ -0,0 +1,19 @@
+package idm.user.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Start-up and shutdown phases ({@code grpc.server.lifecycle.*}).
+ *
+ * @param warmupIterations in-process request cycles run before reporting SERVING; 0 skips warm-up
+ * @param drainDelay       time spent NOT_SERVING, still accepting calls, so load balancers stop routing here
+ * @param drainTimeout     how long in-flight calls may take to finish before they are cancelled
+ */
+@ConfigurationProperties(prefix = "grpc.server.lifecycle")
+public record LifecycleProperties(
+    @DefaultValue("5000") int warmupIterations,
+    @DefaultValue("2s") Duration drainDelay,
+    @DefaultValue("20s") Duration drainTimeout) {}
@@ -0,0 +1,221 @@
+package idm.user.group;
+
+import idm.user.store.UserChangeListener;
+import idm.user.v1.User;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Groups and their memberships. Members are kept as a {@link RoaringBitmap} of dense member ordinals, handed out
+ * to users the first time they join any group and never reused, so a bitmap can only ever name the user it was
+ * built for. Each group is an immutable value replaced through its map entry: membership checks and listings read
+ * a snapshot without locks while writers to the same group serialize.
+ *
+ * <p>Registered as a {@link UserChangeListener} so a deleted user leaves every group. A member ordinal is handed
+ * out inside the user's own compute ({@link UserLock}) and dies inside the delete's, and writers re-check for dead
+ * ordinals under the group's entry, so no group can keep a member whose user is gone. A reverse index from ordinal
+ * to group ids lets a delete touch only the groups the user is in.
+ */
+public class GroupDirectory implements UserChangeListener {
+  private static final int ID_PAGE_SHIFT = 14;
+
+  /** Runs {@code action} while no write to {@code userId} can interleave; false (without running it) if absent. */
+  @FunctionalInterface
+  public interface UserLock { boolean withUser(String userId, Runnable action); }
+
+  public record Group(String id, String displayName, RoaringBitmap members) {}
+
+  /** A page of members (ids in ordinal order, i.e. join order) and the total they were taken from. */
+  public record Members(List<String> ids, long total) {}
+
+  private final UserLock users;
+  private final Map<String, Group> groups = new ConcurrentHashMap<>();
+  private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+  private final AtomicReferenceArray<AtomicReferenceArray<String>> ids = new AtomicReferenceArray<>(1 << (31 - ID_PAGE_SHIFT));
+  private final AtomicInteger nextOrdinal = new AtomicInteger();
+  // Ordinals whose user is deleted but may still be in some group, until changed() has removed them everywhere
+  private final Set<Integer> dying = ConcurrentHashMap.newKeySet();
+  // Ordinal -> ids of the groups it is in; each set is only touched under its map entry
+  private final Map<Integer, Set<String>> memberships = new ConcurrentHashMap<>();
+
+  public GroupDirectory(UserLock users){ this.users = users; }
+
+  public int size(){ return groups.size(); }
+
+  public Group get(String groupId){
+    Group g = groups.get(groupId);
+    if(g == null) throw notFound(groupId);
+    return g;
+  }
+
+  public Group create(String groupId, String displayName, Collection<String> memberIds){
+    int[] ords = resolve(memberIds);
+    return groups.compute(groupId, (k, existing) -> {
+      if(existing != null) throw Status.ALREADY_EXISTS.withDescription("Group already exists: "+groupId).asRuntimeException();
+      return new Group(groupId, displayName, admit(groupId, RoaringBitmap.EMPTY, ords, memberIds));
+    });
+  }
+
+  public boolean delete(String groupId){
+    boolean[] deleted = {false};
+    groups.computeIfPresent(groupId, (k, g) -> {
+      for(int ord : g.members().range(0, (int) Math.min(Integer.MAX_VALUE, g.members().cardinality()))) leave(ord, groupId);
+      deleted[0] = true;
+      return null;
+    });
+    return deleted[0];
+  }
+
+  /** Adds every user or none: an unknown user id fails the call with INVALID_ARGUMENT. */
+  public Group addMembers(String groupId, Collection<String> userIds){
+    int[] ords = resolve(userIds);
+    Group updated = groups.computeIfPresent(groupId, (k, g) -> new Group(g.id(), g.displayName(), admit(groupId, g.members(), ords, userIds)));
+    if(updated == null) throw notFound(groupId);
+    return updated;
+  }
+
+  /** Removes the given users; ids that are not members (or not users) are ignored. */
+  public Group removeMembers(String groupId, Collection<String> userIds){
+    int[] ords = userIds.stream().map(ordinals::get).filter(o -> o != null).mapToInt(Integer::intValue).toArray();
+    Group updated = groups.computeIfPresent(groupId, (k, g) -> {
+      for(int ord : ords) if(g.members().contains(ord)) leave(ord, groupId);
+      return new Group(g.id(), g.displayName(), g.members().without(ords));
+    });
+    if(updated == null) throw notFound(groupId);
+    return updated;
+  }
+
+  public boolean isMember(String groupId, String userId){
+    RoaringBitmap members = get(groupId).members();
+    Integer ord = ordinals.get(userId);
+    return ord != null && members.contains(ord);
+  }
+
+  /**
+   * Users in every one of {@code groupIds}, paged from the {@code from}th (0-based); count 0 returns all. Users
+   * being deleted are left out of both the page and the total, so the two always agree.
+   */
+  public Members members(List<String> groupIds, long from, int count){
+    if(groupIds.isEmpty()) throw Status.INVALID_ARGUMENT.withDescription("At least one group id is required").asRuntimeException();
+    RoaringBitmap acc = null;
+    for(String groupId : groupIds){
+      RoaringBitmap m = get(groupId).members();
+      acc = acc == null ? m : acc.and(m);
+    }
+    while(true){
+      // Still in some bitmaps until their delete has walked every group
+      RoaringBitmap live = acc;
+      int[] gone = dying.stream().filter(live::contains).mapToInt(Integer::intValue).toArray();
+      if(gone.length > 0) acc = acc.without(gone);
+      int[] page = acc.range(from, count > 0 ? count : (int) Math.min(Integer.MAX_VALUE, acc.cardinality()));
+      List<String> out = new ArrayList<>(page.length);
+      int[] dead = new int[page.length];
+      int n = 0;
+      for(int ord : page){
+        String id = id(ord);
+        if(id != null) out.add(id); else dead[n++] = ord;
+      }
+      if(n == 0) return new Members(out, acc.cardinality());
+      // Died since the dying set was read: drop them and page again, so the page is not short
+      acc = acc.without(Arrays.copyOf(dead, n));
+    }
+  }
+
+  @Override
+  public void changed(User old, User next){
+    if(next != null || old == null) return;
+    Integer ord = ordinals.remove(old.getId());
+    if(ord == null) return;
+    dying.add(ord);
+    // Dead from here on: writers re-check under the group entry before adding it back
+    idPage(ord).set(ord & ((1 << ID_PAGE_SHIFT) - 1), null);
+    // Read after the id is cleared: an add that passed its liveness check had already recorded its group here
+    Set<String> in = memberships.remove(ord);
+    if(in != null){
+      // Checked under each entry, not against a snapshot, so an add still inside its compute is waited for
+      for(String groupId : in){
+        groups.computeIfPresent(groupId, (k, g) ->
+            g.members().contains(ord) ? new Group(g.id(), g.displayName(), g.members().without(ord)) : g);
+      }
+    }
+    // In no group now, and never again
+    dying.remove(ord);
+  }
+
+  private int[] resolve(Collection<String> userIds){
+    int[] ords = new int[userIds.size()];
+    int n = 0;
+    for(String userId : userIds){
+      Integer ord = ordinals.get(userId);
+      if(ord == null){
+        int[] allocated = {-1};
+        if(users.withUser(userId, () -> allocated[0] = ordinals.computeIfAbsent(userId, this::allocate))) ord = allocated[0];
+      }
+      if(ord == null) throw Status.INVALID_ARGUMENT.withDescription("Unknown user: "+userId).asRuntimeException();
+      ords[n++] = ord;
+    }
+    return ords;
+  }
+
+  /**
+   * {@code members} plus {@code ords}, run under the group's entry. The group is recorded against each ordinal before
+   * the liveness check and a delete clears the id before reading those records, so either the check sees the user
+   * gone or the delete finds this group and waits for the entry; after that a delete can only remove the member.
+   */
+  private RoaringBitmap admit(String groupId, RoaringBitmap members, int[] ords, Collection<String> userIds){
+    for(int ord : ords){
+      memberships.compute(ord, (o, in) -> {
+        if(in == null) in = new HashSet<>();
+        in.add(groupId);
+        return in;
+      });
+    }
+    int i = 0;
+    for(String userId : userIds){
+      if(id(ords[i++]) == null){
+        for(int ord : ords) if(!members.contains(ord)) leave(ord, groupId);
+        throw Status.INVALID_ARGUMENT.withDescription("Unknown user: "+userId).asRuntimeException();
+      }
+    }
+    return members.with(ords);
+  }
+
+  private void leave(int ord, String groupId){
+    memberships.computeIfPresent(ord, (o, in) -> in.remove(groupId) && in.isEmpty() ? null : in);
+  }
+
+  private String id(int ordinal){
+    AtomicReferenceArray<String> page = ids.get(ordinal >>> ID_PAGE_SHIFT);
+    return page == null ? null : page.get(ordinal & ((1 << ID_PAGE_SHIFT) - 1));
+  }
+
+  private int allocate(String userId){
+    int ord = nextOrdinal.getAndIncrement();
+    idPage(ord).set(ord & ((1 << ID_PAGE_SHIFT) - 1), userId);
+    return ord;
+  }
+
+  private AtomicReferenceArray<String> idPage(int ord){
+    int index = ord >>> ID_PAGE_SHIFT;
+    AtomicReferenceArray<String> page = ids.get(index);
+    if(page == null){
+      ids.compareAndSet(index, null, new AtomicReferenceArray<>(1 << ID_PAGE_SHIFT));
+      page = ids.get(index);
+    }
+    return page;
+  }
+
+  private static RuntimeException notFound(String groupId){
+    return Status.NOT_FOUND.withDescription("Group not found: "+groupId).asRuntimeException();
+  }
+}
@@ -0,0 +1,73 @@
+package idm.user.group;
+
+import idm.user.id.IdGenerator;
+import idm.user.v1.*;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+
+import java.util.function.Supplier;
+
+/** gRPC front of a {@link GroupDirectory}; directory errors are already gRPC statuses. */
+public class GroupServiceImpl extends GroupServiceGrpc.GroupServiceImplBase {
+  private final GroupDirectory groups;
+  private final IdGenerator ids;
+
+  public GroupServiceImpl(GroupDirectory groups, IdGenerator ids){
+    this.groups = groups;
+    this.ids = ids;
+  }
+
+  @Override
+  public void createGroup(CreateGroupRequest request, StreamObserver<GroupResponse> responseObserver) {
+    String id = request.getGroup().getId().isEmpty() ? ids.next() : request.getGroup().getId();
+    reply(responseObserver, () -> group(groups.create(id, request.getGroup().getDisplayName(), request.getMemberIdsList())));
+  }
+
+  @Override
+  public void getGroup(GetGroupRequest request, StreamObserver<GroupResponse> responseObserver) {
+    reply(responseObserver, () -> group(groups.get(request.getId())));
+  }
+
+  @Override
+  public void deleteGroup(DeleteGroupRequest request, StreamObserver<DeleteGroupResponse> responseObserver) {
+    reply(responseObserver, () -> DeleteGroupResponse.newBuilder().setDeleted(groups.delete(request.getId())).build());
+  }
+
+  @Override
+  public void addMembers(ModifyMembersRequest request, StreamObserver<GroupResponse> responseObserver) {
+    reply(responseObserver, () -> group(groups.addMembers(request.getGroupId(), request.getUserIdsList())));
+  }
+
+  @Override
+  public void removeMembers(ModifyMembersRequest request, StreamObserver<GroupResponse> responseObserver) {
+    reply(responseObserver, () -> group(groups.removeMembers(request.getGroupId(), request.getUserIdsList())));
+  }
+
+  @Override
+  public void checkMembership(CheckMembershipRequest request, StreamObserver<CheckMembershipResponse> responseObserver) {
+    reply(responseObserver, () -> CheckMembershipResponse.newBuilder()
+        .setMember(groups.isMember(request.getGroupId(), request.getUserId())).build());
+  }
+
+  @Override
+  public void listMembers(ListMembersRequest request, StreamObserver<ListMembersResponse> responseObserver) {
+    reply(responseObserver, () -> {
+      GroupDirectory.Members page = groups.members(request.getGroupIdsList(), Math.max(0, request.getStartIndex() - 1), request.getCount());
+      return ListMembersResponse.newBuilder().addAllUserIds(page.ids()).setTotal(page.total()).build();
+    });
+  }
+
+  private static GroupResponse group(GroupDirectory.Group g){
+    return GroupResponse.newBuilder().setGroup(Group.newBuilder()
+        .setId(g.id()).setDisplayName(g.displayName()).setMemberCount(g.members().cardinality())).build();
+  }
+
+  private static <T> void reply(StreamObserver<T> responseObserver, Supplier<T> call){
+    T response;
+    try {
+      response = call.get();
+    } catch (StatusRuntimeException e){ responseObserver.onError(e); return; }
+    responseObserver.onNext(response);
+    responseObserver.onCompleted();
+  }
+}
@@ -0,0 +1,265 @@
+package idm.user.group;
+
+import java.util.Arrays;
+
+/**
+ * Immutable compressed bitmap over non-negative ints, roaring-style: values are split by their high 16 bits into
+ * containers that hold the low 16 bits either as a sorted {@code char[]} (up to 4096 values, 2 bytes each) or as a
+ * 65536-bit bitmap (8 KB), whichever is smaller. Updates return a new bitmap that shares every container they do
+ * not touch, so readers can hold one without locks while a writer replaces it.
+ */
+public final class RoaringBitmap {
+  static final int ARRAY_MAX = 4096;
+  public static final RoaringBitmap EMPTY = new RoaringBitmap(new char[0], new Container[0], 0);
+
+  private final char[] keys;
+  private final Container[] containers;
+  private final long cardinality;
+
+  private RoaringBitmap(char[] keys, Container[] containers, long cardinality){
+    this.keys = keys;
+    this.containers = containers;
+    this.cardinality = cardinality;
+  }
+
+  public static RoaringBitmap of(int... values){ return EMPTY.with(values); }
+
+  public long cardinality(){ return cardinality; }
+  public boolean isEmpty(){ return cardinality == 0; }
+
+  public boolean contains(int value){
+    int i = Arrays.binarySearch(keys, (char) (value >>> 16));
+    return i >= 0 && containers[i].contains((char) value);
+  }
+
+  /** This bitmap plus {@code values} (any order, duplicates allowed). */
+  public RoaringBitmap with(int... values){ return update(values, true); }
+  /** This bitmap minus {@code values}. */
+  public RoaringBitmap without(int... values){ return update(values, false); }
+
+  public RoaringBitmap and(RoaringBitmap other){
+    char[] outKeys = new char[Math.min(keys.length, other.keys.length)];
+    Container[] out = new Container[outKeys.length];
+    int n = 0;
+    long card = 0;
+    for(int i = 0, j = 0; i < keys.length && j < other.keys.length; ){
+      if(keys[i] < other.keys[j]) i++;
+      else if(keys[i] > other.keys[j]) j++;
+      else {
+        Container c = containers[i].and(other.containers[j]);
+        if(c != null){
+          outKeys[n] = keys[i];
+          out[n++] = c;
+          card += c.cardinality();
+        }
+        i++;
+        j++;
+      }
+    }
+    return new RoaringBitmap(Arrays.copyOf(outKeys, n), Arrays.copyOf(out, n), card);
+  }
+
+  /** Up to {@code count} values in ascending order, starting at the {@code from}th (0-based). */
+  public int[] range(long from, int count){
+    int[] out = new int[(int) Math.max(0, Math.min(count, cardinality - from))];
+    int pos = 0;
+    long skip = Math.max(0, from);
+    for(int i = 0; i < keys.length && pos < out.length; i++){
+      int card = containers[i].cardinality();
+      if(skip >= card){ skip -= card; continue; }
+      pos = containers[i].copy(keys[i] << 16, (int) skip, out, pos);
+      skip = 0;
+    }
+    return out;
+  }
+
+  /** Approximate heap footprint, for capacity planning. */
+  public long sizeInBytes(){
+    long bytes = 16 + 16 + 2L * keys.length + 16 + 4L * containers.length;
+    for(Container c : containers) bytes += c.sizeInBytes();
+    return bytes;
+  }
+
+  private RoaringBitmap update(int[] values, boolean add){
+    int[] v = values.clone();
+    Arrays.sort(v);
+    if(v.length > 0 && v[0] < 0) throw new IllegalArgumentException("Negative value: "+v[0]);
+    int highs = 0;
+    for(int j = 0; j < v.length; j++) if(j == 0 || v[j] >>> 16 != v[j - 1] >>> 16) highs++;
+    char[] outKeys = new char[keys.length + highs];
+    Container[] out = new Container[outKeys.length];
+    int n = 0;
+    long card = 0;
+    for(int i = 0, j = 0; i < keys.length || j < v.length; ){
+      int high = j < v.length ? v[j] >>> 16 : Integer.MAX_VALUE;
+      if(i < keys.length && keys[i] < high){
+        outKeys[n] = keys[i];
+        out[n++] = containers[i];
+        card += containers[i++].cardinality();
+        continue;
+      }
+      int end = j;
+      while(end < v.length && v[end] >>> 16 == high) end++;
+      Container existing = i < keys.length && keys[i] == high ? containers[i++] : null;
+      Container c = add ? Container.add(existing, v, j, end) : existing == null ? null : existing.remove(v, j, end);
+      j = end;
+      if(c != null){
+        outKeys[n] = (char) high;
+        out[n++] = c;
+        card += c.cardinality();
+      }
+    }
+    return new RoaringBitmap(Arrays.copyOf(outKeys, n), Arrays.copyOf(out, n), card);
+  }
+
+  /** The low 16 bits of the values sharing one high half; never empty. */
+  private abstract static sealed class Container permits ArrayContainer, BitmapContainer {
+    abstract int cardinality();
+    abstract boolean contains(char low);
+    /** Null when the result would be empty. */
+    abstract Container remove(int[] sorted, int from, int to);
+    abstract Container and(Container other);
+    abstract int copy(int high, int skip, int[] out, int pos);
+    abstract long sizeInBytes();
+
+    static Container add(Container existing, int[] sorted, int from, int to){
+      if(existing instanceof BitmapContainer b) return b.add(sorted, from, to);
+      char[] current = existing == null ? new char[0] : ((ArrayContainer) existing).values;
+      char[] merged = new char[current.length + to - from];
+      int n = 0, i = 0, j = from;
+      while(i < current.length || j < to){
+        char next;
+        if(j >= to || (i < current.length && current[i] <= (char) sorted[j])){
+          next = current[i++];
+        } else {
+          next = (char) sorted[j++];
+        }
+        if(n == 0 || merged[n - 1] != next) merged[n++] = next;
+      }
+      return existing != null && n == current.length ? existing : ArrayContainer.of(merged, n);
+    }
+  }
+
+  private static final class ArrayContainer extends Container {
+    final char[] values;
+
+    ArrayContainer(char[] values){ this.values = values; }
+
+    static Container of(char[] values, int n){
+      if(n == 0) return null;
+      if(n <= ARRAY_MAX) return new ArrayContainer(Arrays.copyOf(values, n));
+      long[] words = new long[1024];
+      for(int i = 0; i < n; i++) words[values[i] >>> 6] |= 1L << values[i];
+      return new BitmapContainer(words, n);
+    }
+
+    @Override int cardinality(){ return values.length; }
+    @Override boolean contains(char low){ return Arrays.binarySearch(values, low) >= 0; }
+
+    @Override
+    Container remove(int[] sorted, int from, int to){
+      char[] kept = new char[values.length];
+      int n = 0;
+      for(int i = 0, j = from; i < values.length; i++){
+        while(j < to && (char) sorted[j] < values[i]) j++;
+        if(j >= to || (char) sorted[j] != values[i]) kept[n++] = values[i];
+      }
+      return n == values.length ? this : of(kept, n);
+    }
+
+    @Override
+    Container and(Container other){
+      char[] out = new char[values.length];
+      int n = 0;
+      if(other instanceof ArrayContainer a){
+        for(int i = 0, j = 0; i < values.length && j < a.values.length; ){
+          if(values[i] < a.values[j]) i++;
+          else if(values[i] > a.values[j]) j++;
+          else { out[n++] = values[i]; i++; j++; }
+        }
+      } else {
+        for(char v : values) if(other.contains(v)) out[n++] = v;
+      }
+      return of(out, n);
+    }
+
+    @Override
+    int copy(int high, int skip, int[] out, int pos){
+      for(int i = skip; i < values.length && pos < out.length; i++) out[pos++] = high | values[i];
+      return pos;
+    }
+
+    @Override long sizeInBytes(){ return 16 + 16 + 2L * values.length; }
+  }
+
+  private static final class BitmapContainer extends Container {
+    final long[] words;
+    final int cardinality;
+
+    BitmapContainer(long[] words, int cardinality){
+      this.words = words;
+      this.cardinality = cardinality;
+    }
+
+    @Override int cardinality(){ return cardinality; }
+    @Override boolean contains(char low){ return (words[low >>> 6] & (1L << low)) != 0; }
+
+    Container add(int[] sorted, int from, int to){
+      long[] w = words.clone();
+      int card = cardinality;
+      for(int j = from; j < to; j++){
+        char low = (char) sorted[j];
+        long bit = 1L << low;
+        if((w[low >>> 6] & bit) == 0){ w[low >>> 6] |= bit; card++; }
+      }
+      return card == cardinality ? this : new BitmapContainer(w, card);
+    }
+
+    @Override
+    Container remove(int[] sorted, int from, int to){
+      long[] w = words.clone();
+      int card = cardinality;
+      for(int j = from; j < to; j++){
+        char low = (char) sorted[j];
+        long bit = 1L << low;
+        if((w[low >>> 6] & bit) != 0){ w[low >>> 6] &= ~bit; card--; }
+      }
+      return card == cardinality ? this : shrink(w, card);
+    }
+
+    @Override
+    Container and(Container other){
+      if(other instanceof ArrayContainer) return other.and(this);
+      long[] w = new long[1024];
+      long[] o = ((BitmapContainer) other).words;
+      int card = 0;
+      for(int i = 0; i < w.length; i++) card += Long.bitCount(w[i] = words[i] & o[i]);
+      return shrink(w, card);
+    }
+
+    private static Container shrink(long[] w, int card){
+      if(card == 0) return null;
+      if(card > ARRAY_MAX) return new BitmapContainer(w, card);
+      char[] values = new char[card];
+      int n = 0;
+      for(int i = 0; i < w.length; i++)
+        for(long word = w[i]; word != 0; word &= word - 1) values[n++] = (char) (i << 6 | Long.numberOfTrailingZeros(word));
+      return new ArrayContainer(values);
+    }
+
+    @Override
+    int copy(int high, int skip, int[] out, int pos){
+      for(int i = 0; i < words.length && pos < out.length; i++){
+        int bits = Long.bitCount(words[i]);
+        if(skip >= bits){ skip -= bits; continue; }
+        for(long word = words[i]; word != 0 && pos < out.length; word &= word - 1){
+          if(skip > 0){ skip--; continue; }
+          out[pos++] = high | i << 6 | Long.numberOfTrailingZeros(word);
+        }
+      }
+      return pos;
+    }
+
+    @Override long sizeInBytes(){ return 16 + 16 + 8L * words.length; }
+  }
+}
@@ -0,0 +1,21 @@
+package idm.user.id;
+
+import java.util.UUID;
+
+/** Source of ids for new users. Ids must be unique across every instance that creates users. */
+@FunctionalInterface
+public interface IdGenerator {
+  String next();
+
+  /** Random version-4 UUIDs (SecureRandom); unordered. */
+  IdGenerator RANDOM_UUID = () -> UUID.randomUUID().toString();
+
+  /** {@code uuidv7} (time-ordered, see {@link TimeOrderedIdGenerator}) or {@code random}. */
+  static IdGenerator of(String kind, int node){
+    switch(kind){
+      case "uuidv7": return new TimeOrderedIdGenerator(node);
+      case "random": return RANDOM_UUID;
+      default: throw new IllegalArgumentException("Unknown user.id.generator: "+kind);
+    }
+  }
+}
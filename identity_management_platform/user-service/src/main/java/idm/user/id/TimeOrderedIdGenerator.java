@@ -0,0 +1,66 @@
+package idm.user.id;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * RFC 9562 UUIDv7 ids, so ids sort by creation time both as UUIDs and as their lowercase string form:
+ * <pre>
+ * | unix_ts_ms (48) | ver=7 (4) | counter hi (12) | var=10 (2) | counter lo (8) | node (10) | random (44) |
+ * </pre>
+ * The 20-bit counter restarts every millisecond and makes ids from one generator strictly increasing. If it
+ * overflows, or the wall clock steps back, the generator keeps counting on from the last timestamp it used
+ * instead. State is a single {@link AtomicLong} advanced by CAS, and the random tail comes from
+ * {@link ThreadLocalRandom}, so nothing blocks or contends on {@code SecureRandom}. The node id keeps
+ * instances apart even if their clocks and counters line up. Unlike random UUIDs, these ids reveal creation
+ * time and are partly guessable; they identify users but do not authorize anything.
+ */
+public final class TimeOrderedIdGenerator implements IdGenerator {
+  public static final int NODE_BITS = 10;
+  public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+  static final int COUNTER_BITS = 20;
+  private static final int RANDOM_BITS = 44;
+
+  private final long node;
+  private final LongSupplier clock;
+  // (unix millis << COUNTER_BITS) | counter of the last id handed out
+  private final AtomicLong last = new AtomicLong();
+
+  public TimeOrderedIdGenerator(int node){ this(node, System::currentTimeMillis); }
+
+  TimeOrderedIdGenerator(int node, LongSupplier clock){
+    if(node < 0 || node > MAX_NODE) throw new IllegalArgumentException("Node id must be 0.."+MAX_NODE+": "+node);
+    this.node = node;
+    this.clock = clock;
+  }
+
+  @Override
+  public String next(){ return uuid().toString(); }
+
+  public UUID uuid(){
+    long state = advance();
+    long millis = state >>> COUNTER_BITS;
+    long counter = state & ((1L << COUNTER_BITS) - 1);
+    long msb = millis << 16 | 0x7000L | counter >>> 8;
+    long lsb = 0x8000_0000_0000_0000L | (counter & 0xFF) << 54 | node << RANDOM_BITS
+        | ThreadLocalRandom.current().nextLong() & ((1L << RANDOM_BITS) - 1);
+    return new UUID(msb, lsb);
+  }
+
+  private long advance(){
+    long now = clock.getAsLong() << COUNTER_BITS;
+    while(true){
+      long prev = last.get();
+      long next = now > prev ? now : prev + 1;
+      if(last.compareAndSet(prev, next)) return next;
+    }
+  }
+
+  /** Creation time (unix millis) embedded in a UUIDv7 id. */
+  public static long timestamp(String id){ return UUID.fromString(id).getMostSignificantBits() >>> 16; }
+
+  /** Node id embedded in an id from this generator. */
+  public static int node(String id){ return (int) (UUID.fromString(id).getLeastSignificantBits() >>> RANDOM_BITS) & MAX_NODE; }
+}
@@ -0,0 +1,79 @@
+package idm.user.lifecycle;
+
+import idm.user.config.LifecycleProperties;
+import io.grpc.Server;
+import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
+import io.grpc.protobuf.services.HealthStatusManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Readiness and graceful drain around a gRPC {@link Server}, published through the standard
+ * {@code grpc.health.v1.Health} service:
+ * <ol>
+ *   <li>start: NOT_SERVING while the port is open and warm-up runs, then SERVING;</li>
+ *   <li>drain: NOT_SERVING for {@code drainDelay} while still serving, so balancers move traffic away; then
+ *       no new calls, in-flight calls get up to {@code drainTimeout}, and whatever is left is cancelled.</li>
+ * </ol>
+ */
+public class ServerLifecycle {
+  private final Server server;
+  private final HealthStatusManager health;
+  private final LifecycleProperties props;
+  private final List<String> services;
+  private final List<AutoCloseable> onDrain = new ArrayList<>();
+  private final List<AutoCloseable> onTerminated = new ArrayList<>();
+
+  public ServerLifecycle(Server server, HealthStatusManager health, LifecycleProperties props, String... services){
+    this.server = server;
+    this.health = health;
+    this.props = props;
+    this.services = new ArrayList<>(List.of(services));
+    this.services.add(HealthStatusManager.SERVICE_NAME_ALL_SERVICES);
+  }
+
+  /** Closed when the server stops accepting calls, e.g. to end long-lived streams. */
+  public ServerLifecycle onDrain(AutoCloseable resource){ onDrain.add(resource); return this; }
+  /** Closed once the server has terminated. */
+  public ServerLifecycle onTerminated(AutoCloseable resource){ onTerminated.add(resource); return this; }
+
+  public void start(Runnable warmup) throws IOException {
+    status(ServingStatus.NOT_SERVING);
+    server.start();
+    warmup.run();
+    status(ServingStatus.SERVING);
+  }
+
+  /** Runs the drain sequence; returns false if in-flight calls had to be cancelled. */
+  public boolean drain(){
+    status(ServingStatus.NOT_SERVING);
+    boolean clean = false;
+    try {
+      Thread.sleep(props.drainDelay().toMillis());
+      closeAll(onDrain);
+      server.shutdown();
+      clean = server.awaitTermination(props.drainTimeout().toMillis(), TimeUnit.MILLISECONDS);
+      if(!clean) server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e){
+      server.shutdownNow();
+      Thread.currentThread().interrupt();
+    } finally {
+      health.enterTerminalState();
+      closeAll(onTerminated);
+    }
+    return clean;
+  }
+
+  private void status(ServingStatus status){
+    for(String service : services) health.setStatus(service, status);
+  }
+
+  private static void closeAll(List<AutoCloseable> resources){
+    for(AutoCloseable r : resources){
+      try { r.close(); } catch (Exception e){ System.err.println("Close failed during drain: "+e); }
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package idm.user.lifecycle;
+
+import com.google.protobuf.FieldMask;
+import idm.user.UserServiceImpl;
+import idm.user.store.HeapUserStore;
+import idm.user.v1.*;
+import io.grpc.MethodDescriptor;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Runs request cycles against a scratch {@link UserServiceImpl} (its own heap store, so real data is untouched),
+ * round-tripping every message through the generated marshallers, so the first real calls after a restart hit
+ * JIT-compiled handler, protobuf and index code instead of the interpreter.
+ */
+public final class Warmup {
+  private Warmup(){}
+
+  public static void run(int iterations){
+    if(iterations <= 0) return;
+    UserServiceImpl scratch = new UserServiceImpl(new HeapUserStore(), 1024, 1024);
+    try {
+      Capture<UserResponse> user = new Capture<>();
+      Capture<ListUsersResponse> list = new Capture<>();
+      Capture<DeleteUserResponse> deleted = new Capture<>();
+      for(int i = 0; i < iterations; i++){
+        CreateUserRequest create = roundTrip(UserServiceGrpc.getCreateUserMethod(), CreateUserRequest.newBuilder()
+            .setUser(User.newBuilder().setUserName("warmup"+i).setGivenName("Warm").setFamilyName("Up"+(i % 100))
+                .addEmails("warmup"+i+"@example.com").setActive(true)).build());
+        scratch.createUser(create, user);
+        User created = roundTrip(UserServiceGrpc.getCreateUserMethod().getResponseMarshaller(), user.value).getUser();
+        scratch.getUser(GetUserRequest.newBuilder().setId(created.getId()).build(), user);
+        scratch.patchUser(roundTrip(UserServiceGrpc.getPatchUserMethod(), PatchUserRequest.newBuilder().setId(created.getId())
+            .setUser(User.newBuilder().setGivenName("Warmer")).setUpdateMask(FieldMask.newBuilder().addPaths("givenName"))
+            .addAddEmails("alt"+i+"@example.com").build()), user);
+        scratch.updateUser(UpdateUserRequest.newBuilder().setUser(user.value.getUser().toBuilder().setActive(false)).build(), user);
+        roundTrip(UserServiceGrpc.getUpdateUserMethod().getResponseMarshaller(), user.value);
+        scratch.searchUsers(SearchUsersRequest.newBuilder().setFilter("userName eq \"warmup"+i+"\" and active eq false").build(), list);
+        roundTrip(UserServiceGrpc.getSearchUsersMethod().getResponseMarshaller(), list.value);
+        scratch.deleteUser(DeleteUserRequest.newBuilder().setId(created.getId()).build(), deleted);
+      }
+    } finally {
+      scratch.changes().close();
+    }
+  }
+
+  private static <T> T roundTrip(MethodDescriptor<T, ?> method, T request){ return roundTrip(method.getRequestMarshaller(), request); }
+
+  private static <T> T roundTrip(MethodDescriptor.Marshaller<T> marshaller, T message){
+    try(InputStream in = marshaller.stream(message)){
+      return marshaller.parse(in);
+    } catch (IOException e){
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static final class Capture<T> implements StreamObserver<T> {
+    T value;
+    @Override public void onNext(T v){ value = v; }
+    @Override public void onError(Throwable t){ throw new IllegalStateException("Warm-up call failed", t); }
+    @Override public void onCompleted(){}
+  }
+}
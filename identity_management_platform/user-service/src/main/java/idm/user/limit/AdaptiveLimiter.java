@@ -0,0 +1,103 @@
+package idm.user.limit;
+
+import idm.user.config.ConcurrencyLimitProperties;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Gradient concurrency limit. Latency samples are averaged per window (at least {@value #MIN_WINDOW_SAMPLES}
+ * samples and {@value #MIN_WINDOW_MILLIS} ms); the window average is compared with a baseline that tracks the
+ * fastest calls seen:
+ * <pre>
+ *   gradient = clamp(tolerance * baseline / windowRtt, 0.5, 1)
+ *   limit    = smooth(limit, limit * gradient + sqrt(limit))
+ * </pre>
+ * so the limit creeps up while latency stays near the baseline and shrinks as soon as queueing inflates it.
+ * Windows where the server was not using at least half the limit leave it alone, and windows with drops
+ * (deadline exceeded, resource exhausted downstream) back it off multiplicatively.
+ */
+public class AdaptiveLimiter {
+  static final int MIN_WINDOW_SAMPLES = 10;
+  static final long MIN_WINDOW_MILLIS = 50;
+  private static final double BASELINE_WINDOWS = 600;
+  private static final double BACKOFF = 0.9;
+
+  private final ConcurrencyLimitProperties props;
+  private final LongSupplier nanoClock;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private volatile int limit;
+
+  // Window state, guarded by this
+  private double estimate;
+  private double baselineNanos;
+  private long windowStart;
+  private long windowSum;
+  private long windowMin = Long.MAX_VALUE;
+  private int windowCount;
+  private int windowMaxInFlight;
+  private boolean windowDropped;
+
+  public AdaptiveLimiter(ConcurrencyLimitProperties props){ this(props, System::nanoTime); }
+
+  AdaptiveLimiter(ConcurrencyLimitProperties props, LongSupplier nanoClock){
+    this.props = props;
+    this.nanoClock = nanoClock;
+    this.estimate = props.initialLimit();
+    this.limit = props.initialLimit();
+    this.windowStart = nanoClock.getAsLong();
+  }
+
+  public int limit(){ return limit; }
+  public int inFlight(){ return inFlight.get(); }
+
+  /** Takes a permit if fewer than {@link #limit()} calls are in flight; returns the in-flight count, or -1. */
+  public int tryAcquire(){
+    for(;;){
+      int current = inFlight.get();
+      if(current >= limit) return -1;
+      if(inFlight.compareAndSet(current, current + 1)) return current + 1;
+    }
+  }
+
+  /** Returns a permit with the call's latency; {@code dropped} marks overload outcomes. */
+  public void release(long rttNanos, int inFlightAtStart, boolean dropped){
+    inFlight.decrementAndGet();
+    sample(rttNanos, inFlightAtStart, dropped);
+  }
+
+  /** Returns a permit without a latency sample (cancelled calls). */
+  public void release(){ inFlight.decrementAndGet(); }
+
+  private synchronized void sample(long rttNanos, int inFlightAtStart, boolean dropped){
+    windowSum += rttNanos;
+    windowMin = Math.min(windowMin, rttNanos);
+    windowCount++;
+    windowMaxInFlight = Math.max(windowMaxInFlight, inFlightAtStart);
+    windowDropped |= dropped;
+    long now = nanoClock.getAsLong();
+    if(windowCount < MIN_WINDOW_SAMPLES || now - windowStart < MIN_WINDOW_MILLIS * 1_000_000) return;
+
+    double rtt = windowSum / (double) windowCount;
+    // The fastest call in a window is the best estimate of unqueued service time. The baseline follows a new
+    // minimum at once and rises only slowly, so a start under overload or a sustained queue cannot pass
+    // itself off as the no-load latency.
+    if(baselineNanos == 0 || windowMin < baselineNanos) baselineNanos = windowMin;
+    else baselineNanos += (windowMin - baselineNanos) / BASELINE_WINDOWS;
+    if(windowDropped) estimate *= BACKOFF;
+    else if(windowMaxInFlight >= estimate / 2){
+      double gradient = Math.max(0.5, Math.min(1.0, props.tolerance() * baselineNanos / rtt));
+      double next = estimate * gradient + Math.sqrt(estimate);
+      estimate = estimate * (1 - props.smoothing()) + next * props.smoothing();
+    }
+    estimate = Math.max(props.minLimit(), Math.min(props.maxLimit(), estimate));
+    limit = (int) estimate;
+
+    windowStart = now;
+    windowSum = 0;
+    windowMin = Long.MAX_VALUE;
+    windowCount = 0;
+    windowMaxInFlight = 0;
+    windowDropped = false;
+  }
+}
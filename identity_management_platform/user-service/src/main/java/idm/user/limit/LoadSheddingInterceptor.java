@@ -0,0 +1,118 @@
+package idm.user.limit;
+
+import idm.user.metrics.MetricsSource;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.grpc.health.v1.HealthGrpc;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejects unary calls up front instead of letting them queue: with {@code DEADLINE_EXCEEDED} when the caller's
+ * remaining deadline is shorter than the method's recent mean service time, and with {@code RESOURCE_EXHAUSTED}
+ * when the {@link AdaptiveLimiter} has no permit. Streaming calls are long-lived and pass through unlimited, and
+ * health checks are never shed: an overloaded instance must not look dead to its load balancer.
+ */
+public class LoadSheddingInterceptor implements ServerInterceptor, MetricsSource {
+  private static final ServerCall.Listener<Object> NOOP = new ServerCall.Listener<>() {};
+
+  private final AdaptiveLimiter limiter;
+  private final Map<String, AtomicLong> serviceNanos = new ConcurrentHashMap<>();
+  private final LongAdder limited = new LongAdder();
+  private final LongAdder deadlineShed = new LongAdder();
+
+  public LoadSheddingInterceptor(AdaptiveLimiter limiter){ this.limiter = limiter; }
+
+  public AdaptiveLimiter limiter(){ return limiter; }
+  long limitedCalls(){ return limited.sum(); }
+  long deadlineShedCalls(){ return deadlineShed.sum(); }
+
+  /** Mean service time of recent calls to {@code fullMethodName} (EWMA, 1/8 weight), 0 if unknown. */
+  long expectedServiceNanos(String fullMethodName){
+    AtomicLong v = serviceNanos.get(fullMethodName);
+    return v == null ? 0 : v.get();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                               ServerCallHandler<ReqT, RespT> next) {
+    MethodDescriptor<ReqT, RespT> descriptor = call.getMethodDescriptor();
+    if(descriptor.getType() != MethodDescriptor.MethodType.UNARY || HealthGrpc.SERVICE_NAME.equals(descriptor.getServiceName()))
+      return next.startCall(call, headers);
+    String method = descriptor.getFullMethodName();
+
+    Deadline deadline = Context.current().getDeadline();
+    if(deadline != null && deadline.timeRemaining(TimeUnit.NANOSECONDS) < expectedServiceNanos(method)){
+      deadlineShed.increment();
+      call.close(Status.DEADLINE_EXCEEDED.withDescription("Shed: remaining deadline is shorter than expected service time"), new Metadata());
+      return (ServerCall.Listener<ReqT>) NOOP;
+    }
+    int inFlight = limiter.tryAcquire();
+    if(inFlight < 0){
+      limited.increment();
+      call.close(Status.RESOURCE_EXHAUSTED.withDescription("Concurrency limit "+limiter.limit()+" reached"), new Metadata());
+      return (ServerCall.Listener<ReqT>) NOOP;
+    }
+
+    long start = System.nanoTime();
+    AtomicBoolean released = new AtomicBoolean();
+    ServerCall<ReqT, RespT> timed = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+      @Override
+      public void close(Status status, Metadata trailers){
+        if(released.compareAndSet(false, true)){
+          long rtt = System.nanoTime() - start;
+          Status.Code code = status.getCode();
+          limiter.release(rtt, inFlight, code == Status.Code.DEADLINE_EXCEEDED || code == Status.Code.RESOURCE_EXHAUSTED);
+          serviceNanos.computeIfAbsent(method, k -> new AtomicLong()).updateAndGet(prev -> prev == 0 ? rtt : prev + (rtt - prev) / 8);
+        }
+        super.close(status, trailers);
+      }
+    };
+    ServerCall.Listener<ReqT> listener;
+    try {
+      listener = next.startCall(timed, headers);
+    } catch (RuntimeException e){
+      if(released.compareAndSet(false, true)) limiter.release();
+      throw e;
+    }
+    return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+      @Override
+      public void onCancel(){
+        // A call that ran out of deadline here is an overload signal; other cancellations say nothing about load.
+        if(released.compareAndSet(false, true)){
+          if(deadline != null && deadline.isExpired()) limiter.release(System.nanoTime() - start, inFlight, true);
+          else limiter.release();
+        }
+        super.onCancel();
+      }
+    };
+  }
+
+  @Override
+  public void writePrometheus(StringBuilder out){
+    out.append("# HELP grpc_server_concurrency_limit Current adaptive concurrency limit for unary calls.\n")
+        .append("# TYPE grpc_server_concurrency_limit gauge\n")
+        .append("grpc_server_concurrency_limit ").append(limiter.limit()).append('\n');
+    out.append("# HELP grpc_server_limited_in_flight Unary calls currently holding a limiter permit.\n")
+        .append("# TYPE grpc_server_limited_in_flight gauge\n")
+        .append("grpc_server_limited_in_flight ").append(limiter.inFlight()).append('\n');
+    out.append("# HELP grpc_server_shed_total Calls rejected before reaching the service, by reason.\n")
+        .append("# TYPE grpc_server_shed_total counter\n")
+        .append("grpc_server_shed_total{reason=\"limit\"} ").append(limited.sum()).append('\n')
+        .append("grpc_server_shed_total{reason=\"deadline\"} ").append(deadlineShed.sum()).append('\n');
+  }
+}
@@ -0,0 +1,131 @@
+package idm.user.metrics;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-method server metrics: started calls, in-flight calls, handling latency, message sizes and handled
+ * calls by status code. Names follow the common {@code grpc_server_*} convention.
+ */
+public class GrpcMetricsInterceptor implements ServerInterceptor, MetricsSource {
+  private static final Status.Code[] CODES = Status.Code.values();
+
+  private final Map<String, MethodMetrics> methods = new ConcurrentSkipListMap<>();
+
+  static final class MethodMetrics {
+    final String labels;
+    final LongAdder started = new LongAdder();
+    final LongAdder inFlight = new LongAdder();
+    final LongAdder[] handled = new LongAdder[CODES.length];
+    final Histogram latency = new Histogram(Histogram.LATENCY_NANOS, 1e-9);
+    final Histogram received = new Histogram(Histogram.SIZE_BYTES, 1);
+    final Histogram sent = new Histogram(Histogram.SIZE_BYTES, 1);
+
+    MethodMetrics(String fullMethodName){
+      labels = "grpc_service=\""+MethodDescriptor.extractFullServiceName(fullMethodName)
+          +"\",grpc_method=\""+MethodDescriptor.extractBareMethodName(fullMethodName)+"\"";
+      for(int i = 0; i < handled.length; i++) handled[i] = new LongAdder();
+    }
+
+    void finish(long startNanos, Status.Code code){
+      latency.observe(System.nanoTime() - startNanos);
+      handled[code.ordinal()].increment();
+      inFlight.decrement();
+    }
+  }
+
+  MethodMetrics method(String fullMethodName){ return methods.get(fullMethodName); }
+
+  @Override
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                               ServerCallHandler<ReqT, RespT> next) {
+    MethodMetrics m = methods.computeIfAbsent(call.getMethodDescriptor().getFullMethodName(), MethodMetrics::new);
+    long start = System.nanoTime();
+    m.started.increment();
+    m.inFlight.increment();
+    // close() and onCancel() can both happen (or race) for one call; count it once
+    AtomicBoolean done = new AtomicBoolean();
+    ServerCall<ReqT, RespT> recorded = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+      @Override
+      public void sendMessage(RespT message){
+        m.sent.observe(size(message));
+        super.sendMessage(message);
+      }
+
+      @Override
+      public void close(Status status, Metadata trailers){
+        if(done.compareAndSet(false, true)) m.finish(start, status.getCode());
+        super.close(status, trailers);
+      }
+    };
+    ServerCall.Listener<ReqT> listener;
+    try {
+      listener = next.startCall(recorded, headers);
+    } catch (RuntimeException e){
+      if(done.compareAndSet(false, true)) m.finish(start, Status.fromThrowable(e).getCode());
+      throw e;
+    }
+    return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+      @Override
+      public void onMessage(ReqT message){
+        m.received.observe(size(message));
+        super.onMessage(message);
+      }
+
+      @Override
+      public void onCancel(){
+        if(done.compareAndSet(false, true)) m.finish(start, Status.Code.CANCELLED);
+        super.onCancel();
+      }
+    };
+  }
+
+  // Protobuf memoizes the serialized size, so the marshaller does not compute it twice.
+  private static long size(Object message){
+    if(message instanceof MessageLite m) return m.getSerializedSize();
+    if(message instanceof byte[] b) return b.length;
+    return 0;
+  }
+
+  @Override
+  public void writePrometheus(StringBuilder out){
+    header(out, "grpc_server_started_total", "counter", "RPCs started on the server.");
+    for(MethodMetrics m : methods.values()) sample(out, "grpc_server_started_total", m.labels, m.started.sum());
+    header(out, "grpc_server_handled_total", "counter", "RPCs completed on the server, by status code.");
+    for(MethodMetrics m : methods.values()){
+      for(Status.Code code : CODES){
+        long n = m.handled[code.ordinal()].sum();
+        if(n > 0) sample(out, "grpc_server_handled_total", m.labels+",grpc_code=\""+code+"\"", n);
+      }
+    }
+    header(out, "grpc_server_in_flight", "gauge", "RPCs currently being handled.");
+    for(MethodMetrics m : methods.values()) sample(out, "grpc_server_in_flight", m.labels, m.inFlight.sum());
+    header(out, "grpc_server_handling_seconds", "histogram", "Time from call start to close, in seconds.");
+    for(MethodMetrics m : methods.values()) m.latency.write(out, "grpc_server_handling_seconds", m.labels);
+    header(out, "grpc_server_msg_received_bytes", "histogram", "Serialized size of received messages.");
+    for(MethodMetrics m : methods.values()) m.received.write(out, "grpc_server_msg_received_bytes", m.labels);
+    header(out, "grpc_server_msg_sent_bytes", "histogram", "Serialized size of sent messages.");
+    for(MethodMetrics m : methods.values()) m.sent.write(out, "grpc_server_msg_sent_bytes", m.labels);
+  }
+
+  static void header(StringBuilder out, String name, String type, String help){
+    out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  static void sample(StringBuilder out, String name, String labels, long value){
+    out.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+  }
+}
@@ -0,0 +1,56 @@
+package idm.user.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket histogram on {@link LongAdder}s: recording is a short bucket search plus two uncontended adds.
+ * Bounds are inclusive upper limits in raw units; {@code scale} converts them to the exported unit.
+ */
+public final class Histogram {
+  /** Latency bounds in nanoseconds, from 100us to 10s (exported in seconds). */
+  public static final long[] LATENCY_NANOS = {100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000,
+      25_000_000, 50_000_000, 100_000_000, 250_000_000, 500_000_000, 1_000_000_000, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L};
+  /** Message size bounds in bytes, 64B to 4MB in powers of four. */
+  public static final long[] SIZE_BYTES = {64, 256, 1024, 4096, 16_384, 65_536, 262_144, 1_048_576, 4_194_304};
+
+  private final long[] bounds;
+  private final double scale;
+  private final LongAdder[] buckets;
+  private final LongAdder sum = new LongAdder();
+
+  public Histogram(long[] bounds, double scale){
+    this.bounds = bounds;
+    this.scale = scale;
+    this.buckets = new LongAdder[bounds.length + 1];
+    for(int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+  }
+
+  public void observe(long value){
+    int i = 0;
+    while(i < bounds.length && value > bounds[i]) i++;
+    buckets[i].increment();
+    sum.add(value);
+  }
+
+  public long count(){
+    long n = 0;
+    for(LongAdder b : buckets) n += b.sum();
+    return n;
+  }
+
+  /** Appends cumulative {@code _bucket}, {@code _sum} and {@code _count} samples; {@code labels} is {@code k="v",...}. */
+  void write(StringBuilder out, String name, String labels){
+    long cumulative = 0;
+    for(int i = 0; i < buckets.length; i++){
+      cumulative += buckets[i].sum();
+      String le = i < bounds.length ? format(bounds[i] * scale) : "+Inf";
+      out.append(name).append("_bucket{").append(labels).append(",le=\"").append(le).append("\"} ").append(cumulative).append('\n');
+    }
+    out.append(name).append("_sum{").append(labels).append("} ").append(format(sum.sum() * scale)).append('\n');
+    out.append(name).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+  }
+
+  static String format(double v){
+    return v == Math.rint(v) && Math.abs(v) < 1e15 ? Long.toString((long) v) : Double.toString(v);
+  }
+}
@@ -0,0 +1,40 @@
+package idm.user.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/** Serves {@code GET /metrics} in Prometheus text format on the JDK's built-in HTTP server. */
+public class MetricsHttpServer implements AutoCloseable {
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private final HttpServer server;
+
+  public MetricsHttpServer(int port, List<MetricsSource> sources) throws IOException {
+    server = HttpServer.create(new InetSocketAddress(port), 0);
+    server.createContext("/metrics", exchange -> {
+      try(exchange){
+        if(!"GET".equals(exchange.getRequestMethod())){
+          exchange.sendResponseHeaders(405, -1);
+          return;
+        }
+        StringBuilder text = new StringBuilder(8192);
+        for(MetricsSource source : sources) source.writePrometheus(text);
+        byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, body.length);
+        try(OutputStream out = exchange.getResponseBody()){ out.write(body); }
+      }
+    });
+    server.start();
+  }
+
+  public int port(){ return server.getAddress().getPort(); }
+
+  @Override
+  public void close(){ server.stop(0); }
+}
@@ -0,0 +1,6 @@
+package idm.user.metrics;
+
+/** Anything that can append its samples, with HELP/TYPE lines, to a Prometheus text exposition. */
+public interface MetricsSource {
+  void writePrometheus(StringBuilder out);
+}
@@ -0,0 +1,184 @@
+package idm.user.replication;
+
+import idm.user.UserServiceImpl;
+import idm.user.v1.*;
+import io.grpc.Channel;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a local {@link UserServiceImpl} in step with a leader: a ListUsers snapshot, then the leader's WatchUsers
+ * feed from the snapshot's sequence, applied in order with the leader's ids and versions. The leader takes that
+ * sequence before reading its store and only publishes a change once it is in the store, so the snapshot holds
+ * every change up to it; it may also hold some later ones, which the feed then replays. Every event is applied as
+ * a whole-user overwrite or a delete, so a replay is harmless, and by the time the feed passes a change's sequence
+ * the replica holds that change. A lost or broken feed (RESYNC_REQUIRED, a new leader epoch, a stream error)
+ * starts over from a fresh snapshot.
+ *
+ * <p>Replicas answer the freshness questions readers ask: {@link #position()} is the last leader position applied,
+ * and {@link #stalenessMillis()} is how long ago the follower was last known to have every leader change, from the
+ * leader's heartbeats.
+ */
+public class Follower implements AutoCloseable {
+  static final long RECONNECT_DELAY_MILLIS = 1_000;
+  private static final long SNAPSHOT_TIMEOUT_SECONDS = 30;
+
+  private final UserServiceGrpc.UserServiceBlockingStub leaderBlocking;
+  private final UserServiceGrpc.UserServiceStub leaderAsync;
+  private final UserServiceImpl local;
+  private final long heartbeatMillis;
+  private final CountDownLatch synced = new CountDownLatch(1);
+  private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread t = new Thread(r, "user-replica");
+    t.setDaemon(true);
+    return t;
+  });
+
+  // Serializes applying changes with resyncs; guards writes to epoch/applied (volatile for lock-free reads)
+  private final Object lock = new Object();
+  private volatile long epoch;
+  private volatile long applied;
+  private volatile long caughtUpAt;
+  private volatile boolean everCaughtUp;
+  // Bumped on every (re)sync so callbacks from an abandoned feed are ignored
+  private volatile int generation;
+  private volatile ClientCallStreamObserver<WatchUsersRequest> feed;
+  private volatile boolean closed;
+
+  public Follower(Channel leader, UserServiceImpl local, Duration heartbeat){
+    this.leaderBlocking = UserServiceGrpc.newBlockingStub(leader);
+    this.leaderAsync = UserServiceGrpc.newStub(leader);
+    this.local = local;
+    this.heartbeatMillis = heartbeat.toMillis();
+  }
+
+  public Follower start(){
+    worker.execute(this::sync);
+    return this;
+  }
+
+  /** Waits for the first snapshot to be applied. */
+  public boolean awaitSynced(Duration timeout) throws InterruptedException {
+    return synced.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /** The leader position applied locally (sequence 0 in epoch 0 before the first snapshot). */
+  public SequenceToken position(){
+    synchronized(lock){ return new SequenceToken(epoch, applied); }
+  }
+
+  /** Milliseconds since this replica last held every leader change, or {@code Long.MAX_VALUE} if it never has. */
+  public long stalenessMillis(){
+    return everCaughtUp ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - caughtUpAt) : Long.MAX_VALUE;
+  }
+
+  /** Waits until {@link #position()} covers {@code required}; false on timeout. */
+  public boolean awaitPosition(SequenceToken required, long timeoutNanos) throws InterruptedException {
+    long deadline = System.nanoTime() + timeoutNanos;
+    synchronized(lock){
+      while(!new SequenceToken(epoch, applied).covers(required)){
+        long left = deadline - System.nanoTime();
+        if(left <= 0) return false;
+        TimeUnit.NANOSECONDS.timedWait(lock, left);
+      }
+      return true;
+    }
+  }
+
+  private void sync(){
+    if(closed) return;
+    int gen;
+    synchronized(lock){ gen = ++generation; }
+    ClientCallStreamObserver<WatchUsersRequest> previous = feed;
+    if(previous != null) previous.cancel("resync", null);
+    long requestedAt = System.nanoTime();
+    ListUsersResponse snapshot;
+    try {
+      snapshot = leaderBlocking.withDeadlineAfter(SNAPSHOT_TIMEOUT_SECONDS, TimeUnit.SECONDS).listUsers(ListUsersRequest.getDefaultInstance());
+    } catch (StatusRuntimeException e){
+      retryLater(gen);
+      return;
+    }
+    synchronized(lock){
+      if(closed || gen != generation) return;
+      local.resync(snapshot.getUsersList());
+      epoch = snapshot.getEpoch();
+      // A lower bound: changes the snapshot already has beyond it come again on the feed
+      applied = snapshot.getSequence();
+      lock.notifyAll();
+    }
+    // The snapshot holds every change made before it was requested
+    caughtUpAt = requestedAt;
+    everCaughtUp = true;
+    synced.countDown();
+    WatchUsersRequest request = WatchUsersRequest.newBuilder()
+        .setAfterSequence(snapshot.getSequence()).setEpoch(snapshot.getEpoch()).setHeartbeatMillis(heartbeatMillis).build();
+    leaderAsync.watchUsers(request, new Feed(gen));
+  }
+
+  private void retryLater(int gen){
+    if(closed || gen != generation) return;
+    try { worker.schedule(this::sync, RECONNECT_DELAY_MILLIS, TimeUnit.MILLISECONDS); }
+    catch (RejectedExecutionException e){ /* closed */ }
+  }
+
+  private void resyncNow(int gen){
+    // Retire the feed at once: events after a gap must not advance the applied position
+    synchronized(lock){
+      if(closed || gen != generation) return;
+      generation++;
+    }
+    try { worker.execute(this::sync); }
+    catch (RejectedExecutionException e){ /* closed */ }
+  }
+
+  /** One WatchUsers stream; events arrive in order on the channel's executor, one at a time. */
+  private final class Feed implements ClientResponseObserver<WatchUsersRequest, UserEvent> {
+    private final int gen;
+
+    Feed(int gen){ this.gen = gen; }
+
+    @Override
+    public void beforeStart(ClientCallStreamObserver<WatchUsersRequest> call){ feed = call; }
+
+    @Override
+    public void onNext(UserEvent event){
+      if(gen != generation) return;
+      if(event.getType() == UserEvent.Type.RESYNC_REQUIRED || event.getEpoch() != epoch){
+        resyncNow(gen);
+        return;
+      }
+      if(event.getType() == UserEvent.Type.HEARTBEAT){
+        // Heartbeats follow every change up to their sequence, which has therefore been applied
+        caughtUpAt = System.nanoTime();
+        return;
+      }
+      synchronized(lock){
+        if(gen != generation) return;
+        // Never skipped, even if the snapshot had it: an overwrite or delete applied twice leaves the same state
+        local.replicate(event.getId(), event.getType() == UserEvent.Type.DELETED ? null : event.getUser());
+        applied = event.getSequence();
+        lock.notifyAll();
+      }
+    }
+
+    @Override public void onError(Throwable t){ retryLater(gen); }
+    @Override public void onCompleted(){ retryLater(gen); }
+  }
+
+  @Override
+  public void close(){
+    closed = true;
+    ClientCallStreamObserver<WatchUsersRequest> f = feed;
+    if(f != null) f.cancel("follower closed", null);
+    worker.shutdownNow();
+  }
+}
@@ -0,0 +1,104 @@
+package idm.user.replication;
+
+import idm.user.v1.UserServiceGrpc;
+import idm.user.watch.ChangeLog;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Read consistency for a leader and its followers. Every UserService response carries the server's position as
+ * an {@code x-user-sequence} header: the leader's last assigned change-log sequence (taken after a write has
+ * landed, so it covers the write), or the leader position a follower has applied. On a follower:
+ * <ul>
+ *   <li>writes, unary or streamed, fail with FAILED_PRECONDITION (they belong on the leader);</li>
+ *   <li>a read with {@code x-user-sequence} waits, up to {@code maxWait} and the call's deadline, until the
+ *       replica has applied that position (read-your-writes), else fails with UNAVAILABLE;</li>
+ *   <li>a read with {@code x-max-staleness-ms} fails with UNAVAILABLE if the replica has not been known to be
+ *       caught up within that bound.</li>
+ * </ul>
+ * UNAVAILABLE tells the client to retry on the leader. The wait blocks the call's executor thread, so followers
+ * should not use the {@code direct} executor.
+ */
+public final class ReplicationInterceptor implements ServerInterceptor {
+  public static final Metadata.Key<String> MAX_STALENESS = Metadata.Key.of("x-max-staleness-ms", Metadata.ASCII_STRING_MARSHALLER);
+  static final Set<String> WRITES = Set.of("CreateUser", "UpdateUser", "PatchUser", "DeleteUser", "ImportUsers");
+
+  private final Supplier<SequenceToken> position;
+  private final Follower follower;
+  private final long maxWaitNanos;
+
+  private ReplicationInterceptor(Supplier<SequenceToken> position, Follower follower, Duration maxWait){
+    this.position = position;
+    this.follower = follower;
+    this.maxWaitNanos = maxWait.toNanos();
+  }
+
+  public static ReplicationInterceptor leader(ChangeLog changes){
+    return new ReplicationInterceptor(() -> new SequenceToken(changes.epoch(), changes.assigned()), null, Duration.ZERO);
+  }
+
+  public static ReplicationInterceptor follower(Follower follower, Duration maxWait){
+    return new ReplicationInterceptor(follower::position, follower, maxWait);
+  }
+
+  @Override
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+    if(!UserServiceGrpc.SERVICE_NAME.equals(call.getMethodDescriptor().getServiceName())) return next.startCall(call, headers);
+    MethodDescriptor<ReqT, RespT> method = call.getMethodDescriptor();
+    if(follower != null && (WRITES.contains(method.getBareMethodName()) || method.getType() == MethodDescriptor.MethodType.UNARY)){
+      Status rejected = admit(method.getBareMethodName(), headers);
+      if(rejected != null){
+        call.close(rejected, new Metadata());
+        return new ServerCall.Listener<>() {};
+      }
+    }
+    return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+      @Override
+      public void sendHeaders(Metadata responseHeaders){
+        position.get().writeTo(responseHeaders);
+        super.sendHeaders(responseHeaders);
+      }
+    }, headers);
+  }
+
+  /** Null to serve the read here, otherwise why the replica cannot. */
+  private Status admit(String method, Metadata headers){
+    if(WRITES.contains(method)) return Status.FAILED_PRECONDITION.withDescription("Read-only replica: send "+method+" to the leader");
+    String staleness = headers.get(MAX_STALENESS);
+    SequenceToken required;
+    long bound;
+    try {
+      required = SequenceToken.from(headers);
+      bound = staleness == null ? -1 : Long.parseLong(staleness);
+    } catch (IllegalArgumentException e){
+      return Status.INVALID_ARGUMENT.withDescription(e.getMessage());
+    }
+    if(bound >= 0 && follower.stalenessMillis() > bound)
+      return Status.UNAVAILABLE.withDescription("Replica staleness exceeds "+bound+"ms");
+    if(required != null){
+      long wait = maxWaitNanos;
+      Deadline deadline = Context.current().getDeadline();
+      if(deadline != null) wait = Math.min(wait, deadline.timeRemaining(TimeUnit.NANOSECONDS));
+      try {
+        if(!follower.awaitPosition(required, wait))
+          return Status.UNAVAILABLE.withDescription("Replica at "+follower.position()+" has not reached "+required);
+      } catch (InterruptedException e){
+        Thread.currentThread().interrupt();
+        return Status.CANCELLED.withDescription("Interrupted waiting for "+required);
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,38 @@
+package idm.user.replication;
+
+import io.grpc.Metadata;
+
+/**
+ * A position in a leader's change log: the leader's {@code epoch} (its change log restarts with every process)
+ * and a change {@code sequence}. Servers return one in the {@code x-user-sequence} response header; a client sends
+ * it back in the same request header to read at least that fresh from a follower.
+ */
+public record SequenceToken(long epoch, long sequence) {
+  public static final Metadata.Key<String> HEADER = Metadata.Key.of("x-user-sequence", Metadata.ASCII_STRING_MARSHALLER);
+
+  /** True if this position includes every change up to {@code other}; positions from different epochs never compare. */
+  public boolean covers(SequenceToken other){ return epoch == other.epoch && sequence >= other.sequence; }
+
+  /** The later of two positions; across epochs the newer epoch wins (epochs are the leader's start time). */
+  public SequenceToken max(SequenceToken other){
+    if(other == null) return this;
+    if(epoch != other.epoch) return epoch > other.epoch ? this : other;
+    return sequence >= other.sequence ? this : other;
+  }
+
+  public void writeTo(Metadata headers){ headers.put(HEADER, epoch+":"+sequence); }
+
+  /** The token in {@code headers}, or null if there is none; malformed tokens are an INVALID_ARGUMENT. */
+  public static SequenceToken from(Metadata headers){
+    String value = headers.get(HEADER);
+    if(value == null) return null;
+    int colon = value.indexOf(':');
+    try {
+      return new SequenceToken(Long.parseLong(value.substring(0, colon)), Long.parseLong(value.substring(colon + 1)));
+    } catch (RuntimeException e){
+      throw new IllegalArgumentException("Malformed "+HEADER.name()+": "+value);
+    }
+  }
+
+  @Override public String toString(){ return epoch+":"+sequence; }
+}
@@ -0,0 +1,53 @@
+package idm.user.search;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** Lock-free growable bitmap over non-negative int ordinals, allocated in 64K-bit pages. */
+final class ConcurrentBitSet {
+  private static final int PAGE_SHIFT = 16;
+  private static final int WORDS_PER_PAGE = 1 << (PAGE_SHIFT - 6);
+
+  private final AtomicReferenceArray<AtomicLongArray> pages = new AtomicReferenceArray<>(1 << (31 - PAGE_SHIFT));
+  private volatile int pageCount;
+
+  void set(int bit){
+    long mask = 1L << bit;
+    page(bit >>> PAGE_SHIFT).accumulateAndGet(word(bit), mask, (w, m) -> w | m);
+  }
+
+  void clear(int bit){
+    AtomicLongArray page = pages.get(bit >>> PAGE_SHIFT);
+    if(page != null) page.accumulateAndGet(word(bit), ~(1L << bit), (w, m) -> w & m);
+  }
+
+  boolean get(int bit){
+    AtomicLongArray page = pages.get(bit >>> PAGE_SHIFT);
+    return page != null && (page.get(word(bit)) & (1L << bit)) != 0;
+  }
+
+  /** Point-in-time copy (each word is read atomically, the whole copy is not). */
+  BitSet snapshot(){
+    int count = pageCount;
+    long[] words = new long[count * WORDS_PER_PAGE];
+    for(int p = 0; p < count; p++){
+      AtomicLongArray page = pages.get(p);
+      if(page == null) continue;
+      for(int w = 0; w < WORDS_PER_PAGE; w++) words[p * WORDS_PER_PAGE + w] = page.get(w);
+    }
+    return BitSet.valueOf(words);
+  }
+
+  private static int word(int bit){ return (bit >>> 6) & (WORDS_PER_PAGE - 1); }
+
+  private AtomicLongArray page(int index){
+    AtomicLongArray page = pages.get(index);
+    if(page == null){
+      pages.compareAndSet(index, null, new AtomicLongArray(WORDS_PER_PAGE));
+      page = pages.get(index);
+      synchronized(this){ if(pageCount <= index) pageCount = index + 1; }
+    }
+    return page;
+  }
+}
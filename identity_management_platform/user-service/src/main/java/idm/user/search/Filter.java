@@ -0,0 +1,79 @@
+package idm.user.search;
+
+import idm.user.v1.User;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parsed SCIM filter (RFC 7644 section 3.4.2.2 subset: {@code eq}, {@code sw}, {@code co}, {@code pr}, {@code and}, {@code or}).
+ * String comparisons are case-insensitive, matching SCIM's {@code caseExact=false} for these attributes, except
+ * on {@code id}, which SCIM defines as {@code caseExact}.
+ */
+public sealed interface Filter permits Filter.Compare, Filter.Present, Filter.And, Filter.Or {
+
+  boolean test(User user);
+
+  static Filter parse(String filter){ return new FilterParser(filter).parse(); }
+
+  enum Attr {
+    ID, USER_NAME, GIVEN_NAME, FAMILY_NAME, EMAILS, ACTIVE;
+
+    /** Whether values compare with their case, as SCIM's {@code id} does. */
+    boolean caseExact(){ return this == ID; }
+
+    static Attr of(String path){
+      switch(path.toLowerCase(Locale.ROOT)){
+        case "id": return ID;
+        case "username": return USER_NAME;
+        case "givenname": case "name.givenname": return GIVEN_NAME;
+        case "familyname": case "name.familyname": return FAMILY_NAME;
+        case "emails": case "emails.value": return EMAILS;
+        case "active": return ACTIVE;
+        default: throw new IllegalArgumentException("Unsupported filter attribute: "+path);
+      }
+    }
+
+    List<String> values(User u){
+      switch(this){
+        case ID: return List.of(u.getId());
+        case USER_NAME: return List.of(u.getUserName());
+        case GIVEN_NAME: return List.of(u.getGivenName());
+        case FAMILY_NAME: return List.of(u.getFamilyName());
+        case EMAILS: return u.getEmailsList();
+        default: return List.of(Boolean.toString(u.getActive()));
+      }
+    }
+  }
+
+  enum Op { EQ, SW, CO }
+
+  record Compare(Attr attr, Op op, String value) implements Filter {
+    public Compare { if(!attr.caseExact()) value = value.toLowerCase(Locale.ROOT); }
+
+    @Override
+    public boolean test(User user){
+      for(String v : attr.values(user)){
+        String s = attr.caseExact() ? v : v.toLowerCase(Locale.ROOT);
+        if(op == Op.EQ ? s.equals(value) : op == Op.SW ? s.startsWith(value) : s.contains(value)) return true;
+      }
+      return false;
+    }
+  }
+
+  record Present(Attr attr) implements Filter {
+    @Override
+    public boolean test(User user){
+      for(String v : attr.values(user)) if(!v.isEmpty()) return true;
+      return false;
+    }
+  }
+
+  record And(Filter left, Filter right) implements Filter {
+    @Override public boolean test(User user){ return left.test(user) && right.test(user); }
+  }
+
+  record Or(Filter left, Filter right) implements Filter {
+    @Override public boolean test(User user){ return left.test(user) || right.test(user); }
+  }
+}
@@ -0,0 +1,99 @@
+package idm.user.search;
+
+import java.util.Locale;
+
+/**
+ * Recursive-descent parser; {@code and} binds tighter than {@code or}, parentheses group.
+ * <pre>
+ * expr   := term ("or" term)*
+ * term   := factor ("and" factor)*
+ * factor := "(" expr ")" | attr "pr" | attr ("eq"|"sw"|"co") value
+ * value  := "quoted string" | true | false
+ * </pre>
+ */
+final class FilterParser {
+  private final String in;
+  private int pos;
+
+  FilterParser(String in){ this.in = in; }
+
+  Filter parse(){
+    Filter f = expr();
+    skipSpaces();
+    if(pos < in.length()) throw error("Unexpected input");
+    return f;
+  }
+
+  private Filter expr(){
+    Filter f = term();
+    while(keyword("or")) f = new Filter.Or(f, term());
+    return f;
+  }
+
+  private Filter term(){
+    Filter f = factor();
+    while(keyword("and")) f = new Filter.And(f, factor());
+    return f;
+  }
+
+  private Filter factor(){
+    skipSpaces();
+    if(peek() == '('){
+      pos++;
+      Filter f = expr();
+      skipSpaces();
+      if(peek() != ')') throw error("Expected ')'");
+      pos++;
+      return f;
+    }
+    Filter.Attr attr = Filter.Attr.of(word());
+    String op = word().toLowerCase(Locale.ROOT);
+    switch(op){
+      case "pr": return new Filter.Present(attr);
+      case "eq": return new Filter.Compare(attr, Filter.Op.EQ, value());
+      case "sw": return new Filter.Compare(attr, Filter.Op.SW, value());
+      case "co": return new Filter.Compare(attr, Filter.Op.CO, value());
+      default: throw error("Unsupported operator '"+op+"'");
+    }
+  }
+
+  private String value(){
+    skipSpaces();
+    if(peek() != '"'){
+      String literal = word().toLowerCase(Locale.ROOT);
+      if(literal.equals("true") || literal.equals("false")) return literal;
+      throw error("Expected quoted string or boolean");
+    }
+    StringBuilder sb = new StringBuilder();
+    for(pos++; pos < in.length(); pos++){
+      char c = in.charAt(pos);
+      if(c == '\\' && pos + 1 < in.length()) sb.append(in.charAt(++pos));
+      else if(c == '"'){ pos++; return sb.toString(); }
+      else sb.append(c);
+    }
+    throw error("Unterminated string");
+  }
+
+  private boolean keyword(String kw){
+    skipSpaces();
+    int end = pos + kw.length();
+    if(end < in.length() && in.regionMatches(true, pos, kw, 0, kw.length())
+        && (Character.isWhitespace(in.charAt(end)) || in.charAt(end) == '(')){
+      pos = end;
+      return true;
+    }
+    return false;
+  }
+
+  private String word(){
+    skipSpaces();
+    int start = pos;
+    while(pos < in.length() && !Character.isWhitespace(in.charAt(pos)) && "()\"".indexOf(in.charAt(pos)) < 0) pos++;
+    if(start == pos) throw error("Expected attribute or operator");
+    return in.substring(start, pos);
+  }
+
+  private void skipSpaces(){ while(pos < in.length() && Character.isWhitespace(in.charAt(pos))) pos++; }
+  private char peek(){ return pos < in.length() ? in.charAt(pos) : 0; }
+  private IllegalArgumentException error(String msg){ return new IllegalArgumentException(msg+" at position "+pos+" in filter: "+in); }
+}
@@ -0,0 +1,174 @@
+package idm.user.search;
+
+import idm.user.store.UserChangeListener;
+import idm.user.store.UserStore;
+import idm.user.v1.User;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Decorates a {@link UserStore} with a {@link UserIndex}. Index maintenance runs inside the delegate's atomic
+ * per-id compute, so writes to one user are applied to the index in order. How much writes to different users
+ * overlap is the delegate's: {@link idm.user.store.HeapUserStore} locks one map bin, while
+ * {@link idm.user.store.OffHeapUserStore} runs every compute, and so all index work, under one store-wide lock. Extra {@link UserChangeListener}s are
+ * notified the same way, after the index, and told {@link UserChangeListener#committed() committed} once the
+ * compute has returned.
+ */
+public class IndexedUserStore implements UserStore {
+  private final UserStore delegate;
+  private final UserIndex index = new UserIndex();
+  private final UserChangeListener[] listeners;
+
+  public IndexedUserStore(UserStore delegate, UserChangeListener... listeners){
+    this.delegate = delegate;
+    this.listeners = listeners;
+  }
+
+  public UserIndex index(){ return index; }
+
+  /** All users matching {@code filter}: index candidates re-checked against the filter, or a full scan. */
+  public List<User> search(Filter filter){
+    BitSet candidates = index.plan(filter).bits();
+    if(candidates == null){
+      List<User> out = new ArrayList<>();
+      for(User u : delegate.values()) if(filter.test(u)) out.add(u);
+      return out;
+    }
+    List<User> out = new ArrayList<>(candidates.cardinality());
+    for(int ord = candidates.nextSetBit(0); ord >= 0; ord = candidates.nextSetBit(ord + 1)){
+      String id = index.id(ord);
+      User u = id == null ? null : delegate.get(id);
+      if(u != null && filter.test(u)) out.add(u);
+    }
+    return out;
+  }
+
+  /** A ranked free-text match and its score. */
+  public record Match(User user, float score) {}
+  /** One page of ranked matches and how many there are in all. */
+  public record Matches(List<Match> page, int total) {}
+
+  /**
+   * Users matching free-text {@code query} (and {@code filter}, when not null), best first, from the
+   * {@code from}th match (0-based), {@code count} of them (0: all). Every match up to the end of the page, the
+   * skipped ones included, is re-scored against the stored record and ordered by that score, so a write racing
+   * with the ranking cannot surface a user that no longer matches, and consecutive pages neither overlap nor skip.
+   * Like {@link #search}'s, the total is as of the index.
+   */
+  public Matches rank(String query, Filter filter, int from, int count){
+    TrigramIndex text = index.text();
+    int wanted = count > 0 ? (int) Math.min(Integer.MAX_VALUE, (long) from + count) : Integer.MAX_VALUE;
+    int limit = filter == null ? wanted : Integer.MAX_VALUE;
+    while(true){
+      TrigramIndex.Ranking ranking = text.search(query, TrigramIndex.DEFAULT_THRESHOLD, limit);
+      List<Match> matches = new ArrayList<>();
+      int total = filter == null ? ranking.total() : 0;
+      for(int ord : ranking.ordinals()){
+        String id = index.id(ord);
+        User u = id == null ? null : delegate.get(id);
+        if(u == null || (filter != null && !filter.test(u))) continue;
+        if(filter != null) total++;
+        if(matches.size() >= wanted) continue;
+        float score = TrigramIndex.score(query, u);
+        if(score >= TrigramIndex.DEFAULT_THRESHOLD) matches.add(new Match(u, score));
+      }
+      // Re-scoring dropped some of a ranking cut at the limit: the page may be short, so rank further down
+      if(matches.size() < wanted && ranking.ordinals().length < ranking.total() && limit < Integer.MAX_VALUE){
+        limit = limit > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : limit * 2;
+        continue;
+      }
+      // Stable, so equal scores keep the index's tie-break
+      matches.sort((a, b) -> Float.compare(b.score(), a.score()));
+      List<Match> page = matches.subList(Math.min(from, matches.size()), Math.min(wanted, matches.size()));
+      return new Matches(new ArrayList<>(page), total);
+    }
+  }
+
+  @Override public User get(String id){ return delegate.get(id); }
+  @Override public ByteBuffer getSerialized(String id){ return delegate.getSerialized(id); }
+  @Override public boolean containsKey(String id){ return delegate.containsKey(id); }
+  @Override public List<User> values(){ return delegate.values(); }
+  @Override public int size(){ return delegate.size(); }
+
+  @Override
+  public void put(User user){
+    try {
+      delegate.compute(user.getId(), old -> {
+        changed(old, user);
+        return user;
+      });
+    } finally { committed(); }
+  }
+
+  /**
+   * Inserts new users one at a time, skipping any whose id is already taken; returns the positions skipped. Each
+   * row is its own compute that updates the index and notifies listeners like a single put, so a batch costs
+   * what that many puts do; what it saves over single CreateUser calls is the per-call RPC overhead.
+   */
+  public BitSet insertAll(List<User> users){
+    BitSet taken = new BitSet();
+    for(int i = 0; i < users.size(); i++){
+      User user = users.get(i);
+      int pos = i;
+      try {
+        delegate.compute(user.getId(), old -> {
+          if(old != null){
+            taken.set(pos);
+            return old;
+          }
+          changed(null, user);
+          return user;
+        });
+      } finally { committed(); }
+    }
+    return taken;
+  }
+
+  @Override
+  public boolean remove(String id){
+    boolean[] removed = new boolean[1];
+    try {
+      delegate.computeIfPresent(id, old -> {
+        changed(old, null);
+        removed[0] = true;
+        return null;
+      });
+    } finally { committed(); }
+    return removed[0];
+  }
+
+  @Override
+  public User compute(String id, UnaryOperator<User> fn){
+    try {
+      return delegate.compute(id, old -> {
+        User next = fn.apply(old);
+        if(next != old) changed(old, next);
+        return next;
+      });
+    } finally { committed(); }
+  }
+
+  @Override
+  public User computeIfPresent(String id, UnaryOperator<User> fn){
+    try {
+      return delegate.computeIfPresent(id, old -> {
+        User next = fn.apply(old);
+        if(next != old) changed(old, next);
+        return next;
+      });
+    } finally { committed(); }
+  }
+
+  private void changed(User old, User next){
+    index.update(old, next);
+    for(UserChangeListener l : listeners) l.changed(old, next);
+  }
+
+  private void committed(){
+    for(UserChangeListener l : listeners) l.committed();
+  }
+}
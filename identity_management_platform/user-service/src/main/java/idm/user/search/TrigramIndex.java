@@ -0,0 +1,244 @@
+package idm.user.search;
+
+import idm.user.v1.User;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Trigram index over {@code userName}, {@code givenName}, {@code familyName} and {@code emails} for ranked
+ * free-text search ("jon smi"). Text is lowercased and split into words of letters and digits; each word is padded
+ * as in pg_trgm ({@code "  john "}) and cut into trigrams. Query words drop the trailing pad, so they also match as
+ * word prefixes. A user's score is the fraction of the query's trigrams it has; ties go to users with fewer
+ * trigrams overall (a closer, shorter record).
+ *
+ * <p>Posting lists are roaring-style per 64K block of ordinals: a sorted {@code char[]} while small, an in-place
+ * {@link AtomicLongArray} bitmap once dense. Arrays are copied on write, except that appends (new ordinals) fill
+ * spare capacity and publish a longer view of the same array. Writers to one trigram serialize on its
+ * list; readers never lock. {@link #update} is driven by {@link UserIndex} under the per-id ordering guarantee.
+ */
+public class TrigramIndex {
+  public static final float DEFAULT_THRESHOLD = 0.5f;
+  private static final int ARRAY_MAX = 4096;
+  private static final int SIZE_PAGE_SHIFT = 14;
+  private static final Postings EMPTY = new Postings();
+
+  /** Matching ordinals best first with their scores, cut to the requested limit; {@code total} counts all matches. */
+  public record Ranking(int[] ordinals, float[] scores, int total) {}
+
+  private final Map<Long, Postings> postings = new ConcurrentHashMap<>();
+  // Distinct trigrams per ordinal, the tie-break
+  private final AtomicReferenceArray<AtomicIntegerArray> sizes = new AtomicReferenceArray<>(1 << (31 - SIZE_PAGE_SHIFT));
+
+  void update(int ord, User old, User next){
+    Set<Long> before = old == null ? Set.of() : trigrams(old);
+    Set<Long> after = next == null ? Set.of() : trigrams(next);
+    for(long t : after) if(!before.contains(t)) postings.computeIfAbsent(t, k -> new Postings()).add(ord);
+    for(long t : before) if(!after.contains(t)) postings.getOrDefault(t, EMPTY).remove(ord);
+    sizePage(ord).set(ord & ((1 << SIZE_PAGE_SHIFT) - 1), after.size());
+  }
+
+  /**
+   * Ordinals sharing at least {@code threshold} of the query's trigrams, best {@code limit} first. Every match is
+   * in one of the {@code T - need + 1} shortest posting lists (T query trigrams, {@code need} required), so only
+   * those are scanned; the rest are probed per candidate.
+   */
+  public Ranking search(String query, float threshold, int limit){
+    long[] q = queryTrigrams(query);
+    if(q.length == 0) throw new IllegalArgumentException("Query has no letters or digits: "+query);
+    int need = Math.max(1, (int) Math.ceil(threshold * q.length - 1e-6));
+    Postings[] lists = new Postings[q.length];
+    for(int i = 0; i < q.length; i++) lists[i] = postings.getOrDefault(q[i], EMPTY);
+    Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+    long[][] keys = {new long[64]};
+    int[] n = {0};
+    for(int i = 0; i <= q.length - need; i++){
+      int first = i;
+      lists[i].forEach(ord -> {
+        // Already counted from a shorter list
+        for(int j = 0; j < first; j++) if(lists[j].contains(ord)) return;
+        int matched = 1;
+        for(int j = first + 1; j < lists.length && matched + lists.length - j >= need; j++) if(lists[j].contains(ord)) matched++;
+        if(matched < need) return;
+        if(n[0] == keys[0].length) keys[0] = Arrays.copyOf(keys[0], n[0] * 2);
+        keys[0][n[0]++] = (long) matched << 47 | (long) (0xFFFF - Math.min(0xFFFF, size(ord))) << 31 | (Integer.MAX_VALUE - ord);
+      });
+    }
+    long[] sorted = Arrays.copyOf(keys[0], n[0]);
+    Arrays.sort(sorted);
+    int out = Math.min(limit, sorted.length);
+    int[] ordinals = new int[out];
+    float[] scores = new float[out];
+    for(int i = 0; i < out; i++){
+      long key = sorted[sorted.length - 1 - i];
+      ordinals[i] = Integer.MAX_VALUE - (int) (key & Integer.MAX_VALUE);
+      scores[i] = (float) (key >>> 47) / q.length;
+    }
+    return new Ranking(ordinals, scores, sorted.length);
+  }
+
+  /** Exact score of {@code user} for {@code query}, to re-check a ranked match against the current record. */
+  public static float score(String query, User user){
+    long[] q = queryTrigrams(query);
+    if(q.length == 0) return 0;
+    Set<Long> has = trigrams(user);
+    int matched = 0;
+    for(long t : q) if(has.contains(t)) matched++;
+    return (float) matched / q.length;
+  }
+
+  static Set<Long> trigrams(User u){
+    Set<Long> out = new HashSet<>();
+    add(u.getUserName(), false, out);
+    add(u.getGivenName(), false, out);
+    add(u.getFamilyName(), false, out);
+    for(String email : u.getEmailsList()) add(email, false, out);
+    return out;
+  }
+
+  static long[] queryTrigrams(String query){
+    Set<Long> out = new HashSet<>();
+    add(query, true, out);
+    return out.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  private static void add(String text, boolean prefix, Set<Long> out){
+    int i = 0;
+    while(i < text.length()){
+      while(i < text.length() && !Character.isLetterOrDigit(text.charAt(i))) i++;
+      int start = i;
+      while(i < text.length() && Character.isLetterOrDigit(text.charAt(i))) i++;
+      if(i == start) break;
+      // "  word " as in pg_trgm; a query word leaves off the trailing space
+      long a = ' ', b = ' ';
+      for(int k = start; k <= i; k++){
+        long c = k < i ? Character.toLowerCase(text.charAt(k)) : ' ';
+        if(k == i && prefix) break;
+        out.add(a << 32 | b << 16 | c);
+        a = b;
+        b = c;
+      }
+    }
+  }
+
+  private int size(int ord){
+    AtomicIntegerArray page = sizes.get(ord >>> SIZE_PAGE_SHIFT);
+    return page == null ? 0 : page.get(ord & ((1 << SIZE_PAGE_SHIFT) - 1));
+  }
+
+  private AtomicIntegerArray sizePage(int ord){
+    int index = ord >>> SIZE_PAGE_SHIFT;
+    AtomicIntegerArray page = sizes.get(index);
+    if(page == null){
+      sizes.compareAndSet(index, null, new AtomicIntegerArray(1 << SIZE_PAGE_SHIFT));
+      page = sizes.get(index);
+    }
+    return page;
+  }
+
+  /** One trigram's ordinals: per 64K block, a {@link Sorted} array view or an in-place bitmap. */
+  private static final class Postings {
+    private volatile AtomicReferenceArray<Object> blocks = new AtomicReferenceArray<>(0);
+    private volatile int size;
+
+    synchronized void add(int ord){
+      int b = ord >>> 16;
+      char low = (char) ord;
+      AtomicReferenceArray<Object> bs = blocks;
+      if(b >= bs.length()){
+        AtomicReferenceArray<Object> grown = new AtomicReferenceArray<>(b + 1);
+        for(int i = 0; i < bs.length(); i++) grown.set(i, bs.get(i));
+        blocks = bs = grown;
+      }
+      Object block = bs.get(b);
+      if(block instanceof AtomicLongArray words){
+        long bit = 1L << low, w = words.get(low >>> 6);
+        if((w & bit) != 0) return;
+        words.set(low >>> 6, w | bit);
+      } else {
+        Sorted sorted = block == null ? Sorted.EMPTY : (Sorted) block;
+        int at = sorted.find(low);
+        if(at >= 0) return;
+        at = -at - 1;
+        if(sorted.n >= ARRAY_MAX){
+          AtomicLongArray words = new AtomicLongArray(1024);
+          for(int i = 0; i < sorted.n; i++) words.set(sorted.values[i] >>> 6, words.get(sorted.values[i] >>> 6) | 1L << sorted.values[i]);
+          words.set(low >>> 6, words.get(low >>> 6) | 1L << low);
+          bs.set(b, words);
+        } else if(at == sorted.n && sorted.n < sorted.values.length){
+          // Appending (new ordinals are usually the highest): the slot is past every reader's n
+          sorted.values[at] = low;
+          bs.set(b, new Sorted(sorted.values, sorted.n + 1));
+        } else {
+          char[] grown = new char[Math.min(ARRAY_MAX, Math.max(4, sorted.n * 2))];
+          System.arraycopy(sorted.values, 0, grown, 0, at);
+          grown[at] = low;
+          System.arraycopy(sorted.values, at, grown, at + 1, sorted.n - at);
+          bs.set(b, new Sorted(grown, sorted.n + 1));
+        }
+      }
+      size++;
+    }
+
+    synchronized void remove(int ord){
+      int b = ord >>> 16;
+      char low = (char) ord;
+      AtomicReferenceArray<Object> bs = blocks;
+      Object block = b < bs.length() ? bs.get(b) : null;
+      if(block instanceof AtomicLongArray words){
+        long bit = 1L << low, w = words.get(low >>> 6);
+        if((w & bit) == 0) return;
+        words.set(low >>> 6, w & ~bit);
+      } else if(block != null){
+        Sorted sorted = (Sorted) block;
+        int at = sorted.find(low);
+        if(at < 0) return;
+        // A fresh array, so later appends cannot write into slots older readers still see
+        char[] shrunk = new char[sorted.values.length];
+        System.arraycopy(sorted.values, 0, shrunk, 0, at);
+        System.arraycopy(sorted.values, at + 1, shrunk, at, sorted.n - at - 1);
+        bs.set(b, new Sorted(shrunk, sorted.n - 1));
+      } else {
+        return;
+      }
+      size--;
+    }
+
+    boolean contains(int ord){
+      AtomicReferenceArray<Object> bs = blocks;
+      int b = ord >>> 16;
+      Object block = b < bs.length() ? bs.get(b) : null;
+      if(block instanceof AtomicLongArray words) return (words.get((char) ord >>> 6) & 1L << (char) ord) != 0;
+      return block != null && ((Sorted) block).find((char) ord) >= 0;
+    }
+
+    void forEach(IntConsumer action){
+      AtomicReferenceArray<Object> bs = blocks;
+      for(int b = 0; b < bs.length(); b++){
+        Object block = bs.get(b);
+        int high = b << 16;
+        if(block instanceof AtomicLongArray words){
+          for(int i = 0; i < words.length(); i++)
+            for(long w = words.get(i); w != 0; w &= w - 1) action.accept(high | i << 6 | Long.numberOfTrailingZeros(w));
+        } else if(block != null){
+          Sorted sorted = (Sorted) block;
+          for(int i = 0; i < sorted.n; i++) action.accept(high | sorted.values[i]);
+        }
+      }
+    }
+  }
+
+  /** The first {@code n} values of {@code values}, sorted; slots past {@code n} are the writer's to append into. */
+  private record Sorted(char[] values, int n) {
+    static final Sorted EMPTY = new Sorted(new char[0], 0);
+
+    int find(char low){ return Arrays.binarySearch(values, 0, n, low); }
+  }
+}
@@ -0,0 +1,174 @@
+package idm.user.search;
+
+import idm.user.v1.User;
+
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Secondary indexes for {@link Filter} planning. Every user gets a dense int ordinal; {@code userName},
+ * {@code familyName} and {@code emails} are kept in sorted (term, ordinal) sets for eq/prefix lookups and
+ * {@code active} in a bitmap, and a {@link TrigramIndex} covers free-text queries. Readers never lock;
+ * {@link #update} must be called with a per-id guarantee of ordering, which {@link IndexedUserStore} gets from the store's atomic compute.
+ */
+public class UserIndex {
+  private static final int ID_PAGE_SHIFT = 14;
+
+  record Posting(String term, int ordinal) {}
+  private static final Comparator<Posting> ORDER = Comparator.comparing(Posting::term).thenComparingInt(Posting::ordinal);
+
+  /** Candidate ordinals for a filter ({@code null} bits means a full scan is required) and a readable plan. */
+  public record Plan(BitSet bits, String description) {}
+  private static final Plan SCAN = new Plan(null, "scan");
+
+  private final Map<Filter.Attr, NavigableSet<Posting>> sorted = new EnumMap<>(Filter.Attr.class);
+  private final ConcurrentBitSet live = new ConcurrentBitSet();
+  private final ConcurrentBitSet active = new ConcurrentBitSet();
+  private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+  private final AtomicReferenceArray<AtomicReferenceArray<String>> ids = new AtomicReferenceArray<>(1 << (31 - ID_PAGE_SHIFT));
+  private final ConcurrentLinkedQueue<Integer> freeOrdinals = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger nextOrdinal = new AtomicInteger();
+  private final TrigramIndex text = new TrigramIndex();
+
+  public UserIndex(){
+    for(Filter.Attr attr : List.of(Filter.Attr.USER_NAME, Filter.Attr.FAMILY_NAME, Filter.Attr.EMAILS))
+      sorted.put(attr, new ConcurrentSkipListSet<>(ORDER));
+  }
+
+  public TrigramIndex text(){ return text; }
+
+  /** Moves the index from {@code old} to {@code next} (either may be null) for a single user id. */
+  public void update(User old, User next){
+    if(next == null){
+      if(old == null) return;
+      Integer ord = ordinals.remove(old.getId());
+      if(ord == null) return;
+      live.clear(ord);
+      active.clear(ord);
+      for(var e : sorted.entrySet()) for(String t : terms(e.getKey(), old)) e.getValue().remove(new Posting(t, ord));
+      text.update(ord, old, null);
+      idPage(ord).set(ord & ((1 << ID_PAGE_SHIFT) - 1), null);
+      freeOrdinals.add(ord);
+      return;
+    }
+    int ord = ordinals.computeIfAbsent(next.getId(), this::allocate);
+    // Add new terms before dropping stale ones so concurrent searches never miss a live user.
+    for(var e : sorted.entrySet()){
+      Set<String> before = old == null ? Set.of() : terms(e.getKey(), old);
+      Set<String> after = terms(e.getKey(), next);
+      for(String t : after) if(!before.contains(t)) e.getValue().add(new Posting(t, ord));
+      for(String t : before) if(!after.contains(t)) e.getValue().remove(new Posting(t, ord));
+    }
+    text.update(ord, old, next);
+    if(next.getActive()) active.set(ord); else active.clear(ord);
+    live.set(ord);
+  }
+
+  public String id(int ordinal){
+    AtomicReferenceArray<String> page = ids.get(ordinal >>> ID_PAGE_SHIFT);
+    return page == null ? null : page.get(ordinal & ((1 << ID_PAGE_SHIFT) - 1));
+  }
+
+  public Plan plan(Filter filter){
+    if(filter instanceof Filter.Compare c) return compare(c);
+    if(filter instanceof Filter.Present p) return present(p.attr());
+    if(filter instanceof Filter.And a){
+      Plan l = plan(a.left()), r = plan(a.right());
+      if(l.bits() == null && r.bits() == null) return SCAN;
+      if(l.bits() == null) return new Plan(r.bits(), "and("+r.description()+", residual)");
+      if(r.bits() == null) return new Plan(l.bits(), "and("+l.description()+", residual)");
+      BitSet bits = (BitSet) l.bits().clone();
+      bits.and(r.bits());
+      return new Plan(bits, "and("+l.description()+", "+r.description()+")");
+    }
+    Filter.Or o = (Filter.Or) filter;
+    Plan l = plan(o.left()), r = plan(o.right());
+    if(l.bits() == null || r.bits() == null) return SCAN;
+    BitSet bits = (BitSet) l.bits().clone();
+    bits.or(r.bits());
+    return new Plan(bits, "or("+l.description()+", "+r.description()+")");
+  }
+
+  private Plan compare(Filter.Compare c){
+    if(c.attr() == Filter.Attr.ACTIVE && c.op() == Filter.Op.EQ){
+      BitSet bits = active.snapshot();
+      if(c.value().equals("false")){
+        BitSet all = live.snapshot();
+        all.andNot(bits);
+        bits = all;
+      } else if(!c.value().equals("true")) bits = new BitSet();
+      return new Plan(bits, "bitmap(active)");
+    }
+    if(c.attr() == Filter.Attr.ID && c.op() == Filter.Op.EQ){
+      // id is caseExact: the filter value keeps its case, like the ordinal keys
+      BitSet bits = new BitSet();
+      Integer ord = ordinals.get(c.value());
+      if(ord != null) bits.set(ord);
+      return new Plan(bits, "key(id)");
+    }
+    NavigableSet<Posting> index = sorted.get(c.attr());
+    if(index == null) return SCAN;
+    BitSet bits = new BitSet();
+    String name = c.attr().name();
+    switch(c.op()){
+      case EQ:
+        for(Posting p : range(index, c.value(), c.value() + '\0')) bits.set(p.ordinal());
+        return new Plan(bits, "eq("+name+")");
+      case SW:
+        for(Posting p : range(index, c.value(), c.value() + Character.MAX_VALUE)) bits.set(p.ordinal());
+        return new Plan(bits, "prefix("+name+")");
+      default:
+        // No substring structure: scanning the distinct terms is still far cheaper than decoding users.
+        for(Posting p : index) if(p.term().contains(c.value())) bits.set(p.ordinal());
+        return new Plan(bits, "termscan("+name+")");
+    }
+  }
+
+  private Plan present(Filter.Attr attr){
+    if(attr == Filter.Attr.ACTIVE || attr == Filter.Attr.ID) return new Plan(live.snapshot(), "bitmap(live)");
+    NavigableSet<Posting> index = sorted.get(attr);
+    if(index == null) return SCAN;
+    BitSet bits = new BitSet();
+    for(Posting p : index) bits.set(p.ordinal());
+    return new Plan(bits, "present("+attr.name()+")");
+  }
+
+  private static NavigableSet<Posting> range(NavigableSet<Posting> index, String from, String to){
+    return index.subSet(new Posting(from, Integer.MIN_VALUE), true, new Posting(to, Integer.MIN_VALUE), false);
+  }
+
+  private static Set<String> terms(Filter.Attr attr, User u){
+    Set<String> out = new HashSet<>();
+    for(String v : attr.values(u)) if(!v.isEmpty()) out.add(v.toLowerCase(Locale.ROOT));
+    return out;
+  }
+
+  private int allocate(String id){
+    Integer reused = freeOrdinals.poll();
+    int ord = reused != null ? reused : nextOrdinal.getAndIncrement();
+    idPage(ord).set(ord & ((1 << ID_PAGE_SHIFT) - 1), id);
+    return ord;
+  }
+
+  private AtomicReferenceArray<String> idPage(int ord){
+    int index = ord >>> ID_PAGE_SHIFT;
+    AtomicReferenceArray<String> page = ids.get(index);
+    if(page == null){
+      ids.compareAndSet(index, null, new AtomicReferenceArray<>(1 << ID_PAGE_SHIFT));
+      page = ids.get(index);
+    }
+    return page;
+  }
+}
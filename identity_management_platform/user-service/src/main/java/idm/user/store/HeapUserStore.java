@@ -0,0 +1,23 @@
+package idm.user.store;
+
+import idm.user.v1.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/** Default store: one protobuf {@link User} object graph per entry on the Java heap. */
+public class HeapUserStore implements UserStore {
+  private final Map<String, User> map = new ConcurrentHashMap<>();
+
+  @Override public User get(String id){ return map.get(id); }
+  @Override public void put(User user){ map.put(user.getId(), user); }
+  @Override public boolean containsKey(String id){ return map.containsKey(id); }
+  @Override public boolean remove(String id){ return map.remove(id) != null; }
+  @Override public User compute(String id, UnaryOperator<User> fn){ return map.compute(id, (k, v) -> fn.apply(v)); }
+  @Override public User computeIfPresent(String id, UnaryOperator<User> fn){ return map.computeIfPresent(id, (k, v) -> fn.apply(v)); }
+  @Override public List<User> values(){ return new ArrayList<>(map.values()); }
+  @Override public int size(){ return map.size(); }
+}
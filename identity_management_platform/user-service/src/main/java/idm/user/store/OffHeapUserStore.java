@@ -0,0 +1,312 @@
+package idm.user.store;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import idm.user.v1.User;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Keeps users as serialized protobuf bytes in direct (off-heap) slabs, so the heap only holds two
+ * primitive arrays for the id index no matter how many users are stored. Users are decoded on read, except
+ * through {@link #getSerialized}, which hands out a read-only view of the stored bytes.
+ *
+ * <p>Record layout: {@code [int userLen][short idLen][id utf8][user proto]}. Updates append a new
+ * record and leave the old one as garbage; slabs are compacted once garbage outweighs live data.
+ *
+ * <p>One read-write lock guards the whole store. Every write, including the function passed to {@link #compute} or
+ * {@link #computeIfPresent}, runs under its write lock, so writes are serialized and readers wait for them; keep
+ * compute functions short.
+ */
+public class OffHeapUserStore implements UserStore {
+  public static final int DEFAULT_SLAB_SIZE = 64 << 20;
+  private static final long EMPTY = -1L;
+  private static final int HEADER = Integer.BYTES + Short.BYTES;
+
+  private final int slabSize;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private List<ByteBuffer> slabs = new ArrayList<>();
+  private ByteBuffer current;
+  private int writeOffset;
+  // Open-addressing index (linear probing): hashes[i] is the id hash, locs[i] is slab<<32|offset.
+  private int[] hashes;
+  private long[] locs;
+  private int size;
+  private long appendedBytes, deadBytes;
+
+  public OffHeapUserStore(){ this(DEFAULT_SLAB_SIZE); }
+
+  public OffHeapUserStore(int slabSize){
+    if(slabSize < 1024) throw new IllegalArgumentException("slabSize must be at least 1024 bytes");
+    this.slabSize = slabSize;
+    this.hashes = new int[1024];
+    this.locs = new long[1024];
+    Arrays.fill(locs, EMPTY);
+  }
+
+  @Override
+  public User get(String id){
+    byte[] key = id.getBytes(StandardCharsets.UTF_8);
+    lock.readLock().lock();
+    try {
+      int slot = find(key, hash(id));
+      return slot < 0 ? null : decode(locs[slot]);
+    } finally { lock.readLock().unlock(); }
+  }
+
+  // Records are never written over (updates append, compaction copies into new slabs), so the view stays valid
+  @Override
+  public ByteBuffer getSerialized(String id){
+    byte[] key = id.getBytes(StandardCharsets.UTF_8);
+    lock.readLock().lock();
+    try {
+      int slot = find(key, hash(id));
+      if(slot < 0) return null;
+      ByteBuffer slab = slab(locs[slot]);
+      int off = (int) locs[slot];
+      return slab.slice(off + HEADER + slab.getShort(off + Integer.BYTES), slab.getInt(off)).asReadOnlyBuffer();
+    } finally { lock.readLock().unlock(); }
+  }
+
+  @Override
+  public void put(User user){
+    byte[] key = storableKey(user.getId());
+    int hash = hash(user.getId());
+    lock.writeLock().lock();
+    try {
+      long loc = append(key, user);
+      int slot = find(key, hash);
+      if(slot >= 0){
+        deadBytes += recordSize(locs[slot]);
+        locs[slot] = loc;
+      } else {
+        insert(hash, loc);
+        if(++size * 3 >= locs.length * 2) resize();
+      }
+      maybeCompact();
+    } finally { lock.writeLock().unlock(); }
+  }
+
+  @Override
+  public boolean containsKey(String id){
+    byte[] key = id.getBytes(StandardCharsets.UTF_8);
+    lock.readLock().lock();
+    try { return find(key, hash(id)) >= 0; } finally { lock.readLock().unlock(); }
+  }
+
+  @Override
+  public boolean remove(String id){
+    byte[] key = id.getBytes(StandardCharsets.UTF_8);
+    lock.writeLock().lock();
+    try {
+      int slot = find(key, hash(id));
+      if(slot < 0) return false;
+      deadBytes += recordSize(locs[slot]);
+      deleteSlot(slot);
+      size--;
+      maybeCompact();
+      return true;
+    } finally { lock.writeLock().unlock(); }
+  }
+
+  @Override
+  public User compute(String id, UnaryOperator<User> fn){
+    // Reject ids put() cannot store before fn runs, so callers never see a create that is then thrown away.
+    byte[] key = storableKey(id);
+    lock.writeLock().lock();
+    try {
+      if(find(key, hash(id)) >= 0) return computeIfPresent(id, fn);
+      User created = fn.apply(null);
+      if(created == null) return null;
+      if(!created.getId().equals(id)) throw new IllegalArgumentException("compute must not change the user id");
+      put(created);
+      return created;
+    } finally { lock.writeLock().unlock(); }
+  }
+
+  @Override
+  public User computeIfPresent(String id, UnaryOperator<User> fn){
+    byte[] key = id.getBytes(StandardCharsets.UTF_8);
+    lock.writeLock().lock();
+    try {
+      int slot = find(key, hash(id));
+      if(slot < 0) return null;
+      User current = decode(locs[slot]);
+      User next = fn.apply(current);
+      if(next == current) return current;
+      if(next != null && !next.getId().equals(id)) throw new IllegalArgumentException("computeIfPresent must not change the user id");
+      deadBytes += recordSize(locs[slot]);
+      if(next == null){
+        deleteSlot(slot);
+        size--;
+      } else {
+        locs[slot] = append(key, next);
+      }
+      maybeCompact();
+      return next;
+    } finally { lock.writeLock().unlock(); }
+  }
+
+  @Override
+  public List<User> values(){
+    lock.readLock().lock();
+    try {
+      List<User> out = new ArrayList<>(size);
+      for(long loc : locs) if(loc != EMPTY) out.add(decode(loc));
+      return out;
+    } finally { lock.readLock().unlock(); }
+  }
+
+  @Override
+  public int size(){
+    lock.readLock().lock();
+    try { return size; } finally { lock.readLock().unlock(); }
+  }
+
+  /** Total direct memory currently reserved by slabs. */
+  public long offHeapBytes(){
+    lock.readLock().lock();
+    try {
+      long total = 0;
+      for(ByteBuffer slab : slabs) total += slab.capacity();
+      return total;
+    } finally { lock.readLock().unlock(); }
+  }
+
+  private static byte[] storableKey(String id){
+    byte[] key = id.getBytes(StandardCharsets.UTF_8);
+    if(key.length > Short.MAX_VALUE) throw new IllegalArgumentException("User id too long");
+    return key;
+  }
+
+  private static int hash(String id){
+    int h = id.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private int find(byte[] key, int hash){
+    int mask = locs.length - 1;
+    for(int i = hash & mask; ; i = (i + 1) & mask){
+      long loc = locs[i];
+      if(loc == EMPTY) return -1;
+      if(hashes[i] == hash && idEquals(loc, key)) return i;
+    }
+  }
+
+  private void insert(int hash, long loc){
+    int mask = locs.length - 1;
+    int i = hash & mask;
+    while(locs[i] != EMPTY) i = (i + 1) & mask;
+    hashes[i] = hash;
+    locs[i] = loc;
+  }
+
+  // Backward-shift deletion keeps probe chains intact without tombstones.
+  private void deleteSlot(int slot){
+    int mask = locs.length - 1;
+    int hole = slot;
+    for(int j = (hole + 1) & mask; locs[j] != EMPTY; j = (j + 1) & mask){
+      int home = hashes[j] & mask;
+      boolean reachable = hole <= j ? (hole < home && home <= j) : (hole < home || home <= j);
+      if(reachable) continue;
+      hashes[hole] = hashes[j];
+      locs[hole] = locs[j];
+      hole = j;
+    }
+    locs[hole] = EMPTY;
+  }
+
+  private void resize(){
+    int[] oldHashes = hashes;
+    long[] oldLocs = locs;
+    hashes = new int[oldLocs.length * 2];
+    locs = new long[oldLocs.length * 2];
+    Arrays.fill(locs, EMPTY);
+    for(int i = 0; i < oldLocs.length; i++) if(oldLocs[i] != EMPTY) insert(oldHashes[i], oldLocs[i]);
+  }
+
+  private long append(byte[] key, User user){
+    int userLen = user.getSerializedSize();
+    int need = HEADER + key.length + userLen;
+    long loc = reserve(need);
+    int off = (int) loc;
+    current.putInt(off, userLen);
+    current.putShort(off + Integer.BYTES, (short) key.length);
+    current.put(off + HEADER, key);
+    try {
+      CodedOutputStream out = CodedOutputStream.newInstance(current.slice(off + HEADER + key.length, userLen));
+      user.writeTo(out);
+      out.flush();
+    } catch (IOException e){ throw new UncheckedIOException(e); }
+    appendedBytes += need;
+    return loc;
+  }
+
+  private long reserve(int need){
+    if(current == null || writeOffset + need > current.capacity()){
+      current = ByteBuffer.allocateDirect(Math.max(slabSize, need));
+      slabs.add(current);
+      writeOffset = 0;
+    }
+    long loc = ((long) (slabs.size() - 1) << 32) | writeOffset;
+    writeOffset += need;
+    return loc;
+  }
+
+  private ByteBuffer slab(long loc){ return slabs.get((int) (loc >>> 32)); }
+
+  private int recordSize(long loc){
+    ByteBuffer slab = slab(loc);
+    int off = (int) loc;
+    return HEADER + slab.getShort(off + Integer.BYTES) + slab.getInt(off);
+  }
+
+  private boolean idEquals(long loc, byte[] key){
+    ByteBuffer slab = slab(loc);
+    int off = (int) loc;
+    return slab.getShort(off + Integer.BYTES) == key.length
+        && slab.slice(off + HEADER, key.length).equals(ByteBuffer.wrap(key));
+  }
+
+  // Parses straight from the direct buffer; no intermediate heap byte[] is materialized.
+  private User decode(long loc){
+    ByteBuffer slab = slab(loc);
+    int off = (int) loc;
+    int userLen = slab.getInt(off);
+    int idLen = slab.getShort(off + Integer.BYTES);
+    try {
+      return User.parseFrom(slab.slice(off + HEADER + idLen, userLen));
+    } catch (InvalidProtocolBufferException e){
+      throw new IllegalStateException("Corrupt user record at " + Long.toHexString(loc), e);
+    }
+  }
+
+  private void maybeCompact(){
+    if(deadBytes < slabSize || deadBytes * 2 < appendedBytes) return;
+    List<ByteBuffer> old = slabs;
+    slabs = new ArrayList<>();
+    current = null;
+    appendedBytes = 0;
+    deadBytes = 0;
+    for(int i = 0; i < locs.length; i++){
+      long loc = locs[i];
+      if(loc == EMPTY) continue;
+      ByteBuffer src = old.get((int) (loc >>> 32));
+      int off = (int) loc;
+      int len = HEADER + src.getShort(off + Integer.BYTES) + src.getInt(off);
+      long moved = reserve(len);
+      current.put((int) moved, src, off, len);
+      appendedBytes += len;
+      locs[i] = moved;
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package idm.user.store;
+
+import idm.user.v1.User;
+
+/**
+ * Observes a single-id change from {@code old} to {@code next} (null old: created, null next: removed).
+ * Called inside the store's atomic per-id compute, so changes to one id arrive in order; keep it short.
+ */
+@FunctionalInterface
+public interface UserChangeListener {
+  void changed(User old, User next);
+
+  /**
+   * Called on the same thread once the compute that last called {@link #changed} on it has returned, so its write
+   * is visible to store readers. Also called after computes that changed nothing.
+   */
+  default void committed(){}
+}
@@ -0,0 +1,32 @@
+package idm.user.store;
+
+import idm.user.v1.User;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/** Backing storage for {@code UserServiceImpl}; implementations must be safe for concurrent use. */
+public interface UserStore {
+  User get(String id);
+  /**
+   * The user's protobuf encoding, or null when absent. The default encodes {@link #get}; stores that keep users
+   * serialized return their stored bytes without decoding them.
+   */
+  default ByteBuffer getSerialized(String id){
+    User user = get(id);
+    return user == null ? null : ByteBuffer.wrap(user.toByteArray());
+  }
+  void put(User user);
+  boolean containsKey(String id);
+  boolean remove(String id);
+  /** Atomically replaces the user with {@code fn(current)}, where {@code current} may be null; a null result removes it. */
+  User compute(String id, UnaryOperator<User> fn);
+  /**
+   * Atomically replaces the user with {@code fn(current)}, or removes it if {@code fn} returns null.
+   * Does nothing and returns null when absent; an exception thrown by {@code fn} leaves the entry untouched.
+   */
+  User computeIfPresent(String id, UnaryOperator<User> fn);
+  List<User> values();
+  int size();
+}
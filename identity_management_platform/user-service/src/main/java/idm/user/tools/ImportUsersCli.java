@@ -0,0 +1,167 @@
+package idm.user.tools;
+
+import idm.user.v1.ImportError;
+import idm.user.v1.ImportUsersRequest;
+import idm.user.v1.ImportUsersResponse;
+import idm.user.v1.UserServiceGrpc;
+import io.grpc.Channel;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk-loads users from a CSV or NDJSON file (see {@link UserFileReader}) over the client-streaming ImportUsers
+ * RPC, sending batches only as fast as the server's flow control takes them. Progress goes to stderr once a
+ * second; the summary and per-row errors go to stdout, and the exit status is 1 if any row failed.
+ *
+ * <pre>
+ * java -cp user-service.jar -Dloader.main=idm.user.tools.ImportUsersCli \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     [--target localhost:8083] [--batch 1000] [--format csv|ndjson] users.csv
+ * </pre>
+ */
+public final class ImportUsersCli {
+  public static final int DEFAULT_BATCH = 1_000;
+  // Well under gRPC's default 4 MiB inbound message limit
+  static final int MAX_BATCH_BYTES = 1 << 20;
+  static final int MAX_ERRORS = 1_000;
+  private static final long PROGRESS_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private ImportUsersCli(){}
+
+  public static void main(String[] args) throws Exception {
+    String target = "localhost:8083";
+    int batch = DEFAULT_BATCH;
+    UserFileReader.Format format = null;
+    Path file = null;
+    for(int i = 0; i < args.length; i++){
+      switch(args[i]){
+        case "--target": target = args[++i]; break;
+        case "--batch": batch = Integer.parseInt(args[++i]); break;
+        case "--format": format = UserFileReader.Format.valueOf(args[++i].toUpperCase()); break;
+        default: file = Path.of(args[i]);
+      }
+    }
+    if(file == null){
+      System.err.println("usage: ImportUsersCli [--target host:port] [--batch n] [--format csv|ndjson] FILE");
+      System.exit(2);
+    }
+    ManagedChannel channel = ManagedChannelBuilder.forTarget(target).usePlaintext().build();
+    ImportUsersResponse result;
+    try {
+      result = importFile(channel, file, format != null ? format : UserFileReader.Format.of(file), batch, System.err);
+    } catch (StatusRuntimeException e){
+      System.err.println("Import failed: "+e.getStatus());
+      System.exit(2);
+      return;
+    } finally {
+      channel.shutdownNow();
+    }
+    System.out.printf("received %,d, imported %,d, failed %,d%n", result.getReceived(), result.getImported(), result.getFailed());
+    for(ImportError e : result.getErrorsList())
+      System.out.println("row "+e.getRow()+(e.getId().isEmpty() ? "" : " ("+e.getId()+")")+": "+e.getMessage());
+    if(result.getFailed() > result.getErrorsCount()) System.out.println("... "+(result.getFailed() - result.getErrorsCount())+" more");
+    System.exit(result.getFailed() > 0 ? 1 : 0);
+  }
+
+  /**
+   * Streams every row of {@code file} to ImportUsers in batches of up to {@code batchSize} users, and returns the
+   * server's result with rows the file itself could not parse counted in as failures. {@code progress} may be null.
+   */
+  public static ImportUsersResponse importFile(Channel channel, Path file, UserFileReader.Format format, int batchSize,
+                                               PrintStream progress) throws IOException, InterruptedException {
+    Upload upload = new Upload();
+    UserServiceGrpc.newStub(channel).importUsers(upload);
+    List<ImportError> unreadable = new ArrayList<>();
+    long rows = 0;
+    try (UserFileReader reader = new UserFileReader(file, format)){
+      ImportUsersRequest.Builder batch = ImportUsersRequest.newBuilder();
+      int batchBytes = 0;
+      long started = System.nanoTime(), reported = started;
+      for(UserFileReader.Row row; (row = reader.next()) != null; ){
+        rows++;
+        if(row.user() == null){
+          unreadable.add(ImportError.newBuilder().setRow(row.line()).setMessage(row.error()).build());
+          continue;
+        }
+        batch.addUsers(row.user()).addRows(row.line());
+        batchBytes += row.user().getSerializedSize();
+        if(batch.getUsersCount() >= batchSize || batchBytes >= MAX_BATCH_BYTES){
+          upload.send(batch.build());
+          batch.clear();
+          batchBytes = 0;
+          long now = System.nanoTime();
+          if(progress != null && now - reported >= PROGRESS_NANOS){
+            reported = now;
+            progress.printf("%,d rows  %.1f%%  %,.0f rows/s%n", rows, 100.0 * reader.position() / Math.max(1, reader.size()),
+                rows / ((now - started) / 1e9));
+          }
+        }
+      }
+      if(batch.getUsersCount() > 0) upload.send(batch.build());
+    } catch (IOException | RuntimeException | InterruptedException e){
+      upload.call.cancel("Import aborted", e);
+      throw e;
+    }
+    upload.call.onCompleted();
+    ImportUsersResponse server = upload.await();
+    if(unreadable.isEmpty()) return server;
+    List<ImportError> errors = new ArrayList<>(unreadable);
+    errors.addAll(server.getErrorsList());
+    errors.sort(Comparator.comparingLong(ImportError::getRow));
+    return server.toBuilder()
+        .setReceived(server.getReceived() + unreadable.size())
+        .setFailed(server.getFailed() + unreadable.size())
+        .clearErrors().addAllErrors(errors.subList(0, Math.min(MAX_ERRORS, errors.size())))
+        .build();
+  }
+
+  /** The request side of one ImportUsers call, blocking the sender while the transport is not ready. */
+  private static final class Upload implements ClientResponseObserver<ImportUsersRequest, ImportUsersResponse> {
+    private final CompletableFuture<ImportUsersResponse> done = new CompletableFuture<>();
+    private ClientCallStreamObserver<ImportUsersRequest> call;
+    private ImportUsersResponse response;
+
+    @Override
+    public void beforeStart(ClientCallStreamObserver<ImportUsersRequest> call){
+      this.call = call;
+      call.setOnReadyHandler(this::wake);
+    }
+
+    void send(ImportUsersRequest batch) throws InterruptedException {
+      synchronized(this){
+        while(!call.isReady() && !done.isDone()) wait();
+      }
+      // The server only answers early when the call failed
+      if(done.isDone()) await();
+      call.onNext(batch);
+    }
+
+    ImportUsersResponse await() throws InterruptedException {
+      try {
+        return done.get();
+      } catch (ExecutionException e){
+        if(e.getCause() instanceof StatusRuntimeException s) throw s;
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+
+    private synchronized void wake(){ notifyAll(); }
+
+    @Override public void onNext(ImportUsersResponse value){ response = value; }
+    @Override public void onError(Throwable t){ done.completeExceptionally(t); wake(); }
+    @Override public void onCompleted(){ done.complete(response); wake(); }
+  }
+}
@@ -0,0 +1,180 @@
+package idm.user.tools;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.util.JsonFormat;
+import idm.user.v1.User;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Reads users one line at a time from a CSV or newline-delimited JSON file through a read-only memory map, so a
+ * multi-gigabyte export is paged in by the OS instead of being copied through stream buffers. The file is mapped
+ * a window at a time; a line that runs past the end of a window is read again from a window starting at that line.
+ *
+ * <p>CSV starts with a header naming its columns, any of {@code id, userName, givenName, familyName, emails,
+ * active}; emails are separated by {@code ;} within their field. Fields may be double-quoted ({@code ""} for a
+ * quote) but may not span lines. NDJSON lines are {@link User} messages in protobuf JSON form. Blank lines are
+ * skipped; line numbers count every line, header included.
+ */
+public class UserFileReader implements AutoCloseable {
+  public enum Format {
+    CSV, NDJSON;
+
+    /** CSV for {@code *.csv}, otherwise NDJSON. */
+    public static Format of(Path file){
+      return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : NDJSON;
+    }
+  }
+
+  /** One non-blank line: the user it holds, or a null user and why the line could not be read. */
+  public record Row(long line, User user, String error) {}
+
+  static final long DEFAULT_WINDOW = 64L << 20;
+  private static final Set<String> COLUMNS = Set.of("id", "userName", "givenName", "familyName", "emails", "active");
+
+  private final FileChannel channel;
+  private final Format format;
+  private final long size;
+  private final long window;
+  private final JsonFormat.Parser json = JsonFormat.parser();
+  private MappedByteBuffer map;
+  private long mapStart;
+  private long position;
+  private long line;
+  private byte[] scratch = new byte[512];
+  private String[] header;
+
+  public UserFileReader(Path file, Format format) throws IOException { this(file, format, DEFAULT_WINDOW); }
+
+  UserFileReader(Path file, Format format, long window) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    this.format = format;
+    this.size = channel.size();
+    this.window = window;
+  }
+
+  public long size(){ return size; }
+  /** Bytes consumed so far, for progress reports. */
+  public long position(){ return position; }
+
+  /** The next non-blank line, or null at the end of the file; a malformed CSV header fails the whole file. */
+  public Row next() throws IOException {
+    while(true){
+      int length = nextLine();
+      if(length < 0) return null;
+      String text = new String(scratch, 0, length, StandardCharsets.UTF_8);
+      if(line == 1 && text.startsWith("\uFEFF")) text = text.substring(1);
+      if(text.isBlank()) continue;
+      if(format == Format.CSV && header == null){
+        header = header(text);
+        continue;
+      }
+      try {
+        return new Row(line, format == Format.CSV ? csv(text) : ndjson(text), null);
+      } catch (IllegalArgumentException | InvalidProtocolBufferException e){
+        return new Row(line, null, e.getMessage());
+      }
+    }
+  }
+
+  /** Copies the next line, without its terminator, into {@code scratch}; -1 at the end of the file. */
+  private int nextLine() throws IOException {
+    if(position >= size) return -1;
+    while(true){
+      if(map == null || position >= mapStart + map.limit()) remap();
+      int from = (int) (position - mapStart);
+      int end = from;
+      while(end < map.limit() && map.get(end) != '\n') end++;
+      boolean terminated = end < map.limit();
+      if(!terminated && mapStart + map.limit() < size){
+        if(from == 0) throw new IOException("Line "+(line + 1)+" is longer than "+window+" bytes");
+        remap();
+        continue;
+      }
+      int length = end - from;
+      if(length > 0 && map.get(end - 1) == '\r') length--;
+      if(scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+      map.get(from, scratch, 0, length);
+      position = mapStart + end + (terminated ? 1 : 0);
+      line++;
+      return length;
+    }
+  }
+
+  // Earlier windows are unmapped when collected; only the current one is referenced
+  private void remap() throws IOException {
+    mapStart = position;
+    map = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, Math.min(window, size - mapStart));
+  }
+
+  private static String[] header(String text) throws IOException {
+    List<String> names = fields(text);
+    for(String name : names) if(!COLUMNS.contains(name)) throw new IOException("Unknown CSV column: "+name);
+    return names.toArray(new String[0]);
+  }
+
+  private User csv(String text){
+    List<String> values = fields(text);
+    if(values.size() != header.length)
+      throw new IllegalArgumentException("Expected "+header.length+" fields, found "+values.size());
+    User.Builder b = User.newBuilder();
+    for(int i = 0; i < header.length; i++){
+      String v = values.get(i);
+      switch(header[i]){
+        case "id": b.setId(v); break;
+        case "userName": b.setUserName(v); break;
+        case "givenName": b.setGivenName(v); break;
+        case "familyName": b.setFamilyName(v); break;
+        case "emails":
+          for(String email : v.split(";")) if(!email.isBlank()) b.addEmails(email.strip());
+          break;
+        default:
+          if(v.equalsIgnoreCase("true")) b.setActive(true);
+          else if(!v.isEmpty() && !v.equalsIgnoreCase("false")) throw new IllegalArgumentException("active must be true or false: "+v);
+      }
+    }
+    return b.build();
+  }
+
+  private User ndjson(String text) throws InvalidProtocolBufferException {
+    User.Builder b = User.newBuilder();
+    json.merge(text, b);
+    return b.build();
+  }
+
+  static List<String> fields(String text){
+    List<String> out = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for(int i = 0; i < text.length(); i++){
+      char c = text.charAt(i);
+      if(quoted){
+        if(c != '"') field.append(c);
+        else if(i + 1 < text.length() && text.charAt(i + 1) == '"'){ field.append('"'); i++; }
+        else quoted = false;
+      } else if(c == '"' && field.length() == 0){
+        quoted = true;
+      } else if(c == ','){
+        out.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    if(quoted) throw new IllegalArgumentException("Unterminated quoted field");
+    out.add(field.toString());
+    return out;
+  }
+
+  @Override
+  public void close() throws IOException { channel.close(); }
+}
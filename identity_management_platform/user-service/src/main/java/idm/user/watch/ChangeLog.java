@@ -0,0 +1,239 @@
+package idm.user.watch;
+
+import idm.user.store.UserChangeListener;
+import idm.user.v1.User;
+import idm.user.v1.UserEvent;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-memory change feed: a ring buffer of the last {@code capacity} user changes, numbered from 1. Writers
+ * append inside the store's per-id compute, which fixes the order of changes to one id; the change is published,
+ * and {@link #head()} moves past it, only once {@link #committed()} reports the store write visible and every
+ * earlier change is published too. A reader that takes {@link #head()} before reading the store therefore sees
+ * every change up to it. Each watcher drains the ring up to the head at its own pace on a shared pool
+ * (respecting gRPC flow control), so a slow watcher never holds up writes. A watcher whose next sequence
+ * has been overwritten gets a RESYNC_REQUIRED event and continues from the head. Watchers that ask for
+ * heartbeats get a HEARTBEAT carrying the head sequence whenever they are caught up and the last one is at least
+ * that old; a ticker re-checks idle watchers so heartbeats keep flowing without writes.
+ */
+public class ChangeLog implements UserChangeListener, AutoCloseable {
+  public static final int DEFAULT_CAPACITY = 65_536;
+
+  static final class Entry {
+    private final long sequence;
+    private final UserEvent.Type type;
+    private final String id;
+    private final User user;
+    // Set once the store write is visible to readers
+    volatile boolean committed;
+
+    Entry(long sequence, UserEvent.Type type, String id, User user){
+      this.sequence = sequence;
+      this.type = type;
+      this.id = id;
+      this.user = user;
+    }
+
+    long sequence(){ return sequence; }
+    UserEvent.Type type(){ return type; }
+    String id(){ return id; }
+    User user(){ return user; }
+  }
+
+  private final long epoch = System.currentTimeMillis();
+  private final AtomicReferenceArray<Entry> ring;
+  private final int mask;
+  // Last sequence handed out (guarded by this), and the published head: every change up to it is in the store
+  private long assigned;
+  private volatile long head;
+  // The change this thread recorded in its current compute, until committed() publishes it
+  private final ThreadLocal<Entry> uncommitted = new ThreadLocal<>();
+  private volatile boolean closed;
+  private final Set<Watcher> watchers = new CopyOnWriteArraySet<>();
+  private final ExecutorService drainPool = Executors.newCachedThreadPool(r -> {
+    Thread t = new Thread(r, "user-watch");
+    t.setDaemon(true);
+    return t;
+  });
+  private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread t = new Thread(r, "user-watch-heartbeat");
+    t.setDaemon(true);
+    return t;
+  });
+
+  public ChangeLog(int capacity){
+    int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+    ring = new AtomicReferenceArray<>(size);
+    mask = size - 1;
+  }
+
+  public long epoch(){ return epoch; }
+  /**
+   * Sequence of the latest published change (0 before the first). Every change up to it is visible in the store,
+   * so a snapshot read after taking it covers it, and a watch from it misses nothing the snapshot lacks.
+   */
+  public long head(){ return head; }
+  /**
+   * Sequence of the latest change recorded, published or not: at least that of every write that has returned, so
+   * it is the position to wait for to read one's own writes.
+   */
+  public synchronized long assigned(){ return assigned; }
+  public int capacity(){ return mask + 1; }
+  public int watchers(){ return watchers.size(); }
+
+  @Override
+  public void changed(User old, User next){
+    UserEvent.Type type = old == null ? UserEvent.Type.CREATED : next == null ? UserEvent.Type.DELETED : UserEvent.Type.UPDATED;
+    String id = next != null ? next.getId() : old.getId();
+    Entry e;
+    synchronized(this){
+      e = new Entry(++assigned, type, id, next);
+      ring.set((int) e.sequence() & mask, e);
+    }
+    uncommitted.set(e);
+  }
+
+  @Override
+  public void committed(){
+    Entry e = uncommitted.get();
+    if(e == null) return;
+    uncommitted.remove();
+    e.committed = true;
+    long h;
+    synchronized(this){
+      h = head;
+      while(h < assigned){
+        Entry n = ring.get((int) (h + 1) & mask);
+        // An entry already overwritten by a later lap counts as published: watchers that far behind resync anyway
+        if(n.sequence() == h + 1 && !n.committed) break;
+        h++;
+      }
+      if(h == head) return;
+      head = h;
+    }
+    for(Watcher w : watchers) w.signal();
+  }
+
+  /** The entry with {@code sequence}, or null once it has been overwritten. */
+  Entry entry(long sequence){
+    Entry e = ring.get((int) sequence & mask);
+    return e != null && e.sequence() == sequence ? e : null;
+  }
+
+  /** Streams changes after {@code afterSequence} to {@code observer} until the call is cancelled. */
+  public void watch(long afterSequence, long clientEpoch, StreamObserver<UserEvent> observer){
+    watch(afterSequence, clientEpoch, 0, observer);
+  }
+
+  /** As {@link #watch(long, long, StreamObserver)}, with heartbeats every {@code heartbeatMillis} (0 for none). */
+  public void watch(long afterSequence, long clientEpoch, long heartbeatMillis, StreamObserver<UserEvent> observer){
+    boolean resync = (clientEpoch != 0 && clientEpoch != epoch) || afterSequence > assigned();
+    Watcher w = new Watcher(observer, resync ? -1 : afterSequence + 1, TimeUnit.MILLISECONDS.toNanos(Math.max(0, heartbeatMillis)));
+    watchers.add(w);
+    if(observer instanceof ServerCallStreamObserver<UserEvent> call){
+      call.setOnCancelHandler(() -> { w.cancelled = true; w.remove(); });
+      call.setOnReadyHandler(w::signal);
+    }
+    if(heartbeatMillis > 0 && !closed){
+      try { w.tick = ticker.scheduleAtFixedRate(w::signal, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS); }
+      catch (RejectedExecutionException e){ /* closing: the stream is about to be completed */ }
+    }
+    w.signal();
+  }
+
+  /** Completes every watch stream so a graceful server shutdown does not wait on them. */
+  @Override
+  public void close(){
+    closed = true;
+    for(Watcher w : watchers) w.signal();
+    drainPool.shutdown();
+    ticker.shutdownNow();
+  }
+
+  final class Watcher {
+    private final StreamObserver<UserEvent> observer;
+    private final AtomicInteger wip = new AtomicInteger();
+    // Next sequence to send; -1 forces a resync first
+    private long cursor;
+    private final long heartbeatNanos;
+    private long lastHeartbeat;
+    volatile ScheduledFuture<?> tick;
+    volatile boolean cancelled;
+
+    Watcher(StreamObserver<UserEvent> observer, long cursor, long heartbeatNanos){
+      this.observer = observer;
+      this.cursor = cursor;
+      this.heartbeatNanos = heartbeatNanos;
+      // so the first caught-up pass reports immediately
+      this.lastHeartbeat = System.nanoTime() - heartbeatNanos;
+    }
+
+    void remove(){
+      watchers.remove(this);
+      ScheduledFuture<?> t = tick;
+      if(t != null) t.cancel(false);
+    }
+
+    void signal(){
+      if(wip.getAndIncrement() != 0) return;
+      try { drainPool.execute(this::drain); }
+      catch (RejectedExecutionException e){ drain(); }
+    }
+
+    // Single drainer at a time: signals that arrive mid-drain bump wip and cause another pass.
+    private void drain(){
+      int missed = 1;
+      do {
+        try {
+          while(!cancelled && !closed && ready()){
+            long h = head;
+            if(cursor > h && cursor != -1){
+              long now = System.nanoTime();
+              if(heartbeatNanos > 0 && now - lastHeartbeat >= heartbeatNanos){
+                observer.onNext(UserEvent.newBuilder().setType(UserEvent.Type.HEARTBEAT).setSequence(h).setEpoch(epoch).build());
+                lastHeartbeat = now;
+              }
+              break;
+            }
+            Entry e = cursor == -1 ? null : entry(cursor);
+            if(e == null){
+              observer.onNext(UserEvent.newBuilder().setType(UserEvent.Type.RESYNC_REQUIRED).setSequence(h).setEpoch(epoch).build());
+              cursor = h + 1;
+              continue;
+            }
+            UserEvent.Builder event = UserEvent.newBuilder().setType(e.type()).setSequence(e.sequence()).setEpoch(epoch).setId(e.id());
+            if(e.user() != null) event.setUser(e.user());
+            observer.onNext(event.build());
+            cursor++;
+          }
+          if(closed && !cancelled){
+            cancelled = true;
+            remove();
+            observer.onCompleted();
+          }
+        } catch (RuntimeException ex){
+          // The call is gone (e.g. cancelled between ready() and onNext); stop feeding it.
+          cancelled = true;
+          remove();
+        }
+        missed = wip.addAndGet(-missed);
+      } while(missed != 0);
+    }
+
+    private boolean ready(){
+      return !(observer instanceof ServerCallStreamObserver<UserEvent> call) || call.isReady();
+    }
+  }
+}
@@ -1,12 +1,19 @@
 package idm.user;
 
+import idm.user.store.OffHeapUserStore;
+import com.google.protobuf.FieldMask;
 import idm.user.v1.*;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -82,4 +89,217 @@ class UserServiceImplTest {
         .singleElement()
         .isInstanceOf(NoSuchElementException.class);
   }
+
+  private static User create(UserServiceImpl svc, String userName){
+    var obs = new UnaryObserver<UserResponse>();
+    svc.createUser(CreateUserRequest.newBuilder().setUser(User.newBuilder().setUserName(userName)).build(), obs);
+    return obs.next.get().getUser();
+  }
+
+  private static UnaryObserver<UserResponse> update(UserServiceImpl svc, User user){
+    var obs = new UnaryObserver<UserResponse>();
+    svc.updateUser(UpdateUserRequest.newBuilder().setUser(user).build(), obs);
+    return obs;
+  }
+
+  @Test
+  void create_keeps_a_caller_supplied_id_once() {
+    UserServiceImpl svc = new UserServiceImpl();
+    CreateUserRequest request = CreateUserRequest.newBuilder().setUser(User.newBuilder().setId("fixed-id").setUserName("a")).build();
+    var first = new UnaryObserver<UserResponse>();
+    svc.createUser(request, first);
+    assertThat(first.next.get().getUser().getId()).isEqualTo("fixed-id");
+
+    var duplicate = new UnaryObserver<UserResponse>();
+    svc.createUser(request, duplicate);
+    assertThat(duplicate.errors).singleElement()
+        .satisfies(e -> assertThat(Status.fromThrowable(e).getCode()).isEqualTo(Status.Code.ALREADY_EXISTS));
+  }
+
+  @Test
+  void offheap_create_with_an_oversized_id_leaves_no_trace() {
+    UserServiceImpl svc = new UserServiceImpl(new OffHeapUserStore(4096));
+    String id = "x".repeat(Short.MAX_VALUE + 1);
+    assertThatThrownBy(() -> svc.createUser(CreateUserRequest.newBuilder()
+        .setUser(User.newBuilder().setId(id).setUserName("huge")).build(), new UnaryObserver<>()))
+        .isInstanceOf(IllegalArgumentException.class);
+    var upload = svc.importUsers(new UnaryObserver<>());
+    assertThatThrownBy(() -> upload.onNext(ImportUsersRequest.newBuilder()
+        .addUsers(User.newBuilder().setId(id).setUserName("huge")).build()))
+        .isInstanceOf(IllegalArgumentException.class);
+
+    assertThat(svc.changes().assigned()).isZero();
+    assertThat(svc.changes().head()).isZero();
+    var search = new UnaryObserver<ListUsersResponse>();
+    svc.searchUsers(SearchUsersRequest.newBuilder().setFilter("userName eq \"huge\"").build(), search);
+    assertThat(search.next.get().getTotal()).isZero();
+  }
+
+  @Test
+  void import_applies_batches_and_reports_failed_rows() {
+    UserServiceImpl svc = new UserServiceImpl();
+    User existing = create(svc, "existing");
+    var obs = new UnaryObserver<ImportUsersResponse>();
+    StreamObserver<ImportUsersRequest> upload = svc.importUsers(obs);
+    upload.onNext(ImportUsersRequest.newBuilder()
+        .addUsers(User.newBuilder().setUserName("a").setActive(true))
+        .addUsers(User.newBuilder().setGivenName("no userName"))
+        .addUsers(User.newBuilder().setId(existing.getId()).setUserName("clash")).build());
+    upload.onNext(ImportUsersRequest.newBuilder()
+        .addUsers(User.newBuilder().setId("dup").setUserName("b"))
+        .addUsers(User.newBuilder().setId("dup").setUserName("c"))
+        .addRows(10).addRows(11).build());
+    assertThat(obs.completed).isFalse();
+    upload.onCompleted();
+
+    ImportUsersResponse result = obs.next.get();
+    assertThat(result.getReceived()).isEqualTo(5);
+    assertThat(result.getImported()).isEqualTo(2);
+    assertThat(result.getFailed()).isEqualTo(3);
+    assertThat(result.getErrorsList()).extracting(ImportError::getRow).containsExactly(2L, 3L, 11L);
+    assertThat(result.getErrors(0).getMessage()).isEqualTo("userName is required");
+    assertThat(result.getErrors(2).getId()).isEqualTo("dup");
+
+    var search = new UnaryObserver<ListUsersResponse>();
+    svc.searchUsers(SearchUsersRequest.newBuilder().setFilter("userName eq \"a\" or userName eq \"b\"").build(), search);
+    assertThat(search.next.get().getUsersList()).extracting(User::getVersion).containsExactly(1L, 1L);
+  }
+
+  @Test
+  void update_with_stale_version_fails_precondition() {
+    UserServiceImpl svc = new UserServiceImpl();
+    User created = create(svc, "cas");
+    assertThat(created.getVersion()).isEqualTo(1);
+
+    var first = update(svc, created.toBuilder().setGivenName("First").build());
+    assertThat(first.next.get().getUser().getVersion()).isEqualTo(2);
+
+    var stale = update(svc, created.toBuilder().setGivenName("Stale").build());
+    assertThat(stale.errors).singleElement()
+        .satisfies(e -> assertThat(Status.fromThrowable(e).getCode()).isEqualTo(Status.Code.FAILED_PRECONDITION));
+
+    var unconditional = update(svc, created.toBuilder().setVersion(0).setGivenName("Forced").build());
+    assertThat(unconditional.next.get().getUser().getVersion()).isEqualTo(3);
+
+    var staleDelete = new UnaryObserver<DeleteUserResponse>();
+    svc.deleteUser(DeleteUserRequest.newBuilder().setId(created.getId()).setVersion(2).build(), staleDelete);
+    assertThat(staleDelete.errors).singleElement().isInstanceOf(StatusRuntimeException.class);
+
+    var delete = new UnaryObserver<DeleteUserResponse>();
+    svc.deleteUser(DeleteUserRequest.newBuilder().setId(created.getId()).setVersion(3).build(), delete);
+    assertThat(delete.next.get().getDeleted()).isTrue();
+
+    // An update racing with the delete must not resurrect the user
+    assertThat(update(svc, created.toBuilder().setVersion(0).build()).errors)
+        .singleElement().isInstanceOf(NoSuchElementException.class);
+  }
+
+  @Test
+  void concurrent_read_modify_write_loses_no_updates() throws Exception {
+    for(UserServiceImpl svc : List.of(new UserServiceImpl(), new UserServiceImpl(new OffHeapUserStore(4096)))){
+      User created = create(svc, "counter");
+      int threads = 4, perThread = 200;
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+      for(int t = 0; t < threads; t++){
+        int writer = t;
+        pool.submit(() -> {
+          for(int i = 0; i < perThread; ){
+            var get = new UnaryObserver<UserResponse>();
+            svc.getUser(GetUserRequest.newBuilder().setId(created.getId()).build(), get);
+            User current = get.next.get().getUser();
+            if(update(svc, current.toBuilder().addEmails(writer+"-"+i+"@example.com").build()).errors.isEmpty()) i++;
+          }
+        });
+      }
+      pool.shutdown();
+      assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+      var get = new UnaryObserver<UserResponse>();
+      svc.getUser(GetUserRequest.newBuilder().setId(created.getId()).build(), get);
+      assertThat(get.next.get().getUser().getEmailsCount()).isEqualTo(threads * perThread);
+      assertThat(get.next.get().getUser().getVersion()).isEqualTo(1 + threads * perThread);
+    }
+  }
+
+  @Test
+  void patch_applies_mask_and_email_edits_atomically() {
+    UserServiceImpl svc = new UserServiceImpl();
+    var createObs = new UnaryObserver<UserResponse>();
+    svc.createUser(CreateUserRequest.newBuilder().setUser(User.newBuilder()
+        .setUserName("patchMe").setGivenName("Old").setFamilyName("Name").addEmails("a@example.com").setActive(true)).build(), createObs);
+    User created = createObs.next.get().getUser();
+
+    var patchObs = new UnaryObserver<UserResponse>();
+    svc.patchUser(PatchUserRequest.newBuilder()
+        .setId(created.getId())
+        .setUser(User.newBuilder().setGivenName("New").setActive(false))
+        .setUpdateMask(FieldMask.newBuilder().addPaths("givenName").addPaths("active"))
+        .addAddEmails("b@example.com")
+        .addRemoveEmails("a@example.com")
+        .setVersion(created.getVersion())
+        .build(), patchObs);
+    User patched = patchObs.next.get().getUser();
+    assertThat(patched.getGivenName()).isEqualTo("New");
+    assertThat(patched.getFamilyName()).isEqualTo("Name");
+    assertThat(patched.getUserName()).isEqualTo("patchMe");
+    assertThat(patched.getActive()).isFalse();
+    assertThat(patched.getEmailsList()).containsExactly("b@example.com");
+    assertThat(patched.getVersion()).isEqualTo(2);
+
+    var badPath = new UnaryObserver<UserResponse>();
+    svc.patchUser(PatchUserRequest.newBuilder().setId(created.getId())
+        .setUpdateMask(FieldMask.newBuilder().addPaths("id")).build(), badPath);
+    assertThat(badPath.errors).singleElement()
+        .satisfies(e -> assertThat(Status.fromThrowable(e).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT));
+
+    var missing = new UnaryObserver<UserResponse>();
+    svc.patchUser(PatchUserRequest.newBuilder().setId("missing").build(), missing);
+    assertThat(missing.errors).singleElement().isInstanceOf(NoSuchElementException.class);
+  }
+
+  @Test
+  void search_filters_pages_and_rejects_bad_filters() {
+    UserServiceImpl svc = new UserServiceImpl();
+    for(String name : List.of("alice", "alex", "bob", "alfred")) create(svc, name);
+
+    var obs = new UnaryObserver<ListUsersResponse>();
+    svc.searchUsers(SearchUsersRequest.newBuilder().setFilter("userName sw \"AL\"").setStartIndex(2).setCount(1).build(), obs);
+    assertThat(obs.next.get().getTotal()).isEqualTo(3);
+    assertThat(obs.next.get().getUsersList()).singleElement()
+        .satisfies(u -> assertThat(u.getUserName()).startsWith("al"));
+
+    var all = new UnaryObserver<ListUsersResponse>();
+    svc.searchUsers(SearchUsersRequest.getDefaultInstance(), all);
+    assertThat(all.next.get().getUsersCount()).isEqualTo(4);
+
+    var bad = new UnaryObserver<ListUsersResponse>();
+    svc.searchUsers(SearchUsersRequest.newBuilder().setFilter("userName gt \"a\"").build(), bad);
+    assertThat(bad.errors).singleElement()
+        .satisfies(e -> assertThat(Status.fromThrowable(e).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT));
+  }
+
+  @Test
+  void search_ranks_free_text_queries() {
+    UserServiceImpl svc = new UserServiceImpl();
+    for(String name : List.of("alice.smith", "alicia.smythe", "bob.jones", "alfred.smith")) create(svc, name);
+
+    var obs = new UnaryObserver<ListUsersResponse>();
+    svc.searchUsers(SearchUsersRequest.newBuilder().setQuery("alice smith").setFilter("userName co \"smith\"").build(), obs);
+    ListUsersResponse res = obs.next.get();
+    assertThat(res.getUsersList()).extracting(User::getUserName).first().isEqualTo("alice.smith");
+    assertThat(res.getScoresList()).hasSameSizeAs(res.getUsersList()).first().isEqualTo(1.0f);
+    assertThat(res.getUsersList()).extracting(User::getUserName).doesNotContain("alicia.smythe", "bob.jones");
+
+    var all = new UnaryObserver<ListUsersResponse>();
+    svc.searchUsers(SearchUsersRequest.newBuilder().setQuery("alice smith").build(), all);
+    var page = new UnaryObserver<ListUsersResponse>();
+    svc.searchUsers(SearchUsersRequest.newBuilder().setQuery("alice smith").setStartIndex(2).setCount(1).build(), page);
+    assertThat(page.next.get().getTotal()).isEqualTo(all.next.get().getTotal()).isGreaterThan(res.getTotal());
+    assertThat(page.next.get().getUsersList()).containsExactly(all.next.get().getUsers(1));
+
+    var bad = new UnaryObserver<ListUsersResponse>();
+    svc.searchUsers(SearchUsersRequest.newBuilder().setQuery("-- .").build(), bad);
+    assertThat(bad.errors).singleElement()
+        .satisfies(e -> assertThat(Status.fromThrowable(e).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT));
+  }
 }
@@ -0,0 +1,188 @@
+package idm.user.bench;
+
+import com.google.protobuf.FieldMask;
+import idm.user.UserServiceImpl;
+import idm.user.client.CachingUserClient;
+import idm.user.client.ChannelPool;
+import idm.user.config.GrpcServerFactory;
+import idm.user.config.GrpcServerProperties;
+import idm.user.v1.*;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.stub.StreamObserver;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * GetUser latency through {@link CachingUserClient} under a Zipfian workload over loopback Netty, against a plain
+ * blocking stub. A background writer updates Zipf-chosen users at a fixed rate through its own channel, so the
+ * near-cache is invalidated by the change feed as in production, and the server stalls a small fraction of GetUser
+ * calls to give hedging a tail to cut.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) idm.user.bench.CachingClientBenchmark 100000 0.99 8 10 200 0.01:50
+ * </pre>
+ */
+public class CachingClientBenchmark {
+  public static void main(String[] args) throws Exception {
+    int users = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+    double skew = args.length > 1 ? Double.parseDouble(args[1]) : 0.99;
+    int clients = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+    int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+    int writesPerSecond = args.length > 4 ? Integer.parseInt(args[4]) : 200;
+    String[] stall = (args.length > 5 ? args[5] : "0.01:50").split(":");
+    double stallRate = Double.parseDouble(stall[0]);
+    long stallMillis = Long.parseLong(stall[1]);
+
+    UserServiceImpl service = new UserServiceImpl();
+    String[] ids = load(service, users);
+    double[] cdf = zipf(users, skew);
+    ServerInterceptor stalls = new ServerInterceptor() {
+      @Override
+      public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        if(call.getMethodDescriptor().getBareMethodName().equals("GetUser") && ThreadLocalRandom.current().nextDouble() < stallRate){
+          try { Thread.sleep(stallMillis); } catch (InterruptedException e){ Thread.currentThread().interrupt(); }
+        }
+        return next.startCall(call, headers);
+      }
+    };
+    try(GrpcServerFactory factory = new GrpcServerFactory(GrpcServerProperties.of(0, "cached"))){
+      Server server = factory.build(() -> ServerInterceptors.intercept(service, stalls)).start();
+      String target = "localhost:"+server.getPort();
+      ManagedChannel writerChannel = ManagedChannelBuilder.forTarget(target).usePlaintext().build();
+      ManagedChannel plainChannel = ManagedChannelBuilder.forTarget(target).usePlaintext().build();
+      System.out.printf("users=%,d zipf=%.2f clients=%d writes=%d/s stall=%.1f%% x %d ms%n",
+          users, skew, clients, writesPerSecond, stallRate * 100, stallMillis);
+      try {
+        var plain = UserServiceGrpc.newBlockingStub(plainChannel);
+        run("plain stub", plain::getUser, null, ids, cdf, clients, seconds, writesPerSecond, writerChannel);
+        CachingUserClient.Options base = CachingUserClient.Options.defaults();
+        List<Object[]> modes = List.of(
+            new Object[]{"pool, hedge 10ms", base.withCacheSize(0).withHedgeDelay(Duration.ofMillis(10))},
+            new Object[]{"pool, cache 10k", base.withCacheSize(10_000).withHedgeDelay(Duration.ZERO)},
+            new Object[]{"pool, cache 10k, hedge 10ms", base.withCacheSize(10_000).withHedgeDelay(Duration.ofMillis(10))});
+        for(Object[] mode : modes){
+          CachingUserClient.Options options = (CachingUserClient.Options) mode[1];
+          try(ChannelPool pool = ChannelPool.connect(target, options.channels());
+              CachingUserClient client = new CachingUserClient(pool, options)){
+            run((String) mode[0], client::getUser, client, ids, cdf, clients, seconds, writesPerSecond, writerChannel);
+          }
+        }
+      } finally {
+        writerChannel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        plainChannel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+      }
+    }
+  }
+
+  private static void run(String label, Function<GetUserRequest, UserResponse> get, CachingUserClient client, String[] ids,
+                          double[] cdf, int clients, int seconds, int writesPerSecond, ManagedChannel writerChannel) throws Exception {
+    long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+    long end = warmupEnd + TimeUnit.SECONDS.toNanos(seconds);
+    var writer = UserServiceGrpc.newBlockingStub(writerChannel);
+    Thread writes = new Thread(() -> {
+      SplittableRandom rnd = new SplittableRandom(7);
+      long period = writesPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / writesPerSecond : Long.MAX_VALUE;
+      for(long next = System.nanoTime(); writesPerSecond > 0 && next < end; next += period){
+        long wait = next - System.nanoTime();
+        if(wait > 0) try { TimeUnit.NANOSECONDS.sleep(wait); } catch (InterruptedException e){ return; }
+        // A fresh value every time, so every write is a change
+        writer.patchUser(PatchUserRequest.newBuilder().setId(ids[pick(cdf, rnd)]).setUser(User.newBuilder().setGivenName("G"+next))
+            .setUpdateMask(FieldMask.newBuilder().addPaths("givenName")).build());
+      }
+    });
+    writes.start();
+    CachingUserClient.Stats before = client == null ? null : client.stats();
+    long[][] samples = new long[clients][];
+    int[] counts = new int[clients];
+    List<Thread> threads = new ArrayList<>();
+    for(int c = 0; c < clients; c++){
+      int slot = c;
+      Thread t = new Thread(() -> {
+        SplittableRandom rnd = new SplittableRandom(slot);
+        long[] lat = new long[1 << 16];
+        int n = 0;
+        for(long now = System.nanoTime(); now < end; ){
+          GetUserRequest request = GetUserRequest.newBuilder().setId(ids[pick(cdf, rnd)]).build();
+          long t0 = System.nanoTime();
+          get.apply(request);
+          now = System.nanoTime();
+          if(t0 < warmupEnd) continue;
+          if(n == lat.length) lat = Arrays.copyOf(lat, n * 2);
+          lat[n++] = now - t0;
+        }
+        samples[slot] = lat;
+        counts[slot] = n;
+      });
+      threads.add(t);
+      t.start();
+    }
+    for(Thread t : threads) t.join();
+    writes.join();
+    long[] all = new long[Arrays.stream(counts).sum()];
+    for(int c = 0, at = 0; c < clients; at += counts[c], c++) System.arraycopy(samples[c], 0, all, at, counts[c]);
+    Arrays.sort(all);
+    String cache = "";
+    if(client != null){
+      CachingUserClient.Stats s = client.stats();
+      long hits = s.hits() - before.hits(), misses = s.misses() - before.misses();
+      cache = String.format("hit=%5.1f%% hedges=%,d (won %,d) invalidations=%,d",
+          100.0 * hits / Math.max(1, hits + misses), s.hedges(), s.hedgeWins(), s.invalidations());
+    }
+    System.out.printf("  %-28s %,9.0f ops/s  p50=%,7.1f us  p99=%,8.1f us  p99.9=%,8.1f us  %s%n",
+        label, all.length / (double) seconds, pct(all, 0.50), pct(all, 0.99), pct(all, 0.999), cache);
+  }
+
+  private static String[] load(UserServiceImpl service, int users){
+    String[] ids = new String[users];
+    StreamObserver<ImportUsersRequest> in = service.importUsers(new StreamObserver<>() {
+      @Override public void onNext(ImportUsersResponse value){}
+      @Override public void onError(Throwable t){ throw new IllegalStateException(t); }
+      @Override public void onCompleted(){}
+    });
+    ImportUsersRequest.Builder batch = ImportUsersRequest.newBuilder();
+    for(int i = 0; i < users; i++){
+      ids[i] = UUID.randomUUID().toString();
+      batch.addUsers(User.newBuilder().setId(ids[i]).setUserName("user"+i).setGivenName("Given"+i).setFamilyName("Family"+(i % 1000))
+          .addEmails("user"+i+"@example.com").setActive(true));
+      if(batch.getUsersCount() == 1000 || i == users - 1){
+        in.onNext(batch.build());
+        batch.clear();
+      }
+    }
+    in.onCompleted();
+    return ids;
+  }
+
+  private static int pick(double[] cdf, SplittableRandom rnd){
+    int i = Arrays.binarySearch(cdf, rnd.nextDouble());
+    return Math.min(cdf.length - 1, i < 0 ? -i - 1 : i);
+  }
+
+  private static double[] zipf(int n, double s){
+    double[] cdf = new double[n];
+    double sum = 0;
+    for(int i = 0; i < n; i++) cdf[i] = sum += 1 / Math.pow(i + 1, s);
+    for(int i = 0; i < n; i++) cdf[i] /= sum;
+    return cdf;
+  }
+
+  private static double pct(long[] sorted, double p){
+    return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1_000.0;
+  }
+}
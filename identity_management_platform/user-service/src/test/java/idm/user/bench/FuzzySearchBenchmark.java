@@ -0,0 +1,105 @@
+package idm.user.bench;
+
+import idm.user.search.Filter;
+import idm.user.search.IndexedUserStore;
+import idm.user.store.HeapUserStore;
+import idm.user.store.OffHeapUserStore;
+import idm.user.store.UserStore;
+import idm.user.v1.User;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Latency of ranked free-text queries ({@link IndexedUserStore#rank}) over N users with realistic names: given names
+ * from a fixed list, family names built from syllables (a few thousand, Zipf-ish), user names and emails derived
+ * from both. Reports load time, heap retained by the index, and median/p99 per query shape.
+ *
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -Xmx4g -cp target/classes:target/test-classes:$(cat target/cp.txt) idm.user.bench.FuzzySearchBenchmark offheap 5000000
+ * </pre>
+ */
+public class FuzzySearchBenchmark {
+  private static final String[] GIVEN = {"James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda",
+      "William", "Elizabeth", "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles",
+      "Karen", "Christopher", "Nancy", "Daniel", "Lisa", "Matthew", "Betty", "Anthony", "Margaret", "Mark", "Sandra",
+      "Donald", "Ashley", "Steven", "Kimberly", "Paul", "Emily", "Andrew", "Donna", "Joshua", "Michelle", "Kenneth",
+      "Dorothy", "Kevin", "Carol", "Brian", "Amanda", "George", "Melissa", "Edward", "Deborah", "Ronald", "Stephanie",
+      "Timothy", "Rebecca", "Jason", "Sharon", "Jeffrey", "Laura", "Ryan", "Cynthia", "Jacob", "Kathleen", "Gary",
+      "Amy", "Nicholas", "Shirley", "Eric", "Angela", "Jonathan", "Helen", "Stephen", "Anna", "Larry", "Brenda",
+      "Justin", "Pamela", "Scott", "Nicole", "Brandon", "Emma", "Benjamin", "Samantha", "Samuel", "Katherine",
+      "Gregory", "Christine", "Frank", "Debra", "Alexander", "Rachel", "Raymond", "Catherine", "Patrick", "Carolyn",
+      "Jack", "Janet", "Dennis", "Ruth", "Jerry", "Maria", "Mohammed", "Wei", "Sofia", "Hiroshi", "Priya", "Olga"};
+  private static final String[] SYLLABLES = {"an", "ber", "cal", "dor", "el", "fen", "gar", "hol", "is", "jen", "kin",
+      "lo", "mar", "nor", "os", "pet", "quin", "ros", "son", "ter", "ul", "van", "wes", "yor", "zim", "ton", "ley", "man"};
+  private static final List<String> QUERIES = List.of(
+      "john smith",      // common given name, rare family name
+      "jennifer",        // one common word
+      "jenifer",         // typo
+      "elizabeth marson",
+      "maria.dorley@",   // email fragment
+      "qui",             // short prefix
+      "priya anwesley");
+
+  public static void main(String[] args){
+    String mode = args.length > 0 ? args[0] : "offheap";
+    int count = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+    UserStore backing = "offheap".equals(mode) ? new OffHeapUserStore() : new HeapUserStore();
+    long before = usedHeap();
+    IndexedUserStore store = new IndexedUserStore(backing);
+    Random rnd = new Random(42);
+    long t0 = System.nanoTime();
+    for(int i = 0; i < count; i++){
+      String given = GIVEN[(int) (GIVEN.length * Math.pow(rnd.nextDouble(), 2))];
+      String family = family(rnd);
+      String userName = given.toLowerCase()+"."+family.toLowerCase()+(i % 97);
+      store.put(User.newBuilder().setId(UUID.randomUUID().toString()).setUserName(userName).setGivenName(given)
+          .setFamilyName(family).addEmails(userName+"@example.com").setActive((i & 1) == 0).build());
+    }
+    long loadMs = (System.nanoTime() - t0) / 1_000_000;
+    System.out.printf("mode=%s users=%,d load=%,d ms heap=%,d MB%n", mode, count, loadMs, (usedHeap() - before) >> 20);
+
+    Filter active = Filter.parse("active eq true");
+    for(String q : QUERIES){
+      long[] top = times(() -> store.rank(q, null, 0, 20).total());
+      long[] filtered = times(() -> store.rank(q, active, 0, 20).total());
+      System.out.printf("  %-20s matches=%,9d top20 p50=%,8d us p99=%,8d us | +active p50=%,8d us%n",
+          q, store.rank(q, null, 0, 1).total(), top[0] / 1000, top[1] / 1000, filtered[0] / 1000);
+    }
+  }
+
+  private static String family(Random rnd){
+    // Skewed towards the first syllables, so some family names are common and most are rare
+    StringBuilder sb = new StringBuilder();
+    int parts = 2 + rnd.nextInt(2);
+    for(int p = 0; p < parts; p++) sb.append(SYLLABLES[(int) (SYLLABLES.length * Math.pow(rnd.nextDouble(), 1.5))]);
+    sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+    return sb.toString();
+  }
+
+  private interface Query { int run(); }
+
+  /** {p50, p99} in ns over 101 runs after warm-up. */
+  private static long[] times(Query q){
+    long sink = 0;
+    for(int i = 0; i < 20; i++) sink += q.run();
+    long[] t = new long[101];
+    for(int i = 0; i < t.length; i++){
+      long s = System.nanoTime();
+      sink += q.run();
+      t[i] = System.nanoTime() - s;
+    }
+    Arrays.sort(t);
+    if(sink < 0) System.out.println(sink);
+    return new long[]{t[t.length / 2], t[t.length * 99 / 100]};
+  }
+
+  private static long usedHeap(){
+    for(int i = 0; i < 3; i++) System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+}
@@ -0,0 +1,115 @@
+package idm.user.bench;
+
+import idm.user.UserServiceImpl;
+import idm.user.store.HeapUserStore;
+import idm.user.watch.ChangeLog;
+import idm.user.v1.*;
+import io.grpc.Attributes;
+import io.grpc.Drainable;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * CPU and allocation per GetUser on the server side (handler plus response marshalling, drained into a
+ * buffer the way the transport framer does) with and without the pre-serialized response cache, under a
+ * Zipf key distribution. Transport cost is deliberately excluded: it is the same in both modes.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) idm.user.bench.GetUserCacheBenchmark 100000 1.1 5000000
+ * </pre>
+ */
+public class GetUserCacheBenchmark {
+  public static void main(String[] args) throws Exception {
+    int users = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+    double skew = args.length > 1 ? Double.parseDouble(args[1]) : 1.1;
+    int calls = args.length > 2 ? Integer.parseInt(args[2]) : 5_000_000;
+    double[] cdf = zipf(users, skew);
+    // first round warms up the JIT
+    for(int round = 0; round < 2; round++)
+      for(int cacheSize : new int[]{0, UserServiceImpl.DEFAULT_CACHE_SIZE}) run(cacheSize, users, skew, cdf, calls, round == 1);
+  }
+
+  @SuppressWarnings("unchecked")
+  static void run(int cacheSize, int users, double skew, double[] cdf, int calls, boolean report) throws Exception {
+    UserServiceImpl service = new UserServiceImpl(new HeapUserStore(), cacheSize, ChangeLog.DEFAULT_CAPACITY);
+    ServerMethodDefinition<Object, Object> getUser = (ServerMethodDefinition<Object, Object>)
+        service.bindService().getMethod(UserServiceGrpc.getGetUserMethod().getFullMethodName());
+    String[] ids = new String[users];
+    for(int i = 0; i < users; i++){
+      var created = new Capture<UserResponse>();
+      service.createUser(CreateUserRequest.newBuilder().setUser(User.newBuilder().setUserName("user"+i)
+          .setGivenName("Given"+i).setFamilyName("Family"+i).addEmails("user"+i+"@example.com").setActive(true)).build(), created);
+      ids[i] = created.value.getUser().getId();
+    }
+    GetUserRequest[] requests = new GetUserRequest[calls];
+    ThreadLocalRandom rnd = ThreadLocalRandom.current();
+    for(int i = 0; i < calls; i++){
+      int k = Arrays.binarySearch(cdf, rnd.nextDouble());
+      requests[i] = GetUserRequest.newBuilder().setId(ids[Math.min(users - 1, k < 0 ? -k - 1 : k)]).build();
+    }
+
+    WireCall call = new WireCall(getUser.getMethodDescriptor());
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long tid = Thread.currentThread().getId();
+    long alloc0 = threads.getThreadAllocatedBytes(tid);
+    long cpu0 = threads.getCurrentThreadCpuTime();
+    for(GetUserRequest request : requests){
+      ServerCall.Listener<Object> listener = getUser.getServerCallHandler().startCall(call, new Metadata());
+      listener.onMessage(request);
+      listener.onHalfClose();
+    }
+    long cpu = threads.getCurrentThreadCpuTime() - cpu0;
+    long alloc = threads.getThreadAllocatedBytes(tid) - alloc0;
+    if(report) System.out.printf("cache=%-6d users=%,d zipf=%.2f calls=%,d  %,6d ns/op  %,5d B/op allocated  (%,d bytes out)%n",
+        cacheSize, users, skew, calls, cpu / calls, alloc / calls, call.out.size());
+  }
+
+  /** Streams every response through the method's marshaller into a reused buffer, like the framer. */
+  private static final class WireCall extends ServerCall<Object, Object> {
+    private final MethodDescriptor<Object, Object> method;
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 16);
+
+    WireCall(MethodDescriptor<Object, Object> method){ this.method = method; }
+
+    @Override public void request(int numMessages){}
+    @Override public void sendHeaders(Metadata headers){}
+    @Override public void close(Status status, Metadata trailers){ if(!status.isOk()) throw status.asRuntimeException(); }
+    @Override public boolean isCancelled(){ return false; }
+    @Override public Attributes getAttributes(){ return Attributes.EMPTY; }
+    @Override public MethodDescriptor<Object, Object> getMethodDescriptor(){ return method; }
+
+    @Override
+    public void sendMessage(Object message){
+      out.reset();
+      try(InputStream in = method.streamResponse(message)){
+        if(in instanceof Drainable d) d.drainTo(out); else in.transferTo(out);
+      } catch (IOException e){ throw new IllegalStateException(e); }
+    }
+  }
+
+  private static final class Capture<T> implements StreamObserver<T> {
+    T value;
+    @Override public void onNext(T v){ value = v; }
+    @Override public void onError(Throwable t){ throw new IllegalStateException(t); }
+    @Override public void onCompleted(){}
+  }
+
+  private static double[] zipf(int n, double s){
+    double[] cdf = new double[n];
+    double sum = 0;
+    for(int i = 0; i < n; i++) cdf[i] = sum += 1 / Math.pow(i + 1, s);
+    for(int i = 0; i < n; i++) cdf[i] /= sum;
+    return cdf;
+  }
+}
@@ -0,0 +1,71 @@
+package idm.user.bench;
+
+import idm.user.group.RoaringBitmap;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Group membership structures over an ordinal space of {@code users}: retained heap of a {@link RoaringBitmap}
+ * against a {@code HashSet} of user id strings, membership-check latency, and intersecting a large group with a
+ * large and a small one.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) idm.user.bench.GroupBenchmark 5000000 1000000
+ * </pre>
+ */
+public class GroupBenchmark {
+  public static void main(String[] args){
+    int users = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+    int members = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+    Random random = new Random(1);
+    int[] big = sample(random, users, members), other = sample(random, users, members), small = sample(random, users, 10_000);
+
+    // Sixteen copies, since one bitmap is within the noise of a heap measurement
+    RoaringBitmap[] copies = new RoaringBitmap[16];
+    long before = usedHeapAfterGc();
+    for(int i = 0; i < copies.length; i++) copies[i] = RoaringBitmap.of(big);
+    long roaring = (usedHeapAfterGc() - before) / copies.length;
+    RoaringBitmap bitmap = copies[0];
+    Set<String> ids = new HashSet<>();
+    before = usedHeapAfterGc();
+    for(int ord : big) ids.add(new UUID(0x0190_0000_0000_7000L | ord, 0x8000_0000_0000_0000L | ord).toString());
+    long hashSet = usedHeapAfterGc() - before;
+    System.out.printf("%,d of %,d users: roaring %,d KB (%.2f B/member, estimate %,d KB); HashSet<String> %,d KB (%.0f B/member)%n",
+        members, users, roaring >> 10, (double) roaring / members, bitmap.sizeInBytes() >> 10, hashSet >> 10, (double) hashSet / members);
+
+    int[] probes = sample(random, users, 1_000_000);
+    long hits = 0, t0 = 0;
+    for(int run = 0; run < 3; run++){
+      hits = 0;
+      t0 = System.nanoTime();
+      for(int p : probes) if(bitmap.contains(p)) hits++;
+    }
+    System.out.printf("contains: %.0f ns/op (%,d hits)%n", (System.nanoTime() - t0) / (double) probes.length, hits);
+
+    RoaringBitmap large = RoaringBitmap.of(other), tiny = RoaringBitmap.of(small);
+    for(RoaringBitmap with : new RoaringBitmap[]{large, tiny}){
+      long best = Long.MAX_VALUE, card = 0;
+      for(int run = 0; run < 10; run++){
+        long t = System.nanoTime();
+        card = bitmap.and(with).cardinality();
+        best = Math.min(best, System.nanoTime() - t);
+      }
+      System.out.printf("and with %,d members: %.2f ms (%,d in common)%n", with.cardinality(), best / 1e6, card);
+    }
+  }
+
+  private static int[] sample(Random random, int bound, int n){
+    int[] out = new int[n];
+    for(int i = 0; i < n; i++) out[i] = random.nextInt(bound);
+    return out;
+  }
+
+  private static long usedHeapAfterGc(){
+    for(int i = 0; i < 3; i++) System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+}
@@ -0,0 +1,88 @@
+package idm.user.bench;
+
+import idm.user.id.IdGenerator;
+import idm.user.id.TimeOrderedIdGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * Random UUIDv4 vs time-ordered UUIDv7 ids: raw generation rate across threads, then insert rate into sorted
+ * indexes (a {@link TreeMap} and, from several threads, a {@link ConcurrentSkipListMap} like the ones behind
+ * {@code UserIndex}). Time-ordered ids always land at the right edge of the index, so inserts walk a hot path.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) idm.user.bench.IdGeneratorBenchmark 2000000 4
+ * </pre>
+ */
+public class IdGeneratorBenchmark {
+  public static void main(String[] args) throws Exception {
+    int ids = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    Map<String, Supplier<IdGenerator>> kinds = Map.of("random", () -> IdGenerator.RANDOM_UUID, "uuidv7", () -> new TimeOrderedIdGenerator(1));
+    for(String kind : List.of("random", "uuidv7", "random", "uuidv7")){
+      IdGenerator gen = kinds.get(kind).get();
+      // best of three: the first runs after switching generators pay for recompilation
+      double single = 0, multi = 0, tree = 0, skipList = 0;
+      for(int run = 0; run < 3; run++){
+        single = Math.max(single, generate(gen, ids, 1));
+        multi = Math.max(multi, generate(gen, ids, threads));
+        tree = Math.max(tree, treeInserts(gen, ids));
+        skipList = Math.max(skipList, skipListInserts(gen, ids, threads));
+      }
+      System.out.printf("%-7s generate %,11.0f ids/s (1 thread) %,11.0f ids/s (%d threads)  TreeMap insert %,10.0f/s  ConcurrentSkipListMap insert %,10.0f/s (%d threads)%n",
+          kind, single, multi, threads, tree, skipList, threads);
+    }
+  }
+
+  private static double generate(IdGenerator gen, int ids, int threads) throws InterruptedException {
+    int perThread = ids / threads;
+    long[] sink = new long[threads];
+    List<Thread> workers = new ArrayList<>();
+    long t0 = System.nanoTime();
+    for(int t = 0; t < threads; t++){
+      int slot = t;
+      Thread w = new Thread(() -> {
+        long h = 0;
+        for(int i = 0; i < perThread; i++) h += gen.next().hashCode();
+        sink[slot] = h;
+      });
+      workers.add(w);
+      w.start();
+    }
+    for(Thread w : workers) w.join();
+    return perThread * (double) threads / ((System.nanoTime() - t0) / 1e9);
+  }
+
+  private static double treeInserts(IdGenerator gen, int ids){
+    String[] keys = new String[ids];
+    for(int i = 0; i < ids; i++) keys[i] = gen.next();
+    NavigableMap<String, Integer> index = new TreeMap<>();
+    long t0 = System.nanoTime();
+    for(int i = 0; i < ids; i++) index.put(keys[i], i);
+    return ids / ((System.nanoTime() - t0) / 1e9);
+  }
+
+  private static double skipListInserts(IdGenerator gen, int ids, int threads) throws InterruptedException {
+    ConcurrentSkipListMap<String, Integer> index = new ConcurrentSkipListMap<>();
+    int perThread = ids / threads;
+    String[][] keys = new String[threads][perThread];
+    // Threads take turns drawing ids so each one's keys interleave with the others', as concurrent creates would
+    for(int i = 0; i < perThread; i++) for(int t = 0; t < threads; t++) keys[t][i] = gen.next();
+    List<Thread> workers = new ArrayList<>();
+    long t0 = System.nanoTime();
+    for(int t = 0; t < threads; t++){
+      String[] mine = keys[t];
+      Thread w = new Thread(() -> { for(int i = 0; i < mine.length; i++) index.put(mine[i], i); });
+      workers.add(w);
+      w.start();
+    }
+    for(Thread w : workers) w.join();
+    return perThread * (double) threads / ((System.nanoTime() - t0) / 1e9);
+  }
+}
@@ -0,0 +1,75 @@
+package idm.user.bench;
+
+import idm.user.UserServiceImpl;
+import idm.user.config.GrpcServerFactory;
+import idm.user.config.GrpcServerProperties;
+import idm.user.tools.ImportUsersCli;
+import idm.user.tools.UserFileReader;
+import idm.user.v1.CreateUserRequest;
+import idm.user.v1.ImportUsersResponse;
+import idm.user.v1.User;
+import idm.user.v1.UserServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Loading users over loopback Netty: one blocking CreateUser per row against ImportUsers streaming the same rows
+ * from a CSV file in batches, each into a fresh server.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) idm.user.bench.ImportBenchmark 1000000 1000
+ * </pre>
+ */
+public class ImportBenchmark {
+  public static void main(String[] args) throws Exception {
+    int users = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int batch = args.length > 1 ? Integer.parseInt(args[1]) : ImportUsersCli.DEFAULT_BATCH;
+    Path file = Files.createTempFile("users", ".csv");
+    try {
+      try (BufferedWriter out = Files.newBufferedWriter(file)){
+        out.write("userName,givenName,familyName,emails,active\n");
+        for(int i = 0; i < users; i++) out.write("user"+i+",Given"+i+",Family"+(i % 1000)+",user"+i+"@example.com,true\n");
+      }
+      System.out.printf("%,d users, %,d bytes of CSV%n", users, Files.size(file));
+      // Row-at-a-time is far slower; a slice of the file is enough to measure it
+      int unary = Math.min(users, 50_000);
+      measure("CreateUser x"+unary, channel -> {
+        var stub = UserServiceGrpc.newBlockingStub(channel);
+        try (UserFileReader reader = new UserFileReader(file, UserFileReader.Format.CSV)){
+          for(int i = 0; i < unary; i++) stub.createUser(CreateUserRequest.newBuilder().setUser(reader.next().user()).build());
+        }
+        return unary;
+      });
+      measure("ImportUsers batch="+batch, channel -> {
+        ImportUsersResponse result = ImportUsersCli.importFile(channel, file, UserFileReader.Format.CSV, batch, null);
+        if(result.getFailed() > 0) throw new IllegalStateException(result.getErrors(0).getMessage());
+        return result.getImported();
+      });
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  interface Load { long run(ManagedChannel channel) throws Exception; }
+
+  private static void measure(String label, Load load) throws Exception {
+    GrpcServerFactory factory = new GrpcServerFactory(GrpcServerProperties.of(0, "cached"));
+    Server server = factory.build(new UserServiceImpl()).start();
+    ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+    try {
+      long t0 = System.nanoTime();
+      long rows = load.run(channel);
+      double seconds = (System.nanoTime() - t0) / 1e9;
+      System.out.printf("%-22s %,10d rows in %6.1f s  %,9.0f rows/s%n", label, rows, seconds, rows / seconds);
+    } finally {
+      channel.shutdownNow();
+      server.shutdownNow();
+      factory.close();
+    }
+  }
+}
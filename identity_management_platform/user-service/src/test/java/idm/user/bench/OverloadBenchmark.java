@@ -0,0 +1,92 @@
+package idm.user.bench;
+
+import idm.user.UserServiceImpl;
+import idm.user.config.ConcurrencyLimitProperties;
+import idm.user.config.GrpcServerFactory;
+import idm.user.config.GrpcServerProperties;
+import idm.user.limit.AdaptiveLimiter;
+import idm.user.limit.LoadSheddingInterceptor;
+import idm.user.v1.*;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Goodput under overload with and without {@link LoadSheddingInterceptor}: closed-loop clients with a fixed
+ * deadline against GetUser made artificially CPU-bound, far more clients than the server can serve in time.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) idm.user.bench.OverloadBenchmark 64 50 1000 10
+ * </pre>
+ */
+public class OverloadBenchmark {
+  public static void main(String[] args) throws Exception {
+    int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+    long deadlineMs = args.length > 1 ? Long.parseLong(args[1]) : 50;
+    long workMicros = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+    int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+    run(false, clients, deadlineMs, workMicros, seconds);
+    run(true, clients, deadlineMs, workMicros, seconds);
+  }
+
+  static void run(boolean limited, int clients, long deadlineMs, long workMicros, int seconds) throws Exception {
+    ServerInterceptor busy = new ServerInterceptor() {
+      @Override
+      public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        long until = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(workMicros);
+        while(System.nanoTime() < until) Thread.onSpinWait();
+        return next.startCall(call, headers);
+      }
+    };
+    AdaptiveLimiter limiter = new AdaptiveLimiter(ConcurrencyLimitProperties.defaults());
+    try(GrpcServerFactory factory = new GrpcServerFactory(GrpcServerProperties.of(0, "cached")).intercept(busy)){
+      if(limited) factory.intercept(new LoadSheddingInterceptor(limiter));
+      Server server = factory.build(new UserServiceImpl()).start();
+      ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+      var stub = UserServiceGrpc.newBlockingStub(channel);
+      String id = stub.createUser(CreateUserRequest.newBuilder().setUser(User.newBuilder().setUserName("hot")).build()).getUser().getId();
+      GetUserRequest get = GetUserRequest.newBuilder().setId(id).build();
+
+      LongAdder ok = new LongAdder(), timedOut = new LongAdder(), rejected = new LongAdder();
+      long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+      long end = warmupEnd + TimeUnit.SECONDS.toNanos(seconds);
+      List<Thread> threads = new ArrayList<>();
+      for(int c = 0; c < clients; c++){
+        Thread t = new Thread(() -> {
+          for(long now = System.nanoTime(); now < end; now = System.nanoTime()){
+            Status status = Status.OK;
+            try { stub.withDeadlineAfter(deadlineMs, TimeUnit.MILLISECONDS).getUser(get); }
+            catch (StatusRuntimeException e){ status = e.getStatus(); }
+            if(now < warmupEnd) continue;
+            if(status.isOk()) ok.increment();
+            else if(status.getCode() == Status.Code.DEADLINE_EXCEEDED && !String.valueOf(status.getDescription()).startsWith("Shed")) timedOut.increment();
+            else {
+              rejected.increment();
+              // Rejections are immediate; back off briefly like a real client would
+              try { Thread.sleep(1); } catch (InterruptedException e){ return; }
+            }
+          }
+        });
+        threads.add(t);
+        t.start();
+      }
+      for(Thread t : threads) t.join();
+      channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+      server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+      System.out.printf("limiter=%-5s clients=%d deadline=%dms work=%dus  goodput %,7.0f ok/s  timed out %,7.0f/s  shed/rejected %,7.0f/s%s%n",
+          limited, clients, deadlineMs, workMicros, ok.sum() / (double) seconds, timedOut.sum() / (double) seconds, rejected.sum() / (double) seconds,
+          limited ? "  final limit "+limiter.limit() : "");
+    }
+  }
+}
@@ -0,0 +1,270 @@
+package idm.user.bench;
+
+import com.google.protobuf.FieldMask;
+import idm.user.UserServiceImpl;
+import idm.user.config.GrpcServerFactory;
+import idm.user.config.GrpcServerProperties;
+import idm.user.v1.*;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.KnownLength;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end RPC cost of {@link UserServiceImpl} through generated stubs, real protobuf marshalling and a
+ * transport: in-process (no sockets) and loopback Netty. Closed-loop clients run a weighted mix of RPCs over
+ * Zipf-distributed ids and report throughput and latency percentiles per RPC type; each type is then run alone
+ * to measure bytes allocated per call across all threads (client, transport and server).
+ *
+ * <p>The in-process transport normally hands protobuf messages across without serializing them, which would
+ * hide the marshalling cost; a client interceptor forces both directions through bytes.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) idm.user.bench.RpcBenchmark inprocess,netty 8 10 10000 0.99 get=80,patch=10,update=4,create=3,search=3
+ * </pre>
+ */
+public class RpcBenchmark {
+  enum Rpc { GET, PATCH, UPDATE, CREATE, SEARCH }
+
+  public static void main(String[] args) throws Exception {
+    String[] transports = (args.length > 0 ? args[0] : "inprocess,netty").split(",");
+    int clients = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+    int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    int users = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+    double skew = args.length > 4 ? Double.parseDouble(args[4]) : 0.99;
+    Map<Rpc, Integer> mix = mix(args.length > 5 ? args[5] : "get=80,patch=10,update=4,create=3,search=3");
+    for(String transport : transports) run(transport.trim(), clients, seconds, users, skew, mix);
+  }
+
+  static void run(String transport, int clients, int seconds, int users, double skew, Map<Rpc, Integer> mix) throws Exception {
+    GrpcServerFactory factory = null;
+    Server server;
+    ManagedChannel channel;
+    if(transport.equals("netty")){
+      factory = new GrpcServerFactory(GrpcServerProperties.of(0, "cached"));
+      server = factory.build(new UserServiceImpl()).start();
+      channel = ManagedChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+    } else {
+      String name = "bench-"+System.nanoTime();
+      server = InProcessServerBuilder.forName(name).addService(new UserServiceImpl()).build().start();
+      channel = InProcessChannelBuilder.forName(name).build();
+    }
+    try {
+      Channel wire = transport.equals("netty") ? channel : ClientInterceptors.intercept(channel, new Serializing());
+      var stub = UserServiceGrpc.newBlockingStub(wire);
+      String[] ids = new String[users];
+      for(int i = 0; i < users; i++) ids[i] = stub.createUser(create("user"+i)).getUser().getId();
+      Workload workload = new Workload(stub, ids, zipf(users, skew), mix);
+
+      // Mixed load: throughput and latency per RPC type
+      long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+      long end = warmupEnd + TimeUnit.SECONDS.toNanos(seconds);
+      Recorder[] recorders = new Recorder[clients];
+      List<Thread> threads = new ArrayList<>();
+      Map<Long, Long> alloc0 = new HashMap<>();
+      long[] mixedAlloc = new long[1];
+      Thread sampler = new Thread(() -> {
+        try { Thread.sleep(Math.max(0, TimeUnit.NANOSECONDS.toMillis(warmupEnd - System.nanoTime()))); } catch (InterruptedException e){ return; }
+        alloc0.putAll(allocatedByThread());
+        try { Thread.sleep(TimeUnit.SECONDS.toMillis(seconds)); } catch (InterruptedException e){ return; }
+        mixedAlloc[0] = allocatedSince(alloc0);
+      });
+      sampler.start();
+      for(int c = 0; c < clients; c++){
+        Recorder rec = recorders[c] = new Recorder();
+        Thread t = new Thread(() -> {
+          SplittableRandom rnd = new SplittableRandom();
+          for(long now = System.nanoTime(); now < end; ){
+            Rpc rpc = workload.pick(rnd);
+            long t0 = System.nanoTime();
+            workload.call(rpc, rnd);
+            now = System.nanoTime();
+            if(t0 >= warmupEnd) rec.add(rpc, now - t0);
+          }
+        });
+        threads.add(t);
+        t.start();
+      }
+      for(Thread t : threads) t.join();
+      sampler.join();
+
+      System.out.printf("transport=%s clients=%d users=%,d zipf=%.2f  %,.0f ops/s  %,.1f MB/s allocated%n",
+          transport, clients, users, skew, Arrays.stream(recorders).mapToInt(Recorder::total).sum() / (double) seconds,
+          mixedAlloc[0] / (double) seconds / (1 << 20));
+      // Allocation per call: each type alone on one client, all threads' allocation attributed to it
+      for(Rpc rpc : mix.keySet()){
+        long[] all = Recorder.merge(recorders, rpc);
+        Arrays.sort(all);
+        SplittableRandom rnd = new SplittableRandom(42);
+        for(int i = 0; i < 2_000; i++) workload.call(rpc, rnd);
+        int calls = 20_000;
+        Map<Long, Long> before = allocatedByThread();
+        for(int i = 0; i < calls; i++) workload.call(rpc, rnd);
+        long bytes = allocatedSince(before);
+        System.out.printf("  %-6s %,9.0f ops/s  p50=%,6d us  p99=%,6d us  p99.9=%,6d us  %,7d B/op%n",
+            rpc.name().toLowerCase(), all.length / (double) seconds, pct(all, 0.50), pct(all, 0.99), pct(all, 0.999), bytes / calls);
+      }
+    } finally {
+      channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+      server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+      if(factory != null) factory.close();
+    }
+  }
+
+  private static final class Workload {
+    private final UserServiceGrpc.UserServiceBlockingStub stub;
+    private final String[] ids;
+    private final double[] cdf;
+    private final Rpc[] wheel;
+
+    Workload(UserServiceGrpc.UserServiceBlockingStub stub, String[] ids, double[] cdf, Map<Rpc, Integer> mix){
+      this.stub = stub;
+      this.ids = ids;
+      this.cdf = cdf;
+      List<Rpc> w = new ArrayList<>();
+      mix.forEach((rpc, weight) -> { for(int i = 0; i < weight; i++) w.add(rpc); });
+      this.wheel = w.toArray(new Rpc[0]);
+    }
+
+    Rpc pick(SplittableRandom rnd){ return wheel[rnd.nextInt(wheel.length)]; }
+
+    void call(Rpc rpc, SplittableRandom rnd){
+      int k = key(rnd);
+      switch(rpc){
+        case GET: stub.getUser(GetUserRequest.newBuilder().setId(ids[k]).build()); break;
+        case PATCH:
+          stub.patchUser(PatchUserRequest.newBuilder().setId(ids[k])
+              .setUser(User.newBuilder().setGivenName("g"+rnd.nextInt(1000)))
+              .setUpdateMask(FieldMask.newBuilder().addPaths("givenName")).build());
+          break;
+        case UPDATE:
+          stub.updateUser(UpdateUserRequest.newBuilder().setUser(User.newBuilder().setId(ids[k]).setUserName("user"+k)
+              .setFamilyName("f"+rnd.nextInt(1000)).addEmails("user"+k+"@example.com").setActive(true)).build());
+          break;
+        case CREATE: stub.createUser(create("new"+rnd.nextInt())); break;
+        default: stub.searchUsers(SearchUsersRequest.newBuilder().setFilter("userName eq \"user"+k+"\"").build());
+      }
+    }
+
+    private int key(SplittableRandom rnd){
+      int i = Arrays.binarySearch(cdf, rnd.nextDouble());
+      return Math.min(cdf.length - 1, i < 0 ? -i - 1 : i);
+    }
+  }
+
+  /** Per-client latency samples, one array per RPC type. */
+  private static final class Recorder {
+    final long[][] samples = new long[Rpc.values().length][1 << 16];
+    final int[] counts = new int[Rpc.values().length];
+
+    void add(Rpc rpc, long nanos){
+      int i = rpc.ordinal();
+      if(counts[i] == samples[i].length) samples[i] = Arrays.copyOf(samples[i], counts[i] * 2);
+      samples[i][counts[i]++] = nanos;
+    }
+
+    int total(){ return Arrays.stream(counts).sum(); }
+
+    static long[] merge(Recorder[] recorders, Rpc rpc){
+      int i = rpc.ordinal();
+      long[] out = new long[Arrays.stream(recorders).mapToInt(r -> r.counts[i]).sum()];
+      int off = 0;
+      for(Recorder r : recorders){
+        System.arraycopy(r.samples[i], 0, out, off, r.counts[i]);
+        off += r.counts[i];
+      }
+      return out;
+    }
+  }
+
+  /** Swaps both marshallers for ones that always go through a byte array, like a socket transport would. */
+  private static final class Serializing implements ClientInterceptor {
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions options, Channel next) {
+      return next.newCall(method.toBuilder(bytes(method.getRequestMarshaller()), bytes(method.getResponseMarshaller())).build(), options);
+    }
+
+    private static <T> MethodDescriptor.Marshaller<T> bytes(MethodDescriptor.Marshaller<T> delegate){
+      return new MethodDescriptor.Marshaller<>() {
+        @Override
+        public InputStream stream(T value){ return new ByteArrayInputStream(read(delegate.stream(value))); }
+        @Override
+        public T parse(InputStream in){ return delegate.parse(new ByteArrayInputStream(read(in))); }
+      };
+    }
+
+    private static byte[] read(InputStream in){
+      try(in){
+        // Protobuf and cached-response streams know their length; avoid readAllBytes' 8K scratch buffers
+        if(!(in instanceof KnownLength)) return in.readAllBytes();
+        byte[] out = new byte[in.available()];
+        in.readNBytes(out, 0, out.length);
+        return out;
+      }
+      catch (IOException e){ throw new UncheckedIOException(e); }
+    }
+  }
+
+  private static Map<Long, Long> allocatedByThread(){
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long[] ids = threads.getAllThreadIds();
+    long[] bytes = threads.getThreadAllocatedBytes(ids);
+    Map<Long, Long> out = new HashMap<>();
+    for(int i = 0; i < ids.length; i++) if(bytes[i] >= 0) out.put(ids[i], bytes[i]);
+    return out;
+  }
+
+  /** Bytes allocated by live threads since {@code before}; threads started in between count from zero. */
+  private static long allocatedSince(Map<Long, Long> before){
+    long sum = 0;
+    for(var e : allocatedByThread().entrySet()) sum += e.getValue() - before.getOrDefault(e.getKey(), 0L);
+    return sum;
+  }
+
+  private static Map<Rpc, Integer> mix(String spec){
+    Map<Rpc, Integer> out = new LinkedHashMap<>();
+    for(String part : spec.split(",")){
+      String[] kv = part.split("=");
+      out.put(Rpc.valueOf(kv[0].trim().toUpperCase()), Integer.parseInt(kv[1].trim()));
+    }
+    return out;
+  }
+
+  private static CreateUserRequest create(String name){
+    return CreateUserRequest.newBuilder().setUser(User.newBuilder().setUserName(name).addEmails(name+"@example.com").setActive(true)).build();
+  }
+
+  private static double[] zipf(int n, double s){
+    double[] cdf = new double[n];
+    double sum = 0;
+    for(int i = 0; i < n; i++) cdf[i] = sum += 1 / Math.pow(i + 1, s);
+    for(int i = 0; i < n; i++) cdf[i] /= sum;
+    return cdf;
+  }
+
+  private static long pct(long[] sorted, double p){
+    return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1_000;
+  }
+}
@@ -0,0 +1,67 @@
+package idm.user.bench;
+
+import idm.user.search.Filter;
+import idm.user.search.IndexedUserStore;
+import idm.user.store.HeapUserStore;
+import idm.user.store.OffHeapUserStore;
+import idm.user.store.UserStore;
+import idm.user.v1.User;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Indexed vs full-scan latency of {@link IndexedUserStore#search} for typical SCIM filters over N users.
+ *
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -Xmx4g -cp target/classes:target/test-classes:$(cat target/cp.txt) idm.user.bench.SearchBenchmark heap 1000000
+ * </pre>
+ */
+public class SearchBenchmark {
+  private static final List<String> FILTERS = List.of(
+      "userName eq \"user123456\"",
+      "emails eq \"user4242@example.com\"",
+      "familyName sw \"Family99\" and active eq true",
+      "userName sw \"user77\" or familyName eq \"family5\"",
+      "givenName eq \"Given7\" and familyName eq \"Family7\"",
+      "givenName co \"ven12345\"");
+
+  public static void main(String[] args){
+    String mode = args.length > 0 ? args[0] : "heap";
+    int count = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+    UserStore backing = "offheap".equals(mode) ? new OffHeapUserStore() : new HeapUserStore();
+    IndexedUserStore store = new IndexedUserStore(backing);
+    long t0 = System.nanoTime();
+    for(int i = 0; i < count; i++){
+      store.put(User.newBuilder().setId(UUID.randomUUID().toString()).setUserName("user"+i).setGivenName("Given"+i)
+          .setFamilyName("Family"+(i % 1000)).addEmails("user"+i+"@example.com").setActive((i & 1) == 0).build());
+    }
+    System.out.printf("mode=%s users=%,d load=%,d ms%n", mode, count, (System.nanoTime() - t0) / 1_000_000);
+
+    for(String text : FILTERS){
+      Filter filter = Filter.parse(text);
+      String plan = store.index().plan(filter).description();
+      long indexed = median(() -> store.search(filter).size());
+      long scan = median(() -> { int n = 0; for(User u : backing.values()) if(filter.test(u)) n++; return n; });
+      System.out.printf("  %-55s %-45s hits=%,7d indexed=%,10d us scan=%,10d us%n",
+          text, plan, store.search(filter).size(), indexed / 1000, scan / 1000);
+    }
+  }
+
+  private interface Query { int run(); }
+
+  private static long median(Query q){
+    long[] t = new long[7];
+    long sink = 0;
+    for(int i = 0; i < t.length; i++){
+      long s = System.nanoTime();
+      sink += q.run();
+      t[i] = System.nanoTime() - s;
+    }
+    Arrays.sort(t);
+    if(sink < 0) System.out.println(sink);
+    return t[t.length / 2];
+  }
+}
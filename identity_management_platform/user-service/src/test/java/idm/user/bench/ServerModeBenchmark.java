@@ -0,0 +1,85 @@
+package idm.user.bench;
+
+import idm.user.UserServiceImpl;
+import idm.user.config.GrpcServerFactory;
+import idm.user.config.GrpcServerProperties;
+import idm.user.v1.*;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop load against a loopback Netty server for each {@code grpc.server.executor} mode
+ * (90% GetUser / 10% CreateUser).
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) idm.user.bench.ServerModeBenchmark cached,direct,bounded 32 10
+ * </pre>
+ */
+public class ServerModeBenchmark {
+  public static void main(String[] args) throws Exception {
+    String[] modes = (args.length > 0 ? args[0] : "cached,direct,bounded").split(",");
+    int clients = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+    int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    for(String mode : modes) run(mode.trim(), clients, seconds);
+  }
+
+  static void run(String mode, int clients, int seconds) throws Exception {
+    try(GrpcServerFactory factory = new GrpcServerFactory(GrpcServerProperties.of(0, mode))){
+      Server server = factory.build(new UserServiceImpl()).start();
+      ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+      var stub = UserServiceGrpc.newBlockingStub(channel);
+      String[] ids = new String[10_000];
+      for(int i = 0; i < ids.length; i++) ids[i] = stub.createUser(request("seed"+i)).getUser().getId();
+
+      long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+      long end = warmupEnd + TimeUnit.SECONDS.toNanos(seconds);
+      List<Thread> threads = new ArrayList<>();
+      long[][] latencies = new long[clients][];
+      int[] counts = new int[clients];
+      for(int c = 0; c < clients; c++){
+        int slot = c;
+        Thread t = new Thread(() -> {
+          long[] lat = new long[1 << 20];
+          int n = 0;
+          ThreadLocalRandom rnd = ThreadLocalRandom.current();
+          for(long now = System.nanoTime(); now < end; ){
+            long t0 = System.nanoTime();
+            if(rnd.nextInt(10) == 0) stub.createUser(request("load"));
+            else stub.getUser(GetUserRequest.newBuilder().setId(ids[rnd.nextInt(ids.length)]).build());
+            now = System.nanoTime();
+            if(t0 >= warmupEnd && n < lat.length) lat[n++] = now - t0;
+          }
+          latencies[slot] = lat;
+          counts[slot] = n;
+        });
+        threads.add(t);
+        t.start();
+      }
+      for(Thread t : threads) t.join();
+      channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+      server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+
+      int total = Arrays.stream(counts).sum();
+      long[] all = new long[total];
+      for(int c = 0, off = 0; c < clients; off += counts[c], c++) System.arraycopy(latencies[c], 0, all, off, counts[c]);
+      Arrays.sort(all);
+      System.out.printf("executor=%-8s clients=%d  %,9.0f ops/s  p50=%,7d us  p99=%,7d us  p99.9=%,7d us%n",
+          mode, clients, total / (double) seconds, pct(all, 0.50), pct(all, 0.99), pct(all, 0.999));
+    }
+  }
+
+  private static CreateUserRequest request(String name){
+    return CreateUserRequest.newBuilder().setUser(User.newBuilder().setUserName(name).addEmails(name+"@example.com")).build();
+  }
+
+  private static long pct(long[] sorted, double p){
+    return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1_000;
+  }
+}
@@ -0,0 +1,78 @@
+package idm.user.bench;
+
+import idm.user.store.HeapUserStore;
+import idm.user.store.OffHeapUserStore;
+import idm.user.store.UserStore;
+import idm.user.v1.User;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Heap/GC footprint of a {@link UserStore} filled with N users.
+ *
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -Xmx8g -cp target/classes:target/test-classes:$(cat target/cp.txt) idm.user.bench.StoreFootprintBenchmark heap 10000000
+ * java -Xmx8g -cp ... idm.user.bench.StoreFootprintBenchmark offheap 10000000
+ * </pre>
+ */
+public class StoreFootprintBenchmark {
+  public static void main(String[] args){
+    String mode = args.length > 0 ? args[0] : "heap";
+    int count = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+    UserStore store = "offheap".equals(mode) ? new OffHeapUserStore() : new HeapUserStore();
+
+    long heapBefore = usedHeapAfterGc();
+    long[] gcBefore = gcTotals();
+    String[] sample = new String[1024];
+    long t0 = System.nanoTime();
+    for(int i = 0; i < count; i++){
+      String id = UUID.randomUUID().toString();
+      if(i < sample.length) sample[i] = id;
+      store.put(User.newBuilder().setId(id).setUserName("user"+i).setGivenName("Given"+i)
+          .setFamilyName("Family"+(i % 1000)).addEmails("user"+i+"@example.com").setActive((i & 1) == 0).build());
+    }
+    long loadMs = (System.nanoTime() - t0) / 1_000_000;
+    long[] gcLoad = gcTotals();
+    long heapAfter = usedHeapAfterGc();
+
+    int reads = 2_000_000;
+    long[] gcReadBefore = gcTotals();
+    t0 = System.nanoTime();
+    long sink = 0;
+    for(int i = 0; i < reads; i++) sink += store.get(sample[ThreadLocalRandom.current().nextInt(Math.min(count, sample.length))]).getUserNameBytes().size();
+    long readNs = System.nanoTime() - t0;
+    long[] gcRead = gcTotals();
+
+    System.out.printf("mode=%s users=%,d load=%,d ms%n", mode, count, loadMs);
+    System.out.printf("  retained heap  : %,d MB (%,d bytes/user)%n", (heapAfter - heapBefore) >> 20, (heapAfter - heapBefore) / count);
+    System.out.printf("  direct memory  : %,d MB%n", directBytes() >> 20);
+    System.out.printf("  gc during load : %d collections, %,d ms%n", gcLoad[0] - gcBefore[0], gcLoad[1] - gcBefore[1]);
+    System.out.printf("  gets           : %,d ns/op, gc %d collections, %,d ms (sink %d)%n",
+        readNs / reads, gcRead[0] - gcReadBefore[0], gcRead[1] - gcReadBefore[1], sink);
+  }
+
+  private static long usedHeapAfterGc(){
+    for(int i = 0; i < 3; i++) System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  private static long[] gcTotals(){
+    long count = 0, millis = 0;
+    for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()){
+      count += Math.max(0, gc.getCollectionCount());
+      millis += Math.max(0, gc.getCollectionTime());
+    }
+    return new long[]{count, millis};
+  }
+
+  private static long directBytes(){
+    for(BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class))
+      if("direct".equals(pool.getName())) return pool.getMemoryUsed();
+    return 0;
+  }
+}
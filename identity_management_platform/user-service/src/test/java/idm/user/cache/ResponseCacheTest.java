@@ -0,0 +1,81 @@
+package idm.user.cache;
+
+import idm.user.UserServiceImpl;
+import idm.user.config.GrpcServerFactory;
+import idm.user.config.GrpcServerProperties;
+import idm.user.store.OffHeapUserStore;
+import idm.user.watch.ChangeLog;
+import idm.user.v1.*;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResponseCacheTest {
+
+  @Test
+  void hot_keys_survive_a_scan_of_one_off_lookups() {
+    ResponseCache<byte[]> cache = new ResponseCache<>(100);
+    for(int i = 0; i < 20_000; i++){
+      // Half the traffic goes to 50 hot ids, the rest are ids seen once
+      String id = (i & 1) == 0 ? "hot"+(i / 2 % 50) : "cold"+i;
+      if(cache.get(id) == null) cache.fill(id, cache.stamp(id), new byte[]{1});
+    }
+    assertThat(cache.size()).isLessThanOrEqualTo(100);
+    int hot = 0;
+    for(int i = 0; i < 50; i++) if(cache.get("hot"+i) != null) hot++;
+    assertThat(hot).isEqualTo(50);
+  }
+
+  @Test
+  void fill_racing_with_invalidate_is_dropped() {
+    ResponseCache<byte[]> cache = new ResponseCache<>(10);
+    long stamp = cache.stamp("a");
+    cache.invalidate("a");
+    cache.fill("a", stamp, new byte[]{1});
+    assertThat(cache.get("a")).isNull();
+    cache.fill("a", cache.stamp("a"), new byte[]{2});
+    assertThat(cache.get("a")).containsExactly(2);
+  }
+
+  @Test
+  void get_user_over_the_wire_serves_cached_bytes_and_sees_writes() throws Exception {
+    getUserOverTheWire(new UserServiceImpl());
+  }
+
+  @Test
+  void get_user_over_the_wire_wraps_stored_offheap_bytes_without_a_cache() throws Exception {
+    getUserOverTheWire(new UserServiceImpl(new OffHeapUserStore(4096), 0, ChangeLog.DEFAULT_CAPACITY));
+  }
+
+  private static void getUserOverTheWire(UserServiceImpl service) throws Exception {
+    try(GrpcServerFactory factory = new GrpcServerFactory(GrpcServerProperties.of(0, "direct"))){
+      Server server = factory.build(service).start();
+      ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+      try {
+        var stub = UserServiceGrpc.newBlockingStub(channel);
+        User created = stub.createUser(CreateUserRequest.newBuilder().setUser(User.newBuilder().setUserName("svc")).build()).getUser();
+        GetUserRequest get = GetUserRequest.newBuilder().setId(created.getId()).build();
+        assertThat(stub.getUser(get).getUser()).isEqualTo(created);
+        assertThat(stub.getUser(get).getUser()).isEqualTo(created);
+
+        User updated = stub.updateUser(UpdateUserRequest.newBuilder().setUser(created.toBuilder().setGivenName("New")).build()).getUser();
+        assertThat(stub.getUser(get).getUser()).isEqualTo(updated);
+
+        stub.deleteUser(DeleteUserRequest.newBuilder().setId(created.getId()).build());
+        assertThatThrownBy(() -> stub.getUser(get)).isInstanceOf(StatusRuntimeException.class)
+            .satisfies(e -> assertThat(Status.fromThrowable(e).getCode()).isEqualTo(Status.Code.UNKNOWN));
+      } finally {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+      }
+    }
+  }
+}
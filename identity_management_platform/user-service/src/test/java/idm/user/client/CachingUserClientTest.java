@@ -0,0 +1,144 @@
+package idm.user.client;
+
+import idm.user.UserServiceImpl;
+import idm.user.v1.*;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingUserClientTest {
+  private final String name = "users-"+System.nanoTime();
+  private final List<ManagedChannel> channels = new ArrayList<>();
+  private Server server;
+  private UserServiceGrpc.UserServiceBlockingStub direct;
+
+  @BeforeEach
+  void start() throws Exception {
+    server = InProcessServerBuilder.forName(name).addService(new UserServiceImpl()).build().start();
+    direct = UserServiceGrpc.newBlockingStub(channel(name));
+  }
+
+  @AfterEach
+  void stop() {
+    channels.forEach(ManagedChannel::shutdownNow);
+    server.shutdownNow();
+  }
+
+  private ManagedChannel channel(String target, ClientInterceptor... interceptors){
+    ManagedChannel ch = InProcessChannelBuilder.forName(target).intercept(interceptors).build();
+    channels.add(ch);
+    return ch;
+  }
+
+  private User create(String userName){
+    return direct.createUser(CreateUserRequest.newBuilder().setUser(User.newBuilder().setUserName(userName)).build()).getUser();
+  }
+
+  private static GetUserRequest get(User u){ return GetUserRequest.newBuilder().setId(u.getId()).build(); }
+
+  @Test
+  void near_cache_is_invalidated_by_the_change_feed() throws Exception {
+    CachingUserClient.Options options = CachingUserClient.Options.defaults().withTtl(Duration.ZERO);
+    try(CachingUserClient client = new CachingUserClient(new ChannelPool(List.of(channel(name), channel(name))), options)){
+      User u = create("feed");
+      // Fills start once the feed is up
+      long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+      while(client.stats().hits() == 0 && System.nanoTime() < deadline) client.getUser(get(u));
+      assertThat(client.getUser(get(u)).getUser()).isEqualTo(u);
+      long hits = client.stats().hits();
+      assertThat(hits).isPositive();
+
+      // A write made elsewhere reaches the cache through WatchUsers
+      User updated = direct.updateUser(UpdateUserRequest.newBuilder().setUser(u.toBuilder().setGivenName("New")).build()).getUser();
+      while(!client.getUser(get(u)).getUser().equals(updated) && System.nanoTime() < deadline) Thread.sleep(5);
+      assertThat(client.getUser(get(u)).getUser()).isEqualTo(updated);
+      assertThat(client.stats().invalidations()).isPositive();
+
+      // Own writes are visible at once
+      User patched = client.patchUser(PatchUserRequest.newBuilder().setId(u.getId()).addAddEmails("x@example.com").build()).getUser();
+      assertThat(client.getUser(get(u)).getUser()).isEqualTo(patched);
+    }
+  }
+
+  @Test
+  void without_the_feed_entries_expire_after_the_ttl() throws Exception {
+    CachingUserClient.Options options = CachingUserClient.Options.defaults().withWatch(false).withTtl(Duration.ofMillis(200));
+    try(CachingUserClient client = new CachingUserClient(new ChannelPool(List.of(channel(name))), options)){
+      User u = create("ttl");
+      assertThat(client.getUser(get(u)).getUser()).isEqualTo(u);
+      direct.updateUser(UpdateUserRequest.newBuilder().setUser(u.toBuilder().setGivenName("New")).build());
+      assertThat(client.getUser(get(u)).getUser()).isEqualTo(u);
+      assertThat(client.stats().hits()).isEqualTo(1);
+
+      Thread.sleep(250);
+      assertThat(client.getUser(get(u)).getUser().getGivenName()).isEqualTo("New");
+    }
+  }
+
+  @Test
+  void slow_get_is_hedged_on_another_channel() throws Exception {
+    CachingUserClient.Options options = CachingUserClient.Options.defaults().withWatch(false).withCacheSize(0)
+        .withHedgeDelay(Duration.ofMillis(20));
+    ChannelPool pool = new ChannelPool(List.of(channel(name, slowGets(2_000)), channel(name)));
+    try(CachingUserClient client = new CachingUserClient(pool, options)){
+      User u = create("hedged");
+      long t0 = System.nanoTime();
+      assertThat(client.getUser(get(u)).getUser()).isEqualTo(u);
+      assertThat(Duration.ofNanos(System.nanoTime() - t0)).isLessThan(Duration.ofMillis(1_000));
+      assertThat(client.stats().hedges()).isEqualTo(1);
+      assertThat(client.stats().hedgeWins()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void unavailable_get_sends_the_hedge_at_once() throws Exception {
+    CachingUserClient.Options options = CachingUserClient.Options.defaults().withWatch(false).withCacheSize(0)
+        .withHedgeDelay(Duration.ofSeconds(30));
+    ChannelPool pool = new ChannelPool(List.of(channel("nowhere-"+System.nanoTime()), channel(name)));
+    try(CachingUserClient client = new CachingUserClient(pool, options)){
+      User u = create("retried");
+      assertThat(client.getUser(get(u)).getUser()).isEqualTo(u);
+      assertThat(client.stats().hedgeWins()).isEqualTo(1);
+    }
+  }
+
+  private static ClientInterceptor slowGets(long millis){
+    return new ClientInterceptor() {
+      @Override
+      public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions options, Channel next) {
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, options)) {
+          @Override
+          public void start(Listener<RespT> listener, Metadata headers) {
+            super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(listener) {
+              @Override
+              public void onMessage(RespT message) {
+                if(method.getBareMethodName().equals("GetUser")){
+                  try { Thread.sleep(millis); } catch (InterruptedException e){ Thread.currentThread().interrupt(); }
+                }
+                super.onMessage(message);
+              }
+            }, headers);
+          }
+        };
+      }
+    };
+  }
+}
@@ -0,0 +1,44 @@
+package idm.user.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashRingTest {
+
+  @Test
+  void spreads_keys_evenly_and_moves_only_keys_gained_by_a_new_node() {
+    Map<String, String> three = Map.of("a", "a", "b", "b", "c", "c");
+    Map<String, String> four = new HashMap<>(three);
+    four.put("d", "d");
+    HashRing<String> before = new HashRing<>(three), after = new HashRing<>(four);
+
+    int keys = 40_000, moved = 0;
+    Map<String, Integer> load = new HashMap<>();
+    for(int i = 0; i < keys; i++){
+      String id = UUID.nameUUIDFromBytes(("k"+i).getBytes()).toString();
+      String was = before.owner(id), now = after.owner(id);
+      load.merge(was, 1, Integer::sum);
+      if(!was.equals(now)){
+        moved++;
+        assertThat(now).isEqualTo("d");
+      }
+    }
+    assertThat(load.values()).allSatisfy(n -> assertThat(n).isBetween(keys / 3 * 8 / 10, keys / 3 * 12 / 10));
+    assertThat(moved).isBetween(keys / 4 * 7 / 10, keys / 4 * 13 / 10);
+  }
+
+  @Test
+  void placement_ignores_insertion_order() {
+    Map<String, Integer> forward = new LinkedHashMap<>(), reverse = new LinkedHashMap<>();
+    for(int i = 0; i < 5; i++) forward.put("shard-"+i, i);
+    for(int i = 4; i >= 0; i--) reverse.put("shard-"+i, i);
+    HashRing<Integer> a = new HashRing<>(forward), b = new HashRing<>(reverse);
+    for(int i = 0; i < 1000; i++) assertThat(a.owner("id"+i)).isEqualTo(b.owner("id"+i));
+  }
+}
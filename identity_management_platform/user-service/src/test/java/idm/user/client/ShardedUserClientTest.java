@@ -0,0 +1,100 @@
+package idm.user.client;
+
+import idm.user.UserServiceImpl;
+import idm.user.v1.*;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardedUserClientTest {
+  private final List<Server> servers = new ArrayList<>();
+  private final Map<String, ManagedChannel> channels = new LinkedHashMap<>();
+  private final Map<String, UserServiceImpl> services = new LinkedHashMap<>();
+  private ShardedUserClient client;
+
+  @BeforeEach
+  void start() throws Exception {
+    for(String shard : List.of("users-0", "users-1", "users-2")){
+      String name = shard+"-"+System.nanoTime();
+      UserServiceImpl service = new UserServiceImpl();
+      servers.add(InProcessServerBuilder.forName(name).directExecutor().addService(service).build().start());
+      channels.put(shard, InProcessChannelBuilder.forName(name).directExecutor().build());
+      services.put(shard, service);
+    }
+    client = new ShardedUserClient(channels);
+  }
+
+  @AfterEach
+  void stop() {
+    channels.values().forEach(ManagedChannel::shutdownNow);
+    servers.forEach(Server::shutdownNow);
+  }
+
+  private static CreateUserRequest create(String name){
+    return CreateUserRequest.newBuilder().setUser(User.newBuilder().setUserName(name).setActive(true)).build();
+  }
+
+  @Test
+  void single_user_calls_land_on_the_owning_shard_only() {
+    List<User> created = new ArrayList<>();
+    for(int i = 0; i < 300; i++) created.add(client.createUser(create("u"+i)).getUser());
+
+    for(User u : created){
+      String owner = client.shardFor(u.getId());
+      for(var e : channels.entrySet()){
+        ListUsersResponse found = UserServiceGrpc.newBlockingStub(e.getValue())
+            .searchUsers(SearchUsersRequest.newBuilder().setFilter("id eq \""+u.getId()+"\"").build());
+        assertThat(found.getTotal()).isEqualTo(e.getKey().equals(owner) ? 1 : 0);
+      }
+    }
+    for(ManagedChannel ch : channels.values())
+      assertThat(UserServiceGrpc.newBlockingStub(ch).listUsers(ListUsersRequest.getDefaultInstance()).getTotal()).isGreaterThan(50);
+
+    User first = created.get(0);
+    assertThat(client.getUser(GetUserRequest.newBuilder().setId(first.getId()).build()).getUser()).isEqualTo(first);
+    User updated = client.updateUser(UpdateUserRequest.newBuilder().setUser(first.toBuilder().setGivenName("G")).build()).getUser();
+    assertThat(updated.getVersion()).isEqualTo(2);
+    User patched = client.patchUser(PatchUserRequest.newBuilder().setId(first.getId()).addAddEmails("x@example.com").build()).getUser();
+    assertThat(patched.getEmailsList()).containsExactly("x@example.com");
+    assertThat(client.deleteUser(DeleteUserRequest.newBuilder().setId(first.getId()).build()).getDeleted()).isTrue();
+    assertThat(client.listUsers(ListUsersRequest.getDefaultInstance()).getTotal()).isEqualTo(299);
+  }
+
+  @Test
+  void search_merges_shards_in_id_order_and_pages_globally() {
+    List<String> ids = new ArrayList<>();
+    for(int i = 0; i < 60; i++) ids.add(client.createUser(create(i % 2 == 0 ? "even"+i : "odd"+i)).getUser().getId());
+
+    ListUsersResponse page = client.searchUsers(SearchUsersRequest.newBuilder().setFilter("userName sw \"even\"").setStartIndex(11).setCount(10).build());
+    List<User> all = client.searchUsers(SearchUsersRequest.newBuilder().setFilter("userName sw \"even\"").build()).getUsersList();
+    assertThat(page.getTotal()).isEqualTo(30);
+    assertThat(all).hasSize(30).isSortedAccordingTo(Comparator.comparing(User::getId));
+    assertThat(page.getUsersList()).isEqualTo(all.subList(10, 20));
+  }
+
+  @Test
+  void ranked_search_merges_shards_by_score() {
+    for(int i = 0; i < 60; i++) client.createUser(create(i % 3 == 0 ? "maria"+i : i % 3 == 1 ? "mario"+i : "otto"+i));
+
+    ListUsersResponse all = client.searchUsers(SearchUsersRequest.newBuilder().setQuery("maria").build());
+    ListUsersResponse page = client.searchUsers(SearchUsersRequest.newBuilder().setQuery("maria").setStartIndex(6).setCount(20).build());
+    assertThat(all.getTotal()).isEqualTo(40);
+    assertThat(all.getUsersList().subList(0, 20)).allSatisfy(u -> assertThat(u.getUserName()).startsWith("maria"));
+    assertThat(all.getScoresList()).isSortedAccordingTo(Comparator.reverseOrder());
+    assertThat(page.getTotal()).isEqualTo(40);
+    assertThat(page.getUsersList()).isEqualTo(all.getUsersList().subList(5, 25));
+    assertThat(page.getScoresList()).isEqualTo(all.getScoresList().subList(5, 25));
+  }
+}
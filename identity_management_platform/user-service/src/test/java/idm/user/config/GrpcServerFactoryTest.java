@@ -0,0 +1,64 @@
+package idm.user.config;
+
+import idm.user.UserServiceImpl;
+import idm.user.v1.*;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GrpcServerFactoryTest {
+
+  @Test
+  void every_executor_mode_serves_calls() throws Exception {
+    for(String mode : new String[]{"cached", "direct", "bounded"}){
+      GrpcServerProperties props = new GrpcServerProperties(0, mode, 2, 16, 1, 1, 8, Duration.ofMinutes(1),
+          Duration.ofSeconds(5), Duration.ofSeconds(30), true, DataSize.ofKilobytes(64),
+          DataSize.ofKilobytes(8));
+      try(GrpcServerFactory factory = new GrpcServerFactory(props)){
+        Server server = factory.build(new UserServiceImpl()).start();
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+        try {
+          var stub = UserServiceGrpc.newBlockingStub(channel);
+          User created = stub.createUser(CreateUserRequest.newBuilder()
+              .setUser(User.newBuilder().setUserName("mode-"+mode)).build()).getUser();
+          assertThat(stub.getUser(GetUserRequest.newBuilder().setId(created.getId()).build()).getUser().getUserName())
+              .isEqualTo("mode-"+mode);
+        } finally {
+          channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+          server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+      }
+    }
+  }
+
+  @Test
+  void boss_threads_apply_without_worker_threads() throws Exception {
+    GrpcServerProperties props = new GrpcServerProperties(0, "direct", 0, 1000, 2, 0, 0, Duration.ofHours(2),
+        Duration.ofSeconds(20), Duration.ofMinutes(5), false, DataSize.ofMegabytes(4), DataSize.ofKilobytes(8));
+    Set<Thread> before = Thread.getAllStackTraces().keySet();
+    try(GrpcServerFactory factory = new GrpcServerFactory(props)){
+      Server server = factory.build(new UserServiceImpl()).start();
+      try {
+        assertThat(Thread.getAllStackTraces().keySet()).filteredOn(t -> !before.contains(t))
+            .extracting(Thread::getName).anyMatch(n -> n.startsWith("grpc-boss-"));
+      } finally {
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+      }
+    }
+  }
+
+  @Test
+  void unknown_executor_is_rejected() {
+    assertThatThrownBy(() -> new GrpcServerFactory(GrpcServerProperties.of(0, "nope")).build(new UserServiceImpl()))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,167 @@
+package idm.user.group;
+
+import idm.user.UserServiceImpl;
+import idm.user.id.IdGenerator;
+import idm.user.v1.*;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GroupServiceImplTest {
+  private UserServiceImpl service;
+  private Server server;
+  private ManagedChannel channel;
+  private UserServiceGrpc.UserServiceBlockingStub users;
+  private GroupServiceGrpc.GroupServiceBlockingStub groups;
+
+  @BeforeEach
+  void start() throws Exception {
+    String name = "groups-"+System.nanoTime();
+    service = new UserServiceImpl();
+    server = InProcessServerBuilder.forName(name).directExecutor()
+        .addService(service).addService(new GroupServiceImpl(service.groups(), IdGenerator.RANDOM_UUID)).build().start();
+    channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+    users = UserServiceGrpc.newBlockingStub(channel);
+    groups = GroupServiceGrpc.newBlockingStub(channel);
+  }
+
+  @AfterEach
+  void stop() {
+    channel.shutdownNow();
+    server.shutdownNow();
+  }
+
+  private List<String> createUsers(int n){
+    List<String> ids = new ArrayList<>();
+    for(int i = 0; i < n; i++)
+      ids.add(users.createUser(CreateUserRequest.newBuilder().setUser(User.newBuilder().setUserName("u"+i)).build()).getUser().getId());
+    return ids;
+  }
+
+  private static Status.Code code(Runnable call){
+    try { call.run(); } catch (StatusRuntimeException e){ return e.getStatus().getCode(); }
+    return Status.Code.OK;
+  }
+
+  @Test
+  void manages_members_checks_and_intersections() {
+    List<String> ids = createUsers(100);
+    Group admins = groups.createGroup(CreateGroupRequest.newBuilder().setGroup(Group.newBuilder().setDisplayName("admins"))
+        .addAllMemberIds(ids.subList(0, 10)).build()).getGroup();
+    assertThat(admins.getId()).isNotBlank();
+    assertThat(admins.getMemberCount()).isEqualTo(10);
+    Group staff = groups.createGroup(CreateGroupRequest.newBuilder().setGroup(Group.newBuilder().setId("staff").setDisplayName("staff"))
+        .addAllMemberIds(ids.subList(5, 60)).build()).getGroup();
+
+    assertThat(groups.checkMembership(CheckMembershipRequest.newBuilder().setGroupId(admins.getId()).setUserId(ids.get(3)).build()).getMember()).isTrue();
+    assertThat(groups.checkMembership(CheckMembershipRequest.newBuilder().setGroupId(admins.getId()).setUserId(ids.get(30)).build()).getMember()).isFalse();
+    assertThat(groups.checkMembership(CheckMembershipRequest.newBuilder().setGroupId(admins.getId()).setUserId("nobody").build()).getMember()).isFalse();
+
+    ListMembersResponse both = groups.listMembers(ListMembersRequest.newBuilder().addGroupIds(admins.getId()).addGroupIds("staff").build());
+    assertThat(both.getTotal()).isEqualTo(5);
+    assertThat(both.getUserIdsList()).containsExactlyElementsOf(ids.subList(5, 10));
+    ListMembersResponse page = groups.listMembers(ListMembersRequest.newBuilder().addGroupIds("staff").setStartIndex(11).setCount(5).build());
+    assertThat(page.getTotal()).isEqualTo(55);
+    assertThat(page.getUserIdsList()).containsExactlyElementsOf(ids.subList(15, 20));
+
+    Group grown = groups.addMembers(ModifyMembersRequest.newBuilder().setGroupId("staff").addAllUserIds(ids.subList(50, 100)).build()).getGroup();
+    assertThat(grown.getMemberCount()).isEqualTo(95);
+    assertThat(code(() -> groups.addMembers(ModifyMembersRequest.newBuilder().setGroupId("staff").addUserIds(ids.get(0)).addUserIds("nobody").build())))
+        .isEqualTo(Status.Code.INVALID_ARGUMENT);
+    assertThat(groups.getGroup(GetGroupRequest.newBuilder().setId("staff").build()).getGroup().getMemberCount()).isEqualTo(95);
+    Group shrunk = groups.removeMembers(ModifyMembersRequest.newBuilder().setGroupId("staff").addAllUserIds(ids.subList(0, 50)).addUserIds("nobody").build()).getGroup();
+    assertThat(shrunk.getMemberCount()).isEqualTo(50);
+
+    // Deleting a user takes it out of every group
+    users.deleteUser(DeleteUserRequest.newBuilder().setId(ids.get(7)).build());
+    assertThat(groups.getGroup(GetGroupRequest.newBuilder().setId(admins.getId()).build()).getGroup().getMemberCount()).isEqualTo(9);
+    assertThat(groups.checkMembership(CheckMembershipRequest.newBuilder().setGroupId(admins.getId()).setUserId(ids.get(7)).build()).getMember()).isFalse();
+
+    assertThat(code(() -> groups.createGroup(CreateGroupRequest.newBuilder().setGroup(Group.newBuilder().setId("staff")).build())))
+        .isEqualTo(Status.Code.ALREADY_EXISTS);
+    assertThat(groups.deleteGroup(DeleteGroupRequest.newBuilder().setId("staff").build()).getDeleted()).isTrue();
+    assertThat(code(() -> groups.getGroup(GetGroupRequest.newBuilder().setId("staff").build()))).isEqualTo(Status.Code.NOT_FOUND);
+    assertThat(code(() -> groups.listMembers(ListMembersRequest.newBuilder().addGroupIds(admins.getId()).addGroupIds("staff").build())))
+        .isEqualTo(Status.Code.NOT_FOUND);
+  }
+
+  @Test
+  void deleted_users_leave_groups_after_membership_churn() {
+    GroupDirectory directory = service.groups();
+    List<String> ids = createUsers(3);
+    directory.create("a", "a", ids);
+    directory.create("b", "b", ids);
+    directory.removeMembers("a", List.of(ids.get(0)));
+    directory.addMembers("a", List.of(ids.get(0)));
+    directory.delete("b");
+    directory.create("b", "b again", List.of(ids.get(0), ids.get(1)));
+    directory.create("c", "c", List.of(ids.get(2)));
+    try { directory.addMembers("c", List.of(ids.get(0), "nobody")); } catch (StatusRuntimeException e){ /* all or none */ }
+
+    users.deleteUser(DeleteUserRequest.newBuilder().setId(ids.get(0)).build());
+    assertThat(directory.members(List.of("a"), 0, 0).ids()).containsExactly(ids.get(1), ids.get(2));
+    assertThat(directory.members(List.of("b"), 0, 0).ids()).containsExactly(ids.get(1));
+    assertThat(directory.members(List.of("c"), 0, 0).ids()).containsExactly(ids.get(2));
+    assertThat(directory.get("a").members().cardinality()).isEqualTo(2);
+    assertThat(directory.get("b").members().cardinality()).isEqualTo(1);
+  }
+
+  @Test
+  void users_deleted_while_being_added_never_stay_members() throws Exception {
+    GroupDirectory directory = service.groups();
+    directory.create("g", "racing", List.of());
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      for(int round = 0; round < 200; round++){
+        List<String> ids = createUsers(20);
+        Future<?> adds = pool.submit(() -> {
+          for(String id : ids){
+            try { directory.addMembers("g", List.of(id)); } catch (StatusRuntimeException e){ /* deleted first */ }
+          }
+        });
+        Future<?> deletes = pool.submit(() -> { for(String id : ids) users.deleteUser(DeleteUserRequest.newBuilder().setId(id).build()); });
+        adds.get();
+        deletes.get();
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    assertThat(directory.get("g").members().cardinality()).isZero();
+  }
+
+  @Test
+  void member_totals_agree_with_the_listing_while_users_are_deleted() throws Exception {
+    GroupDirectory directory = service.groups();
+    List<String> ids = createUsers(300);
+    // Several groups make each delete's walk over them longer
+    for(int g = 0; g < 20; g++) directory.create("g"+g, "group "+g, ids);
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> deletes = pool.submit(() -> { for(String id : ids) users.deleteUser(DeleteUserRequest.newBuilder().setId(id).build()); });
+      while(!deletes.isDone()){
+        GroupDirectory.Members all = directory.members(List.of("g0", "g19"), 0, 0);
+        assertThat(all.ids()).hasSize((int) all.total());
+        GroupDirectory.Members page = directory.members(List.of("g19"), 0, 10);
+        assertThat(page.ids()).hasSize((int) Math.min(10, page.total()));
+      }
+      deletes.get();
+    } finally {
+      pool.shutdownNow();
+    }
+    assertThat(directory.members(List.of("g0"), 0, 0).total()).isZero();
+  }
+}
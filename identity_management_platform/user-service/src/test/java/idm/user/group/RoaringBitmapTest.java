@@ -0,0 +1,87 @@
+package idm.user.group;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoaringBitmapTest {
+
+  private static void assertSame(RoaringBitmap bitmap, TreeSet<Integer> expected){
+    assertThat(bitmap.cardinality()).isEqualTo(expected.size());
+    assertThat(bitmap.range(0, expected.size())).containsExactly(expected.stream().mapToInt(Integer::intValue).toArray());
+    for(int v : expected) assertThat(bitmap.contains(v)).isTrue();
+  }
+
+  @Test
+  void matches_a_sorted_set_across_array_and_bitmap_containers() {
+    Random random = new Random(42);
+    RoaringBitmap bitmap = RoaringBitmap.EMPTY;
+    TreeSet<Integer> expected = new TreeSet<>();
+    for(int round = 0; round < 200; round++){
+      // Mostly dense low values (bitmap containers), some sparse high ones (array containers)
+      int[] batch = new int[random.nextInt(2_000)];
+      for(int i = 0; i < batch.length; i++) batch[i] = random.nextInt(10) < 8 ? random.nextInt(200_000) : random.nextInt(Integer.MAX_VALUE);
+      if(random.nextInt(3) == 0){
+        bitmap = bitmap.without(batch);
+        for(int v : batch) expected.remove(v);
+      } else {
+        bitmap = bitmap.with(batch);
+        for(int v : batch) expected.add(v);
+      }
+      for(int i = 0; i < 50; i++){
+        int probe = random.nextInt(200_000);
+        assertThat(bitmap.contains(probe)).isEqualTo(expected.contains(probe));
+      }
+    }
+    assertSame(bitmap, expected);
+    assertThat(bitmap.without(expected.stream().mapToInt(Integer::intValue).toArray()).isEmpty()).isTrue();
+  }
+
+  @Test
+  void updates_leave_earlier_versions_untouched() {
+    RoaringBitmap before = RoaringBitmap.of(1, 2, 70_000);
+    RoaringBitmap after = before.with(3).without(70_000);
+    assertThat(before.range(0, 10)).containsExactly(1, 2, 70_000);
+    assertThat(after.range(0, 10)).containsExactly(1, 2, 3);
+  }
+
+  @Test
+  void intersects_and_pages() {
+    Random random = new Random(7);
+    List<TreeSet<Integer>> sets = new ArrayList<>();
+    List<RoaringBitmap> bitmaps = new ArrayList<>();
+    for(int s = 0; s < 3; s++){
+      TreeSet<Integer> set = new TreeSet<>();
+      int[] values = new int[s == 0 ? 150_000 : 3_000];
+      for(int i = 0; i < values.length; i++) set.add(values[i] = random.nextInt(300_000));
+      sets.add(set);
+      bitmaps.add(RoaringBitmap.of(values));
+    }
+    for(int a = 0; a < 3; a++) for(int b = 0; b < 3; b++){
+      TreeSet<Integer> expected = new TreeSet<>(sets.get(a));
+      expected.retainAll(sets.get(b));
+      assertSame(bitmaps.get(a).and(bitmaps.get(b)), expected);
+    }
+
+    RoaringBitmap big = bitmaps.get(0);
+    List<Integer> all = new ArrayList<>(sets.get(0));
+    for(long from : new long[]{0, 1, 4_095, 65_000, all.size() - 5, all.size(), all.size() + 10}){
+      int[] page = big.range(from, 100);
+      assertThat(page).hasSize((int) Math.max(0, Math.min(100, all.size() - from)));
+      for(int i = 0; i < page.length; i++) assertThat(page[i]).isEqualTo(all.get((int) from + i));
+    }
+  }
+
+  @Test
+  void dense_members_stay_small() {
+    int[] million = new int[1_000_000];
+    for(int i = 0; i < million.length; i++) million[i] = i;
+    // 16 full bitmap containers of 8 KB each
+    assertThat(RoaringBitmap.of(million).sizeInBytes()).isLessThan(140_000);
+  }
+}
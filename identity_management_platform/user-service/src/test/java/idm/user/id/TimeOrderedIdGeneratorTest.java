@@ -0,0 +1,82 @@
+package idm.user.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimeOrderedIdGeneratorTest {
+
+  @Test
+  void ids_are_uuidv7_strictly_increasing_and_carry_time_and_node() {
+    TimeOrderedIdGenerator ids = new TimeOrderedIdGenerator(517);
+    long before = System.currentTimeMillis();
+    String prev = ids.next();
+    for(int i = 0; i < 100_000; i++){
+      String id = ids.next();
+      assertThat(id).isGreaterThan(prev);
+      prev = id;
+    }
+    UUID uuid = UUID.fromString(prev);
+    assertThat(uuid.version()).isEqualTo(7);
+    assertThat(uuid.variant()).isEqualTo(2);
+    assertThat(prev).isLowerCase();
+    assertThat(TimeOrderedIdGenerator.node(prev)).isEqualTo(517);
+    // the counter may have borrowed a few milliseconds ahead under this burst
+    assertThat(TimeOrderedIdGenerator.timestamp(prev)).isBetween(before, System.currentTimeMillis() + 1_000);
+  }
+
+  @Test
+  void stays_monotonic_when_the_clock_stalls_or_steps_back() {
+    AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+    TimeOrderedIdGenerator ids = new TimeOrderedIdGenerator(1, clock::get);
+    List<String> out = new ArrayList<>();
+    // More ids than one millisecond's counter holds, then a backwards step
+    for(int i = 0; i < (1 << TimeOrderedIdGenerator.COUNTER_BITS) + 10; i++) out.add(ids.next());
+    clock.addAndGet(-5_000);
+    for(int i = 0; i < 10; i++) out.add(ids.next());
+    for(int i = 1; i < out.size(); i++) assertThat(out.get(i)).isGreaterThan(out.get(i - 1));
+    assertThat(TimeOrderedIdGenerator.timestamp(out.get(out.size() - 1))).isEqualTo(1_700_000_000_001L);
+
+    clock.set(1_700_000_000_100L);
+    assertThat(TimeOrderedIdGenerator.timestamp(ids.next())).isEqualTo(1_700_000_000_100L);
+  }
+
+  @Test
+  void concurrent_callers_get_unique_ids() throws Exception {
+    TimeOrderedIdGenerator ids = new TimeOrderedIdGenerator(3);
+    Set<String> seen = ConcurrentHashMap.newKeySet();
+    AtomicLong outOfOrder = new AtomicLong();
+    List<Thread> threads = new ArrayList<>();
+    for(int t = 0; t < 4; t++){
+      Thread thread = new Thread(() -> {
+        String prev = "";
+        for(int i = 0; i < 50_000; i++){
+          String id = ids.next();
+          if(id.compareTo(prev) <= 0) outOfOrder.incrementAndGet();
+          seen.add(id);
+          prev = id;
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for(Thread t : threads) t.join();
+    assertThat(seen).hasSize(200_000);
+    assertThat(outOfOrder).hasValue(0);
+  }
+
+  @Test
+  void rejects_out_of_range_nodes_and_unknown_kinds() {
+    assertThatThrownBy(() -> new TimeOrderedIdGenerator(TimeOrderedIdGenerator.MAX_NODE + 1)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> IdGenerator.of("snowflake", 0)).isInstanceOf(IllegalArgumentException.class);
+    assertThat(IdGenerator.of("random", 0).next()).satisfies(id -> assertThat(UUID.fromString(id).version()).isEqualTo(4));
+  }
+}
@@ -0,0 +1,134 @@
+package idm.user.lifecycle;
+
+import idm.user.UserServiceImpl;
+import idm.user.config.GrpcServerFactory;
+import idm.user.config.GrpcServerProperties;
+import idm.user.config.LifecycleProperties;
+import idm.user.v1.*;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
+import io.grpc.health.v1.HealthGrpc;
+import io.grpc.protobuf.services.HealthStatusManager;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ServerLifecycleTest {
+
+  private static ServingStatus health(ManagedChannel channel){
+    return HealthGrpc.newBlockingStub(channel).check(HealthCheckRequest.newBuilder().setService(UserServiceGrpc.SERVICE_NAME).build()).getStatus();
+  }
+
+  @Test
+  void warms_up_before_serving_and_drains_in_flight_calls() throws Exception {
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ServerInterceptor slowGetUser = new ServerInterceptor() {
+      @Override
+      public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        if(call.getMethodDescriptor().getBareMethodName().equals("GetUser")){
+          entered.countDown();
+          try { release.await(5, TimeUnit.SECONDS); } catch (InterruptedException e){ Thread.currentThread().interrupt(); }
+        }
+        return next.startCall(call, headers);
+      }
+    };
+    ExecutorService clients = Executors.newSingleThreadExecutor();
+    GrpcServerFactory factory = new GrpcServerFactory(GrpcServerProperties.of(0, "cached")).intercept(slowGetUser);
+    HealthStatusManager health = new HealthStatusManager();
+    Server server = factory.build(new UserServiceImpl(), health.getHealthService());
+    ServerLifecycle lifecycle = new ServerLifecycle(server, health, new LifecycleProperties(10, Duration.ofMillis(300), Duration.ofSeconds(5)),
+        UserServiceGrpc.SERVICE_NAME).onTerminated(factory);
+    AtomicReference<ManagedChannel> channel = new AtomicReference<>();
+    AtomicReference<ServingStatus> duringWarmup = new AtomicReference<>();
+    try {
+      lifecycle.start(() -> {
+        channel.set(ManagedChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build());
+        duringWarmup.set(health(channel.get()));
+        Warmup.run(10);
+      });
+      assertThat(duringWarmup.get()).isEqualTo(ServingStatus.NOT_SERVING);
+      assertThat(health(channel.get())).isEqualTo(ServingStatus.SERVING);
+
+      var stub = UserServiceGrpc.newBlockingStub(channel.get());
+      User created = stub.createUser(CreateUserRequest.newBuilder().setUser(User.newBuilder().setUserName("x")).build()).getUser();
+      Future<UserResponse> inFlight = clients.submit(() -> stub.getUser(GetUserRequest.newBuilder().setId(created.getId()).build()));
+      assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+      CompletableFuture<Boolean> drained = CompletableFuture.supplyAsync(lifecycle::drain);
+      Thread.sleep(100);
+      // Drain delay: advertised NOT_SERVING but still accepting calls
+      assertThat(health(channel.get())).isEqualTo(ServingStatus.NOT_SERVING);
+      assertThat(stub.listUsers(ListUsersRequest.getDefaultInstance()).getTotal()).isEqualTo(1);
+
+      Thread.sleep(400);
+      assertThatThrownBy(() -> stub.listUsers(ListUsersRequest.getDefaultInstance()))
+          .isInstanceOf(StatusRuntimeException.class)
+          .satisfies(e -> assertThat(Status.fromThrowable(e).getCode()).isEqualTo(Status.Code.UNAVAILABLE));
+      assertThat(drained).isNotDone();
+
+      release.countDown();
+      assertThat(inFlight.get(5, TimeUnit.SECONDS).getUser()).isEqualTo(created);
+      assertThat(drained.get(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(server.isTerminated()).isTrue();
+    } finally {
+      release.countDown();
+      clients.shutdownNow();
+      if(channel.get() != null) channel.get().shutdownNow();
+      server.shutdownNow();
+    }
+  }
+
+  @Test
+  void drain_cancels_calls_that_outlive_the_timeout() throws Exception {
+    CountDownLatch never = new CountDownLatch(1);
+    CountDownLatch entered = new CountDownLatch(1);
+    ServerInterceptor stuck = new ServerInterceptor() {
+      @Override
+      public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        if(call.getMethodDescriptor().getBareMethodName().equals("ListUsers")){
+          entered.countDown();
+          try { never.await(); } catch (InterruptedException e){ Thread.currentThread().interrupt(); }
+        }
+        return next.startCall(call, headers);
+      }
+    };
+    ExecutorService clients = Executors.newSingleThreadExecutor();
+    GrpcServerFactory factory = new GrpcServerFactory(GrpcServerProperties.of(0, "cached")).intercept(stuck);
+    HealthStatusManager health = new HealthStatusManager();
+    Server server = factory.build(new UserServiceImpl(), health.getHealthService());
+    ServerLifecycle lifecycle = new ServerLifecycle(server, health, new LifecycleProperties(0, Duration.ZERO, Duration.ofMillis(200)))
+        .onTerminated(factory);
+    lifecycle.start(() -> {});
+    ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+    try {
+      clients.submit(() -> UserServiceGrpc.newBlockingStub(channel).listUsers(ListUsersRequest.getDefaultInstance()));
+      assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(lifecycle.drain()).isFalse();
+      assertThat(server.isShutdown()).isTrue();
+    } finally {
+      never.countDown();
+      clients.shutdownNow();
+      channel.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package idm.user.limit;
+
+import idm.user.UserServiceImpl;
+import idm.user.config.ConcurrencyLimitProperties;
+import idm.user.config.GrpcServerFactory;
+import idm.user.config.GrpcServerProperties;
+import idm.user.v1.*;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoadSheddingInterceptorTest {
+
+  private static ConcurrencyLimitProperties fixed(int limit){
+    return new ConcurrencyLimitProperties(true, limit, limit, limit, 2.0, 0.2);
+  }
+
+  @Test
+  void limit_grows_under_steady_latency_and_shrinks_when_latency_inflates() {
+    long[] now = {0};
+    AdaptiveLimiter limiter = new AdaptiveLimiter(ConcurrencyLimitProperties.defaults(), () -> now[0]);
+    for(int i = 0; i < 2_000; i++){
+      int inFlight = limiter.tryAcquire();
+      assertThat(inFlight).isPositive();
+      now[0] += 1_000_000;
+      limiter.release(1_000_000, limiter.limit(), false);
+    }
+    int grown = limiter.limit();
+    assertThat(grown).isGreaterThan(20);
+
+    for(int i = 0; i < 2_000; i++){
+      limiter.tryAcquire();
+      now[0] += 1_000_000;
+      limiter.release(20_000_000, limiter.limit(), false);
+    }
+    assertThat(limiter.limit()).isLessThan(grown / 4);
+  }
+
+  @Test
+  void idle_server_keeps_its_limit_and_drops_back_off() {
+    long[] now = {0};
+    AdaptiveLimiter limiter = new AdaptiveLimiter(ConcurrencyLimitProperties.defaults(), () -> now[0]);
+    for(int i = 0; i < 1_000; i++){
+      limiter.tryAcquire();
+      now[0] += 1_000_000;
+      limiter.release(1_000_000, 1, false);
+    }
+    assertThat(limiter.limit()).isEqualTo(20);
+    // 10 samples per window, each window with a drop backs off by 10%
+    for(int i = 0; i < 300; i++){
+      limiter.tryAcquire();
+      now[0] += 10_000_000;
+      limiter.release(1_000_000, 1, true);
+    }
+    assertThat(limiter.limit()).isEqualTo(ConcurrencyLimitProperties.defaults().minLimit());
+  }
+
+  @Test
+  void rejects_over_limit_and_sheds_calls_that_cannot_meet_their_deadline() throws Exception {
+    LoadSheddingInterceptor shedding = new LoadSheddingInterceptor(new AdaptiveLimiter(fixed(1)));
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch entered = new CountDownLatch(1);
+    // Holds GetUser inside the limiter until released, standing in for a slow handler
+    ServerInterceptor slowGetUser = new ServerInterceptor() {
+      @Override
+      public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        if(call.getMethodDescriptor().getBareMethodName().equals("GetUser")){
+          entered.countDown();
+          try { release.await(5, TimeUnit.SECONDS); } catch (InterruptedException e){ Thread.currentThread().interrupt(); }
+        }
+        return next.startCall(call, headers);
+      }
+    };
+    ExecutorService clients = Executors.newSingleThreadExecutor();
+    try(GrpcServerFactory factory = new GrpcServerFactory(GrpcServerProperties.of(0, "cached")).intercept(slowGetUser).intercept(shedding)){
+      Server server = factory.build(new UserServiceImpl()).start();
+      ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+      try {
+        var stub = UserServiceGrpc.newBlockingStub(channel);
+        User created = stub.createUser(CreateUserRequest.newBuilder().setUser(User.newBuilder().setUserName("x")).build()).getUser();
+        GetUserRequest get = GetUserRequest.newBuilder().setId(created.getId()).build();
+
+        Future<UserResponse> slow = clients.submit(() -> stub.getUser(get));
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThatThrownBy(() -> stub.createUser(CreateUserRequest.newBuilder().setUser(User.newBuilder().setUserName("y")).build()))
+            .isInstanceOf(StatusRuntimeException.class)
+            .satisfies(e -> assertThat(Status.fromThrowable(e).getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED));
+        Thread.sleep(200);
+        release.countDown();
+        assertThat(slow.get(5, TimeUnit.SECONDS).getUser()).isEqualTo(created);
+        assertThat(shedding.limitedCalls()).isEqualTo(1);
+
+        // GetUser now has a ~200ms expected service time: a 50ms deadline is shed without running the handler
+        String method = UserServiceGrpc.getGetUserMethod().getFullMethodName();
+        assertThat(shedding.expectedServiceNanos(method)).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(150));
+        assertThatThrownBy(() -> stub.withDeadlineAfter(50, TimeUnit.MILLISECONDS).getUser(get))
+            .satisfies(e -> assertThat(Status.fromThrowable(e).getCode()).isEqualTo(Status.Code.DEADLINE_EXCEEDED));
+        assertThat(shedding.deadlineShedCalls()).isEqualTo(1);
+        assertThat(shedding.limiter().inFlight()).isZero();
+      } finally {
+        release.countDown();
+        clients.shutdownNow();
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+      }
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package idm.user.metrics;
+
+import idm.user.UserServiceImpl;
+import idm.user.config.GrpcServerFactory;
+import idm.user.config.GrpcServerProperties;
+import idm.user.v1.*;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.StatusRuntimeException;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GrpcMetricsInterceptorTest {
+
+  @Test
+  void records_calls_and_serves_prometheus_text() throws Exception {
+    GrpcMetricsInterceptor metrics = new GrpcMetricsInterceptor();
+    try(GrpcServerFactory factory = new GrpcServerFactory(GrpcServerProperties.of(0, "direct")).intercept(metrics);
+        MetricsHttpServer http = new MetricsHttpServer(0, List.of(metrics))){
+      Server server = factory.build(new UserServiceImpl()).start();
+      ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+      try {
+        var stub = UserServiceGrpc.newBlockingStub(channel);
+        User created = stub.createUser(CreateUserRequest.newBuilder().setUser(User.newBuilder().setUserName("m")).build()).getUser();
+        for(int i = 0; i < 3; i++) stub.getUser(GetUserRequest.newBuilder().setId(created.getId()).build());
+        assertThatThrownBy(() -> stub.getUser(GetUserRequest.newBuilder().setId("missing").build()))
+            .isInstanceOf(StatusRuntimeException.class);
+      } finally {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+      }
+
+      var getUser = metrics.method(UserServiceGrpc.getGetUserMethod().getFullMethodName());
+      assertThat(getUser.started.sum()).isEqualTo(4);
+      assertThat(getUser.inFlight.sum()).isZero();
+      assertThat(getUser.latency.count()).isEqualTo(4);
+      assertThat(getUser.sent.count()).isEqualTo(3);
+
+      HttpResponse<String> response = HttpClient.newHttpClient().send(
+          HttpRequest.newBuilder(URI.create("http://localhost:"+http.port()+"/metrics")).build(), HttpResponse.BodyHandlers.ofString());
+      assertThat(response.statusCode()).isEqualTo(200);
+      assertThat(response.headers().firstValue("Content-Type")).hasValue("text/plain; version=0.0.4; charset=utf-8");
+      String labels = "grpc_service=\"idm.user.v1.UserService\",grpc_method=\"GetUser\"";
+      assertThat(response.body())
+          .contains("# TYPE grpc_server_handling_seconds histogram")
+          .contains("grpc_server_started_total{"+labels+"} 4")
+          .contains("grpc_server_handled_total{"+labels+",grpc_code=\"OK\"} 3")
+          .contains("grpc_server_handled_total{"+labels+",grpc_code=\"UNKNOWN\"} 1")
+          .contains("grpc_server_in_flight{"+labels+"} 0")
+          .contains("grpc_server_handling_seconds_bucket{"+labels+",le=\"+Inf\"} 4")
+          .contains("grpc_server_handling_seconds_count{"+labels+"} 4")
+          .contains("grpc_server_msg_received_bytes_count{"+labels+"} 4");
+    }
+  }
+
+  @Test
+  void histogram_buckets_are_cumulative() {
+    Histogram h = new Histogram(new long[]{10, 100}, 1);
+    for(long v : new long[]{1, 10, 11, 500}) h.observe(v);
+    StringBuilder out = new StringBuilder();
+    h.write(out, "x", "a=\"b\"");
+    assertThat(out.toString()).isEqualTo(
+        "x_bucket{a=\"b\",le=\"10\"} 2\n" +
+        "x_bucket{a=\"b\",le=\"100\"} 3\n" +
+        "x_bucket{a=\"b\",le=\"+Inf\"} 4\n" +
+        "x_sum{a=\"b\"} 522\n" +
+        "x_count{a=\"b\"} 4\n");
+  }
+}
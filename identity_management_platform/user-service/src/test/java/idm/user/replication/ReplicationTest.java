@@ -0,0 +1,263 @@
+package idm.user.replication;
+
+import idm.user.UserServiceImpl;
+import idm.user.client.ReplicatedUserClient;
+import idm.user.client.ReplicatedUserClient.Read;
+import idm.user.v1.*;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReplicationTest {
+  private final String leaderName = "leader-"+System.nanoTime();
+  private final List<Server> servers = new ArrayList<>();
+  private final List<ManagedChannel> channels = new ArrayList<>();
+  private final List<Follower> followers = new ArrayList<>();
+  private final AtomicInteger leaderReads = new AtomicInteger();
+  private Server leader;
+
+  @AfterEach
+  void stop() {
+    followers.forEach(Follower::close);
+    channels.forEach(ManagedChannel::shutdownNow);
+    servers.forEach(Server::shutdownNow);
+  }
+
+  private void startLeader() throws Exception {
+    UserServiceImpl service = new UserServiceImpl();
+    ServerInterceptor countReads = new ServerInterceptor() {
+      @Override
+      public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        if(call.getMethodDescriptor().getBareMethodName().equals("GetUser")) leaderReads.incrementAndGet();
+        return next.startCall(call, headers);
+      }
+    };
+    leader = InProcessServerBuilder.forName(leaderName)
+        .addService(ServerInterceptors.intercept(service, ReplicationInterceptor.leader(service.changes()), countReads)).build().start();
+    servers.add(leader);
+  }
+
+  private Channel channel(String name){
+    ManagedChannel ch = InProcessChannelBuilder.forName(name).build();
+    channels.add(ch);
+    return ch;
+  }
+
+  /** A follower whose replication feed is delivered {@code lagMillis} late. */
+  private Channel startFollower(long lagMillis, Duration maxWait) throws Exception {
+    ManagedChannel toLeader = InProcessChannelBuilder.forName(leaderName).intercept(delay(lagMillis)).build();
+    channels.add(toLeader);
+    UserServiceImpl replica = new UserServiceImpl();
+    Follower follower = new Follower(toLeader, replica, Duration.ofMillis(20)).start();
+    followers.add(follower);
+    assertThat(follower.awaitSynced(Duration.ofSeconds(5))).isTrue();
+    String name = "follower-"+System.nanoTime();
+    servers.add(InProcessServerBuilder.forName(name)
+        .addService(ServerInterceptors.intercept(replica, ReplicationInterceptor.follower(follower, maxWait))).build().start());
+    return channel(name);
+  }
+
+  private static ClientInterceptor delay(long millis){
+    return new ClientInterceptor() {
+      @Override
+      public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions options, Channel next) {
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, options)) {
+          @Override
+          public void start(Listener<RespT> listener, Metadata headers) {
+            super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(listener) {
+              @Override
+              public void onMessage(RespT message) {
+                if(method.getBareMethodName().equals("WatchUsers")){
+                  try { Thread.sleep(millis); } catch (InterruptedException e){ Thread.currentThread().interrupt(); }
+                }
+                super.onMessage(message);
+              }
+            }, headers);
+          }
+        };
+      }
+    };
+  }
+
+  private static CreateUserRequest create(String name){
+    return CreateUserRequest.newBuilder().setUser(User.newBuilder().setUserName(name).setActive(true)).build();
+  }
+
+  private static Set<User> users(ListUsersResponse response){ return new HashSet<>(response.getUsersList()); }
+
+  @Test
+  void followers_converge_on_the_leader_and_reject_writes() throws Exception {
+    startLeader();
+    Channel leaderChannel = channel(leaderName);
+    ReplicatedUserClient client = new ReplicatedUserClient(leaderChannel, List.of());
+    // Some history before the followers attach, some after
+    List<User> created = new ArrayList<>();
+    for(int i = 0; i < 20; i++) created.add(client.createUser(create("early"+i)).getUser());
+    Channel f1 = startFollower(0, Duration.ofSeconds(1)), f2 = startFollower(0, Duration.ofSeconds(1));
+    for(int i = 0; i < 20; i++) created.add(client.createUser(create("late"+i)).getUser());
+    for(int i = 0; i < 10; i++)
+      client.updateUser(UpdateUserRequest.newBuilder().setUser(created.get(i).toBuilder().setGivenName("v2").setVersion(0)).build());
+    for(int i = 30; i < 40; i++) client.deleteUser(DeleteUserRequest.newBuilder().setId(created.get(i).getId()).build());
+
+    SequenceToken token = client.lastWrite();
+    for(Follower f : followers) assertThat(f.awaitPosition(token, TimeUnit.SECONDS.toNanos(5))).isTrue();
+    Set<User> expected = users(UserServiceGrpc.newBlockingStub(leaderChannel).listUsers(ListUsersRequest.getDefaultInstance()));
+    assertThat(expected).hasSize(30);
+    for(Channel f : List.of(f1, f2))
+      assertThat(users(UserServiceGrpc.newBlockingStub(f).listUsers(ListUsersRequest.getDefaultInstance()))).isEqualTo(expected);
+
+    assertThatThrownBy(() -> UserServiceGrpc.newBlockingStub(f1).createUser(create("nope")))
+        .isInstanceOf(StatusRuntimeException.class)
+        .satisfies(e -> assertThat(Status.fromThrowable(e).getCode()).isEqualTo(Status.Code.FAILED_PRECONDITION));
+    CompletableFuture<Throwable> imported = new CompletableFuture<>();
+    UserServiceGrpc.newStub(f1).importUsers(new StreamObserver<>() {
+      @Override public void onNext(ImportUsersResponse value){}
+      @Override public void onError(Throwable t){ imported.complete(t); }
+      @Override public void onCompleted(){ imported.complete(null); }
+    }).onCompleted();
+    assertThat(Status.fromThrowable(imported.get(5, TimeUnit.SECONDS)).getCode()).isEqualTo(Status.Code.FAILED_PRECONDITION);
+  }
+
+  @Test
+  void read_your_writes_waits_for_a_lagging_follower_or_falls_back_to_the_leader() throws Exception {
+    startLeader();
+    Channel patient = startFollower(200, Duration.ofSeconds(2));
+    ReplicatedUserClient client = new ReplicatedUserClient(channel(leaderName), List.of(patient));
+
+    User created = client.createUser(create("ryw")).getUser();
+    GetUserRequest get = GetUserRequest.newBuilder().setId(created.getId()).build();
+    // Not replicated yet: an eventual read misses it
+    assertThatThrownBy(() -> client.getUser(get, Read.eventual())).isInstanceOf(StatusRuntimeException.class);
+    assertThat(client.getUser(get, Read.readYourWrites()).getUser()).isEqualTo(created);
+    assertThat(leaderReads.get()).isZero();
+
+    Channel impatient = startFollower(300, Duration.ofMillis(20));
+    ReplicatedUserClient hurried = new ReplicatedUserClient(channel(leaderName), List.of(impatient));
+    User other = hurried.createUser(create("fallback")).getUser();
+    assertThat(hurried.getUser(GetUserRequest.newBuilder().setId(other.getId()).build(), Read.readYourWrites()).getUser()).isEqualTo(other);
+    assertThat(leaderReads.get()).isEqualTo(1);
+  }
+
+  @Test
+  void bounded_staleness_reads_leave_a_follower_that_lost_its_leader() throws Exception {
+    startLeader();
+    Channel follower = startFollower(0, Duration.ofSeconds(1));
+    ReplicatedUserClient client = new ReplicatedUserClient(channel(leaderName), List.of(follower));
+    User created = client.createUser(create("stale")).getUser();
+    assertThat(followers.get(0).awaitPosition(client.lastWrite(), TimeUnit.SECONDS.toNanos(5))).isTrue();
+    GetUserRequest get = GetUserRequest.newBuilder().setId(created.getId()).build();
+
+    Thread.sleep(100);
+    assertThat(client.getUser(get, Read.boundedStaleness(Duration.ofMillis(500))).getUser()).isEqualTo(created);
+    assertThat(leaderReads.get()).isZero();
+
+    channels.get(0).shutdownNow(); // the follower's connection to the leader
+    Thread.sleep(700);
+    assertThat(followers.get(0).stalenessMillis()).isGreaterThan(500);
+    assertThat(client.getUser(get, Read.boundedStaleness(Duration.ofMillis(500))).getUser()).isEqualTo(created);
+    assertThat(leaderReads.get()).isEqualTo(1);
+    // An unbounded read still uses the stale replica
+    assertThat(client.getUser(get, Read.eventual()).getUser()).isEqualTo(created);
+    assertThat(leaderReads.get()).isEqualTo(1);
+  }
+
+  @Test
+  void follower_resyncs_from_a_restarted_leader() throws Exception {
+    startLeader();
+    Channel leaderChannel = channel(leaderName);
+    ReplicatedUserClient client = new ReplicatedUserClient(leaderChannel, List.of());
+    for(int i = 0; i < 5; i++) client.createUser(create("old"+i));
+    Channel follower = startFollower(0, Duration.ofSeconds(1));
+    assertThat(followers.get(0).awaitPosition(client.lastWrite(), TimeUnit.SECONDS.toNanos(5))).isTrue();
+
+    // New process, new epoch, different data
+    leader.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    Thread.sleep(5);
+    startLeader();
+    User survivor = client.createUser(create("new")).getUser();
+    SequenceToken token = client.lastWrite();
+    assertThat(token.epoch()).isNotEqualTo(followers.get(0).position().epoch());
+
+    assertThat(followers.get(0).awaitPosition(token, TimeUnit.MILLISECONDS.toNanos(Follower.RECONNECT_DELAY_MILLIS + 5_000))).isTrue();
+    assertThat(UserServiceGrpc.newBlockingStub(follower).listUsers(ListUsersRequest.getDefaultInstance()).getUsersList())
+        .containsExactly(survivor);
+  }
+
+  @Test
+  void followers_that_snapshot_during_writes_lose_nothing() throws Exception {
+    startLeader();
+    Channel leaderChannel = channel(leaderName);
+    AtomicBoolean stop = new AtomicBoolean();
+    List<String> ids = new CopyOnWriteArrayList<>();
+    List<Thread> writers = new ArrayList<>();
+    for(int t = 0; t < 4; t++){
+      Thread w = new Thread(() -> {
+        var stub = UserServiceGrpc.newBlockingStub(leaderChannel);
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        while(!stop.get()){
+          int op = rnd.nextInt(4);
+          if(op == 0 && !ids.isEmpty()){
+            String id = ids.remove(rnd.nextInt(ids.size()));
+            stub.deleteUser(DeleteUserRequest.newBuilder().setId(id).build());
+          } else if(op == 1 && !ids.isEmpty()){
+            String id = ids.get(rnd.nextInt(ids.size()));
+            try {
+              stub.updateUser(UpdateUserRequest.newBuilder()
+                  .setUser(User.newBuilder().setId(id).setUserName("u"+id).setGivenName("g"+rnd.nextInt())).build());
+            } catch (RuntimeException e){ /* deleted meanwhile */ }
+          } else {
+            ids.add(stub.createUser(create("w"+rnd.nextInt())).getUser().getId());
+          }
+        }
+      });
+      writers.add(w);
+      w.start();
+    }
+    List<Channel> replicas = new ArrayList<>();
+    for(int i = 0; i < 5; i++){
+      replicas.add(startFollower(0, Duration.ofSeconds(1)));
+      Thread.sleep(20);
+    }
+    stop.set(true);
+    for(Thread w : writers) w.join();
+
+    ListUsersResponse leaderState = UserServiceGrpc.newBlockingStub(leaderChannel).listUsers(ListUsersRequest.getDefaultInstance());
+    SequenceToken head = new SequenceToken(leaderState.getEpoch(), leaderState.getSequence());
+    for(Follower f : followers) assertThat(f.awaitPosition(head, TimeUnit.SECONDS.toNanos(5))).isTrue();
+    for(Channel r : replicas)
+      assertThat(users(UserServiceGrpc.newBlockingStub(r).listUsers(ListUsersRequest.getDefaultInstance()))).isEqualTo(users(leaderState));
+  }
+}
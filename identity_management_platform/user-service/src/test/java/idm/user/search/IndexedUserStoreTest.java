@@ -0,0 +1,176 @@
+package idm.user.search;
+
+import idm.user.store.HeapUserStore;
+import idm.user.store.OffHeapUserStore;
+import idm.user.store.UserStore;
+import idm.user.v1.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IndexedUserStoreTest {
+
+  private static final String[] FAMILY = {"Smith", "Smithers", "Jones", "Johnson", "Brown"};
+
+  private static User user(String id, String userName, String family, boolean active){
+    return User.newBuilder().setId(id).setUserName(userName).setGivenName("Given").setFamilyName(family)
+        .addEmails(userName+"@example.com").setActive(active).build();
+  }
+
+  @Test
+  void parses_precedence_grouping_and_escapes() {
+    assertThat(Filter.parse("userName eq \"a\" or userName eq \"b\" and active eq true"))
+        .isEqualTo(new Filter.Or(new Filter.Compare(Filter.Attr.USER_NAME, Filter.Op.EQ, "a"),
+            new Filter.And(new Filter.Compare(Filter.Attr.USER_NAME, Filter.Op.EQ, "b"),
+                new Filter.Compare(Filter.Attr.ACTIVE, Filter.Op.EQ, "true"))));
+    assertThat(Filter.parse("(name.familyName SW \"O\\\"B\") AND emails pr"))
+        .isEqualTo(new Filter.And(new Filter.Compare(Filter.Attr.FAMILY_NAME, Filter.Op.SW, "o\"b"),
+            new Filter.Present(Filter.Attr.EMAILS)));
+  }
+
+  @Test
+  void rejects_malformed_filters() {
+    for(String bad : List.of("userName", "userName gt \"a\"", "title eq \"x\"", "userName eq \"a", "(active eq true", "active eq true x"))
+      assertThatThrownBy(() -> Filter.parse(bad)).as(bad).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void plans_use_indexes_where_available() {
+    UserIndex index = new IndexedUserStore(new HeapUserStore()).index();
+    assertThat(index.plan(Filter.parse("userName eq \"a\"")).description()).isEqualTo("eq(USER_NAME)");
+    assertThat(index.plan(Filter.parse("familyName sw \"sm\" and active eq true")).description())
+        .isEqualTo("and(prefix(FAMILY_NAME), bitmap(active))");
+    assertThat(index.plan(Filter.parse("givenName eq \"x\" and emails co \"example\"")).description())
+        .isEqualTo("and(termscan(EMAILS), residual)");
+    assertThat(index.plan(Filter.parse("givenName eq \"x\" or id eq \"a\"")).bits()).isNull();
+  }
+
+  @Test
+  void id_comparisons_are_case_exact_on_both_paths() {
+    IndexedUserStore store = new IndexedUserStore(new HeapUserStore());
+    User mixed = user("Ext-42AbC", "mixed", "Case", true);
+    store.put(mixed);
+    store.put(user("ext-42abc", "lower", "Case", true));
+    // Planned (key lookup) and scanned (the or forces a scan) must agree
+    assertThat(store.search(Filter.parse("id eq \"Ext-42AbC\""))).containsExactly(mixed);
+    assertThat(store.search(Filter.parse("id eq \"Ext-42AbC\" or givenName eq \"nobody\""))).containsExactly(mixed);
+    assertThat(store.search(Filter.parse("id eq \"EXT-42ABC\""))).isEmpty();
+    assertThat(store.search(Filter.parse("id eq \"EXT-42ABC\" or givenName eq \"nobody\""))).isEmpty();
+    assertThat(store.search(Filter.parse("id sw \"Ext\""))).containsExactly(mixed);
+    // Other attributes stay case-insensitive
+    assertThat(store.search(Filter.parse("userName eq \"MIXED\""))).containsExactly(mixed);
+  }
+
+  @Test
+  void search_matches_full_scan_under_random_workload() {
+    check(new HeapUserStore());
+    check(new OffHeapUserStore(4096));
+  }
+
+  private static void check(UserStore backing){
+    IndexedUserStore store = new IndexedUserStore(backing);
+    Map<String, User> model = new HashMap<>();
+    Random rnd = new Random(7);
+    List<Filter> filters = new ArrayList<>();
+    for(String f : List.of("userName eq \"user12\"", "userName sw \"user1\"", "familyName eq \"smith\"",
+        "familyName sw \"Smith\" and active eq false", "emails co \"r3@\" or familyName eq \"Brown\"",
+        "active eq true and (userName sw \"user2\" or familyName eq \"jones\")", "givenName eq \"given\" and userName co \"9\"",
+        "id eq \"u7\"", "emails pr", "active eq false"))
+      filters.add(Filter.parse(f));
+    for(int i = 0; i < 20_000; i++){
+      String id = "u" + rnd.nextInt(500);
+      int op = rnd.nextInt(10);
+      if(op < 6){
+        User u = user(id, "user" + rnd.nextInt(1000), FAMILY[rnd.nextInt(FAMILY.length)], rnd.nextBoolean());
+        store.put(u);
+        model.put(id, u);
+      } else if(op < 8){
+        assertThat(store.remove(id)).isEqualTo(model.remove(id) != null);
+      } else if(op < 9){
+        User next = store.computeIfPresent(id, old -> old.toBuilder().setActive(!old.getActive()).build());
+        if(next != null) model.put(id, next);
+      } else {
+        Filter f = filters.get(rnd.nextInt(filters.size()));
+        List<User> expected = model.values().stream().filter(f::test).toList();
+        assertThat(store.search(f)).as(f.toString()).containsExactlyInAnyOrderElementsOf(expected);
+      }
+    }
+  }
+
+  @Test
+  void ranked_query_matches_brute_force_scores_under_writes() {
+    IndexedUserStore store = new IndexedUserStore(new HeapUserStore());
+    Map<String, User> model = new HashMap<>();
+    Random rnd = new Random(11);
+    String[] given = {"John", "Jon", "Joan", "Johanna", "Mary", "Marie", "Maria"};
+    List<String> queries = List.of("jon smi", "john", "mari", "smithers", "joh@exa", "brwn", "user4");
+    for(int i = 0; i < 5_000; i++){
+      String id = "u" + rnd.nextInt(300);
+      int op = rnd.nextInt(10);
+      if(op < 6){
+        User u = user(id, "user" + rnd.nextInt(1000), FAMILY[rnd.nextInt(FAMILY.length)], true).toBuilder()
+            .setGivenName(given[rnd.nextInt(given.length)]).build();
+        store.put(u);
+        model.put(id, u);
+      } else if(op < 8){
+        store.remove(id);
+        model.remove(id);
+      } else {
+        String q = queries.get(rnd.nextInt(queries.size()));
+        List<String> expected = model.values().stream().filter(u -> TrigramIndex.score(q, u) >= TrigramIndex.DEFAULT_THRESHOLD)
+            .map(User::getId).toList();
+        IndexedUserStore.Matches all = store.rank(q, null, 0, 0);
+        assertThat(all.total()).as(q).isEqualTo(expected.size());
+        assertThat(all.page()).extracting(m -> m.user().getId()).as(q).containsExactlyInAnyOrderElementsOf(expected);
+        for(int k = 1; k < all.page().size(); k++) assertThat(all.page().get(k).score()).isLessThanOrEqualTo(all.page().get(k - 1).score());
+        for(IndexedUserStore.Match m : all.page()) assertThat(m.score()).isEqualTo(TrigramIndex.score(q, m.user()));
+        assertThat(store.rank(q, null, 1, 2).page()).isEqualTo(all.page().subList(Math.min(1, all.page().size()), Math.min(3, all.page().size())));
+      }
+    }
+  }
+
+  @Test
+  void ranked_pages_stay_consistent_when_the_index_is_stale() {
+    HeapUserStore backing = new HeapUserStore();
+    IndexedUserStore store = new IndexedUserStore(backing);
+    for(int i = 0; i < 9; i++)
+      store.put(user("s"+i, "jsmith"+i, "Smith", true).toBuilder().setGivenName(i % 2 == 0 ? "John" : "Jon").build());
+    // Writes the index has not seen, as a racing write looks mid-ranking: two users stop matching
+    backing.put(user("s0", "zz", "Zz", true).toBuilder().setGivenName("Zz").build());
+    backing.put(user("s3", "zz", "Zz", true).toBuilder().setGivenName("Zz").build());
+
+    List<IndexedUserStore.Match> all = store.rank("john smith", null, 0, 0).page();
+    assertThat(all).hasSize(7).extracting(m -> m.user().getId()).doesNotContain("s0", "s3");
+    for(int from = 0; from < all.size(); from += 2){
+      assertThat(store.rank("john smith", null, from, 2).page()).as("from %d", from)
+          .isEqualTo(all.subList(from, Math.min(from + 2, all.size())));
+      assertThat(store.rank("john smith", Filter.parse("active eq true"), from, 2).page()).as("filtered from %d", from)
+          .isEqualTo(all.subList(from, Math.min(from + 2, all.size())));
+    }
+  }
+
+  @Test
+  void ranked_query_prefers_closer_matches_and_applies_filter() {
+    IndexedUserStore store = new IndexedUserStore(new HeapUserStore());
+    store.put(user("1", "jsmith", "Smith", true).toBuilder().setGivenName("John").build());
+    store.put(user("2", "jsmithers", "Smithers", false).toBuilder().setGivenName("Johnathan").build());
+    store.put(user("3", "mjones", "Jones", true).toBuilder().setGivenName("Mary").build());
+
+    // A typo still matches, and the shorter record wins the tie
+    assertThat(store.rank("jhon smith", null, 0, 0).page()).extracting(m -> m.user().getId()).containsExactly("1", "2");
+    // Query words match as prefixes
+    assertThat(store.rank("smither", null, 0, 0).page()).extracting(m -> m.user().getId()).first().isEqualTo("2");
+    assertThat(store.rank("jhon smith", Filter.parse("active eq false"), 0, 0).page()).extracting(m -> m.user().getId()).containsExactly("2");
+    assertThatThrownBy(() -> store.rank("@.-", null, 0, 0)).isInstanceOf(IllegalArgumentException.class);
+    // from + count past Integer.MAX_VALUE
+    assertThat(store.rank("jhon smith", null, Integer.MAX_VALUE - 1, 10).page()).isEmpty();
+    assertThat(store.rank("jhon smith", null, 1, Integer.MAX_VALUE).page()).extracting(m -> m.user().getId()).containsExactly("2");
+  }
+}
@@ -0,0 +1,76 @@
+package idm.user.store;
+
+import idm.user.v1.User;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapUserStoreTest {
+
+  private static User user(String id, String userName){
+    return User.newBuilder().setId(id).setUserName(userName).setGivenName("Given").setFamilyName("Family")
+        .addEmails(userName+"@example.com").setActive(true).build();
+  }
+
+  @Test
+  void put_get_update_remove_roundtrip() {
+    OffHeapUserStore store = new OffHeapUserStore(4096);
+    store.put(user("a", "alice"));
+    store.put(user("b", "bob"));
+
+    assertThat(store.get("a")).isEqualTo(user("a", "alice"));
+    assertThat(store.containsKey("b")).isTrue();
+    assertThat(store.get("missing")).isNull();
+
+    store.put(user("a", "alice2"));
+    assertThat(store.get("a").getUserName()).isEqualTo("alice2");
+    assertThat(store.size()).isEqualTo(2);
+
+    assertThat(store.remove("a")).isTrue();
+    assertThat(store.remove("a")).isFalse();
+    assertThat(store.get("a")).isNull();
+    assertThat(store.values()).containsExactly(user("b", "bob"));
+  }
+
+  @Test
+  void serialized_views_stay_valid_across_updates_and_compaction() throws Exception {
+    OffHeapUserStore store = new OffHeapUserStore(4096);
+    store.put(user("a", "alice"));
+    ByteBuffer view = store.getSerialized("a");
+    assertThat(User.parseFrom(view.duplicate())).isEqualTo(user("a", "alice"));
+    assertThat(store.getSerialized("missing")).isNull();
+
+    for(int i = 0; i < 1_000; i++) store.put(user("a", "alice" + i));
+    assertThat(User.parseFrom(view)).isEqualTo(user("a", "alice"));
+    assertThat(User.parseFrom(store.getSerialized("a"))).isEqualTo(user("a", "alice999"));
+  }
+
+  @Test
+  void random_workload_matches_hash_map_across_resizes_and_compactions() {
+    OffHeapUserStore store = new OffHeapUserStore(4096);
+    Map<String, User> model = new HashMap<>();
+    Random rnd = new Random(42);
+    for(int i = 0; i < 50_000; i++){
+      String id = "u" + rnd.nextInt(5_000);
+      int op = rnd.nextInt(10);
+      if(op < 6){
+        User u = user(id, "name" + i);
+        store.put(u);
+        model.put(id, u);
+      } else if(op < 8){
+        assertThat(store.remove(id)).isEqualTo(model.remove(id) != null);
+      } else {
+        assertThat(store.get(id)).isEqualTo(model.get(id));
+      }
+    }
+    assertThat(store.size()).isEqualTo(model.size());
+    assertThat(store.values()).containsExactlyInAnyOrderElementsOf(model.values());
+    // Compaction keeps reserved memory proportional to live data, not to the write history.
+    assertThat(store.offHeapBytes()).isLessThan(50_000L * 64);
+  }
+}
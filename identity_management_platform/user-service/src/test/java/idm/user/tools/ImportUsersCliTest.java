@@ -0,0 +1,59 @@
+package idm.user.tools;
+
+import idm.user.UserServiceImpl;
+import idm.user.v1.*;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImportUsersCliTest {
+  @TempDir Path dir;
+  private Server server;
+  private ManagedChannel channel;
+
+  @BeforeEach
+  void start() throws Exception {
+    String name = "import-"+System.nanoTime();
+    server = InProcessServerBuilder.forName(name).addService(new UserServiceImpl()).build().start();
+    channel = InProcessChannelBuilder.forName(name).build();
+  }
+
+  @AfterEach
+  void stop() {
+    channel.shutdownNow();
+    server.shutdownNow();
+  }
+
+  @Test
+  void streams_a_file_in_batches_and_merges_row_errors() throws Exception {
+    StringBuilder csv = new StringBuilder("id,userName,familyName,active\n");
+    for(int i = 0; i < 2_500; i++) csv.append("id-").append(i).append(",user").append(i).append(",Family").append(i % 10).append(",true\n");
+    csv.append("id-7,again,Family,true\n")      // line 2502: id already imported
+        .append("id-x,,Family,true\n")          // line 2503: no userName
+        .append("\"id-y,broken,Family,true\n"); // line 2504: unreadable
+    Path file = dir.resolve("users.csv");
+    Files.writeString(file, csv);
+
+    ImportUsersResponse result = ImportUsersCli.importFile(channel, file, UserFileReader.Format.CSV, 100, null);
+
+    assertThat(result.getReceived()).isEqualTo(2_503);
+    assertThat(result.getImported()).isEqualTo(2_500);
+    assertThat(result.getFailed()).isEqualTo(3);
+    assertThat(result.getErrorsList()).extracting(ImportError::getRow).containsExactly(2502L, 2503L, 2504L);
+    assertThat(result.getErrors(0).getId()).isEqualTo("id-7");
+
+    UserServiceGrpc.UserServiceBlockingStub stub = UserServiceGrpc.newBlockingStub(channel);
+    assertThat(stub.getUser(GetUserRequest.newBuilder().setId("id-7").build()).getUser().getUserName()).isEqualTo("user7");
+    assertThat(stub.searchUsers(SearchUsersRequest.newBuilder().setFilter("familyName eq \"Family3\"").build()).getTotal()).isEqualTo(250);
+  }
+}
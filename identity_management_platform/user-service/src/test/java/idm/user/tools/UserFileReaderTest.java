@@ -0,0 +1,89 @@
+package idm.user.tools;
+
+import idm.user.v1.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserFileReaderTest {
+  @TempDir Path dir;
+
+  private List<UserFileReader.Row> read(String name, String content, long window) throws IOException {
+    Path file = dir.resolve(name);
+    Files.writeString(file, content);
+    List<UserFileReader.Row> rows = new ArrayList<>();
+    try (UserFileReader reader = new UserFileReader(file, UserFileReader.Format.of(file), window)){
+      for(UserFileReader.Row row; (row = reader.next()) != null; ) rows.add(row);
+      assertThat(reader.position()).isEqualTo(reader.size());
+    }
+    return rows;
+  }
+
+  @Test
+  void parses_csv_with_quotes_and_reports_bad_lines() throws IOException {
+    String csv = "\uFEFFuserName,givenName,emails,active\r\n"
+        + "alice,\"Smith, Alice\",a@example.com;alice@example.org,true\r\n"
+        + "\r\n"
+        + "bob,\"Say \"\"hi\"\"\",,FALSE\r\n"
+        + "carol,\"unterminated,,true\r\n"
+        + "dave,Dave,,maybe\n"
+        + "erin,Erin\n"
+        + "frank,Frank,f@example.com,";
+    List<UserFileReader.Row> rows = read("users.csv", csv, UserFileReader.DEFAULT_WINDOW);
+
+    assertThat(rows).extracting(UserFileReader.Row::line).containsExactly(2L, 4L, 5L, 6L, 7L, 8L);
+    assertThat(rows.get(0).user()).isEqualTo(User.newBuilder().setUserName("alice").setGivenName("Smith, Alice")
+        .addEmails("a@example.com").addEmails("alice@example.org").setActive(true).build());
+    assertThat(rows.get(1).user().getGivenName()).isEqualTo("Say \"hi\"");
+    assertThat(rows.get(1).user().getEmailsCount()).isZero();
+    assertThat(rows.get(2).error()).isEqualTo("Unterminated quoted field");
+    assertThat(rows.get(3).error()).contains("active");
+    assertThat(rows.get(4).error()).isEqualTo("Expected 4 fields, found 2");
+    assertThat(rows.get(5).user().getUserName()).isEqualTo("frank");
+  }
+
+  @Test
+  void rejects_unknown_csv_columns() throws IOException {
+    Path file = dir.resolve("bad.csv");
+    Files.writeString(file, "userName,nickName\nalice,al\n");
+    try (UserFileReader reader = new UserFileReader(file, UserFileReader.Format.CSV)){
+      assertThatThrownBy(reader::next).isInstanceOf(IOException.class).hasMessage("Unknown CSV column: nickName");
+    }
+  }
+
+  @Test
+  void reads_ndjson_lines_across_map_windows() throws IOException {
+    StringBuilder ndjson = new StringBuilder();
+    for(int i = 0; i < 200; i++)
+      ndjson.append("{\"userName\":\"user").append(i).append("\",\"emails\":[\"u").append(i).append("@example.com\"],\"active\":true}\n");
+    ndjson.append("{\"userName\":\"broken\"\n").append("{\"nickName\":\"x\"}");
+    // A window a little over one line forces a remap at nearly every line boundary
+    List<UserFileReader.Row> rows = read("users.ndjson", ndjson.toString(), 80);
+
+    assertThat(rows).hasSize(202);
+    for(int i = 0; i < 200; i++){
+      assertThat(rows.get(i).line()).isEqualTo(i + 1);
+      assertThat(rows.get(i).user().getUserName()).isEqualTo("user"+i);
+      assertThat(rows.get(i).user().getEmails(0)).isEqualTo("u"+i+"@example.com");
+    }
+    assertThat(rows.get(200).user()).isNull();
+    assertThat(rows.get(201).error()).contains("nickName");
+  }
+
+  @Test
+  void fails_on_a_line_longer_than_the_window() throws IOException {
+    Path file = dir.resolve("long.ndjson");
+    Files.writeString(file, "{\"userName\":\"" + "x".repeat(100) + "\"}\n{}\n");
+    try (UserFileReader reader = new UserFileReader(file, UserFileReader.Format.NDJSON, 64)){
+      assertThatThrownBy(reader::next).isInstanceOf(IOException.class).hasMessageContaining("Line 1");
+    }
+  }
+}
@@ -0,0 +1,256 @@
+package idm.user.watch;
+
+import idm.user.UserServiceImpl;
+import idm.user.config.GrpcServerFactory;
+import idm.user.config.GrpcServerProperties;
+import idm.user.store.HeapUserStore;
+import idm.user.v1.*;
+import io.grpc.Context;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChangeLogTest {
+
+  private static final class Events implements StreamObserver<UserEvent> {
+    final BlockingQueue<UserEvent> queue = new LinkedBlockingQueue<>();
+    volatile boolean completed;
+    @Override public void onNext(UserEvent value){ queue.add(value); }
+    @Override public void onError(Throwable t){ throw new AssertionError(t); }
+    @Override public void onCompleted(){ completed = true; }
+
+    List<UserEvent> take(int n) throws InterruptedException {
+      List<UserEvent> out = new ArrayList<>();
+      for(int i = 0; i < n; i++){
+        UserEvent e = queue.poll(5, TimeUnit.SECONDS);
+        assertThat(e).as("event %d of %d", i + 1, n).isNotNull();
+        out.add(e);
+      }
+      return out;
+    }
+  }
+
+  // As a store write does it: record inside the compute, then commit once the write is visible
+  private static void record(ChangeLog log, User old, User next){
+    log.changed(old, next);
+    log.committed();
+  }
+
+  private static User user(String id, long version){
+    return User.newBuilder().setId(id).setUserName("u"+id).setVersion(version).build();
+  }
+
+  @Test
+  void streams_live_changes_and_resumes_from_a_sequence() throws Exception {
+    ChangeLog log = new ChangeLog(16);
+    Events live = new Events();
+    log.watch(0, 0, live);
+    record(log, null, user("a", 1));
+    record(log, user("a", 1), user("a", 2));
+    record(log, user("a", 2), null);
+
+    List<UserEvent> events = live.take(3);
+    assertThat(events).extracting(UserEvent::getType)
+        .containsExactly(UserEvent.Type.CREATED, UserEvent.Type.UPDATED, UserEvent.Type.DELETED);
+    assertThat(events).extracting(UserEvent::getSequence).containsExactly(1L, 2L, 3L);
+    assertThat(events.get(1).getUser().getVersion()).isEqualTo(2);
+    assertThat(events.get(2).hasUser()).isFalse();
+
+    Events resumed = new Events();
+    log.watch(1, log.epoch(), resumed);
+    assertThat(resumed.take(2)).extracting(UserEvent::getSequence).containsExactly(2L, 3L);
+    log.close();
+    assertThat(resumed.queue.poll(100, TimeUnit.MILLISECONDS)).isNull();
+  }
+
+  @Test
+  void lagging_or_foreign_positions_get_resync_then_continue() throws Exception {
+    ChangeLog log = new ChangeLog(4);
+    for(int i = 0; i < 10; i++) record(log, null, user("u"+i, 1));
+
+    Events behind = new Events();
+    log.watch(2, log.epoch(), behind);
+    UserEvent resync = behind.take(1).get(0);
+    assertThat(resync.getType()).isEqualTo(UserEvent.Type.RESYNC_REQUIRED);
+    assertThat(resync.getSequence()).isEqualTo(10);
+
+    Events restarted = new Events();
+    log.watch(7, log.epoch() - 1, restarted);
+    assertThat(restarted.take(1).get(0).getType()).isEqualTo(UserEvent.Type.RESYNC_REQUIRED);
+
+    record(log, null, user("late", 1));
+    assertThat(behind.take(1).get(0).getSequence()).isEqualTo(11);
+    assertThat(restarted.take(1).get(0).getId()).isEqualTo("late");
+
+    log.close();
+    Thread.sleep(100);
+    assertThat(behind.completed).isTrue();
+  }
+
+  @Test
+  void heartbeats_report_the_head_once_caught_up() throws Exception {
+    ChangeLog log = new ChangeLog(16);
+    record(log, null, user("a", 1));
+    Events events = new Events();
+    log.watch(0, 0, 20, events);
+
+    List<UserEvent> first = events.take(2);
+    assertThat(first).extracting(UserEvent::getType).containsExactly(UserEvent.Type.CREATED, UserEvent.Type.HEARTBEAT);
+    assertThat(first.get(1).getSequence()).isEqualTo(1);
+    // Idle: the ticker keeps them coming
+    UserEvent idle = events.take(1).get(0);
+    assertThat(idle.getType()).isEqualTo(UserEvent.Type.HEARTBEAT);
+    assertThat(idle.getSequence()).isEqualTo(1);
+
+    record(log, user("a", 1), user("a", 2));
+    UserEvent next;
+    do next = events.take(1).get(0); while(next.getType() == UserEvent.Type.HEARTBEAT && next.getSequence() == 1);
+    assertThat(next.getType()).isEqualTo(UserEvent.Type.UPDATED);
+    assertThat(events.take(1).get(0)).satisfies(e -> {
+      assertThat(e.getType()).isEqualTo(UserEvent.Type.HEARTBEAT);
+      assertThat(e.getSequence()).isEqualTo(2);
+    });
+    log.close();
+  }
+
+  @Test
+  void list_then_watch_over_grpc_misses_nothing() throws Exception {
+    UserServiceImpl service = new UserServiceImpl(new HeapUserStore(), 0, 1024);
+    try(GrpcServerFactory factory = new GrpcServerFactory(GrpcServerProperties.of(0, "cached"))){
+      Server server = factory.build(service).start();
+      ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+      Context.CancellableContext watchContext = Context.current().withCancellation();
+      try {
+        var stub = UserServiceGrpc.newBlockingStub(channel);
+        stub.createUser(CreateUserRequest.newBuilder().setUser(User.newBuilder().setUserName("before")).build());
+        ListUsersResponse listed = stub.listUsers(ListUsersRequest.getDefaultInstance());
+        assertThat(listed.getSequence()).isEqualTo(1);
+
+        User after = stub.createUser(CreateUserRequest.newBuilder().setUser(User.newBuilder().setUserName("after")).build()).getUser();
+        Iterator<UserEvent> events = watchContext.call(() -> stub.watchUsers(WatchUsersRequest.newBuilder()
+            .setAfterSequence(listed.getSequence()).setEpoch(listed.getEpoch()).build()));
+        UserEvent first = events.next();
+        assertThat(first.getType()).isEqualTo(UserEvent.Type.CREATED);
+        assertThat(first.getUser()).isEqualTo(after);
+
+        stub.deleteUser(DeleteUserRequest.newBuilder().setId(after.getId()).build());
+        assertThat(events.next().getType()).isEqualTo(UserEvent.Type.DELETED);
+      } finally {
+        watchContext.cancel(null);
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+      }
+    }
+    Thread.sleep(100);
+    assertThat(service.changes().watchers()).isZero();
+  }
+
+  @Test
+  void head_waits_for_earlier_changes_to_commit() throws Exception {
+    ChangeLog log = new ChangeLog(16);
+    CountDownLatch recorded = new CountDownLatch(1), commit = new CountDownLatch(1);
+    Thread slow = new Thread(() -> {
+      log.changed(null, user("slow", 1));
+      recorded.countDown();
+      try { commit.await(); } catch (InterruptedException e){ return; }
+      log.committed();
+    });
+    slow.start();
+    recorded.await();
+    record(log, null, user("fast", 1));
+    // Change 2 is in the store, but change 1 may not be yet: neither is published
+    assertThat(log.assigned()).isEqualTo(2);
+    assertThat(log.head()).isZero();
+    Events events = new Events();
+    log.watch(0, log.epoch(), events);
+    assertThat(events.queue.poll(50, TimeUnit.MILLISECONDS)).isNull();
+
+    commit.countDown();
+    slow.join();
+    assertThat(log.head()).isEqualTo(2);
+    assertThat(events.take(2)).extracting(UserEvent::getId).containsExactly("slow", "fast");
+    log.close();
+  }
+
+  private static final class Replica implements StreamObserver<UserEvent> {
+    final Map<String, User> users = new ConcurrentHashMap<>();
+    volatile long applied;
+    @Override
+    public void onNext(UserEvent e){
+      if(e.getType() == UserEvent.Type.RESYNC_REQUIRED) throw new AssertionError("feed lost its place");
+      if(e.getType() == UserEvent.Type.DELETED) users.remove(e.getId());
+      else if(e.getType() != UserEvent.Type.HEARTBEAT) users.put(e.getId(), e.getUser());
+      applied = e.getSequence();
+    }
+    @Override public void onError(Throwable t){ throw new AssertionError(t); }
+    @Override public void onCompleted(){}
+  }
+
+  @Test
+  void snapshot_plus_feed_matches_the_store_under_concurrent_writes() throws Exception {
+    UserServiceImpl service = new UserServiceImpl(new HeapUserStore(), 0, 1 << 20);
+    AtomicBoolean stop = new AtomicBoolean();
+    List<Thread> writers = new ArrayList<>();
+    for(int t = 0; t < 4; t++){
+      Thread w = new Thread(() -> {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for(long v = 1; !stop.get(); v++){
+          String id = "u" + rnd.nextInt(64);
+          if(rnd.nextInt(4) == 0) service.replicate(id, null);
+          else service.replicate(id, user(id, v));
+        }
+      });
+      writers.add(w);
+      w.start();
+    }
+    List<Replica> replicas = new ArrayList<>();
+    for(int i = 0; i < 200; i++){
+      ListUsersResponse listed = list(service);
+      Replica replica = new Replica();
+      for(User u : listed.getUsersList()) replica.users.put(u.getId(), u);
+      replica.applied = listed.getSequence();
+      service.changes().watch(listed.getSequence(), listed.getEpoch(), replica);
+      replicas.add(replica);
+      Thread.sleep(1);
+    }
+    stop.set(true);
+    for(Thread w : writers) w.join();
+
+    ListUsersResponse last = list(service);
+    Map<String, User> expected = new ConcurrentHashMap<>();
+    for(User u : last.getUsersList()) expected.put(u.getId(), u);
+    long head = last.getSequence();
+    for(Replica r : replicas){
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while(r.applied < head && System.nanoTime() < deadline) Thread.sleep(1);
+      assertThat(r.users).isEqualTo(expected);
+    }
+    service.changes().close();
+  }
+
+  private static ListUsersResponse list(UserServiceImpl service){
+    ListUsersResponse[] listed = new ListUsersResponse[1];
+    service.listUsers(ListUsersRequest.getDefaultInstance(), new StreamObserver<>() {
+      @Override public void onNext(ListUsersResponse value){ listed[0] = value; }
+      @Override public void onError(Throwable t){ throw new AssertionError(t); }
+      @Override public void onCompleted(){}
+    });
+    return listed[0];
+  }
+}
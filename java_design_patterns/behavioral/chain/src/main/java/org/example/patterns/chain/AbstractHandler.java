@@ -9,7 +9,19 @@ public abstract class AbstractHandler implements Handler {
         return next;
     }
 
-    protected void next(Request request) {
-        if (next != null) next.handle(request);
+    /** This handler's own step; returns false to stop the chain here (the request is fully handled). */
+    protected abstract boolean process(Request request);
+
+    /** Runs this handler and its successors in a loop rather than by recursion, so chain length does not cost stack. */
+    @Override
+    public void handle(Request request) {
+        Handler h = this;
+        while (h instanceof AbstractHandler a) {
+            if (!a.process(request)) return;
+            h = a.next;
+        }
+        if (h != null) h.handle(request);
     }
+
+    Handler successor() { return next; }
 }
@@ -0,0 +1,9 @@
+package org.example.patterns.chain;
+
+import java.util.concurrent.CompletableFuture;
+
+/** A chain step that completes later, for example after a remote call. Completes with false to stop the chain. */
+@FunctionalInterface
+public interface AsyncHandler {
+    CompletableFuture<Boolean> processAsync(Request request);
+}
@@ -2,8 +2,8 @@ package org.example.patterns.chain;
 
 public class AuthHandler extends AbstractHandler {
     @Override
-    public void handle(Request request) {
+    protected boolean process(Request request) {
         request.authenticated = true; // pretend auth succeeds
-        next(request);
+        return true;
     }
 }
@@ -0,0 +1,194 @@
+package org.example.patterns.chain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a chain of handlers held in an array, one after another in a loop.
+ *
+ * Synchronous handlers run inline. An {@link AsyncHandler}'s future that is already complete is consumed inline too;
+ * otherwise the chain resumes from the next handler when it completes, on the completing thread. A handler that
+ * returns false stops the chain; one that throws anything, errors included (or whose future fails), rejects the
+ * request, and no later handler sees it. Batches run one request per task on a given executor. Every handler keeps its own call count, rejection
+ * count and timing.
+ */
+public final class ChainExecutor {
+    /** How a request left the chain. */
+    public enum Status { COMPLETED, STOPPED, REJECTED }
+
+    /** {@code handler} is the one that stopped or rejected the request, null if it went through the whole chain. */
+    public record Result(Request request, Status status, String handler, Throwable cause) {
+        public boolean accepted() { return status != Status.REJECTED; }
+    }
+
+    /** Per-handler counters; times cover the handler alone, and for async handlers run until their future completes. */
+    public record HandlerStats(String handler, long calls, long rejections, long totalNanos, long maxNanos) {
+        public double meanNanos() { return calls == 0 ? 0 : (double) totalNanos / calls; }
+    }
+
+    private static final class Step {
+        final String name;
+        final AbstractHandler sync;
+        final AsyncHandler async;
+        final LongAdder calls = new LongAdder(), rejections = new LongAdder(), nanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        Step(String name, AbstractHandler sync, AsyncHandler async) {
+            this.name = name;
+            this.sync = sync;
+            this.async = async;
+        }
+
+        void record(long elapsed, boolean rejected) {
+            calls.increment();
+            nanos.add(elapsed);
+            maxNanos.accumulate(elapsed);
+            if (rejected) rejections.increment();
+        }
+    }
+
+    private final Step[] steps;
+
+    private ChainExecutor(List<Step> steps) { this.steps = steps.toArray(new Step[0]); }
+
+    public static Builder builder() { return new Builder(); }
+
+    /** The chain linked from {@code head} with {@link Handler#linkWith}, as an array. */
+    public static ChainExecutor flatten(AbstractHandler head) {
+        Builder b = builder();
+        for (Handler h = head; h != null; ) {
+            if (!(h instanceof AbstractHandler a)) {
+                throw new IllegalArgumentException("Cannot flatten " + h.getClass().getName() + ": not an AbstractHandler");
+            }
+            b.then(a);
+            h = a.successor();
+        }
+        return b.build();
+    }
+
+    public int size() { return steps.length; }
+
+    /** Runs the chain, blocking until any async handlers complete. */
+    public Result execute(Request request) {
+        return executeAsync(request).join();
+    }
+
+    public CompletableFuture<Result> executeAsync(Request request) {
+        CompletableFuture<Result> result = new CompletableFuture<>();
+        run(request, 0, result);
+        return result;
+    }
+
+    /** Runs each request of {@code requests} as its own task on {@code executor}; results are in request order. */
+    public CompletableFuture<List<Result>> executeAll(List<Request> requests, Executor executor) {
+        List<CompletableFuture<Result>> futures = new ArrayList<>(requests.size());
+        for (Request r : requests) {
+            CompletableFuture<Result> f = new CompletableFuture<>();
+            executor.execute(() -> run(r, 0, f));
+            futures.add(f);
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<Result> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<Result> f : futures) results.add(f.join());
+            return results;
+        });
+    }
+
+    public List<HandlerStats> stats() {
+        List<HandlerStats> out = new ArrayList<>(steps.length);
+        for (Step s : steps) {
+            out.add(new HandlerStats(s.name, s.calls.sum(), s.rejections.sum(), s.nanos.sum(), s.maxNanos.get()));
+        }
+        return out;
+    }
+
+    private void run(Request request, int from, CompletableFuture<Result> result) {
+        for (int i = from; i < steps.length; i++) {
+            Step step = steps[i];
+            long t0 = System.nanoTime();
+            if (step.sync != null) {
+                boolean proceed;
+                try {
+                    proceed = step.sync.process(request);
+                } catch (Throwable e) {
+                    step.record(System.nanoTime() - t0, true);
+                    result.complete(new Result(request, Status.REJECTED, step.name, e));
+                    return;
+                }
+                step.record(System.nanoTime() - t0, false);
+                if (!proceed) {
+                    result.complete(new Result(request, Status.STOPPED, step.name, null));
+                    return;
+                }
+                continue;
+            }
+            CompletableFuture<Boolean> f;
+            try {
+                f = step.async.processAsync(request);
+            } catch (Throwable e) {
+                f = CompletableFuture.failedFuture(e);
+            }
+            if (!f.isDone()) {
+                int next = i + 1;
+                f.whenComplete((proceed, error) -> {
+                    // Nothing is waiting on this callback's own future, so a failure here must still settle the result
+                    try {
+                        if (after(step, request, t0, proceed, error, result)) run(request, next, result);
+                    } catch (Throwable t) {
+                        result.completeExceptionally(t);
+                    }
+                });
+                return;
+            }
+            Boolean proceed = null;
+            Throwable error = null;
+            try {
+                proceed = f.join();
+            } catch (CompletionException | CancellationException e) {
+                error = e;
+            }
+            if (!after(step, request, t0, proceed, error, result)) return;
+        }
+        result.complete(new Result(request, Status.COMPLETED, null, null));
+    }
+
+    // Records an async step's outcome; true if the chain goes on
+    private static boolean after(Step step, Request request, long t0, Boolean proceed, Throwable error, CompletableFuture<Result> result) {
+        step.record(System.nanoTime() - t0, error != null);
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            result.complete(new Result(request, Status.REJECTED, step.name, cause));
+            return false;
+        }
+        if (proceed == null || !proceed) {
+            result.complete(new Result(request, Status.STOPPED, step.name, null));
+            return false;
+        }
+        return true;
+    }
+
+    public static final class Builder {
+        private final List<Step> steps = new ArrayList<>();
+
+        private Builder() { }
+
+        /** Adds {@code handler}'s own step; any handler it is linked to is not added. */
+        public Builder then(AbstractHandler handler) {
+            steps.add(new Step(handler.getClass().getSimpleName(), handler, null));
+            return this;
+        }
+
+        public Builder thenAsync(String name, AsyncHandler handler) {
+            steps.add(new Step(name, null, handler));
+            return this;
+        }
+
+        public ChainExecutor build() { return new ChainExecutor(steps); }
+    }
+}
@@ -2,8 +2,8 @@ package org.example.patterns.chain;
 
 public class TransformHandler extends AbstractHandler {
     @Override
-    public void handle(Request request) {
+    protected boolean process(Request request) {
         request.payload = request.payload.trim().toUpperCase();
-        next(request);
+        return true;
     }
 }
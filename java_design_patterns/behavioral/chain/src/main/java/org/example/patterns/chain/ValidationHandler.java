@@ -2,10 +2,10 @@ package org.example.patterns.chain;
 
 public class ValidationHandler extends AbstractHandler {
     @Override
-    public void handle(Request request) {
+    protected boolean process(Request request) {
         if (request.payload == null || request.payload.isBlank()) {
             throw new IllegalArgumentException("Invalid payload");
         }
-        next(request);
+        return true;
     }
 }
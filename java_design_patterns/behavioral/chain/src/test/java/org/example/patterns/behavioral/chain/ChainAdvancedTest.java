@@ -0,0 +1,150 @@
+package org.example.patterns.behavioral.chain;
+
+import org.example.patterns.chain.AbstractHandler;
+import org.example.patterns.chain.AuthHandler;
+import org.example.patterns.chain.ChainExecutor;
+import org.example.patterns.chain.Request;
+import org.example.patterns.chain.TransformHandler;
+import org.example.patterns.chain.ValidationHandler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChainAdvancedTest {
+    /** Counts calls; stops the chain when the payload equals {@code stopAt}. */
+    static final class CountingHandler extends AbstractHandler {
+        int calls;
+        final String stopAt;
+
+        CountingHandler(String stopAt) { this.stopAt = stopAt; }
+
+        @Override
+        protected boolean process(Request request) {
+            calls++;
+            return !request.payload.equals(stopAt);
+        }
+    }
+
+    @Test
+    void longLinkedChainsDoNotRecurse() {
+        CountingHandler head = new CountingHandler(null), tail = head;
+        for (int i = 0; i < 100_000; i++) {
+            CountingHandler h = new CountingHandler(null);
+            tail.linkWith(h);
+            tail = h;
+        }
+        head.handle(new Request("x"));
+        assertEquals(1, tail.calls);
+        assertEquals(100_001, ChainExecutor.flatten(head).size());
+    }
+
+    @Test
+    void flattenedChainShortCircuitsOnRejectionAndStop() {
+        AuthHandler auth = new AuthHandler();
+        CountingHandler stop = new CountingHandler("STOP");
+        TransformHandler transform = new TransformHandler();
+        CountingHandler last = new CountingHandler(null);
+        auth.linkWith(new ValidationHandler()).linkWith(transform).linkWith(stop).linkWith(last);
+        ChainExecutor chain = ChainExecutor.flatten(auth);
+
+        ChainExecutor.Result ok = chain.execute(new Request(" hello "));
+        assertEquals(ChainExecutor.Status.COMPLETED, ok.status());
+        assertEquals("HELLO", ok.request().payload);
+        assertTrue(ok.request().authenticated);
+
+        ChainExecutor.Result stopped = chain.execute(new Request("stop"));
+        assertEquals(ChainExecutor.Status.STOPPED, stopped.status());
+        assertEquals("CountingHandler", stopped.handler());
+
+        ChainExecutor.Result rejected = chain.execute(new Request("  "));
+        assertEquals(ChainExecutor.Status.REJECTED, rejected.status());
+        assertEquals("ValidationHandler", rejected.handler());
+        assertInstanceOf(IllegalArgumentException.class, rejected.cause());
+        assertFalse(rejected.accepted());
+        assertEquals(1, last.calls);
+
+        var stats = chain.stats();
+        assertEquals(List.of("AuthHandler", "ValidationHandler", "TransformHandler", "CountingHandler", "CountingHandler"),
+                stats.stream().map(ChainExecutor.HandlerStats::handler).toList());
+        assertEquals(3, stats.get(1).calls());
+        assertEquals(1, stats.get(1).rejections());
+        assertEquals(2, stats.get(2).calls());
+        assertEquals(1, stats.get(4).calls());
+    }
+
+    @Test
+    void asyncHandlersResumeTheChainWhenTheyComplete() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            ChainExecutor chain = ChainExecutor.builder()
+                    .then(new ValidationHandler())
+                    .thenAsync("lookup", r -> CompletableFuture.supplyAsync(() -> {
+                        r.authenticated = !r.payload.startsWith("anon");
+                        return true;
+                    }, CompletableFuture.delayedExecutor(10, TimeUnit.MILLISECONDS)))
+                    .thenAsync("acl", r -> r.authenticated ? CompletableFuture.completedFuture(true)
+                            : CompletableFuture.failedFuture(new SecurityException("denied")))
+                    .then(new TransformHandler())
+                    .build();
+
+            List<Request> batch = new ArrayList<>();
+            for (int i = 0; i < 50; i++) batch.add(new Request((i % 5 == 0 ? "anon" : "user") + i));
+            List<ChainExecutor.Result> results = chain.executeAll(batch, pool).get(5, TimeUnit.SECONDS);
+            assertEquals(50, results.size());
+            for (int i = 0; i < 50; i++) {
+                ChainExecutor.Result r = results.get(i);
+                assertSame(batch.get(i), r.request());
+                if (i % 5 == 0) {
+                    assertEquals("acl", r.handler());
+                    assertInstanceOf(SecurityException.class, r.cause());
+                } else {
+                    assertEquals(ChainExecutor.Status.COMPLETED, r.status());
+                    assertEquals(("user" + i).toUpperCase(), r.request().payload);
+                }
+            }
+            var lookup = chain.stats().get(1);
+            assertEquals(50, lookup.calls());
+            assertTrue(lookup.meanNanos() >= TimeUnit.MILLISECONDS.toNanos(10));
+            assertEquals(10, chain.stats().get(2).rejections());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void handlersThrowingErrorsRejectTheRequestInsteadOfHangingIt() throws Exception {
+        AbstractHandler broken = new AbstractHandler() {
+            @Override
+            protected boolean process(Request request) { throw new StackOverflowError("sync"); }
+        };
+        ChainExecutor sync = ChainExecutor.builder().then(new ValidationHandler()).then(broken).build();
+        ChainExecutor.Result r = sync.executeAsync(new Request("x")).get(5, TimeUnit.SECONDS);
+        assertEquals(ChainExecutor.Status.REJECTED, r.status());
+        assertInstanceOf(StackOverflowError.class, r.cause());
+
+        // The second step runs on the delayed executor's thread, resumed from the first one's callback
+        ChainExecutor resumed = ChainExecutor.builder()
+                .thenAsync("delay", q -> CompletableFuture.supplyAsync(() -> true,
+                        CompletableFuture.delayedExecutor(10, TimeUnit.MILLISECONDS)))
+                .thenAsync("broken", q -> { throw new AssertionError("async"); })
+                .build();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            List<ChainExecutor.Result> results = resumed.executeAll(List.of(new Request("a"), new Request("b")), pool)
+                    .get(5, TimeUnit.SECONDS);
+            for (ChainExecutor.Result result : results) {
+                assertEquals("broken", result.handler());
+                assertInstanceOf(AssertionError.class, result.cause());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
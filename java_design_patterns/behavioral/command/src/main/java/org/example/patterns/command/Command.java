@@ -3,4 +3,10 @@ package org.example.patterns.command;
 public interface Command {
     void execute();
     void undo();
+
+    /**
+     * A single command equivalent to this one followed by {@code next} (both already executed), so that they undo
+     * together; null if they cannot be combined.
+     */
+    default Command coalesce(Command next) { return null; }
 }
@@ -0,0 +1,60 @@
+package org.example.patterns.command;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Executes commands and keeps them for undo and redo. At most {@code limit} undo steps are kept; the oldest are
+ * dropped first. A command that {@link Command#coalesce coalesces} with the previous one joins its undo step,
+ * unless {@link #seal()} was called in between (for example when the caret moves).
+ */
+public class CommandHistory {
+    private final int limit;
+    private final Deque<Command> undo = new ArrayDeque<>();
+    private final Deque<Command> redo = new ArrayDeque<>();
+    private boolean sealed = true;
+
+    public CommandHistory(int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        this.limit = limit;
+    }
+
+    public void execute(Command command) {
+        command.execute();
+        redo.clear();
+        Command merged = sealed || undo.isEmpty() ? null : undo.peekLast().coalesce(command);
+        if (merged != null) {
+            undo.pollLast();
+            undo.addLast(merged);
+        } else {
+            undo.addLast(command);
+            if (undo.size() > limit) undo.pollFirst();
+        }
+        sealed = false;
+    }
+
+    /** Starts a new undo step with the next command. */
+    public void seal() { sealed = true; }
+
+    public boolean undo() {
+        Command c = undo.pollLast();
+        if (c == null) return false;
+        c.undo();
+        redo.addLast(c);
+        sealed = true;
+        return true;
+    }
+
+    public boolean redo() {
+        Command c = redo.pollLast();
+        if (c == null) return false;
+        c.execute();
+        undo.addLast(c);
+        if (undo.size() > limit) undo.pollFirst();
+        sealed = true;
+        return true;
+    }
+
+    public int undoSize() { return undo.size(); }
+    public int redoSize() { return redo.size(); }
+}
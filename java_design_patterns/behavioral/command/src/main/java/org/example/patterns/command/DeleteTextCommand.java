@@ -0,0 +1,20 @@
+package org.example.patterns.command;
+
+public class DeleteTextCommand implements Command {
+    private final Document doc;
+    private final int index;
+    private final int length;
+    private String deleted;
+
+    public DeleteTextCommand(Document doc, int index, int length) {
+        this.doc = doc; this.index = index; this.length = length;
+    }
+
+    @Override
+    public void execute() {
+        deleted = doc.substring(index, index + length);
+        doc.delete(index, length);
+    }
+
+    @Override public void undo() { doc.insert(index, deleted); }
+}
@@ -1,8 +1,202 @@
 package org.example.patterns.command;
 
+import java.util.SplittableRandom;
+
+/**
+ * Text held as a piece table: the original text and an append-only buffer of everything inserted since, with the
+ * document described by a sequence of pieces (spans of either buffer). An edit never moves text, it only splits
+ * and relinks pieces.
+ *
+ * The pieces live in a treap ordered by position, each node carrying the total length of its subtree, so finding
+ * an offset, inserting and deleting are O(log pieces) whatever the document size. Typing at the end of the last
+ * insert extends that piece instead of adding one.
+ */
 public class Document {
-    private final StringBuilder content = new StringBuilder();
-    public void insert(int index, String text) { content.insert(index, text); }
-    public void delete(int index, int length) { content.delete(index, index + length); }
-    public String getContent() { return content.toString(); }
+    private static final class Piece {
+        final boolean added;
+        int start, length;
+        final int priority;
+        Piece left, right;
+        long total; // characters in this subtree
+
+        Piece(boolean added, int start, int length, int priority) {
+            this.added = added;
+            this.start = start;
+            this.length = length;
+            this.priority = priority;
+            this.total = length;
+        }
+    }
+
+    private final String original;
+    private final StringBuilder add = new StringBuilder();
+    private final SplittableRandom priorities = new SplittableRandom(0x5eed);
+    private Piece root;
+    private int pieces;
+
+    public Document() { this(""); }
+
+    public Document(String text) {
+        this.original = text;
+        if (!text.isEmpty()) root = piece(false, 0, text.length());
+    }
+
+    public int length() { return root == null ? 0 : (int) root.total; }
+
+    /** Number of pieces the text is currently split into. */
+    public int pieces() { return pieces; }
+
+    public void insert(int index, String text) {
+        checkIndex(index, length());
+        if (text.isEmpty()) return;
+        int at = add.length();
+        add.append(text);
+        // Typing straight on from the previous insert: grow that piece
+        if (index > 0 && extendAddPieceEndingAt(root, index, at, text.length())) return;
+        Piece[] lr = split(root, index);
+        root = merge(merge(lr[0], piece(true, at, text.length())), lr[1]);
+    }
+
+    public void delete(int index, int length) {
+        checkIndex(index, length());
+        if (length < 0 || index + length > length()) throw new IndexOutOfBoundsException("Range " + index + "+" + length);
+        if (length == 0) return;
+        Piece[] lr = split(root, index);
+        Piece[] mr = split(lr[1], length);
+        pieces -= count(mr[0]);
+        root = merge(lr[0], mr[1]);
+    }
+
+    public char charAt(int index) {
+        if (index < 0 || index >= length()) throw new IndexOutOfBoundsException("Index " + index);
+        Piece p = root;
+        long i = index;
+        while (true) {
+            long l = total(p.left);
+            if (i < l) { p = p.left; continue; }
+            i -= l;
+            if (i < p.length) return buffer(p).charAt(p.start + (int) i);
+            i -= p.length;
+            p = p.right;
+        }
+    }
+
+    /** Characters {@code [from, to)}, copying only that range. */
+    public String substring(int from, int to) {
+        if (from < 0 || to > length() || from > to) throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ")");
+        char[] out = new char[to - from];
+        copy(root, from, to, out, 0);
+        return new String(out);
+    }
+
+    public String getContent() { return substring(0, length()); }
+
+    private CharSequence buffer(Piece p) { return p.added ? add : original; }
+
+    private Piece piece(boolean added, int start, int length) {
+        pieces++;
+        return new Piece(added, start, length, priorities.nextInt());
+    }
+
+    private static long total(Piece p) { return p == null ? 0 : p.total; }
+
+    private static Piece update(Piece p) {
+        p.total = total(p.left) + p.length + total(p.right);
+        return p;
+    }
+
+    // The piece ending exactly at index, if it is the add buffer's last span, grows by n; lengths are fixed up on the way back
+    private boolean extendAddPieceEndingAt(Piece p, long index, int addEnd, int n) {
+        if (p == null) return false;
+        long l = total(p.left);
+        boolean extended;
+        if (index <= l) {
+            extended = extendAddPieceEndingAt(p.left, index, addEnd, n);
+        } else if (index == l + p.length) {
+            extended = p.added && p.start + p.length == addEnd;
+            if (extended) p.length += n;
+        } else if (index > l + p.length) {
+            extended = extendAddPieceEndingAt(p.right, index - l - p.length, addEnd, n);
+        } else {
+            extended = false;
+        }
+        if (extended) p.total += n;
+        return extended;
+    }
+
+    // Splits into [0, offset) and [offset, ...). A piece the offset falls inside is first cut in place, and its tail
+    // becomes a fresh single-node treap merged into the right part, so every node keeps an independent random
+    // priority and the heap order holds.
+    private Piece[] split(Piece t, long offset) {
+        Piece tail = cutAt(t, offset);
+        Piece[] s = splitAtBoundary(t, offset);
+        if (tail != null) s[1] = merge(tail, s[1]);
+        return s;
+    }
+
+    // If offset falls strictly inside a piece, shortens that piece to end there and returns the rest as a new piece
+    private Piece cutAt(Piece p, long offset) {
+        if (p == null) return null;
+        long l = total(p.left);
+        Piece tail;
+        if (offset < l) {
+            tail = cutAt(p.left, offset);
+        } else if (offset - l < p.length) {
+            if (offset == l) return null;
+            int cut = (int) (offset - l);
+            tail = piece(p.added, p.start + cut, p.length - cut);
+            p.length = cut;
+        } else {
+            tail = cutAt(p.right, offset - l - p.length);
+        }
+        if (tail != null) p.total -= tail.length;
+        return tail;
+    }
+
+    // offset must be at a piece boundary
+    private static Piece[] splitAtBoundary(Piece p, long offset) {
+        if (p == null) return new Piece[2];
+        long l = total(p.left);
+        if (offset <= l) {
+            Piece[] s = splitAtBoundary(p.left, offset);
+            p.left = s[1];
+            s[1] = update(p);
+            return s;
+        }
+        Piece[] s = splitAtBoundary(p.right, offset - l - p.length);
+        p.right = s[0];
+        s[0] = update(p);
+        return s;
+    }
+
+    private static Piece merge(Piece a, Piece b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            return update(a);
+        }
+        b.left = merge(a, b.left);
+        return update(b);
+    }
+
+    private static int count(Piece p) { return p == null ? 0 : 1 + count(p.left) + count(p.right); }
+
+    // Copies the part of [from, to) covered by p's subtree (whose first character is at offset 0) into out
+    private int copy(Piece p, long from, long to, char[] out, int at) {
+        if (p == null || to <= 0 || from >= p.total) return at;
+        long l = total(p.left);
+        at = copy(p.left, from, to, out, at);
+        long s = Math.max(from - l, 0), e = Math.min(to - l, p.length);
+        if (s < e) {
+            int begin = p.start + (int) s, end = p.start + (int) e;
+            if (p.added) add.getChars(begin, end, out, at); else original.getChars(begin, end, out, at);
+            at += (int) (e - s);
+        }
+        return copy(p.right, from - l - p.length, to - l - p.length, out, at);
+    }
+
+    private static void checkIndex(int index, int length) {
+        if (index < 0 || index > length) throw new IndexOutOfBoundsException("Index " + index + ", length " + length);
+    }
 }
@@ -1,6 +1,9 @@
 package org.example.patterns.command;
 
 public class InsertTextCommand implements Command {
+    /** Longest run of typing merged into one undo step. */
+    static final int MAX_COALESCED_LENGTH = 4096;
+
     private final Document doc;
     private final int index;
     private final String text;
@@ -11,4 +14,14 @@ public class InsertTextCommand implements Command {
 
     @Override public void execute() { doc.insert(index, text); }
     @Override public void undo() { doc.delete(index, text.length()); }
+
+    /** Merges an insert that continues right where this one ended, as when typing. */
+    @Override
+    public Command coalesce(Command next) {
+        if (next instanceof InsertTextCommand n && n.doc == doc && n.index == index + text.length()
+                && text.length() + n.text.length() <= MAX_COALESCED_LENGTH) {
+            return new InsertTextCommand(doc, index, text + n.text);
+        }
+        return null;
+    }
 }
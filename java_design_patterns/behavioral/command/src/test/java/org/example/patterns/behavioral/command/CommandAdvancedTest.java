@@ -0,0 +1,87 @@
+package org.example.patterns.behavioral.command;
+
+import org.example.patterns.command.CommandHistory;
+import org.example.patterns.command.DeleteTextCommand;
+import org.example.patterns.command.Document;
+import org.example.patterns.command.InsertTextCommand;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandAdvancedTest {
+    @Test
+    void pieceTableMatchesStringBuilderUnderRandomEdits() {
+        SplittableRandom rnd = new SplittableRandom(7);
+        Document doc = new Document("The quick brown fox jumps over the lazy dog.");
+        StringBuilder expected = new StringBuilder(doc.getContent());
+        for (int i = 0; i < 5_000; i++) {
+            if (expected.length() > 0 && rnd.nextInt(3) == 0) {
+                int at = rnd.nextInt(expected.length());
+                int len = rnd.nextInt(Math.min(4, expected.length() - at) + 1);
+                doc.delete(at, len);
+                expected.delete(at, at + len);
+            } else {
+                int at = rnd.nextInt(expected.length() + 1);
+                String text = Integer.toString(i, 36);
+                doc.insert(at, text);
+                expected.insert(at, text);
+            }
+            if (i % 500 == 0) assertEquals(expected.toString(), doc.getContent());
+        }
+        assertEquals(expected.toString(), doc.getContent());
+        assertEquals(expected.length(), doc.length());
+        int mid = expected.length() / 2;
+        assertEquals(expected.charAt(mid), doc.charAt(mid));
+        assertEquals(expected.substring(mid - 10, mid + 10), doc.substring(mid - 10, mid + 10));
+        assertThrows(IndexOutOfBoundsException.class, () -> doc.insert(doc.length() + 1, "x"));
+        assertThrows(IndexOutOfBoundsException.class, () -> doc.delete(doc.length() - 1, 2));
+    }
+
+    @Test
+    void typingExtendsOnePiece() {
+        Document doc = new Document("hello world");
+        for (int i = 0; i < 100; i++) doc.insert(5 + i, "!");
+        assertEquals(3, doc.pieces());
+        assertEquals("hello" + "!".repeat(100) + " world", doc.getContent());
+    }
+
+    @Test
+    void adjacentInsertsUndoAsOneStep() {
+        Document doc = new Document();
+        CommandHistory history = new CommandHistory(100);
+        for (char c : "hello".toCharArray()) history.execute(new InsertTextCommand(doc, doc.length(), String.valueOf(c)));
+        history.seal();
+        for (char c : " world".toCharArray()) history.execute(new InsertTextCommand(doc, doc.length(), String.valueOf(c)));
+        history.execute(new InsertTextCommand(doc, 0, ">"));
+        assertEquals(">hello world", doc.getContent());
+        assertEquals(3, history.undoSize());
+
+        assertTrue(history.undo());
+        assertEquals("hello world", doc.getContent());
+        assertTrue(history.undo());
+        assertEquals("hello", doc.getContent());
+        assertTrue(history.redo());
+        assertEquals("hello world", doc.getContent());
+
+        history.execute(new DeleteTextCommand(doc, 0, 6));
+        assertEquals("world", doc.getContent());
+        assertEquals(0, history.redoSize());
+        assertTrue(history.undo());
+        assertEquals("hello world", doc.getContent());
+    }
+
+    @Test
+    void historyKeepsOnlyTheNewestSteps() {
+        Document doc = new Document();
+        CommandHistory history = new CommandHistory(3);
+        for (int i = 0; i < 5; i++) {
+            history.execute(new InsertTextCommand(doc, 0, String.valueOf(i)));
+        }
+        assertEquals("43210", doc.getContent());
+        assertEquals(3, history.undoSize());
+        while (history.undo()) { }
+        assertEquals("10", doc.getContent());
+    }
+}
@@ -0,0 +1,181 @@
+package org.example.patterns.memento;
+
+/**
+ * Immutable text as a height-balanced binary tree whose leaves are short strings.
+ *
+ * Every edit returns a new rope that rebuilds only the O(log n) nodes on the path to the change and shares the rest
+ * with the old one, so keeping old versions around costs only what changed. Concatenation and splitting keep the
+ * tree AVL-balanced; a short piece of text added next to a short leaf is merged into a copy of that leaf, so typing
+ * does not leave one leaf per keystroke.
+ */
+public final class Rope implements CharSequence {
+    /** Leaf size when building from a string. */
+    static final int LEAF = 512;
+    /** Largest leaf an edit copies to absorb new text, rather than adding a leaf beside it. */
+    static final int MERGE = 128;
+
+    private static final Rope EMPTY = new Rope("");
+
+    private final String leaf; // null for an inner node
+    private final Rope left, right;
+    private final int length, height;
+
+    private Rope(String leaf) {
+        this.leaf = leaf;
+        this.left = this.right = null;
+        this.length = leaf.length();
+        this.height = 0;
+    }
+
+    private Rope(Rope left, Rope right) {
+        this.leaf = null;
+        this.left = left;
+        this.right = right;
+        this.length = left.length + right.length;
+        this.height = Math.max(left.height, right.height) + 1;
+    }
+
+    public static Rope empty() { return EMPTY; }
+
+    public static Rope of(String text) { return build(text, 0, text.length()); }
+
+    @Override public int length() { return length; }
+
+    @Override public boolean isEmpty() { return length == 0; }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException("Index " + index + ", length " + length);
+        Rope r = this;
+        while (r.leaf == null) {
+            if (index < r.left.length) {
+                r = r.left;
+            } else {
+                index -= r.left.length;
+                r = r.right;
+            }
+        }
+        return r.leaf.charAt(index);
+    }
+
+    public Rope append(CharSequence text) { return insert(length, text); }
+
+    public Rope insert(int index, CharSequence text) {
+        checkIndex(index);
+        if (text.length() == 0) return this;
+        Rope added = text instanceof Rope r ? r : of(text.toString());
+        if (index == length) return concat(this, added);
+        if (index == 0) return concat(added, this);
+        Rope[] s = split(this, index);
+        return concat(concat(s[0], added), s[1]);
+    }
+
+    public Rope delete(int from, int to) {
+        checkRange(from, to);
+        if (from == to) return this;
+        Rope[] tail = split(this, to);
+        return concat(split(tail[0], from)[0], tail[1]);
+    }
+
+    @Override
+    public Rope subSequence(int from, int to) {
+        checkRange(from, to);
+        if (from == 0 && to == length) return this;
+        return split(split(this, to)[0], from)[1];
+    }
+
+    @Override
+    public String toString() {
+        if (leaf != null) return leaf;
+        StringBuilder sb = new StringBuilder(length);
+        appendTo(sb);
+        return sb.toString();
+    }
+
+    /** Tree depth; at most about 1.44 log2 of the leaf count. */
+    public int height() { return height; }
+
+    private void appendTo(StringBuilder sb) {
+        if (leaf != null) {
+            sb.append(leaf);
+        } else {
+            left.appendTo(sb);
+            right.appendTo(sb);
+        }
+    }
+
+    private static Rope build(String text, int from, int to) {
+        if (to - from <= LEAF) return from == to ? EMPTY : new Rope(text.substring(from, to));
+        int mid = from + (to - from) / 2;
+        return new Rope(build(text, from, mid), build(text, mid, to));
+    }
+
+    private static Rope concat(Rope a, Rope b) {
+        if (a.length == 0) return b;
+        if (b.length == 0) return a;
+        if (b.leaf != null && b.length < MERGE) {
+            Rope merged = mergeLast(a, b.leaf);
+            if (merged != null) return merged;
+        }
+        if (a.leaf != null && a.length < MERGE) {
+            Rope merged = mergeFirst(a.leaf, b);
+            if (merged != null) return merged;
+        }
+        return join(a, b);
+    }
+
+    // a with text appended to its last leaf, or null if that leaf would outgrow MERGE
+    private static Rope mergeLast(Rope a, String text) {
+        if (a.leaf != null) return a.length + text.length() <= MERGE ? new Rope(a.leaf.concat(text)) : null;
+        Rope r = mergeLast(a.right, text);
+        return r == null ? null : new Rope(a.left, r);
+    }
+
+    private static Rope mergeFirst(String text, Rope b) {
+        if (b.leaf != null) return b.length + text.length() <= MERGE ? new Rope(text.concat(b.leaf)) : null;
+        Rope l = mergeFirst(text, b.left);
+        return l == null ? null : new Rope(l, b.right);
+    }
+
+    // AVL join: descend the taller tree's inner spine to a subtree of matching height, then rebalance on the way up
+    private static Rope join(Rope a, Rope b) {
+        if (a.height > b.height + 1) return balance(a.left, join(a.right, b));
+        if (b.height > a.height + 1) return balance(join(a, b.left), b.right);
+        return new Rope(a, b);
+    }
+
+    private static Rope balance(Rope l, Rope r) {
+        if (l.height > r.height + 1) {
+            if (l.left.height >= l.right.height) return new Rope(l.left, new Rope(l.right, r));
+            return new Rope(new Rope(l.left, l.right.left), new Rope(l.right.right, r));
+        }
+        if (r.height > l.height + 1) {
+            if (r.right.height >= r.left.height) return new Rope(new Rope(l, r.left), r.right);
+            return new Rope(new Rope(l, r.left.left), new Rope(r.left.right, r.right));
+        }
+        return new Rope(l, r);
+    }
+
+    // [0, index) and [index, length)
+    private static Rope[] split(Rope r, int index) {
+        if (index == 0) return new Rope[]{EMPTY, r};
+        if (index == r.length) return new Rope[]{r, EMPTY};
+        if (r.leaf != null) return new Rope[]{new Rope(r.leaf.substring(0, index)), new Rope(r.leaf.substring(index))};
+        if (index <= r.left.length) {
+            Rope[] s = split(r.left, index);
+            s[1] = concat(s[1], r.right);
+            return s;
+        }
+        Rope[] s = split(r.right, index - r.left.length);
+        s[0] = concat(r.left, s[0]);
+        return s;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index > length) throw new IndexOutOfBoundsException("Index " + index + ", length " + length);
+    }
+
+    private void checkRange(int from, int to) {
+        if (from < 0 || to > length || from > to) throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ")");
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.patterns.memento;
+
+/**
+ * Text editor whose content is a persistent {@link Rope}. An edit costs O(log n) and leaves earlier versions intact,
+ * so {@link #save()} just hands out the current rope, and a snapshot only pays for the nodes later edits rebuild.
+ * {@link #restore} puts a saved rope back, in O(1).
+ */
+public class RopeEditor {
+    private Rope content;
+
+    public RopeEditor() { this(""); }
+    public RopeEditor(String text) { content = Rope.of(text); }
+
+    public void type(String text) { content = content.append(text); }
+    public void insert(int index, String text) { content = content.insert(index, text); }
+    public void delete(int from, int to) { content = content.delete(from, to); }
+    public RopeSnapshot save() { return new RopeSnapshot(content); }
+    public void restore(RopeSnapshot snapshot) { content = snapshot.rope(); }
+    public int length() { return content.length(); }
+    public char charAt(int index) { return content.charAt(index); }
+    public String getContent() { return content.toString(); }
+}
@@ -0,0 +1,10 @@
+package org.example.patterns.memento;
+
+/** Memento of a {@link RopeEditor}: the rope the editor held, shared with it rather than copied. */
+public final class RopeSnapshot {
+    private final Rope content;
+    RopeSnapshot(Rope content) { this.content = content; }
+    Rope rope() { return content; }
+    public int length() { return content.length(); }
+    public String getContent() { return content.toString(); }
+}
@@ -0,0 +1,89 @@
+package org.example.patterns.behavioral.memento;
+
+import org.example.patterns.memento.Rope;
+import org.example.patterns.memento.RopeEditor;
+import org.example.patterns.memento.RopeSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MementoAdvancedTest {
+    @Test
+    void ropeMatchesStringBuilderUnderRandomEdits() {
+        SplittableRandom rnd = new SplittableRandom(3);
+        StringBuilder expected = new StringBuilder("x".repeat(3_000));
+        Rope rope = Rope.of(expected.toString());
+        for (int i = 0; i < 5_000; i++) {
+            if (expected.length() > 0 && rnd.nextInt(3) == 0) {
+                int from = rnd.nextInt(expected.length());
+                int to = from + rnd.nextInt(Math.min(40, expected.length() - from) + 1);
+                rope = rope.delete(from, to);
+                expected.delete(from, to);
+            } else {
+                int at = rnd.nextInt(expected.length() + 1);
+                String text = rnd.nextInt(50) == 0 ? "y".repeat(700) : Integer.toString(i, 36);
+                rope = rope.insert(at, text);
+                expected.insert(at, text);
+            }
+            if (i % 500 == 0) assertEquals(expected.toString(), rope.toString());
+        }
+        assertEquals(expected.toString(), rope.toString());
+        assertEquals(expected.length(), rope.length());
+        int mid = expected.length() / 2;
+        assertEquals(expected.charAt(mid), rope.charAt(mid));
+        assertEquals(expected.substring(mid - 10, mid + 10), rope.subSequence(mid - 10, mid + 10).toString());
+        assertThrows(IndexOutOfBoundsException.class, () -> Rope.empty().charAt(0));
+    }
+
+    @Test
+    void ropeStaysBalanced() {
+        Rope rope = Rope.empty();
+        for (int i = 0; i < 100_000; i++) rope = rope.append("word ");
+        // 500,000 chars in leaves of up to 128: about 4,000 leaves, so an AVL tree is at most ~17 deep
+        assertTrue(rope.height() <= 18, "height " + rope.height());
+        for (int i = 0; i < 10_000; i++) rope = rope.insert(0, "ab");
+        assertTrue(rope.height() <= 20, "height " + rope.height());
+        assertEquals(520_000, rope.length());
+    }
+
+    @Test
+    void snapshotsAreUnaffectedByLaterEdits() {
+        RopeEditor editor = new RopeEditor("Hello");
+        RopeSnapshot hello = editor.save();
+        editor.type(", world");
+        editor.insert(0, ">> ");
+        RopeSnapshot edited = editor.save();
+        editor.delete(0, editor.length());
+        assertEquals("", editor.getContent());
+
+        editor.restore(hello);
+        assertEquals("Hello", editor.getContent());
+        editor.type("!");
+        assertEquals("Hello!", editor.getContent());
+        assertEquals("Hello", hello.getContent());
+        editor.restore(edited);
+        assertEquals(">> Hello, world", editor.getContent());
+        assertEquals(15, edited.length());
+    }
+
+    @Test
+    void manySnapshotsOfATypingSession() {
+        RopeEditor editor = new RopeEditor();
+        List<RopeSnapshot> snapshots = new ArrayList<>();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            String word = i + " ";
+            editor.type(word);
+            expected.append(word);
+            snapshots.add(editor.save());
+        }
+        assertEquals(expected.toString(), editor.getContent());
+        editor.restore(snapshots.get(9));
+        assertEquals("0 1 2 3 4 5 6 7 8 9 ", editor.getContent());
+        assertEquals(expected.length(), snapshots.get(snapshots.size() - 1).length());
+    }
+}
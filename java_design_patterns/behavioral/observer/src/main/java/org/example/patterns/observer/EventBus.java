@@ -1,17 +1,243 @@
 package org.example.patterns.observer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
+/**
+ * Thread-safe event bus with typed subscriptions.
+ *
+ * Subscribers are held in an immutable snapshot that is replaced (copy-on-write) on every subscribe or unsubscribe,
+ * so {@link #publish} takes no lock and copies nothing. Each snapshot caches, per concrete event class, the array of
+ * subscribers whose type it matches, so a publish only visits the listeners that want the event.
+ *
+ * Synchronous subscribers run on the publishing thread, in subscription order. Asynchronous ones get their own
+ * bounded queue drained on a chosen executor, one event at a time and in publish order; when the queue is full the
+ * event is dropped (or, with {@link Overflow#BLOCK}, the publisher waits), so a slow listener cannot stall the others.
+ */
 public class EventBus {
-    private final List<EventListener> listeners = new ArrayList<>();
+    /** What an asynchronous subscription does with an event its full queue cannot take. */
+    public enum Overflow { DROP, BLOCK }
 
-    public void register(EventListener listener) { listeners.add(listener); }
-    public void unregister(EventListener listener) { listeners.remove(listener); }
+    /** Handle for one subscription; closing it stops further deliveries. */
+    public abstract static class Subscription implements AutoCloseable {
+        private final EventBus bus;
+        private final Class<? extends Event> type;
+        private final Object listener;
+        final LongAdder delivered = new LongAdder(), dropped = new LongAdder(), failed = new LongAdder();
+        volatile boolean active = true;
+
+        private Subscription(EventBus bus, Class<? extends Event> type, Object listener) {
+            this.bus = bus;
+            this.type = type;
+            this.listener = listener;
+        }
+
+        public Class<? extends Event> type() { return type; }
+        /** Events handed to an asynchronous listener; synchronous deliveries are not counted, to keep them cheap. */
+        public long delivered() { return delivered.sum(); }
+        /** Events not delivered because the queue was full or the executor refused the work. */
+        public long dropped() { return dropped.sum(); }
+        /** Deliveries that threw; asynchronous listeners only, as synchronous ones throw to the publisher. */
+        public long failed() { return failed.sum(); }
+        /** Events waiting in the queue; always 0 for synchronous subscriptions. */
+        public int pending() { return 0; }
+
+        abstract void offer(Event event);
+
+        @Override
+        public void close() {
+            active = false;
+            bus.remove(this);
+        }
+    }
+
+    private static final class SyncSubscription<E extends Event> extends Subscription {
+        private final Consumer<? super E> listener;
+
+        SyncSubscription(EventBus bus, Class<E> type, Consumer<? super E> listener, Object key) {
+            super(bus, type, key);
+            this.listener = listener;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void offer(Event event) {
+            listener.accept((E) event);
+        }
+    }
+
+    private static final class AsyncSubscription<E extends Event> extends Subscription {
+        private static final int BATCH = 64;
+        private static final long BLOCK_PARK_NANOS = 50_000;
+
+        private final Consumer<? super E> listener;
+        private final Executor executor;
+        // Many publishers, one drain at a time: a lock-free queue bounded by a separate count
+        private final Queue<Event> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final int capacity;
+        private final Overflow overflow;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        AsyncSubscription(EventBus bus, Class<E> type, Consumer<? super E> listener, Executor executor, int capacity, Overflow overflow) {
+            super(bus, type, listener);
+            this.listener = listener;
+            this.executor = executor;
+            this.capacity = capacity;
+            this.overflow = overflow;
+        }
+
+        @Override public int pending() { return size.get(); }
+
+        @Override
+        void offer(Event event) {
+            while (!reserve()) {
+                if (overflow == Overflow.DROP) {
+                    dropped.increment();
+                    return;
+                }
+                // BLOCK: wait for the drain to make room
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    dropped.increment();
+                    return;
+                }
+                schedule();
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            }
+            queue.offer(event);
+            schedule();
+        }
+
+        private boolean reserve() {
+            for (int n; (n = size.get()) < capacity; ) if (size.compareAndSet(n, n + 1)) return true;
+            return false;
+        }
+
+        // At most one drain runs at a time, which keeps deliveries to this listener ordered
+        private void schedule() {
+            if (scheduled.get() || !scheduled.compareAndSet(false, true)) return;
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                for (Event ignored; (ignored = queue.poll()) != null; ) {
+                    size.decrementAndGet();
+                    dropped.increment();
+                }
+                scheduled.set(false);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void drain() {
+            // A bounded batch per task, so one busy listener does not hold an executor thread indefinitely
+            for (int n = 0; n < BATCH; n++) {
+                Event event = queue.poll();
+                if (event == null) break;
+                size.decrementAndGet();
+                if (!active) continue;
+                try {
+                    listener.accept((E) event);
+                    delivered.increment();
+                } catch (RuntimeException e) {
+                    failed.increment();
+                }
+            }
+            scheduled.set(false);
+            if (!queue.isEmpty()) schedule();
+        }
+    }
+
+    /** Immutable set of subscribers, with the per-event-class dispatch arrays resolved from it on demand. */
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new Subscription[0]);
+
+        final Subscription[] all;
+        final Map<Class<?>, Subscription[]> byEventClass = new ConcurrentHashMap<>();
+
+        Snapshot(Subscription[] all) { this.all = all; }
+
+        Subscription[] targets(Class<?> eventClass) {
+            Subscription[] t = byEventClass.get(eventClass);
+            return t != null ? t : byEventClass.computeIfAbsent(eventClass, this::resolve);
+        }
+
+        private Subscription[] resolve(Class<?> eventClass) {
+            List<Subscription> matching = new ArrayList<>();
+            for (Subscription s : all) if (s.type.isAssignableFrom(eventClass)) matching.add(s);
+            return matching.toArray(new Subscription[0]);
+        }
+    }
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /** Delivers every event to {@code listener} synchronously. */
+    public void register(EventListener listener) {
+        add(new SyncSubscription<>(this, Event.class, listener::onEvent, listener));
+    }
+
+    public void unregister(EventListener listener) {
+        for (Subscription s : snapshot.all) {
+            if (s.listener == listener) { s.close(); return; }
+        }
+    }
+
+    /** Delivers events of {@code type} (and its subtypes) to {@code listener} on the publishing thread. */
+    public <E extends Event> Subscription subscribe(Class<E> type, Consumer<? super E> listener) {
+        return add(new SyncSubscription<>(this, type, listener, listener));
+    }
+
+    /** As {@link #subscribe(Class, Consumer, Executor, int, Overflow)}, dropping events once the queue is full. */
+    public <E extends Event> Subscription subscribe(Class<E> type, Consumer<? super E> listener, Executor executor, int queueCapacity) {
+        return subscribe(type, listener, executor, queueCapacity, Overflow.DROP);
+    }
+
+    /**
+     * Delivers events of {@code type} to {@code listener} on {@code executor}, through a queue of at most
+     * {@code queueCapacity} events, which must be at least 1. Exceptions from the listener are counted in
+     * {@link Subscription#failed()}.
+     */
+    public <E extends Event> Subscription subscribe(Class<E> type, Consumer<? super E> listener, Executor executor,
+                                                    int queueCapacity, Overflow overflow) {
+        if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be at least 1: " + queueCapacity);
+        return add(new AsyncSubscription<>(this, type, listener, executor, queueCapacity, overflow));
+    }
 
     public void publish(Event event) {
-        for (EventListener l : List.copyOf(listeners)) {
-            l.onEvent(event);
+        for (Subscription s : snapshot.targets(event.getClass())) {
+            if (s.active) s.offer(event);
+        }
+    }
+
+    private synchronized Subscription add(Subscription s) {
+        Subscription[] all = snapshot.all;
+        Subscription[] next = Arrays.copyOf(all, all.length + 1);
+        next[all.length] = s;
+        snapshot = new Snapshot(next);
+        return s;
+    }
+
+    private synchronized void remove(Subscription s) {
+        Subscription[] all = snapshot.all;
+        for (int i = 0; i < all.length; i++) {
+            if (all[i] != s) continue;
+            Subscription[] next = new Subscription[all.length - 1];
+            System.arraycopy(all, 0, next, 0, i);
+            System.arraycopy(all, i + 1, next, i, all.length - i - 1);
+            snapshot = new Snapshot(next);
+            return;
         }
     }
 }
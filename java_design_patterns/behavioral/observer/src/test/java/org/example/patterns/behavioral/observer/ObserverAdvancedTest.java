@@ -0,0 +1,114 @@
+package org.example.patterns.behavioral.observer;
+
+import org.example.patterns.observer.Event;
+import org.example.patterns.observer.EventBus;
+import org.example.patterns.observer.EventListener;
+import org.example.patterns.observer.OrderCreatedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ObserverAdvancedTest {
+    record OrderShippedEvent(String orderId) implements Event { }
+
+    @Test
+    void publishReachesOnlyMatchingSubscriptions() {
+        var bus = new EventBus();
+        List<String> seen = new ArrayList<>();
+        EventListener all = e -> seen.add("all:" + e);
+        bus.register(all);
+        var created = bus.subscribe(OrderCreatedEvent.class, e -> seen.add("created:" + e.orderId()));
+        assertEquals(OrderCreatedEvent.class, created.type());
+        bus.subscribe(OrderShippedEvent.class, e -> seen.add("shipped:" + e.orderId()));
+
+        bus.publish(new OrderCreatedEvent("1"));
+        bus.publish(new OrderShippedEvent("2"));
+        assertEquals(List.of("all:OrderCreated(1)", "created:1", "all:OrderShippedEvent[orderId=2]", "shipped:2"), seen);
+
+        seen.clear();
+        created.close();
+        bus.unregister(all);
+        bus.publish(new OrderCreatedEvent("3"));
+        bus.publish(new OrderShippedEvent("4"));
+        assertEquals(List.of("shipped:4"), seen);
+    }
+
+    @Test
+    void listenersMayUnsubscribeWhilePublishing() {
+        var bus = new EventBus();
+        List<String> seen = new ArrayList<>();
+        EventBus.Subscription[] self = new EventBus.Subscription[1];
+        self[0] = bus.subscribe(OrderCreatedEvent.class, e -> { seen.add("once:" + e.orderId()); self[0].close(); });
+        bus.subscribe(OrderCreatedEvent.class, e -> seen.add("always:" + e.orderId()));
+        bus.publish(new OrderCreatedEvent("1"));
+        bus.publish(new OrderCreatedEvent("2"));
+        assertEquals(List.of("once:1", "always:1", "always:2"), seen);
+    }
+
+    @Test
+    void slowAsyncListenerDropsInsteadOfBlockingPublishers() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            var bus = new EventBus();
+            CountDownLatch release = new CountDownLatch(1);
+            var slow = bus.subscribe(OrderCreatedEvent.class, e -> {
+                try { release.await(); } catch (InterruptedException ignored) { }
+            }, executor, 4);
+            List<String> fast = new CopyOnWriteArrayList<>();
+            CountDownLatch all = new CountDownLatch(100);
+            bus.subscribe(OrderCreatedEvent.class, e -> { fast.add(e.orderId()); all.countDown(); }, executor, 1_000);
+
+            bus.publish(new OrderCreatedEvent("0"));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (slow.pending() > 0 && System.nanoTime() < deadline) Thread.sleep(1);
+            for (int i = 1; i < 100; i++) bus.publish(new OrderCreatedEvent(String.valueOf(i)));
+            assertTrue(all.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 100; i++) assertEquals(String.valueOf(i), fast.get(i));
+            // One event is held by the blocked listener, four wait in its queue, the rest were dropped
+            assertEquals(95, slow.dropped());
+            release.countDown();
+            deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (slow.delivered() < 5 && System.nanoTime() < deadline) Thread.sleep(5);
+            assertEquals(5, slow.delivered());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void asyncListenerFailuresAreCounted() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            var bus = new EventBus();
+            var failing = bus.subscribe(OrderCreatedEvent.class, e -> { throw new IllegalStateException(); }, executor, 16,
+                    EventBus.Overflow.BLOCK);
+            for (int i = 0; i < 10; i++) bus.publish(new OrderCreatedEvent(String.valueOf(i)));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (failing.failed() < 10 && System.nanoTime() < deadline) Thread.sleep(5);
+            assertEquals(10, failing.failed());
+            assertEquals(0, failing.dropped());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void asyncQueuesNeedRoomForAtLeastOneEvent() {
+        var bus = new EventBus();
+        for (int capacity : new int[]{0, -1}) {
+            for (EventBus.Overflow overflow : EventBus.Overflow.values()) {
+                assertThrows(IllegalArgumentException.class,
+                        () -> bus.subscribe(OrderCreatedEvent.class, e -> { }, Runnable::run, capacity, overflow));
+            }
+        }
+        bus.publish(new OrderCreatedEvent("nobody listening"));
+    }
+}
@@ -1,14 +1,306 @@
 package org.example.patterns.objectpool;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
-public class ObjectPool<T> {
-    private final Deque<T> idle = new ArrayDeque<>();
+/**
+ * Bounded, thread-safe object pool.
+ *
+ * Capacity is a {@link Semaphore} of {@code maxSize} permits, one per borrowed object, so a borrow beyond it
+ * blocks (up to a timeout) until something is released. Having a permit, a borrower looks for an idle object
+ * in order: its own thread-local cache of recently released objects, the shared idle queue, then every pooled
+ * object (stealing one parked in another thread's cache); only then does it create one. Each object is claimed
+ * by a CAS on its state, so none of these paths takes a lock.
+ *
+ * Objects can be validated on borrow and on return (failures are destroyed), reset on return, and evicted once
+ * idle for longer than {@code maxIdle}, either by {@link #evictIdle()} or by a background evictor.
+ */
+public class ObjectPool<T> implements AutoCloseable {
+    private static final int IDLE = 0, IN_USE = 1, REMOVED = 2, RETURNING = 3;
+    private static final int LOCAL_CACHE = 4;
+
+    /** One pooled object. {@link #close()} returns it to the pool. */
+    public static final class Pooled<T> implements AutoCloseable {
+        private final ObjectPool<T> pool;
+        private final T object;
+        private final AtomicInteger state = new AtomicInteger(IN_USE);
+        private volatile long idleSince;
+
+        private Pooled(ObjectPool<T> pool, T object) { this.pool = pool; this.object = object; }
+
+        public T get() { return object; }
+        @Override public void close() { pool.release(this); }
+        private boolean claim() { return state.compareAndSet(IDLE, IN_USE); }
+    }
+
+    /** Counters since the pool was built, plus current sizes. */
+    public record Stats(long created, long destroyed, long borrowed, long returned, long waited, long timeouts,
+                        long evicted, long validationFailures, int active, int idle) {}
+
     private final Supplier<T> creator;
-    public ObjectPool(Supplier<T> creator){ this.creator = creator; }
-    public T borrow(){ return idle.isEmpty() ? creator.get() : idle.pop(); }
-    public void release(T obj){ idle.push(obj); }
-    public int size(){ return idle.size(); }
+    private final Predicate<T> borrowValidator, returnValidator; // null: not checked
+    private final Consumer<T> resetter;
+    private final Consumer<T> destroyer;
+    private final int maxSize;
+    private final long maxWaitNanos;
+    private final long maxIdleNanos;
+    private final int minIdle;
+
+    private final Semaphore permits;
+    private final AtomicInteger size = new AtomicInteger();
+    private final CopyOnWriteArrayList<Pooled<T>> all = new CopyOnWriteArrayList<>();
+    private final Queue<Pooled<T>> shared = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<LocalCache<T>> local = ThreadLocal.withInitial(LocalCache::new);
+    private final ScheduledExecutorService evictor;
+    private final LongAdder created = new LongAdder(), destroyed = new LongAdder(), borrowed = new LongAdder(),
+            returned = new LongAdder(), waited = new LongAdder(), timeouts = new LongAdder(),
+            evicted = new LongAdder(), validationFailures = new LongAdder();
+    private volatile boolean closed;
+
+    /** A pool of at most {@link Builder#DEFAULT_MAX_SIZE} objects from {@code creator}, with no validation or eviction. */
+    public ObjectPool(Supplier<T> creator) { this(builder(creator)); }
+
+    private ObjectPool(Builder<T> b) {
+        this.creator = b.creator;
+        this.borrowValidator = b.borrowValidator;
+        this.returnValidator = b.returnValidator;
+        this.resetter = b.resetter;
+        this.destroyer = b.destroyer;
+        this.maxSize = b.maxSize;
+        this.maxWaitNanos = b.maxWait.toNanos();
+        this.maxIdleNanos = b.maxIdle.toNanos();
+        this.minIdle = b.minIdle;
+        this.permits = new Semaphore(maxSize);
+        if (b.evictionInterval.isZero() || maxIdleNanos <= 0) {
+            this.evictor = null;
+        } else {
+            this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "object-pool-evictor");
+                t.setDaemon(true);
+                return t;
+            });
+            long every = b.evictionInterval.toNanos();
+            evictor.scheduleWithFixedDelay(this::evictIdle, every, every, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public static <T> Builder<T> builder(Supplier<T> creator) { return new Builder<>(creator); }
+
+    /** Borrows an object, waiting up to the pool's {@code maxWait} for one to be released. */
+    public Pooled<T> acquire() { return acquire(maxWaitNanos); }
+
+    /** Borrows an object, waiting up to {@code timeout}; {@link NoSuchElementException} if none became free. */
+    public Pooled<T> acquire(Duration timeout) { return acquire(timeout.toNanos()); }
+
+    /** As {@link #acquire()}, for callers that pass the object itself back to {@link #release(Object)}. */
+    public T borrow() { return acquire().get(); }
+
+    public T borrow(Duration timeout) { return acquire(timeout).get(); }
+
+    /** Returns an object taken with {@link #borrow()}. Prefer {@link Pooled#close()}, which needs no lookup. */
+    public void release(T obj) {
+        for (Pooled<T> p : all) {
+            if (p.object == obj) { release(p); return; }
+        }
+        throw new IllegalArgumentException("Not borrowed from this pool: " + obj);
+    }
+
+    /** Objects idle in the pool. */
+    public int size() { return size.get() - (maxSize - permits.availablePermits()); }
+
+    public Stats stats() {
+        int active = maxSize - permits.availablePermits();
+        return new Stats(created.sum(), destroyed.sum(), borrowed.sum(), returned.sum(), waited.sum(), timeouts.sum(),
+                evicted.sum(), validationFailures.sum(), active, Math.max(0, size.get() - active));
+    }
+
+    private Pooled<T> acquire(long timeoutNanos) {
+        if (closed) throw new IllegalStateException("Pool is closed");
+        if (!permits.tryAcquire()) {
+            waited.increment();
+            boolean got;
+            try {
+                got = permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new NoSuchElementException("Interrupted while waiting for a pooled object");
+            }
+            if (!got) {
+                timeouts.increment();
+                throw new NoSuchElementException("Pool exhausted: " + maxSize + " objects in use");
+            }
+        }
+        try {
+            Pooled<T> p = take();
+            borrowed.increment();
+            return p;
+        } catch (RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Holding a permit: at most maxSize - 1 objects are held by others, so an idle one exists or one may be created
+    private Pooled<T> take() {
+        while (true) {
+            Pooled<T> p = claimIdle();
+            if (p == null) {
+                int n = size.get();
+                if (n < maxSize && size.compareAndSet(n, n + 1)) return create();
+                // Full: an object is being released or claimed by another borrower; look again
+                Thread.onSpinWait();
+                continue;
+            }
+            if (borrowValidator == null || borrowValidator.test(p.object)) return p;
+            validationFailures.increment();
+            destroy(p);
+        }
+    }
+
+    private Pooled<T> claimIdle() {
+        LocalCache<T> cache = local.get();
+        for (Pooled<T> p; (p = cache.pop()) != null; ) if (p.claim()) return p;
+        for (Pooled<T> p; (p = shared.poll()) != null; ) if (p.claim()) return p;
+        for (Pooled<T> p : all) if (p.claim()) return p;
+        return null;
+    }
+
+    private Pooled<T> create() {
+        T obj;
+        try {
+            obj = creator.get();
+        } catch (RuntimeException | Error e) {
+            size.decrementAndGet();
+            throw e;
+        }
+        Pooled<T> p = new Pooled<>(this, obj);
+        all.add(p);
+        created.increment();
+        return p;
+    }
+
+    private void release(Pooled<T> p) {
+        // Claimed by CAS, so of two racing closes of one handle only one gives back the permit
+        if (p.pool != this || !p.state.compareAndSet(IN_USE, RETURNING)) throw new IllegalStateException("Object is not borrowed from this pool");
+        returned.increment();
+        boolean keep = !closed;
+        if (keep && returnValidator != null && !returnValidator.test(p.object)) {
+            validationFailures.increment();
+            keep = false;
+        }
+        if (keep && resetter != null) {
+            try { resetter.accept(p.object); } catch (RuntimeException e) { keep = false; }
+        }
+        if (keep) {
+            if (maxIdleNanos > 0) p.idleSince = System.nanoTime();
+            p.state.set(IDLE);
+            if (!local.get().push(p)) shared.offer(p);
+        } else {
+            destroy(p);
+        }
+        permits.release();
+    }
+
+    /** Destroys objects idle for longer than {@code maxIdle}, keeping at least {@code minIdle}; returns how many. */
+    public int evictIdle() {
+        if (maxIdleNanos <= 0) return 0;
+        long now = System.nanoTime();
+        int n = 0;
+        for (Pooled<T> p : all) {
+            if (size() <= minIdle) break;
+            if (p.state.get() == IDLE && now - p.idleSince > maxIdleNanos && p.state.compareAndSet(IDLE, IN_USE)) {
+                destroy(p);
+                evicted.increment();
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private void destroy(Pooled<T> p) {
+        p.state.set(REMOVED);
+        all.remove(p);
+        size.decrementAndGet();
+        destroyed.increment();
+        if (destroyer != null) {
+            try { destroyer.accept(p.object); } catch (RuntimeException ignored) { /* already out of the pool */ }
+        }
+    }
+
+    /** Destroys idle objects; objects still borrowed are destroyed as they are returned. */
+    @Override
+    public void close() {
+        closed = true;
+        if (evictor != null) evictor.shutdownNow();
+        for (Pooled<T> p : all) if (p.claim()) destroy(p);
+    }
+
+    /** Per-thread stack of recently released objects; only the owning thread touches it. */
+    private static final class LocalCache<T> {
+        @SuppressWarnings("unchecked")
+        private final Pooled<T>[] slots = (Pooled<T>[]) new Pooled<?>[LOCAL_CACHE];
+        private int n;
+
+        boolean push(Pooled<T> p) {
+            if (n == slots.length) return false;
+            slots[n++] = p;
+            return true;
+        }
+
+        Pooled<T> pop() {
+            if (n == 0) return null;
+            Pooled<T> p = slots[--n];
+            slots[n] = null;
+            return p;
+        }
+    }
+
+    public static final class Builder<T> {
+        public static final int DEFAULT_MAX_SIZE = 64;
+
+        private final Supplier<T> creator;
+        private Predicate<T> borrowValidator, returnValidator;
+        private Consumer<T> resetter;
+        private Consumer<T> destroyer;
+        private int maxSize = DEFAULT_MAX_SIZE;
+        private Duration maxWait = Duration.ofSeconds(30);
+        private Duration maxIdle = Duration.ZERO;
+        private int minIdle;
+        private Duration evictionInterval = Duration.ZERO;
+
+        private Builder(Supplier<T> creator) { this.creator = creator; }
+
+        public Builder<T> maxSize(int maxSize) {
+            if (maxSize < 1) throw new IllegalArgumentException("maxSize must be positive");
+            this.maxSize = maxSize;
+            return this;
+        }
+        /** Default wait for {@link ObjectPool#acquire()} when the pool is exhausted. */
+        public Builder<T> maxWait(Duration maxWait) { this.maxWait = maxWait; return this; }
+        /** Checks an idle object before it is handed out; one that fails is destroyed. Independent of {@link #validateOnReturn}. */
+        public Builder<T> validateOnBorrow(Predicate<T> validator) { this.borrowValidator = validator; return this; }
+        /** Checks an object as it is returned, before it is reset; one that fails is destroyed. */
+        public Builder<T> validateOnReturn(Predicate<T> validator) { this.returnValidator = validator; return this; }
+        /** Clears an object's state as it is returned; an exception destroys it instead. */
+        public Builder<T> reset(Consumer<T> resetter) { this.resetter = resetter; return this; }
+        /** Releases an object's resources when the pool drops it. */
+        public Builder<T> destroy(Consumer<T> destroyer) { this.destroyer = destroyer; return this; }
+        /** Objects idle for longer than {@code maxIdle} may be evicted, down to {@code minIdle}. */
+        public Builder<T> maxIdle(Duration maxIdle, int minIdle) { this.maxIdle = maxIdle; this.minIdle = minIdle; return this; }
+        /** Runs {@link ObjectPool#evictIdle()} on a daemon thread every {@code interval}. */
+        public Builder<T> evictEvery(Duration interval) { this.evictionInterval = interval; return this; }
+        public ObjectPool<T> build() { return new ObjectPool<>(this); }
+    }
 }
@@ -0,0 +1,179 @@
+package org.example.patterns.creational.objectpool;
+
+import org.example.patterns.objectpool.ObjectPool;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ObjectPoolAdvancedTest {
+    @Test
+    void releasedObjectsAreReused() {
+        var pool = new ObjectPool<>(StringBuilder::new);
+        StringBuilder a = pool.borrow();
+        pool.release(a);
+        assertEquals(1, pool.size());
+        assertSame(a, pool.borrow());
+        assertEquals(0, pool.size());
+        assertThrows(IllegalArgumentException.class, () -> pool.release(new StringBuilder()));
+    }
+
+    @Test
+    void borrowBlocksAtMaxSizeUntilTimeout() throws Exception {
+        var pool = ObjectPool.builder(Object::new).maxSize(2).build();
+        var a = pool.acquire();
+        var b = pool.acquire();
+        assertThrows(NoSuchElementException.class, () -> pool.acquire(Duration.ofMillis(20)));
+        assertEquals(1, pool.stats().timeouts());
+
+        Thread releaser = new Thread(() -> {
+            try { Thread.sleep(50); } catch (InterruptedException ignored) { }
+            a.close();
+        });
+        releaser.start();
+        var c = pool.acquire(Duration.ofSeconds(5));
+        assertSame(a.get(), c.get());
+        releaser.join();
+        b.close();
+        c.close();
+        assertEquals(2, pool.stats().created());
+    }
+
+    @Test
+    void concurrentBorrowersNeverShareAnObjectOrExceedTheBound() throws Exception {
+        int max = 4, threads = 16, rounds = 20_000;
+        var pool = ObjectPool.builder(AtomicInteger::new).maxSize(max).build();
+        Set<AtomicInteger> seen = ConcurrentHashMap.newKeySet();
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread w = new Thread(() -> {
+                try { start.await(); } catch (InterruptedException e) { return; }
+                for (int i = 0; i < rounds; i++) {
+                    try (var p = pool.acquire()) {
+                        // Exclusive use: nobody else may hold this object now
+                        if (p.get().incrementAndGet() != 1) errors.incrementAndGet();
+                        seen.add(p.get());
+                        p.get().decrementAndGet();
+                    }
+                }
+            });
+            workers.add(w);
+            w.start();
+        }
+        start.countDown();
+        for (Thread w : workers) w.join();
+        assertEquals(0, errors.get());
+        assertTrue(seen.size() <= max);
+        var s = pool.stats();
+        assertEquals((long) threads * rounds, s.borrowed());
+        assertEquals(s.borrowed(), s.returned());
+        assertEquals(0, s.active());
+    }
+
+    @Test
+    void invalidObjectsAreDestroyedOnBorrowAndReturn() {
+        List<StringBuilder> destroyed = new ArrayList<>();
+        // Buffers that grew too large are dropped rather than kept around
+        var pool = ObjectPool.builder(() -> new StringBuilder(16))
+                .validateOnReturn(sb -> sb.capacity() <= 16)
+                .reset(sb -> sb.setLength(0))
+                .destroy(destroyed::add)
+                .build();
+        try (var p = pool.acquire()) { p.get().append("short"); }
+        assertEquals(1, pool.size());
+        try (var p = pool.acquire()) {
+            assertEquals("", p.get().toString());
+            p.get().append("much longer than sixteen characters");
+        }
+        assertEquals(0, pool.size());
+        assertEquals(1, destroyed.size());
+        assertEquals(1, pool.stats().validationFailures());
+
+        var checked = ObjectPool.builder(AtomicInteger::new).validateOnBorrow(i -> i.get() == 0).build();
+        AtomicInteger broken = checked.borrow();
+        broken.set(5);
+        checked.release(broken);
+        assertNotSame(broken, checked.borrow());
+        assertEquals(1, checked.stats().validationFailures());
+        assertEquals(2, checked.stats().created());
+    }
+
+    @Test
+    void borrowAndReturnValidatorsAreIndependent() {
+        List<StringBuilder> destroyed = new ArrayList<>();
+        var pool = ObjectPool.builder(StringBuilder::new)
+                .validateOnBorrow(sb -> !sb.toString().equals("stale"))
+                .validateOnReturn(sb -> sb.length() <= 8)
+                .destroy(destroyed::add)
+                .build();
+        // The borrow check must not replace the return check, nor the other way round
+        StringBuilder big = pool.borrow();
+        big.append("far too long");
+        pool.release(big);
+        assertEquals(0, pool.size());
+        StringBuilder stale = pool.borrow();
+        stale.append("stale");
+        pool.release(stale);
+        assertEquals(1, pool.size());
+        assertNotSame(stale, pool.borrow());
+        assertEquals(List.of(big, stale), destroyed);
+        assertEquals(2, pool.stats().validationFailures());
+    }
+
+    @Test
+    void racingClosesOfOneHandleReturnItOnce() throws Exception {
+        var pool = ObjectPool.builder(Object::new).maxSize(2).build();
+        for (int round = 0; round < 2_000; round++) {
+            ObjectPool.Pooled<Object> p = pool.acquire();
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger failed = new AtomicInteger();
+            Runnable close = () -> {
+                try { start.await(); p.close(); } catch (IllegalStateException e) { failed.incrementAndGet(); }
+                catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            };
+            Thread a = new Thread(close), b = new Thread(close);
+            a.start();
+            b.start();
+            start.countDown();
+            a.join();
+            b.join();
+            assertEquals(1, failed.get());
+            assertEquals(0, pool.stats().active());
+        }
+        assertEquals(2_000, pool.stats().returned());
+    }
+
+    @Test
+    void idleObjectsAreEvictedDownToMinIdle() throws Exception {
+        var pool = ObjectPool.builder(Object::new).maxIdle(Duration.ofMillis(10), 1).build();
+        var a = pool.acquire();
+        var b = pool.acquire();
+        var c = pool.acquire();
+        a.close();
+        b.close();
+        c.close();
+        assertEquals(3, pool.size());
+        assertEquals(0, pool.evictIdle());
+        Thread.sleep(30);
+        assertEquals(2, pool.evictIdle());
+        assertEquals(1, pool.size());
+        assertEquals(2, pool.stats().evicted());
+
+        var background = ObjectPool.builder(Object::new).maxIdle(Duration.ofMillis(10), 0).evictEvery(Duration.ofMillis(10)).build();
+        background.acquire().close();
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (background.size() > 0 && System.nanoTime() < deadline) Thread.sleep(5);
+        assertEquals(0, background.size());
+        background.close();
+    }
+}
@@ -0,0 +1,128 @@
+package org.example.patterns.performance;
+
+import org.example.patterns.decorator.BasicMessageProcessor;
+import org.example.patterns.decorator.LoggingDecorator;
+import org.example.patterns.decorator.MessagePipeline;
+import org.example.patterns.decorator.MessageProcessor;
+import org.example.patterns.decorator.TransformDecorator;
+import org.example.patterns.decorator.ValidationDecorator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validate, change case {@code transforms} times (upper, lower, upper, ... ending in upper) and log (disabled) a
+ * batch of 1,000 mixed-case ASCII messages:
+ * <ul>
+ *   <li>{@code decorated}: {@code Logging(Validation(Transform(...(Basic))))}, one {@code process} call per message;
+ *   <li>{@code decoratedBatch}: the same chain through {@code processAll};
+ *   <li>{@code pipeline}: {@link MessagePipeline}, where validation and the case changes fuse into one step;
+ *   <li>{@code monolithic}: one hand-written class doing the same work.
+ * </ul>
+ * Scores are per message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DecoratorBenchmark {
+    static final int BATCH = 1_000;
+
+    /** Everything the decorated chain does, in one class. */
+    static final class MonolithicProcessor implements MessageProcessor {
+        private final Logger logger;
+        private final int transforms;
+
+        MonolithicProcessor(Logger logger, int transforms) {
+            this.logger = logger;
+            this.transforms = transforms;
+        }
+
+        @Override
+        public String process(String message) {
+            if (message == null || message.isBlank()) throw new IllegalArgumentException("Message cannot be null or blank");
+            String result = message;
+            for (int i = transforms - 1; i >= 0; i--) result = i % 2 == 0 ? result.toUpperCase(Locale.ROOT) : result.toLowerCase(Locale.ROOT);
+            if (logger.isLoggable(Level.DEBUG)) logger.log(Level.DEBUG, "Result: {0}", result);
+            return result;
+        }
+    }
+
+    @Param({"1", "3"})
+    public int transforms;
+
+    private List<String> messages;
+    private MessageProcessor decorated, monolithic;
+    private MessagePipeline pipeline;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom rnd = new SplittableRandom(1);
+        messages = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            StringBuilder sb = new StringBuilder();
+            int len = 20 + rnd.nextInt(40);
+            for (int j = 0; j < len; j++) {
+                int r = rnd.nextInt(30);
+                sb.append(r < 13 ? (char) ('a' + rnd.nextInt(26)) : r < 26 ? (char) ('A' + rnd.nextInt(26)) : r < 29 ? ' ' : (char) ('0' + rnd.nextInt(10)));
+            }
+            messages.add(sb.toString());
+        }
+        // DEBUG is below the platform logger's default threshold, so logging is disabled as in production
+        Logger logger = System.getLogger(DecoratorBenchmark.class.getName());
+        MessageProcessor chain = new BasicMessageProcessor();
+        MessagePipeline.Builder builder = MessagePipeline.builder().validate();
+        for (int i = transforms - 1; i >= 0; i--) {
+            TransformDecorator.Mode mode = i % 2 == 0 ? TransformDecorator.Mode.UPPER : TransformDecorator.Mode.LOWER;
+            chain = new TransformDecorator(chain, mode);
+            if (mode == TransformDecorator.Mode.UPPER) builder.upper(); else builder.lower();
+        }
+        decorated = new LoggingDecorator(new ValidationDecorator(chain), logger, Level.DEBUG);
+        monolithic = new MonolithicProcessor(logger, transforms);
+        pipeline = builder.log(logger, Level.DEBUG).build();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void decorated(Blackhole bh) {
+        for (String m : messages) bh.consume(decorated.process(m));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<String> decoratedBatch() {
+        return decorated.processAll(messages);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<String> pipeline() {
+        return pipeline.processAll(messages);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void monolithic(Blackhole bh) {
+        for (String m : messages) bh.consume(monolithic.process(m));
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.patterns.performance;
+
+import org.example.patterns.command.Command;
+import org.example.patterns.command.CommandHistory;
+import org.example.patterns.command.DeleteTextCommand;
+import org.example.patterns.command.Document;
+import org.example.patterns.command.InsertTextCommand;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+/**
+ * Random edits to a large {@link Document} through a bounded {@link CommandHistory}, against the same edits on a
+ * {@code StringBuilder} (the old Document), which is measured over fewer edits and extrapolated. Half the inserts
+ * continue typing where the previous one ended, so they coalesce into one undo step.
+ *
+ * <pre>
+ * java -Xmx2g -cp performance/target/classes:$(cat performance/target/cp.txt) org.example.patterns.performance.DocumentEditBenchmark 50000000 1000000
+ * </pre>
+ */
+public class DocumentEditBenchmark {
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 50_000_000;
+        int edits = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int baselineEdits = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+        String text = text(size);
+        System.out.printf("document %,d chars, %,d edits%n", size, edits);
+
+        long base = usedHeap();
+        Document doc = new Document(text);
+        CommandHistory history = new CommandHistory(10_000);
+        long t0 = System.nanoTime();
+        run(doc, history, edits, new SplittableRandom(1));
+        long elapsed = System.nanoTime() - t0;
+        System.out.printf("  piece table: %,.0f ms (%.2f us/edit), %,d pieces, %,d undo steps, heap %,.0f MB over the text%n",
+                elapsed / 1e6, elapsed / 1e3 / edits, doc.pieces(), history.undoSize(), (usedHeap() - base) / 1e6);
+        t0 = System.nanoTime();
+        SplittableRandom rnd = new SplittableRandom(2);
+        long sum = 0;
+        for (int i = 0; i < 1_000_000; i++) sum += doc.charAt(rnd.nextInt(doc.length()));
+        System.out.printf("  charAt: %.2f us; ", (System.nanoTime() - t0) / 1e3 / 1_000_000);
+        t0 = System.nanoTime();
+        sum += doc.getContent().length();
+        System.out.printf("getContent: %,.0f ms; ", (System.nanoTime() - t0) / 1e6);
+        t0 = System.nanoTime();
+        int undone = 0;
+        while (undone < 1_000 && history.undo()) undone++;
+        System.out.printf("undo x%,d: %,.0f ms (%d)%n", undone, (System.nanoTime() - t0) / 1e6, sum & 1);
+
+        StringBuilder sb = new StringBuilder(text);
+        rnd = new SplittableRandom(1);
+        t0 = System.nanoTime();
+        for (int i = 0; i < baselineEdits; i++) {
+            int at = rnd.nextInt(sb.length() + 1);
+            if (rnd.nextInt(10) < 3 && at < sb.length()) sb.delete(at, Math.min(sb.length(), at + 1 + rnd.nextInt(16)));
+            else sb.insert(at, WORDS[rnd.nextInt(WORDS.length)]);
+        }
+        elapsed = System.nanoTime() - t0;
+        System.out.printf("  StringBuilder: %,.0f ms for %,d edits (%.1f us/edit), so ~%,.0f s for %,d%n",
+                elapsed / 1e6, baselineEdits, elapsed / 1e3 / baselineEdits, elapsed / 1e9 * edits / baselineEdits, edits);
+    }
+
+    private static final String[] WORDS = {"a", "the ", "piece ", "table", "x", "undo ", "editor ", "rope", "  ", "\n"};
+
+    private static void run(Document doc, CommandHistory history, int edits, SplittableRandom rnd) {
+        int caret = -1;
+        for (int i = 0; i < edits; i++) {
+            Command c;
+            if (rnd.nextInt(10) < 3 && doc.length() > 0) {
+                int at = rnd.nextInt(doc.length());
+                c = new DeleteTextCommand(doc, at, Math.min(doc.length() - at, 1 + rnd.nextInt(16)));
+                caret = -1;
+            } else {
+                String word = WORDS[rnd.nextInt(WORDS.length)];
+                int at = caret >= 0 && rnd.nextBoolean() ? caret : rnd.nextInt(doc.length() + 1);
+                if (at != caret) history.seal();
+                c = new InsertTextCommand(doc, at, word);
+                caret = at + word.length();
+            }
+            history.execute(c);
+        }
+    }
+
+    private static String text(int size) {
+        SplittableRandom rnd = new SplittableRandom(42);
+        char[] chars = new char[size];
+        for (int i = 0; i < size; i++) {
+            int r = rnd.nextInt(64);
+            chars[i] = r < 52 ? (char) ('a' + r % 26) : r < 62 ? ' ' : r < 63 ? '.' : '\n';
+        }
+        return new String(chars);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.patterns.performance;
+
+import org.example.patterns.observer.Event;
+import org.example.patterns.observer.EventBus;
+import org.example.patterns.observer.EventListener;
+import org.example.patterns.observer.OrderCreatedEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publish throughput with {@code listeners} subscribers to the published event type, plus as many subscribed to
+ * another type:
+ * <ul>
+ *   <li>{@code legacy}: the old bus (an {@code ArrayList} copied on every publish, every listener called and
+ *   filtering with {@code instanceof});
+ *   <li>{@code sync}: typed subscriptions on the publishing thread;
+ *   <li>{@code async}: typed subscriptions with a 1024-event queue each on a two-thread executor, dropping on
+ *   overflow, so this measures the publisher's side.
+ * </ul>
+ *
+ * <pre>
+ * java -cp performance/target/classes:$(cat performance/target/cp.txt) org.openjdk.jmh.Main EventBusBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventBusBenchmark {
+    record OrderShippedEvent(String orderId) implements Event { }
+
+    /** The bus as it was before typed subscriptions. */
+    static final class LegacyEventBus {
+        private final List<EventListener> listeners = new ArrayList<>();
+
+        void register(EventListener listener) { listeners.add(listener); }
+
+        void publish(Event event) {
+            for (EventListener l : List.copyOf(listeners)) l.onEvent(event);
+        }
+    }
+
+    static final class Counter {
+        long n;
+    }
+
+    @Param({"1", "100", "10000"})
+    public int listeners;
+
+    @Param({"legacy", "sync", "async"})
+    public String mode;
+
+    private final Event event = new OrderCreatedEvent("ORDER-1");
+    private LegacyEventBus legacy;
+    private EventBus bus;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        legacy = new LegacyEventBus();
+        bus = new EventBus();
+        executor = Executors.newFixedThreadPool(2);
+        for (int i = 0; i < listeners; i++) {
+            Counter created = new Counter(), shipped = new Counter();
+            switch (mode) {
+                case "legacy" -> {
+                    legacy.register(e -> { if (e instanceof OrderCreatedEvent) created.n++; });
+                    legacy.register(e -> { if (e instanceof OrderShippedEvent) shipped.n++; });
+                }
+                case "sync" -> {
+                    bus.subscribe(OrderCreatedEvent.class, e -> created.n++);
+                    bus.subscribe(OrderShippedEvent.class, e -> shipped.n++);
+                }
+                default -> {
+                    bus.subscribe(OrderCreatedEvent.class, e -> created.n++, executor, 1024);
+                    bus.subscribe(OrderShippedEvent.class, e -> shipped.n++, executor, 1024);
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void publish() {
+        if ("legacy".equals(mode)) legacy.publish(event);
+        else bus.publish(event);
+    }
+}
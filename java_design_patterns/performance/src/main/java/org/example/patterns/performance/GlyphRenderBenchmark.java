@@ -0,0 +1,142 @@
+package org.example.patterns.performance;
+
+import org.example.patterns.flyweight.ConcreteGlyph;
+import org.example.patterns.flyweight.Glyph;
+import org.example.patterns.flyweight.GlyphFactory;
+import org.example.patterns.flyweight.GlyphRun;
+import org.example.patterns.flyweight.TextCanvas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering a 10M-character document (mostly ASCII, some Latin-1, Cyrillic and CJK, a few emoji) onto a
+ * {@link TextCanvas}:
+ * <ul>
+ *   <li>{@code boxedMap}: a glyph per char from a {@code ConcurrentHashMap<Character, Glyph>}, as the factory used to;
+ *   <li>{@code table}: a glyph per code point from {@link GlyphFactory}'s table;
+ *   <li>{@code run}: the whole {@link GlyphRun} in one call.
+ * </ul>
+ * {@link #main} reports retained heap for the document held as one object per character against the glyph run.
+ *
+ * <pre>
+ * java -cp performance/target/classes:$(cat performance/target/cp.txt) org.openjdk.jmh.Main GlyphRenderBenchmark
+ * java -Xmx2g -cp performance/target/classes:$(cat performance/target/cp.txt) org.example.patterns.performance.GlyphRenderBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class GlyphRenderBenchmark {
+    static final int CHARS = 10_000_000, COLUMNS = 100;
+
+    private String text;
+    private GlyphRun run;
+    private TextCanvas canvas;
+    private final Map<Character, Glyph> boxed = new ConcurrentHashMap<>();
+    private final GlyphFactory factory = new GlyphFactory();
+
+    @Setup
+    public void setUp() {
+        text = document(CHARS);
+        run = GlyphRun.layout(text, COLUMNS);
+        canvas = new TextCanvas(COLUMNS, run.yAt(run.length() - 1) + 1);
+    }
+
+    @Benchmark
+    public TextCanvas boxedMap() {
+        int x = 0, y = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') { x = 0; y++; continue; }
+            if (x == COLUMNS) { x = 0; y++; }
+            // Surrogate halves are drawn separately, as the char-based factory has to
+            boxed.computeIfAbsent(c, ConcreteGlyph::new).draw(canvas, x, y);
+            if (!Character.isHighSurrogate(c)) x++;
+        }
+        return canvas;
+    }
+
+    @Benchmark
+    public TextCanvas table() {
+        int x = 0, y = 0;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (cp == '\n') { x = 0; y++; continue; }
+            if (x == COLUMNS) { x = 0; y++; }
+            factory.get(cp).draw(canvas, x++, y);
+        }
+        return canvas;
+    }
+
+    @Benchmark
+    public TextCanvas run() {
+        run.draw(factory, canvas);
+        return canvas;
+    }
+
+    /** One object per character, as a document model without flyweights would hold it. */
+    record PositionedChar(int codePoint, int x, int y) {}
+
+    public static void main(String[] args) {
+        int chars = args.length > 0 ? Integer.parseInt(args[0]) : CHARS;
+        String text = document(chars);
+        long base = usedHeap();
+        PositionedChar[] objects = new PositionedChar[text.length()];
+        GlyphRun r = GlyphRun.layout(text, COLUMNS);
+        for (int i = 0; i < r.length(); i++) objects[i] = new PositionedChar(r.codePointAt(i), r.xAt(i), r.yAt(i));
+        r = null;
+        long perChar = usedHeap() - base;
+        objects = null;
+        base = usedHeap();
+        r = GlyphRun.layout(text, COLUMNS);
+        GlyphFactory f = new GlyphFactory();
+        for (int i = 0; i < r.length(); i++) f.get(r.codePointAt(i));
+        long flyweight = usedHeap() - base;
+        System.out.printf("%,d chars, %,d glyphs%n", text.length(), f.size());
+        System.out.printf("  object per character: %,6.1f MB (%.1f B/char)%n", perChar / 1e6, (double) perChar / text.length());
+        System.out.printf("  glyph run + shared glyphs: %,6.1f MB (%.1f B/char)%n", flyweight / 1e6, (double) flyweight / text.length());
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    static String document(int chars) {
+        String[] alphabets = {"abcdefghijklmnopqrstuvwxyz", "àáâãäåæçèéêëìíîïñòóôõöùúûüý", "абвгдежзийклмнопрстуфхцчшщыэюя",
+                "的一是不了人我在有他这中大来上个国到说们为子和你地出道也时年", "😀😂🙂🚀🌍❤"};
+        SplittableRandom rnd = new SplittableRandom(42);
+        StringBuilder sb = new StringBuilder(chars + 16);
+        while (sb.length() < chars) {
+            double p = rnd.nextDouble();
+            String a = alphabets[p < 0.90 ? 0 : p < 0.95 ? 1 : p < 0.98 ? 2 : p < 0.999 ? 3 : 4];
+            int len = 1 + rnd.nextInt(9);
+            for (int i = 0; i < len; i++) {
+                int at = a.offsetByCodePoints(0, rnd.nextInt(a.codePointCount(0, a.length())));
+                sb.appendCodePoint(a.codePointAt(at));
+            }
+            sb.append(rnd.nextInt(12) == 0 ? '\n' : ' ');
+        }
+        sb.setLength(chars);
+        if (Character.isHighSurrogate(sb.charAt(chars - 1))) sb.setCharAt(chars - 1, ' ');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.patterns.performance;
+
+import org.example.patterns.objectpool.ObjectPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Borrowing from {@link ObjectPool} against plain allocation, for a cheap object (a 256-byte scratch buffer) and an
+ * expensive one (a 64 KiB buffer plus a lookup table computed on construction). Thread count is a JMH option:
+ *
+ * <pre>
+ * mvn -q -pl performance -am package -DskipTests
+ * mvn -q -pl performance dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * for t in 1 4 16 32; do
+ *   java -cp performance/target/classes:$(cat performance/target/cp.txt) org.openjdk.jmh.Main ObjectPoolBenchmark -t $t
+ * done
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectPoolBenchmark {
+    /** Scratch space for one request: cheap to create, but garbage every time. */
+    public static final class Cheap {
+        final byte[] buf = new byte[256];
+    }
+
+    /** Stands in for a parser or codec whose constructor does real work. */
+    public static final class Expensive {
+        final byte[] buf = new byte[64 * 1024];
+        final int[] table = new int[4096];
+
+        Expensive() {
+            for (int i = 0; i < table.length; i++) {
+                int c = i;
+                for (int k = 0; k < 8; k++) c = (c & 1) != 0 ? 0xEDB88320 ^ (c >>> 1) : c >>> 1;
+                table[i] = c;
+            }
+        }
+    }
+
+    @Param({"cheap", "expensive"})
+    public String kind;
+
+    private ObjectPool<Cheap> cheapPool;
+    private ObjectPool<Expensive> expensivePool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cheapPool = ObjectPool.builder(Cheap::new).maxSize(64).build();
+        expensivePool = ObjectPool.builder(Expensive::new).maxSize(64).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cheapPool.close();
+        expensivePool.close();
+    }
+
+    @Benchmark
+    public int allocate() {
+        return "cheap".equals(kind) ? use(new Cheap()) : use(new Expensive());
+    }
+
+    @Benchmark
+    public int pooled() {
+        if ("cheap".equals(kind)) {
+            try (var p = cheapPool.acquire()) { return use(p.get()); }
+        }
+        try (var p = expensivePool.acquire()) { return use(p.get()); }
+    }
+
+    // The same small amount of work either way, so the difference is the cost of getting the object
+    private static int use(Cheap c) {
+        return checksum(c.buf, null);
+    }
+
+    private static int use(Expensive e) {
+        return checksum(e.buf, e.table);
+    }
+
+    private static int checksum(byte[] buf, int[] table) {
+        int h = 0;
+        for (int i = 0; i < 64; i++) {
+            buf[i] = (byte) (h + i);
+            h = table == null ? 31 * h + buf[i] : table[(h ^ buf[i]) & (table.length - 1)] ^ (h >>> 8);
+        }
+        return h;
+    }
+}
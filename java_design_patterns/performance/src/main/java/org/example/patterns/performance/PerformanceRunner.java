@@ -1,8 +1,20 @@
 package org.example.patterns.performance;
 
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks in this module whose names match the first argument (a regex); by default the
+ * decorated-vs-monolithic message processing comparison in {@link DecoratorBenchmark}.
+ *
+ * <pre>
+ * java -cp performance/target/classes:$(cat performance/target/cp.txt) org.example.patterns.performance.PerformanceRunner [regex]
+ * </pre>
+ */
 public class PerformanceRunner {
-    public static void main(String[] args) {
-        // Placeholder: compare decorated vs monolithic processing.
-        System.out.println("Run performance comparisons here.");
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : DecoratorBenchmark.class.getSimpleName();
+        new Runner(new OptionsBuilder().include(include).build()).run();
     }
 }
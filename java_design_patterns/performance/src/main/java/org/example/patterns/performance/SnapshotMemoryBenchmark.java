@@ -0,0 +1,94 @@
+package org.example.patterns.performance;
+
+import org.example.patterns.memento.RopeEditor;
+import org.example.patterns.memento.RopeSnapshot;
+import org.example.patterns.memento.TextEditor;
+import org.example.patterns.memento.TextSnapshot;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Heap retained by many snapshots of a large document, one taken after each small edit: {@link RopeEditor}, whose
+ * snapshots share the rope, against {@link TextEditor}, whose snapshots each hold a full copy (measured over fewer
+ * snapshots and extrapolated, as 10,000 copies would not fit in memory).
+ *
+ * <pre>
+ * java -Xmx2g -cp performance/target/classes:$(cat performance/target/cp.txt) org.example.patterns.performance.SnapshotMemoryBenchmark 10000000 10000
+ * </pre>
+ */
+public class SnapshotMemoryBenchmark {
+    private static final String[] WORDS = {"a ", "the ", "rope ", "snapshot ", "memento ", "undo ", "\n"};
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int snapshots = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int copies = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        String text = text(size);
+        System.out.printf("document %,d chars, %,d snapshots%n", size, snapshots);
+        rope("typing at the end", text, snapshots, false);
+        rope("edits at random positions", text, snapshots, true);
+
+        long base = usedHeap();
+        TextEditor editor = new TextEditor();
+        editor.type(text);
+        List<TextSnapshot> saved = new ArrayList<>();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < copies; i++) {
+            editor.type(WORDS[i % WORDS.length]);
+            saved.add(editor.save());
+        }
+        long elapsed = System.nanoTime() - t0;
+        double perSnapshot = (double) (usedHeap() - base) / copies;
+        System.out.printf("  TextEditor: %,.0f bytes/snapshot (%,d snapshots), so ~%,.1f GB for %,d; %,.0f us per type+save (%d)%n",
+                perSnapshot, copies, perSnapshot * snapshots / 1e9, snapshots, elapsed / 1e3 / copies, saved.size());
+    }
+
+    private static void rope(String name, String text, int snapshots, boolean random) {
+        RopeEditor editor = new RopeEditor(text);
+        long base = usedHeap();
+        SplittableRandom rnd = new SplittableRandom(1);
+        List<RopeSnapshot> saved = new ArrayList<>(snapshots);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < snapshots; i++) {
+            String word = WORDS[rnd.nextInt(WORDS.length)];
+            if (!random) {
+                editor.type(word);
+            } else if (rnd.nextInt(4) == 0) {
+                int from = rnd.nextInt(editor.length() - 16);
+                editor.delete(from, from + 1 + rnd.nextInt(16));
+            } else {
+                editor.insert(rnd.nextInt(editor.length() + 1), word);
+            }
+            saved.add(editor.save());
+        }
+        long elapsed = System.nanoTime() - t0;
+        long retained = usedHeap() - base - 4L * snapshots; // less the list's own array
+        t0 = System.nanoTime();
+        long sum = 0;
+        for (int i = 0; i < 100_000; i++) {
+            editor.restore(saved.get(rnd.nextInt(snapshots)));
+            sum += editor.charAt(rnd.nextInt(editor.length()));
+        }
+        long restore = System.nanoTime() - t0;
+        System.out.printf("  RopeEditor, %s: %,.0f bytes/snapshot, %,.1f MB for %,d; %.2f us per edit+save, %.2f us per restore+charAt (%d)%n",
+                name, (double) retained / snapshots, retained / 1e6, snapshots, elapsed / 1e3 / snapshots, restore / 1e3 / 100_000, sum & 1);
+    }
+
+    private static String text(int size) {
+        SplittableRandom rnd = new SplittableRandom(42);
+        char[] chars = new char[size];
+        for (int i = 0; i < size; i++) {
+            int r = rnd.nextInt(64);
+            chars[i] = r < 52 ? (char) ('a' + r % 26) : r < 62 ? ' ' : r < 63 ? '.' : '\n';
+        }
+        return new String(chars);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -1,5 +1,11 @@
 package org.example.patterns.decorator;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
 public class BasicMessageProcessor implements MessageProcessor {
     @Override public String process(String message) { return message; }
+    @Override public List<String> processAll(List<String> messages) { return new ArrayList<>(messages); }
+    @Override public Stream<String> processAll(Stream<String> messages) { return messages; }
 }
@@ -1,13 +1,50 @@
 package org.example.patterns.decorator;
 
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Logs each message and its result through a {@link System.Logger}. Log lines are only built when the logger has
+ * the level enabled, and the check is made once per call (or per batch), so a disabled decorator costs a branch.
+ */
 public class LoggingDecorator extends MessageProcessorDecorator {
-    public LoggingDecorator(MessageProcessor delegate) { super(delegate); }
+    private final Logger logger;
+    private final Level level;
+
+    public LoggingDecorator(MessageProcessor delegate) {
+        this(delegate, System.getLogger(LoggingDecorator.class.getName()), Level.INFO);
+    }
+
+    public LoggingDecorator(MessageProcessor delegate, Logger logger, Level level) {
+        super(delegate);
+        this.logger = logger;
+        this.level = level;
+    }
 
     @Override
     public String process(String message) {
-        System.out.println("[LOG] Processing message: " + message);
+        if (!logger.isLoggable(level)) return delegate.process(message);
+        logger.log(level, "Processing message: {0}", message);
         String result = delegate.process(message);
-        System.out.println("[LOG] Result: " + result);
+        logger.log(level, "Result: {0}", result);
         return result;
     }
+
+    @Override
+    public List<String> processAll(List<String> messages) {
+        if (!logger.isLoggable(level)) return delegate.processAll(messages);
+        logger.log(level, "Processing {0} messages", messages.size());
+        List<String> results = delegate.processAll(messages);
+        for (int i = 0; i < results.size(); i++) logger.log(level, "Result: {0} -> {1}", messages.get(i), results.get(i));
+        return results;
+    }
+
+    @Override
+    public Stream<String> processAll(Stream<String> messages) {
+        if (!logger.isLoggable(level)) return delegate.processAll(messages);
+        return delegate.processAll(messages.peek(m -> logger.log(level, "Processing message: {0}", m)))
+                .peek(r -> logger.log(level, "Result: {0}", r));
+    }
 }
@@ -0,0 +1,129 @@
+package org.example.patterns.decorator;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * A processing chain assembled from steps, as an alternative to nesting decorators by hand. The steps run in the
+ * order they were added, from a flat array rather than through nested delegates. Adjacent validation and case
+ * steps are fused into one step, and a run of case changes is applied as one conversion where that gives the
+ * same result.
+ *
+ * <pre>
+ * MessageProcessor p = MessagePipeline.builder().validate().upper().log(logger, Level.DEBUG).build();
+ * </pre>
+ */
+public final class MessagePipeline implements MessageProcessor {
+    private final UnaryOperator<String>[] steps;
+
+    private MessagePipeline(List<UnaryOperator<String>> steps) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        UnaryOperator<String>[] array = steps.toArray(new UnaryOperator[0]);
+        this.steps = array;
+    }
+
+    public static Builder builder() { return new Builder(); }
+
+    /** Number of steps after fusion. */
+    public int steps() { return steps.length; }
+
+    @Override
+    public String process(String message) {
+        for (UnaryOperator<String> step : steps) message = step.apply(message);
+        return message;
+    }
+
+    /** Runs each step over the whole batch before the next, so every step's loop stays monomorphic. */
+    @Override
+    public List<String> processAll(List<String> messages) {
+        List<String> out = new ArrayList<>(messages);
+        for (UnaryOperator<String> step : steps) out.replaceAll(step);
+        return out;
+    }
+
+    @Override
+    public Stream<String> processAll(Stream<String> messages) {
+        return messages.map(this::process);
+    }
+
+    public static final class Builder {
+        private final List<UnaryOperator<String>> steps = new ArrayList<>();
+        // Validation and case steps not yet emitted, so that a run of them becomes one CaseStep
+        private boolean validate;
+        private final List<TransformDecorator.Mode> modes = new ArrayList<>();
+
+        private Builder() { }
+
+        public Builder validate() {
+            // Validation after a case change sees a converted message, so it cannot move ahead of pending modes
+            if (!modes.isEmpty()) flush();
+            validate = true;
+            return this;
+        }
+
+        public Builder upper() { modes.add(TransformDecorator.Mode.UPPER); return this; }
+        public Builder lower() { modes.add(TransformDecorator.Mode.LOWER); return this; }
+
+        /** Logs each message at this point of the pipeline when {@code level} is enabled. */
+        public Builder log(Logger logger, Level level) {
+            flush();
+            steps.add(m -> {
+                if (logger.isLoggable(level)) logger.log(level, "Message: {0}", m);
+                return m;
+            });
+            return this;
+        }
+
+        /** Any other step: a lambda, or an existing processor such as a decorated chain. */
+        public Builder then(MessageProcessor step) {
+            flush();
+            steps.add(step::process);
+            return this;
+        }
+
+        public MessagePipeline build() {
+            flush();
+            return new MessagePipeline(steps);
+        }
+
+        private void flush() {
+            if (validate || !modes.isEmpty()) steps.add(new CaseStep(validate, modes.toArray(new TransformDecorator.Mode[0])));
+            validate = false;
+            modes.clear();
+        }
+    }
+
+    /**
+     * Validation followed by any number of case changes, as one step. On ASCII text case mappings are idempotent and
+     * the last one wins, so a run of modes collapses to the last; other text goes through each mode in turn, since
+     * for example {@code "ß"} upper-cases to {@code "SS"} and would not lower-case back.
+     */
+    static final class CaseStep implements UnaryOperator<String> {
+        private final boolean validate;
+        private final TransformDecorator.Mode[] modes;
+
+        CaseStep(boolean validate, TransformDecorator.Mode[] modes) {
+            this.validate = validate;
+            this.modes = modes;
+        }
+
+        @Override
+        public String apply(String s) {
+            if (validate) ValidationDecorator.validate(s);
+            if (modes.length == 0) return s;
+            TransformDecorator.Mode last = modes[modes.length - 1];
+            if (modes.length == 1 || isAscii(s)) return last.apply(s);
+            for (TransformDecorator.Mode m : modes) s = m.apply(s);
+            return s;
+        }
+
+        private static boolean isAscii(String s) {
+            for (int i = 0; i < s.length(); i++) if (s.charAt(i) >= 0x80) return false;
+            return true;
+        }
+    }
+}
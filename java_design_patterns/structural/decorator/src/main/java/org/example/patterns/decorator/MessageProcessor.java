@@ -1,5 +1,24 @@
 package org.example.patterns.decorator;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
 public interface MessageProcessor {
     String process(String message);
+
+    /**
+     * Processes a batch, returning the results in order in a new, mutable list. Decorators override this to do their step over the whole
+     * batch and hand the batch on, so a chain costs one call per decorator per batch rather than per message.
+     */
+    default List<String> processAll(List<String> messages) {
+        List<String> out = new ArrayList<>(messages.size());
+        for (String m : messages) out.add(process(m));
+        return out;
+    }
+
+    /** Processes a stream lazily, in encounter order. */
+    default Stream<String> processAll(Stream<String> messages) {
+        return messages.map(this::process);
+    }
 }
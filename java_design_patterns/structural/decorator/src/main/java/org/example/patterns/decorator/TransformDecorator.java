@@ -1,9 +1,15 @@
 package org.example.patterns.decorator;
 
+import java.util.List;
 import java.util.Locale;
+import java.util.stream.Stream;
 
 public class TransformDecorator extends MessageProcessorDecorator {
-    public enum Mode { UPPER, LOWER }
+    public enum Mode {
+        UPPER, LOWER;
+
+        public String apply(String s) { return this == UPPER ? s.toUpperCase(Locale.ROOT) : s.toLowerCase(Locale.ROOT); }
+    }
 
     private final Mode mode;
 
@@ -14,7 +20,18 @@ public class TransformDecorator extends MessageProcessorDecorator {
 
     @Override
     public String process(String message) {
-        String base = delegate.process(message);
-        return mode == Mode.UPPER ? base.toUpperCase(Locale.ROOT) : base.toLowerCase(Locale.ROOT);
+        return mode.apply(delegate.process(message));
+    }
+
+    @Override
+    public List<String> processAll(List<String> messages) {
+        List<String> out = delegate.processAll(messages);
+        out.replaceAll(mode::apply);
+        return out;
+    }
+
+    @Override
+    public Stream<String> processAll(Stream<String> messages) {
+        return delegate.processAll(messages).map(mode::apply);
     }
 }
@@ -1,13 +1,32 @@
 package org.example.patterns.decorator;
 
+import java.util.List;
+import java.util.stream.Stream;
+
 public class ValidationDecorator extends MessageProcessorDecorator {
     public ValidationDecorator(MessageProcessor delegate) { super(delegate); }
 
     @Override
     public String process(String message) {
+        return delegate.process(validate(message));
+    }
+
+    /** Rejects the whole batch, before any of it is processed, if any message is invalid. */
+    @Override
+    public List<String> processAll(List<String> messages) {
+        for (String m : messages) validate(m);
+        return delegate.processAll(messages);
+    }
+
+    @Override
+    public Stream<String> processAll(Stream<String> messages) {
+        return delegate.processAll(messages.map(ValidationDecorator::validate));
+    }
+
+    static String validate(String message) {
         if (message == null || message.isBlank()) {
             throw new IllegalArgumentException("Message cannot be null or blank");
         }
-        return delegate.process(message);
+        return message;
     }
 }
@@ -0,0 +1,82 @@
+package org.example.patterns.structural.decorator;
+
+import org.example.patterns.decorator.BasicMessageProcessor;
+import org.example.patterns.decorator.LoggingDecorator;
+import org.example.patterns.decorator.MessagePipeline;
+import org.example.patterns.decorator.MessageProcessor;
+import org.example.patterns.decorator.TransformDecorator;
+import org.example.patterns.decorator.ValidationDecorator;
+import org.junit.jupiter.api.Test;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecoratorAdvancedTest {
+    private static final List<String> MESSAGES = List.of("Hello", "straße", "İstanbul", "MiXeD 123", "  padded  ");
+
+    @Test
+    void batchesAndStreamsMatchOneAtATime() {
+        MessageProcessor chain = new ValidationDecorator(new TransformDecorator(
+                new TransformDecorator(new BasicMessageProcessor(), TransformDecorator.Mode.UPPER), TransformDecorator.Mode.LOWER));
+        List<String> expected = new ArrayList<>();
+        for (String m : MESSAGES) expected.add(chain.process(m));
+        assertEquals(expected, chain.processAll(MESSAGES));
+        assertEquals(expected, chain.processAll(MESSAGES.stream()).collect(Collectors.toList()));
+        assertThrows(IllegalArgumentException.class, () -> chain.processAll(List.of("ok", " ")));
+    }
+
+    @Test
+    void pipelineFusesCaseStepsWithoutChangingResults() {
+        MessagePipeline fused = MessagePipeline.builder().validate().upper().lower().build();
+        assertEquals(1, fused.steps());
+        MessageProcessor nested = new TransformDecorator(
+                new TransformDecorator(new ValidationDecorator(new BasicMessageProcessor()), TransformDecorator.Mode.UPPER),
+                TransformDecorator.Mode.LOWER);
+        for (String m : MESSAGES) assertEquals(nested.process(m), fused.process(m), m);
+        assertEquals(nested.processAll(MESSAGES), fused.processAll(MESSAGES));
+        assertThrows(IllegalArgumentException.class, () -> fused.process("\t "));
+        assertThrows(IllegalArgumentException.class, () -> fused.process(null));
+
+        MessagePipeline split = MessagePipeline.builder().upper().then(s -> s + "!").validate().lower().build();
+        assertEquals(3, split.steps());
+        assertEquals("abc!", split.process("Abc"));
+    }
+
+    @Test
+    void disabledLoggingBuildsNothing() {
+        List<String> logged = new ArrayList<>();
+        RecordingLogger off = new RecordingLogger(Level.WARNING, logged);
+        MessageProcessor quiet = new LoggingDecorator(new BasicMessageProcessor(), off, Level.DEBUG);
+        assertEquals(List.of("a", "b"), quiet.processAll(List.of("a", "b")));
+        assertEquals("c", quiet.process("c"));
+        assertEquals(List.of("d"), MessagePipeline.builder().log(off, Level.DEBUG).build().processAll(Stream.of("d")).toList());
+        assertEquals(List.of(), logged);
+
+        RecordingLogger on = new RecordingLogger(Level.DEBUG, logged);
+        new LoggingDecorator(new BasicMessageProcessor(), on, Level.DEBUG).process("e");
+        assertEquals(List.of("Processing message: e", "Result: e"), logged);
+    }
+
+    /** Keeps formatted messages at or above its threshold. */
+    private record RecordingLogger(Level threshold, List<String> out) implements Logger {
+        @Override public String getName() { return "test"; }
+        @Override public boolean isLoggable(Level level) { return level.getSeverity() >= threshold.getSeverity(); }
+        @Override public void log(Level level, ResourceBundle bundle, String msg, Throwable thrown) {
+            if (isLoggable(level)) out.add(msg);
+        }
+        @Override public void log(Level level, ResourceBundle bundle, String format, Object... params) {
+            if (isLoggable(level)) out.add(java.text.MessageFormat.format(format, params));
+        }
+        @Override public void log(Level level, Supplier<String> msg) {
+            if (isLoggable(level)) out.add(msg.get());
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package org.example.patterns.flyweight;
+
+/** Where glyphs are drawn; the extrinsic state (position) comes with each call. */
+public interface Canvas {
+    void plot(int codePoint, int x, int y);
+}
@@ -1,12 +1,24 @@
 package org.example.patterns.flyweight;
 
 public class ConcreteGlyph implements Glyph {
-    private final char symbol;
+    private final int codePoint;
 
-    public ConcreteGlyph(char symbol) { this.symbol = symbol; }
+    public ConcreteGlyph(char symbol) { this((int) symbol); }
+
+    public ConcreteGlyph(int codePoint) {
+        if (!Character.isValidCodePoint(codePoint)) throw new IllegalArgumentException("Not a code point: " + codePoint);
+        this.codePoint = codePoint;
+    }
+
+    public int codePoint() { return codePoint; }
 
     @Override
     public void draw(int x, int y) {
-        System.out.printf("Glyph '%c' at (%d,%d)%n", symbol, x, y);
+        System.out.printf("Glyph '%s' at (%d,%d)%n", Character.toString(codePoint), x, y);
+    }
+
+    @Override
+    public void draw(Canvas canvas, int x, int y) {
+        canvas.plot(codePoint, x, y);
     }
 }
@@ -2,4 +2,6 @@ package org.example.patterns.flyweight;
 
 public interface Glyph {
     void draw(int x, int y);
+
+    default void draw(Canvas canvas, int x, int y) { draw(x, y); }
 }
@@ -3,10 +3,56 @@ package org.example.patterns.flyweight;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Shared glyphs by code point. The Basic Multilingual Plane is a two-level table indexed by the code point itself
+ * (256 pages of 256 glyphs, a page allocated on first use), so a lookup is two plain array reads with no hashing,
+ * boxing or fences; supplementary code points go to a map.
+ */
 public class GlyphFactory {
-    private final Map<Character, Glyph> cache = new ConcurrentHashMap<>();
+    private static final int PAGE_BITS = 8, PAGE_SIZE = 1 << PAGE_BITS, PAGE_MASK = PAGE_SIZE - 1;
+
+    // Slots are written once, under the lock. A reader racing with that write may see null and take the slow path,
+    // but never a different glyph; ConcreteGlyph's final field makes the racy publication safe.
+    private final Glyph[][] pages = new Glyph[0x10000 >> PAGE_BITS][];
+    private final Map<Integer, Glyph> overflow = new ConcurrentHashMap<>();
 
     public Glyph get(char symbol) {
-        return cache.computeIfAbsent(symbol, ConcreteGlyph::new);
+        return get((int) symbol);
+    }
+
+    public Glyph get(int codePoint) {
+        if (codePoint >>> 16 == 0) {
+            Glyph[] page = pages[codePoint >>> PAGE_BITS];
+            if (page != null) {
+                Glyph g = page[codePoint & PAGE_MASK];
+                if (g != null) return g;
+            }
+            return create(codePoint);
+        }
+        return supplementary(codePoint);
+    }
+
+    // Kept out of get() so the BMP path stays small enough to inline
+    private Glyph supplementary(int codePoint) {
+        if (!Character.isValidCodePoint(codePoint)) throw new IllegalArgumentException("Not a code point: " + codePoint);
+        return overflow.computeIfAbsent(codePoint, ConcreteGlyph::new);
+    }
+
+    private synchronized Glyph create(int codePoint) {
+        Glyph[] page = pages[codePoint >>> PAGE_BITS];
+        if (page == null) page = pages[codePoint >>> PAGE_BITS] = new Glyph[PAGE_SIZE];
+        Glyph g = page[codePoint & PAGE_MASK];
+        if (g == null) g = page[codePoint & PAGE_MASK] = new ConcreteGlyph(codePoint);
+        return g;
+    }
+
+    /** Number of distinct glyphs created so far. */
+    public synchronized int size() {
+        int n = overflow.size();
+        for (Glyph[] page : pages) {
+            if (page == null) continue;
+            for (Glyph g : page) if (g != null) n++;
+        }
+        return n;
     }
 }
@@ -0,0 +1,52 @@
+package org.example.patterns.flyweight;
+
+import java.util.Arrays;
+
+/**
+ * A run of positioned glyphs held as parallel primitive arrays (code point, x, y) instead of one object per
+ * character. {@link #draw} renders the whole run in one call, resolving each glyph from the factory's table.
+ */
+public final class GlyphRun {
+    private final int[] codePoints, xs, ys;
+    private final int length;
+
+    /** The first {@code length} entries of the arrays, which are used as is, not copied. */
+    public GlyphRun(int[] codePoints, int[] xs, int[] ys, int length) {
+        if (length < 0 || length > codePoints.length || length > xs.length || length > ys.length) {
+            throw new IllegalArgumentException("Arrays are shorter than " + length);
+        }
+        this.codePoints = codePoints;
+        this.xs = xs;
+        this.ys = ys;
+        this.length = length;
+    }
+
+    public GlyphRun(int[] codePoints, int[] xs, int[] ys) { this(codePoints, xs, ys, codePoints.length); }
+
+    /** Lays {@code text} out from (0, 0), one cell per code point, wrapping at {@code columns} and at newlines. */
+    public static GlyphRun layout(CharSequence text, int columns) {
+        int[] cps = new int[text.length()], xs = new int[text.length()], ys = new int[text.length()];
+        int n = 0, x = 0, y = 0;
+        for (int i = 0; i < text.length(); ) {
+            int cp = Character.codePointAt(text, i);
+            i += Character.charCount(cp);
+            if (cp == '\n') { x = 0; y++; continue; }
+            if (x == columns) { x = 0; y++; }
+            cps[n] = cp;
+            xs[n] = x++;
+            ys[n] = y;
+            n++;
+        }
+        return n == cps.length ? new GlyphRun(cps, xs, ys) : new GlyphRun(Arrays.copyOf(cps, n), Arrays.copyOf(xs, n), Arrays.copyOf(ys, n));
+    }
+
+    public int length() { return length; }
+    public int codePointAt(int i) { return codePoints[i]; }
+    public int xAt(int i) { return xs[i]; }
+    public int yAt(int i) { return ys[i]; }
+
+    public void draw(GlyphFactory glyphs, Canvas canvas) {
+        int[] cps = codePoints, x = xs, y = ys;
+        for (int i = 0; i < length; i++) glyphs.get(cps[i]).draw(canvas, x[i], y[i]);
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.patterns.flyweight;
+
+/** A fixed grid of character cells, one code point per cell. Plots outside the grid are clipped. */
+public class TextCanvas implements Canvas {
+    private final int width, height;
+    private final int[] cells;
+
+    public TextCanvas(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.cells = new int[Math.multiplyExact(width, height)];
+    }
+
+    @Override
+    public void plot(int codePoint, int x, int y) {
+        if (x >= 0 && x < width && y >= 0 && y < height) cells[y * width + x] = codePoint;
+    }
+
+    /** The code point drawn at (x, y), or 0 if none. */
+    public int codePointAt(int x, int y) { return cells[y * width + x]; }
+
+    public int width() { return width; }
+    public int height() { return height; }
+}
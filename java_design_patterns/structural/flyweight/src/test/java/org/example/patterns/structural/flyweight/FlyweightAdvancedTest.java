@@ -0,0 +1,58 @@
+package org.example.patterns.structural.flyweight;
+
+import org.example.patterns.flyweight.ConcreteGlyph;
+import org.example.patterns.flyweight.GlyphFactory;
+import org.example.patterns.flyweight.GlyphRun;
+import org.example.patterns.flyweight.TextCanvas;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlyweightAdvancedTest {
+    @Test
+    void glyphsAreSharedAcrossThePlanes() {
+        var f = new GlyphFactory();
+        assertSame(f.get('A'), f.get('A'));
+        assertSame(f.get('A'), f.get((int) 'A'));
+        assertSame(f.get('￿'), f.get(0xFFFF));
+        int emoji = "😀".codePointAt(0);
+        assertSame(f.get(emoji), f.get(emoji));
+        assertEquals(emoji, ((ConcreteGlyph) f.get(emoji)).codePoint());
+        assertEquals(3, f.size());
+        assertThrows(IllegalArgumentException.class, () -> f.get(0x110000));
+        assertThrows(IllegalArgumentException.class, () -> f.get(-1));
+    }
+
+    @Test
+    void concurrentFirstUseYieldsOneInstance() throws Exception {
+        var f = new GlyphFactory();
+        Set<Object> seen = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread th = new Thread(() -> seen.add(f.get('中')));
+            threads.add(th);
+            th.start();
+        }
+        for (Thread th : threads) th.join();
+        assertEquals(1, seen.size());
+    }
+
+    @Test
+    void runLaysOutAndDrawsText() {
+        var run = GlyphRun.layout("abc\ndé😀fg", 3);
+        assertEquals(8, run.length());
+        var canvas = new TextCanvas(3, 3);
+        run.draw(new GlyphFactory(), canvas);
+        assertEquals('c', canvas.codePointAt(2, 0));
+        assertEquals('d', canvas.codePointAt(0, 1));
+        assertEquals("😀".codePointAt(0), canvas.codePointAt(2, 1));
+        assertEquals('g', canvas.codePointAt(1, 2));
+        assertEquals(0, canvas.codePointAt(2, 2));
+        assertThrows(IllegalArgumentException.class, () -> new GlyphRun(new int[2], new int[2], new int[1]));
+    }
+}